@@ -0,0 +1,87 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates CSV content for the benchmarks. The columns cycle through the types
+ * integer, decimal, date, string and datetime. Same arguments always create
+ * the same content.
+ */
+public final class BenchmarkData {
+
+    private static final long SEED = 4711;
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    /**
+     * @param columns the number of columns
+     * @param rows the number of rows without the header
+     * @param stringWidth the number of characters of a string value
+     * @return the CSV content with a header
+     */
+    public static String csv(final int columns, final int rows, final int stringWidth) {
+        final Random random = new Random(SEED);
+        final StringBuilder sb = new StringBuilder();
+        for (int column = 0; column < columns; column++) {
+            sb.append(column == 0 ? "" : ",").append("col").append(column);
+        }
+        sb.append('\n');
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                if (column > 0) {
+                    sb.append(',');
+                }
+                appendValue(sb, column % 5, random, stringWidth);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    static void appendValue(final StringBuilder sb, final int kind, final Random random, final int stringWidth) {
+        switch (kind) {
+            case 0: sb.append(random.nextInt(1_000_000)); break;
+            case 1: sb.append(random.nextInt(100_000)).append('.').append(random.nextInt(100)); break;
+            case 2: sb.append(2000 + random.nextInt(20)).append('-').append(pad(1 + random.nextInt(12))).append('-').append(pad(1 + random.nextInt(28))); break;
+            case 3: for (int i = 0; i < stringWidth; i++) {sb.append(LETTERS[random.nextInt(LETTERS.length)]);} break;
+            default: sb.append(2000 + random.nextInt(20)).append("-0").append(1 + random.nextInt(9)).append("-1").append(random.nextInt(9))
+                       .append(' ').append(pad(random.nextInt(24))).append(':').append(pad(random.nextInt(60))); break;
+        }
+    }
+
+    static String pad(final int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+
+    /** Reads all rows of the given CSV content into memory. */
+    public static List<Row> rows(final String csv) throws Exception {
+        final List<Row> rows = new ArrayList<>();
+        try (final CsvReader reader = new CsvReader(new StringReader(csv))) {
+            reader.forEach(rows::add);
+        }
+        return rows;
+    }
+
+    private BenchmarkData() {
+        throw new AssertionError("Forbidden to create instance from " + BenchmarkData.class);
+    }
+}
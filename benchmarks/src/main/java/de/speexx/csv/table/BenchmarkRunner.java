@@ -0,0 +1,44 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options given as arguments.
+ * The GC profiler is always added. So the output contains the allocation rate
+ * and the normalized allocation per operation (<tt>gc.alloc.rate.norm</tt>)
+ * of each benchmark.
+ */
+public final class BenchmarkRunner {
+
+    public static void main(final String... args) throws Exception {
+        final Options options = new OptionsBuilder().parent(new CommandLineOptions(args))
+                                                     .addProfiler(GCProfiler.class)
+                                                     .build();
+        new Runner(options).run();
+    }
+
+    private BenchmarkRunner() {
+        throw new AssertionError("Forbidden to create instance from " + BenchmarkRunner.class);
+    }
+}
@@ -0,0 +1,99 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.metric.SimpleRowDataMetric;
+import de.speexx.csv.table.metric.TypeIndentifyRowReaderDelegate;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a table end to end. {@code init} parses the CSV content and inserts
+ * the rows into the database. {@code initWithTypeDetection} additionally
+ * detects the column types and changes the column types of the table like
+ * <tt>scq</tt> does without <tt>--no-type</tt>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class DbTableBenchmark {
+
+    private static final AtomicInteger TABLE_COUNTER = new AtomicInteger();
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"8"})
+    public int columns;
+
+    private String csv;
+
+    @Setup
+    public void setup() {
+        this.csv = BenchmarkData.csv(this.columns, this.rows, 16);
+    }
+
+    @Benchmark
+    public int init() throws Exception {
+        try (final CsvReader reader = new CsvReader(new StringReader(this.csv));
+             final Table table = TableBuilder.of().addName(nextTableName()).addRowReader(reader).build()) {
+            return table.getEntryDescriptors().size();
+        }
+    }
+
+    @Benchmark
+    public int initWithTypeDetection() throws Exception {
+        final SimpleRowDataMetric metric = new SimpleRowDataMetric();
+        try (final CsvReader reader = new CsvReader(new StringReader(this.csv));
+             final Table table = TableBuilder.of().addName(nextTableName())
+                                                  .addRowReader(new TypeIndentifyRowReaderDelegate(reader, metric))
+                                                  .build()) {
+            final List<EntryDescriptor> changes = new ArrayList<>();
+            for (final EntryDescriptor descriptor : table.getEntryDescriptors()) {
+                final Optional<EntryDescriptor.Type> type = metric.getMostSignificantTypeForName(descriptor.getName());
+                if (type.isPresent() && type.get() != EntryDescriptor.Type.STRING) {
+                    changes.add(EntryDescriptorBuilder.of().addName(descriptor.getName()).addType(type.get()).build());
+                }
+            }
+            table.changeColumnTypes(changes.toArray(new EntryDescriptor[changes.size()]));
+            return changes.size();
+        }
+    }
+
+    static String nextTableName() {
+        return "bench" + TABLE_COUNTER.incrementAndGet();
+    }
+}
@@ -0,0 +1,96 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static de.speexx.csv.table.EntryDescriptor.Type.DATE;
+import static de.speexx.csv.table.EntryDescriptor.Type.DATETIME;
+import static de.speexx.csv.table.EntryDescriptor.Type.DECIMAL;
+import static de.speexx.csv.table.EntryDescriptor.Type.INTEGER;
+import static de.speexx.csv.table.EntryDescriptor.Type.STRING;
+import static de.speexx.csv.table.EntryDescriptor.Type.TIME;
+
+/**
+ * Cost of the type detection for values of each type. {@code match} checks
+ * only the type of the values, {@code detect} checks the types in the order of
+ * {@link de.speexx.csv.table.metric.SimpleRowDataMetric} until the first type
+ * matches. One operation checks all sample values of a type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeIdentifierBenchmark {
+
+    private static final EntryDescriptor.Type[] DETECTION_ORDER = {DATETIME, DATE, INTEGER, DECIMAL, TIME, STRING};
+
+    @Param({"INTEGER", "DECIMAL", "DATE", "TIME", "DATETIME", "STRING"})
+    public EntryDescriptor.Type type;
+
+    private String[] values;
+
+    @Setup
+    public void setup() {
+        this.values = samples(this.type);
+    }
+
+    static String[] samples(final EntryDescriptor.Type type) {
+        switch (type) {
+            case INTEGER: return new String[] {"0", "42", "-17", "123456789"};
+            case DECIMAL: return new String[] {"1.5", "-0.25", "3.1415e10", "NaN"};
+            case DATE: return new String[] {"2016-08-02", "2.8.2016", "08/02/2016", "2016-8-2"};
+            case TIME: return new String[] {"21:11", "21:11:42", "21:11:42.123", "7:05"};
+            case DATETIME: return new String[] {"2016-08-02 21:11", "2016-08-02T21:11:42", "2.8.2016 21:11:42.123", "Tue, 3 Jun 2008 11:05:30 GMT"};
+            default: return new String[] {"Douglas Adams", "The Colour of Magic", "a", "Mort"};
+        }
+    }
+
+    @Benchmark
+    public void match(final Blackhole blackhole) {
+        for (final String value : this.values) {
+            blackhole.consume(this.type.isTypeMatch(value));
+        }
+    }
+
+    @Benchmark
+    public void detect(final Blackhole blackhole) {
+        for (final String value : this.values) {
+            for (final EntryDescriptor.Type candidate : DETECTION_ORDER) {
+                if (candidate.isTypeMatch(value)) {
+                    blackhole.consume(candidate);
+                    break;
+                }
+            }
+        }
+    }
+}
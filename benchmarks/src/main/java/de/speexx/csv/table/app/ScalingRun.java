@@ -0,0 +1,198 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.management.ThreadMXBean;
+import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowBatch;
+import de.speexx.csv.table.RowReader;
+import de.speexx.csv.table.Table;
+import de.speexx.csv.table.app.sql.FromInfo;
+import de.speexx.csv.table.metric.RowDataMetric;
+import de.speexx.csv.table.metric.SimpleRowDataMetric;
+import de.speexx.csv.table.metric.TypeIndentifyRowReaderDelegate;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Executes the phases of one <tt>scq</tt> call and prints the measurements as
+ * JSON to stdout. The scaling suite starts a new JVM for each run to get the
+ * peak memory of a single run. The arguments are the same as for
+ * <tt>scq</tt>.
+ * <p>Type detection runs while the rows are loaded. The time of the detection
+ * is measured separately and is not part of the load phase. Its allocated
+ * bytes are part of the load phase. The allocated
+ * bytes are the bytes allocated by the main thread. Threads reading the files
+ * of a multi file source in parallel are not included.</p>
+ */
+public final class ScalingRun {
+
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(final String... args) throws Exception {
+        final PrintStream stdout = System.out;
+        final Map<String, Object> result = new ScalingRun().run(args);
+        stdout.println(new ObjectMapper().writeValueAsString(result));
+        stdout.flush();
+        System.exit(0);
+    }
+
+    Map<String, Object> run(final String... args) throws Exception {
+        final Configuration conf = new Configuration();
+        new JCommander(conf).parse(args);
+        final Application application = new Application(new PrintStream(new NullOutputStream()), null, Paths.get(""));
+        final FromInfo fromInfo = conf.getQueryData().getQueryData().getFromInfo().get(0);
+
+        final long start = System.nanoTime();
+        final long gcStart = gcMillis();
+
+        long[] mark = mark();
+        final List<Path> files = application.resolveSourceFiles(conf, fromInfo);
+        final RowReader reader = application.createSourceReader(conf, fromInfo, files);
+        phase("open", mark);
+
+        mark = mark();
+        final TimedMetric metric = new TimedMetric();
+        final Table table = application.loadTableFromSource(conf, fromInfo, new TypeIndentifyRowReaderDelegate(reader, metric));
+        reader.close();
+        phase("load", mark);
+        final long[] load = this.phases.get("load");
+        final long detectMillis = metric.nanos / 1_000_000;
+        load[0] -= detectMillis;
+        this.phases.put("detect", new long[] {detectMillis, 0, 0});
+
+        mark = mark();
+        application.adjustTableColumns(conf, table, metric.delegate);
+        phase("convert", mark);
+
+        mark = mark();
+        final Optional<RowReader> rows = application.executeQuery(conf, Collections.singletonList(table));
+        phase("query", mark);
+
+        mark = mark();
+        final long resultRows = rows.isPresent() ? application.exportResult(conf, rows.get()) : 0;
+        phase("export", mark);
+
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("wallMillis", (System.nanoTime() - start) / 1_000_000);
+        result.put("gcMillis", gcMillis() - gcStart);
+        result.put("allocatedBytes", this.phases.values().stream().mapToLong(values -> values[2]).sum());
+        result.put("peakHeapBytes", peakHeapBytes());
+        result.put("peakRssBytes", peakRssBytes());
+        result.put("resultRows", resultRows);
+        final Map<String, Object> phaseResults = new LinkedHashMap<>();
+        this.phases.forEach((name, values) -> {
+            final Map<String, Object> phase = new LinkedHashMap<>();
+            phase.put("millis", values[0]);
+            phase.put("gcMillis", values[1]);
+            phase.put("allocatedBytes", values[2]);
+            phaseResults.put(name, phase);
+        });
+        result.put("phases", phaseResults);
+        return result;
+    }
+
+    long[] mark() {
+        return new long[] {System.nanoTime(), gcMillis(), allocatedBytes()};
+    }
+
+    void phase(final String name, final long[] mark) {
+        this.phases.put(name, new long[] {(System.nanoTime() - mark[0]) / 1_000_000, gcMillis() - mark[1], allocatedBytes() - mark[2]});
+    }
+
+    long allocatedBytes() {
+        return this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                                .filter(time -> time > 0)
+                                .sum();
+    }
+
+    static long peakHeapBytes() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                                .map(MemoryPoolMXBean::getPeakUsage)
+                                .mapToLong(usage -> usage.getUsed())
+                                .sum();
+    }
+
+    /** The peak resident set size of the process. Available on Linux only. */
+    static long peakRssBytes() {
+        final Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (final String line : Files.readAllLines(status, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (final IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    static final class TimedMetric implements RowDataMetric {
+        final SimpleRowDataMetric delegate = new SimpleRowDataMetric();
+        long nanos;
+
+        @Override
+        public void collectRowData(final Row row) {
+            final long start = System.nanoTime();
+            this.delegate.collectRowData(row);
+            this.nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void collectBatchData(final RowBatch batch) {
+            final long start = System.nanoTime();
+            this.delegate.collectBatchData(batch);
+            this.nanos += System.nanoTime() - start;
+        }
+    }
+
+    static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) {}
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {}
+    }
+}
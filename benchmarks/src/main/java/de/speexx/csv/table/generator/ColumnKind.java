@@ -0,0 +1,53 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.generator;
+
+import java.util.Locale;
+
+/**
+ * The kinds of generated columns. The date, time and datetime kinds use the
+ * lazy formats detected by {@link de.speexx.csv.table.TypeIdentifier}.
+ */
+public enum ColumnKind {
+    /** Integers between -1 000 000 and 1 000 000. */
+    INTEGER,
+    /** Decimals with up to 4 fractional digits. Might contain <tt>NaN</tt>. */
+    DECIMAL,
+    /** Dates like <tt>2016-08-02</tt> or <tt>2016-8-2</tt>. */
+    DATE_ISO,
+    /** Dates like <tt>02.08.2016</tt> or <tt>2.8.2016</tt>. */
+    DATE_GERMAN,
+    /** Dates like <tt>08/02/2016</tt> or <tt>8/2/2016</tt>. */
+    DATE_US,
+    /** Datetimes like <tt>2016-08-02 21:11:42</tt> or <tt>2016-08-02T21:11</tt>. */
+    DATETIME,
+    /** Times like <tt>21:11</tt>, <tt>21:11:42</tt> or <tt>21:11:42.123</tt>. */
+    TIME,
+    /** Words out of a limited set of values, see the cardinality. */
+    STRING,
+    /** Free text. Might contain commas, quotes and line breaks which requires quoting. */
+    TEXT;
+
+    String columnNamePrefix() {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    static ColumnKind of(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,362 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible CSV content in RFC 4180 format. The same seed and the
+ * same settings always generate the same content.
+ * <p>The kinds of the columns are drawn from a weighted type mix. Each column
+ * has its own random generator derived from the seed. So adding rows doesn't
+ * change the values of the existing rows. A fraction of all values is empty
+ * and a fraction of the decimal values is <tt>NaN</tt>. The values of
+ * {@linkplain ColumnKind#STRING string} columns are taken out of a set of
+ * <em>cardinality</em> distinct values.</p>
+ * <p>The generator avoids formatting APIs and writes through one reused
+ * buffer to create large files fast.</p>
+ */
+public final class CsvGenerator {
+
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do"};
+    private static final String[] SPECIAL_SEPARATORS = {", ", "\n", "\"\" ", "\r\n"};
+    private static final int FLUSH_SIZE = 64 * 1024;
+    private static final long PART_SEED_FACTOR = 0x9E3779B97F4A7C15L;
+
+    private final List<ColumnKind> kinds;
+    private final long seed;
+    private final int part;
+    private final double emptyRatio;
+    private final double nanRatio;
+    private final double specialTextRatio;
+    private final int cardinality;
+
+    private CsvGenerator(final Builder builder) {
+        this.seed = builder.seed;
+        this.part = builder.part;
+        this.emptyRatio = builder.emptyRatio;
+        this.nanRatio = builder.nanRatio;
+        this.specialTextRatio = builder.specialTextRatio;
+        this.cardinality = builder.cardinality;
+        this.kinds = Collections.unmodifiableList(drawKinds(builder.columns, builder.mix, builder.seed));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<ColumnKind> getColumnKinds() {
+        return this.kinds;
+    }
+
+    public List<String> getColumnNames() {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < this.kinds.size(); i++) {
+            names.add(this.kinds.get(i).columnNamePrefix() + "_" + (i + 1));
+        }
+        return names;
+    }
+
+    /**
+     * Writes the header and the given number of rows.
+     * @param out the target
+     * @param rows the number of rows
+     * @return the number of written characters
+     */
+    public long write(final Writer out, final long rows) throws IOException {
+        return write(out, rows, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes the header and rows until the number of rows or the number of
+     * characters is reached. The last row is always complete.
+     * @param out the target
+     * @param maxRows the maximum number of rows
+     * @param maxChars the number of characters after which no further row is written
+     * @return the number of written characters
+     */
+    public long write(final Writer out, final long maxRows, final long maxChars) throws IOException {
+        Objects.requireNonNull(out, "out is null");
+
+        final SplittableRandom[] randoms = new SplittableRandom[this.kinds.size()];
+        final SplittableRandom root = new SplittableRandom(this.seed + PART_SEED_FACTOR * this.part);
+        for (int i = 0; i < randoms.length; i++) {
+            randoms[i] = root.split();
+        }
+
+        final StringBuilder sb = new StringBuilder(2 * FLUSH_SIZE);
+        sb.append(String.join(",", getColumnNames())).append('\n');
+        long written = 0;
+        for (long row = 0; row < maxRows && written + sb.length() < maxChars; row++) {
+            for (int column = 0; column < randoms.length; column++) {
+                if (column > 0) {
+                    sb.append(',');
+                }
+                appendValue(sb, this.kinds.get(column), randoms[column]);
+            }
+            sb.append('\n');
+            if (sb.length() >= FLUSH_SIZE) {
+                written += flush(out, sb);
+            }
+        }
+        written += flush(out, sb);
+        out.flush();
+        return written;
+    }
+
+    static int flush(final Writer out, final StringBuilder sb) throws IOException {
+        final int length = sb.length();
+        out.append(sb);
+        sb.setLength(0);
+        return length;
+    }
+
+    void appendValue(final StringBuilder sb, final ColumnKind kind, final SplittableRandom random) {
+        // Always draw the same number of values per row to keep rows independent of the ratios
+        final double emptyDraw = random.nextDouble();
+        final long value = random.nextLong();
+        if (emptyDraw < this.emptyRatio) {
+            return;
+        }
+        final int low = (int) (value & 0x7fffffff);
+        final int high = (int) ((value >>> 32) & 0x7fffffff);
+        switch (kind) {
+            case INTEGER: sb.append(low % 2_000_001 - 1_000_000); break;
+            case DECIMAL: appendDecimal(sb, low, high); break;
+            case DATE_ISO: appendIsoDate(sb, low, high % 2 == 0); break;
+            case DATE_GERMAN: appendGermanDate(sb, low, high % 2 == 0); break;
+            case DATE_US: appendUsDate(sb, low, high % 2 == 0); break;
+            case DATETIME: appendIsoDate(sb, low, true); sb.append(high % 2 == 0 ? ' ' : 'T'); appendTime(sb, high >>> 1); break;
+            case TIME: appendTime(sb, low); break;
+            case STRING: appendWord(sb, this.cardinality > 0 ? low % this.cardinality : low); break;
+            case TEXT: appendText(sb, low, high); break;
+            default: throw new IllegalStateException("unsupported kind: " + kind);
+        }
+    }
+
+    void appendDecimal(final StringBuilder sb, final int low, final int high) {
+        if (high / (double) Integer.MAX_VALUE < this.nanRatio) {
+            sb.append("NaN");
+            return;
+        }
+        if (high % 2 == 0) {
+            sb.append('-');
+        }
+        sb.append(low % 100_000).append('.');
+        final int fraction = (high >>> 1) % 10_000;
+        if (fraction < 1000) {
+            sb.append('0');
+        }
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    static void appendIsoDate(final StringBuilder sb, final int value, final boolean padded) {
+        sb.append(year(value)).append('-');
+        appendNumber(sb, month(value), padded).append('-');
+        appendNumber(sb, day(value), padded);
+    }
+
+    static void appendGermanDate(final StringBuilder sb, final int value, final boolean padded) {
+        appendNumber(sb, day(value), padded).append('.');
+        appendNumber(sb, month(value), padded).append('.').append(year(value));
+    }
+
+    static void appendUsDate(final StringBuilder sb, final int value, final boolean padded) {
+        appendNumber(sb, month(value), padded).append('/');
+        appendNumber(sb, day(value), padded).append('/').append(year(value));
+    }
+
+    static void appendTime(final StringBuilder sb, final int value) {
+        appendNumber(sb, value % 24, true).append(':');
+        appendNumber(sb, (value / 24) % 60, true);
+        final int precision = (value / 1440) % 3;
+        if (precision > 0) {
+            sb.append(':');
+            appendNumber(sb, (value / 4320) % 60, true);
+        }
+        if (precision > 1) {
+            sb.append('.').append(100 + (value / 259200) % 900);
+        }
+    }
+
+    static int year(final int value) {
+        return 1970 + value % 60;
+    }
+
+    static int month(final int value) {
+        return 1 + (value / 60) % 12;
+    }
+
+    static int day(final int value) {
+        return 1 + (value / 720) % 28;
+    }
+
+    static StringBuilder appendNumber(final StringBuilder sb, final int number, final boolean padded) {
+        if (padded && number < 10) {
+            sb.append('0');
+        }
+        return sb.append(number);
+    }
+
+    static void appendWord(final StringBuilder sb, final int index) {
+        int value = index;
+        do {
+            sb.append(LETTERS[value % LETTERS.length]);
+            value /= LETTERS.length;
+        } while (value > 0);
+    }
+
+    void appendText(final StringBuilder sb, final int low, final int high) {
+        final boolean special = high / (double) Integer.MAX_VALUE < this.specialTextRatio;
+        if (special) {
+            sb.append('"');
+        }
+        final int words = 1 + low % 8;
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(special && i == 1 ? SPECIAL_SEPARATORS[high % SPECIAL_SEPARATORS.length] : " ");
+            }
+            sb.append(WORDS[(low >>> (i * 3)) % WORDS.length]);
+        }
+        if (special) {
+            sb.append('"');
+        }
+    }
+
+    static List<ColumnKind> drawKinds(final int columns, final Map<ColumnKind, Integer> mix, final long seed) {
+        final int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("type mix without weight: " + mix);
+        }
+        final SplittableRandom random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        final List<ColumnKind> kinds = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            int draw = random.nextInt(total);
+            for (final Map.Entry<ColumnKind, Integer> entry : mix.entrySet()) {
+                draw -= entry.getValue();
+                if (draw < 0) {
+                    kinds.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return kinds;
+    }
+
+    /** Builder for a {@link CsvGenerator}. Without a type mix all kinds have the same weight. */
+    public static final class Builder {
+
+        private int columns = 10;
+        private long seed = 4711;
+        private int part = 0;
+        private double emptyRatio = 0.0;
+        private double nanRatio = 0.0;
+        private double specialTextRatio = 0.1;
+        private int cardinality = 1000;
+        private Map<ColumnKind, Integer> mix;
+
+        private Builder() {}
+
+        public Builder addColumns(final int columns) {
+            if (columns < 1) {
+                throw new IllegalArgumentException("columns must be > 0: " + columns);
+            }
+            this.columns = columns;
+            return this;
+        }
+
+        public Builder addSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Parts of the same seed have the same columns but different values.
+         * @param part the part number starting with 0
+         */
+        public Builder addPart(final int part) {
+            if (part < 0) {
+                throw new IllegalArgumentException("part must be >= 0: " + part);
+            }
+            this.part = part;
+            return this;
+        }
+
+        public Builder addEmptyRatio(final double ratio) {
+            this.emptyRatio = checkRatio(ratio);
+            return this;
+        }
+
+        public Builder addNanRatio(final double ratio) {
+            this.nanRatio = checkRatio(ratio);
+            return this;
+        }
+
+        /** The ratio of text values with commas, quotes or line breaks. */
+        public Builder addSpecialTextRatio(final double ratio) {
+            this.specialTextRatio = checkRatio(ratio);
+            return this;
+        }
+
+        /** The number of distinct values of string columns. 0 means nearly unlimited. */
+        public Builder addCardinality(final int cardinality) {
+            if (cardinality < 0) {
+                throw new IllegalArgumentException("cardinality must be >= 0: " + cardinality);
+            }
+            this.cardinality = cardinality;
+            return this;
+        }
+
+        public Builder addMix(final Map<ColumnKind, Integer> mix) {
+            this.mix = new EnumMap<>(Objects.requireNonNull(mix, "mix is null"));
+            return this;
+        }
+
+        public CsvGenerator build() {
+            if (this.mix == null) {
+                this.mix = new EnumMap<>(ColumnKind.class);
+                for (final ColumnKind kind : ColumnKind.values()) {
+                    this.mix.put(kind, 1);
+                }
+            }
+            return new CsvGenerator(this);
+        }
+
+        static double checkRatio(final double ratio) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException("ratio must be between 0 and 1: " + ratio);
+            }
+            return ratio;
+        }
+    }
+}
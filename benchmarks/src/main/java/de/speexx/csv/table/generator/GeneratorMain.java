@@ -0,0 +1,133 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.generator;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line interface of the {@link CsvGenerator}. Example to create a file
+ * with about 10 GB:
+ * <pre>
+ * java -cp target/benchmarks.jar de.speexx.csv.table.generator.GeneratorMain --size 10G --columns 20 --output big.csv
+ * </pre>
+ */
+public final class GeneratorMain {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    @Parameter(names = {"--rows"}, description = "Maximum number of rows.")
+    private long rows = Long.MAX_VALUE;
+
+    @Parameter(names = {"--size"}, description = "Approximate maximum size of the file, e.g. 500M or 10G.")
+    private String size;
+
+    @Parameter(names = {"--columns"}, description = "Number of columns.")
+    private int columns = 10;
+
+    @Parameter(names = {"--seed"}, description = "Seed of the random values.")
+    private long seed = 4711;
+
+    @Parameter(names = {"--mix"}, description = "Weighted column kinds, e.g. 'integer=3,decimal=1,date_iso=1,text=1'. Default: all kinds with the same weight.")
+    private String mix;
+
+    @Parameter(names = {"--empty-ratio"}, description = "Ratio of empty values.")
+    private double emptyRatio = 0.0;
+
+    @Parameter(names = {"--nan-ratio"}, description = "Ratio of NaN values in decimal columns.")
+    private double nanRatio = 0.0;
+
+    @Parameter(names = {"--special-text-ratio"}, description = "Ratio of text values with commas, quotes or line breaks.")
+    private double specialTextRatio = 0.1;
+
+    @Parameter(names = {"--cardinality"}, description = "Number of distinct values in string columns. 0 for nearly unlimited.")
+    private int cardinality = 1000;
+
+    @Parameter(names = {"--output"}, description = "The file to write. Default is stdout.")
+    private String output;
+
+    @Parameter(names = {"-h", "--help"}, description = "Prints a help reference.", help = true)
+    private boolean help = false;
+
+    public static void main(final String... args) throws IOException {
+        final GeneratorMain main = new GeneratorMain();
+        final JCommander jc = new JCommander(main);
+        jc.setProgramName("generate-csv");
+        jc.parse(args);
+        if (main.help) {
+            jc.usage();
+            return;
+        }
+        if (main.rows == Long.MAX_VALUE && main.size == null) {
+            throw new IllegalArgumentException("--rows or --size required");
+        }
+        main.generate();
+    }
+
+    void generate() throws IOException {
+        final CsvGenerator.Builder builder = CsvGenerator.builder()
+                .addColumns(this.columns)
+                .addSeed(this.seed)
+                .addEmptyRatio(this.emptyRatio)
+                .addNanRatio(this.nanRatio)
+                .addSpecialTextRatio(this.specialTextRatio)
+                .addCardinality(this.cardinality);
+        if (this.mix != null) {
+            builder.addMix(parseMix(this.mix));
+        }
+        final CsvGenerator generator = builder.build();
+        final long maxChars = this.size == null ? Long.MAX_VALUE : parseSize(this.size);
+
+        final OutputStream stream = this.output == null ? System.out : Files.newOutputStream(Paths.get(this.output));
+        try (final Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            generator.write(out, this.rows, maxChars);
+        }
+    }
+
+    static Map<ColumnKind, Integer> parseMix(final String mix) {
+        final Map<ColumnKind, Integer> weights = new EnumMap<>(ColumnKind.class);
+        for (final String part : mix.split(",")) {
+            final String[] kindAndWeight = part.split("=");
+            weights.put(ColumnKind.of(kindAndWeight[0]), kindAndWeight.length > 1 ? Integer.parseInt(kindAndWeight[1].trim()) : 1);
+        }
+        return weights;
+    }
+
+    static long parseSize(final String size) {
+        final String value = size.trim().toUpperCase(Locale.ENGLISH);
+        final char unit = value.charAt(value.length() - 1);
+        final String number = Character.isDigit(unit) ? value : value.substring(0, value.length() - 1);
+        switch (unit) {
+            case 'K': return Long.parseLong(number) * 1024;
+            case 'M': return Long.parseLong(number) * 1024 * 1024;
+            case 'G': return Long.parseLong(number) * 1024 * 1024 * 1024;
+            default: return Long.parseLong(number);
+        }
+    }
+}
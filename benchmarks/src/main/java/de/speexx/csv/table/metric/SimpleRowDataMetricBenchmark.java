@@ -0,0 +1,69 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.metric;
+
+import de.speexx.csv.table.BenchmarkData;
+import de.speexx.csv.table.Row;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Type detection of {@link SimpleRowDataMetric} for already parsed rows. The
+ * metric uses a parallel stream for rows with 20 or more columns. One
+ * operation collects the data of {@value #ROWS} rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimpleRowDataMetricBenchmark {
+
+    static final int ROWS = 10_000;
+
+    @Param({"4", "16", "32"})
+    public int columns;
+
+    private List<Row> rows;
+
+    @Setup
+    public void setup() throws Exception {
+        this.rows = BenchmarkData.rows(BenchmarkData.csv(this.columns, ROWS, 16));
+    }
+
+    @Benchmark
+    public SimpleRowDataMetric collectRowData() {
+        final SimpleRowDataMetric metric = new SimpleRowDataMetric();
+        for (final Row row : this.rows) {
+            metric.collectRowData(row);
+        }
+        return metric;
+    }
+}
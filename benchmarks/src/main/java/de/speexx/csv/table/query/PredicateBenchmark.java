@@ -0,0 +1,149 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import de.speexx.csv.table.BenchmarkData;
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.ResultColumn;
+import de.speexx.csv.table.Row;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluating a where clause for all rows. {@code interpreted} walks the
+ * expression tree with boxed values for each row, {@code compiled} uses the
+ * lambdas of the {@link PredicateCompiler} on the same typed columns.
+ * {@code prefilter} tests the string rows of the CSV source like
+ * <tt>scq --prefilter</tt> does while loading.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PredicateBenchmark {
+
+    private static final List<String> COLUMNS = Arrays.asList("col0", "col1", "col2", "col3", "col4");
+    private static final EntryDescriptor.Type[] TYPES = {EntryDescriptor.Type.INTEGER, EntryDescriptor.Type.DECIMAL,
+                                                         EntryDescriptor.Type.DATE, EntryDescriptor.Type.STRING,
+                                                         EntryDescriptor.Type.DATETIME};
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"col0 > 500000",
+            "col1 between 100 and 50000",
+            "col2 >= '2010-01-01'",
+            "col3 like 'a%'",
+            "col4 < '2005-01-01 00:00:00'",
+            "col0 > 500000 and col3 in ('ab', 'cd') or not col1 < 10"})
+    public String condition;
+
+    private Map<String, ResultColumn> columns;
+    private Expression bound;
+    private IntPredicate compiled;
+    private List<Row> csvRows;
+    private Prefilter prefilter;
+
+    @Setup
+    public void setup() throws Exception {
+        this.csvRows = BenchmarkData.rows(BenchmarkData.csv(COLUMNS.size(), this.rows, 2));
+        this.columns = new HashMap<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            final EntryDescriptor.Type type = TYPES[i];
+            final String name = COLUMNS.get(i);
+            final ResultColumn column = new ResultColumn(new EntryDescriptor() {
+                @Override public EntryDescriptor.Type getType() {return type;}
+                @Override public String getName() {return name;}
+            });
+            for (final Row row : this.csvRows) {
+                column.appendValue(typed(row.getValue(i).toString(), type));
+            }
+            this.columns.put(name, column);
+        }
+
+        final Query query = QueryParser.parse("select * from t where " + this.condition, COLUMNS);
+        this.bound = ExpressionInterpreter.bind(query.getWhere().get(), name -> this.columns.get(name).getType());
+        this.compiled = PredicateCompiler.compile(this.bound, this.columns::get);
+        final List<EntryDescriptor> descriptors = new ArrayList<>();
+        COLUMNS.forEach(name -> descriptors.add(this.columns.get(name).getDescriptor()));
+        this.prefilter = Prefilter.of(query, descriptors, true).orElseThrow(() -> new IllegalStateException("No prefilter for " + this.condition));
+    }
+
+    @Benchmark
+    public int interpreted() {
+        int count = 0;
+        for (int row = 0; row < this.rows; row++) {
+            if (ExpressionInterpreter.test(this.bound, this.columns::get, row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int compiled() {
+        int count = 0;
+        for (int row = 0; row < this.rows; row++) {
+            if (this.compiled.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int prefilter() {
+        int count = 0;
+        for (final Row row : this.csvRows) {
+            if (this.prefilter.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static Object typed(final String value, final EntryDescriptor.Type type) {
+        switch (type) {
+            case INTEGER: return Long.parseLong(value);
+            case DECIMAL: return Double.parseDouble(value);
+            case DATE: return LocalDate.parse(value);
+            case DATETIME: return LocalDateTime.parse(value.replace(' ', 'T'));
+            default: return value;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.scaling;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of a scaling suite run. The results are stored as JSON. Each
+ * {@link Run} contains the measurements of one cell of the matrix.
+ */
+public final class ScalingResults {
+
+    String created;
+    String javaVersion;
+    String query;
+    final List<Run> runs = new ArrayList<>();
+
+    /** The measurements of one scq run for one data set. */
+    public static final class Run {
+        long rows;
+        int columns;
+        int threads;
+        long fileBytes;
+        long wallMillis;
+        long gcMillis;
+        long allocatedBytes;
+        long peakHeapBytes;
+        /** -1 if not available on this platform. */
+        long peakRssBytes = -1;
+        long resultRows;
+        final Map<String, Phase> phases = new LinkedHashMap<>();
+
+        String key() {
+            return "rows=" + this.rows + " columns=" + this.columns + " threads=" + this.threads;
+        }
+
+        /** All comparable measurements of the run by name. */
+        Map<String, Long> metrics() {
+            final Map<String, Long> metrics = new LinkedHashMap<>();
+            metrics.put("wallMillis", this.wallMillis);
+            metrics.put("gcMillis", this.gcMillis);
+            metrics.put("allocatedBytes", this.allocatedBytes);
+            metrics.put("peakHeapBytes", this.peakHeapBytes);
+            metrics.put("peakRssBytes", this.peakRssBytes);
+            this.phases.forEach((name, phase) -> metrics.put(name + ".millis", phase.millis));
+            return metrics;
+        }
+    }
+
+    /** The measurements of one phase like load or query. */
+    public static final class Phase {
+        long millis;
+        long gcMillis;
+        long allocatedBytes;
+
+        Phase() {}
+
+        Phase(final long millis, final long gcMillis, final long allocatedBytes) {
+            this.millis = millis;
+            this.gcMillis = gcMillis;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    static ObjectMapper mapper() {
+        return new ObjectMapper().setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                                 .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                                 .enable(SerializationFeature.INDENT_OUTPUT)
+                                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    static ScalingResults read(final Path file) throws IOException {
+        return mapper().readValue(file.toFile(), ScalingResults.class);
+    }
+
+    void write(final Path file) throws IOException {
+        mapper().writeValue(file.toFile(), this);
+    }
+}
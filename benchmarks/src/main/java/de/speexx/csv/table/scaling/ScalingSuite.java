@@ -0,0 +1,259 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.scaling;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.fasterxml.jackson.databind.JsonNode;
+import de.speexx.csv.table.app.ScalingRun;
+import de.speexx.csv.table.generator.CsvGenerator;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Runs <tt>scq</tt> over a matrix of row counts, column counts and thread
+ * counts and records the measurements of each run in a JSON file. The
+ * <tt>compare</tt> command compares two result files and reports the
+ * measurements which got worse than a threshold.
+ * <pre>
+ * java -cp target/benchmarks.jar de.speexx.csv.table.scaling.ScalingSuite run --rows 100000,1000000 --columns 10,40 --threads 1,4 --output current.json
+ * java -cp target/benchmarks.jar de.speexx.csv.table.scaling.ScalingSuite compare baseline.json current.json --threshold 10
+ * </pre>
+ * <p>Each data set is a directory of generated CSV files with the same
+ * columns. Each run is executed in its own JVM.</p>
+ */
+public final class ScalingSuite {
+
+    static final String RUN_COMMAND = "run";
+    static final String COMPARE_COMMAND = "compare";
+    static final String SOURCE_PLACEHOLDER = "{source}";
+
+    @Parameters(commandDescription = "Runs the scaling matrix and writes the results.")
+    static final class RunCommand {
+        @Parameter(names = "--rows", description = "Comma separated row counts.")
+        String rows = "100000,1000000";
+
+        @Parameter(names = "--columns", description = "Comma separated column counts.")
+        String columns = "10,40";
+
+        @Parameter(names = "--threads", description = "Comma separated thread counts to load the files of a data set.")
+        String threads = "1,4";
+
+        @Parameter(names = "--files", description = "Number of files of a data set.")
+        int files = 4;
+
+        @Parameter(names = "--seed", description = "Seed of the generated data.")
+        long seed = 4711;
+
+        @Parameter(names = "--query", description = "The query. {source} is replaced by the data set directory.")
+        String query = "select * from " + SOURCE_PLACEHOLDER;
+
+        @Parameter(names = "--work-dir", description = "Directory for the generated data sets. Existing data sets are reused.")
+        String workDirectory = System.getProperty("java.io.tmpdir") + "/scq-scaling";
+
+        @Parameter(names = "--jvm-args", description = "Space separated arguments of the JVM of each run.")
+        String jvmArgs = "";
+
+        @Parameter(names = "--output", description = "The result file.")
+        String output = "scaling-results.json";
+    }
+
+    @Parameters(commandDescription = "Compares two result files. Exits with 1 on regressions.")
+    static final class CompareCommand {
+        @Parameter(description = "baseline current", required = true, arity = 2)
+        List<String> files = new ArrayList<>();
+
+        @Parameter(names = "--threshold", description = "Regression threshold in percent.")
+        double threshold = 10.0;
+
+        @Parameter(names = "--min-millis", description = "Time differences below this number of milliseconds are noise.")
+        long minMillis = 50;
+    }
+
+    public static void main(final String... args) throws Exception {
+        final RunCommand run = new RunCommand();
+        final CompareCommand compare = new CompareCommand();
+        final JCommander jc = new JCommander();
+        jc.setProgramName("scaling-suite");
+        jc.addCommand(RUN_COMMAND, run);
+        jc.addCommand(COMPARE_COMMAND, compare);
+        jc.parse(args);
+
+        if (RUN_COMMAND.equals(jc.getParsedCommand())) {
+            run(run);
+        } else if (COMPARE_COMMAND.equals(jc.getParsedCommand())) {
+            final List<String> regressions = compare(ScalingResults.read(Paths.get(compare.files.get(0))),
+                                                     ScalingResults.read(Paths.get(compare.files.get(1))),
+                                                     compare.threshold, compare.minMillis);
+            regressions.forEach(System.out::println);
+            System.out.println(regressions.size() + " regression(s)");
+            System.exit(regressions.isEmpty() ? 0 : 1);
+        } else {
+            jc.usage();
+        }
+    }
+
+    static void run(final RunCommand command) throws Exception {
+        final ScalingResults results = new ScalingResults();
+        results.created = Instant.now().toString();
+        results.javaVersion = System.getProperty("java.version");
+        results.query = command.query;
+
+        for (final long rows : parseLongs(command.rows)) {
+            for (final long columns : parseLongs(command.columns)) {
+                final Path dataSet = createDataSet(Paths.get(command.workDirectory), rows, (int) columns, command.files, command.seed);
+                for (final long threads : parseLongs(command.threads)) {
+                    final ScalingResults.Run run = execute(command, dataSet, (int) threads);
+                    run.rows = rows;
+                    run.columns = (int) columns;
+                    run.threads = (int) threads;
+                    run.fileBytes = directorySize(dataSet);
+                    results.runs.add(run);
+                    System.out.println(run.key() + " wall=" + run.wallMillis + "ms peakRss=" + run.peakRssBytes / (1024 * 1024) + "MB");
+                    results.write(Paths.get(command.output));
+                }
+            }
+        }
+    }
+
+    static ScalingResults.Run execute(final RunCommand command, final Path dataSet, final int threads) throws Exception {
+        final List<String> processArgs = new ArrayList<>();
+        processArgs.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        Arrays.stream(command.jvmArgs.trim().split("\\s+")).filter(arg -> !arg.isEmpty()).forEach(processArgs::add);
+        processArgs.add("-cp");
+        processArgs.add(System.getProperty("java.class.path"));
+        processArgs.add(ScalingRun.class.getName());
+        processArgs.add("--threads");
+        processArgs.add(String.valueOf(threads));
+        processArgs.addAll(Arrays.asList(command.query.replace(SOURCE_PLACEHOLDER, dataSet.toString()).split("\\s+")));
+
+        final Process process = new ProcessBuilder(processArgs).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String last = null;
+        try (final BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = out.readLine(); line != null; line = out.readLine()) {
+                last = line;
+            }
+        }
+        if (process.waitFor() != 0 || last == null) {
+            throw new IllegalStateException("Run failed for " + dataSet + " with " + threads + " threads");
+        }
+        return toRun(ScalingResults.mapper().readTree(last));
+    }
+
+    static ScalingResults.Run toRun(final JsonNode node) {
+        final ScalingResults.Run run = new ScalingResults.Run();
+        run.wallMillis = node.path("wallMillis").asLong();
+        run.gcMillis = node.path("gcMillis").asLong();
+        run.allocatedBytes = node.path("allocatedBytes").asLong();
+        run.peakHeapBytes = node.path("peakHeapBytes").asLong();
+        run.peakRssBytes = node.path("peakRssBytes").asLong(-1);
+        run.resultRows = node.path("resultRows").asLong();
+        final Iterator<Map.Entry<String, JsonNode>> phases = node.path("phases").fields();
+        while (phases.hasNext()) {
+            final Map.Entry<String, JsonNode> phase = phases.next();
+            run.phases.put(phase.getKey(), new ScalingResults.Phase(phase.getValue().path("millis").asLong(),
+                                                                    phase.getValue().path("gcMillis").asLong(),
+                                                                    phase.getValue().path("allocatedBytes").asLong()));
+        }
+        return run;
+    }
+
+    /**
+     * Compares the runs with the same rows, columns and threads.
+     * @return a description of each measurement which is worse than the threshold
+     */
+    static List<String> compare(final ScalingResults baseline, final ScalingResults current, final double threshold, final long minMillis) {
+        final Map<String, ScalingResults.Run> baselineRuns = new LinkedHashMap<>();
+        baseline.runs.forEach(run -> baselineRuns.put(run.key(), run));
+
+        final List<String> regressions = new ArrayList<>();
+        for (final ScalingResults.Run run : current.runs) {
+            final ScalingResults.Run base = baselineRuns.get(run.key());
+            if (base == null) {
+                continue;
+            }
+            final Map<String, Long> baseMetrics = base.metrics();
+            run.metrics().forEach((name, value) -> {
+                final Long baseValue = baseMetrics.get(name);
+                if (baseValue == null || baseValue < 0 || value < 0) {
+                    return;
+                }
+                if (name.endsWith("illis") && value - baseValue < minMillis) {
+                    return;
+                }
+                if (value > baseValue * (1 + threshold / 100)) {
+                    final double change = baseValue == 0 ? Double.POSITIVE_INFINITY : (value - baseValue) * 100.0 / baseValue;
+                    regressions.add(String.format("REGRESSION %s %s: %d -> %d (+%.1f%%)", run.key(), name, baseValue, value, change));
+                }
+            });
+        }
+        return regressions;
+    }
+
+    static Path createDataSet(final Path workDirectory, final long rows, final int columns, final int files, final long seed) throws IOException {
+        final Path dataSet = workDirectory.resolve("rows" + rows + "_columns" + columns + "_files" + files + "_seed" + seed);
+        if (Files.isDirectory(dataSet)) {
+            return dataSet;
+        }
+        final Path incomplete = workDirectory.resolve(dataSet.getFileName() + ".tmp");
+        Files.createDirectories(incomplete);
+        for (int part = 0; part < files; part++) {
+            final long partRows = rows / files + (part < rows % files ? 1 : 0);
+            final CsvGenerator generator = CsvGenerator.builder().addColumns(columns).addSeed(seed).addPart(part).build();
+            try (final Writer out = new BufferedWriter(Files.newBufferedWriter(incomplete.resolve("part-" + part + ".csv"), StandardCharsets.UTF_8), 1024 * 1024)) {
+                generator.write(out, partRows);
+            }
+        }
+        Files.move(incomplete, dataSet);
+        return dataSet;
+    }
+
+    static long directorySize(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    static List<Long> parseLongs(final String values) {
+        final List<Long> longs = new ArrayList<>();
+        for (final String value : values.split(",")) {
+            longs.add(Long.parseLong(value.trim()));
+        }
+        return longs;
+    }
+
+    private ScalingSuite() {
+        throw new AssertionError("Forbidden to create instance from " + ScalingSuite.class);
+    }
+}
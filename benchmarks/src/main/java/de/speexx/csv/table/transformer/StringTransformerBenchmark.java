@@ -0,0 +1,76 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.transformer;
+
+import de.speexx.csv.table.EntryDescriptor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of the <tt>StringTo*Transformer</tt> for each target type. One
+ * operation transforms all sample values of a type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringTransformerBenchmark {
+
+    @Param({"INTEGER", "DECIMAL", "DATE", "TIME", "DATETIME"})
+    public EntryDescriptor.Type target;
+
+    private TypeTransformer<String, ?> transformer;
+    private String[] values;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.transformer = TypeTransformer.of(EntryDescriptor.Type.STRING, this.target);
+        this.values = samples(this.target);
+    }
+
+    static String[] samples(final EntryDescriptor.Type type) {
+        switch (type) {
+            case INTEGER: return new String[] {"0", "42", "-17", "123456789"};
+            case DECIMAL: return new String[] {"1.5", "-0.25", "3.1415e10", "NaN"};
+            case DATE: return new String[] {"2016-08-02", "2.8.2016", "08/02/2016", "2016-8-2"};
+            case TIME: return new String[] {"21:11", "21:11:42", "23:59:59", "7:05"};
+            default: return new String[] {"2016-08-02 21:11", "2016-08-02T21:11:42", "2016-08-02 21:11:42", "2016-8-2 7:05"};
+        }
+    }
+
+    @Benchmark
+    public void transform(final Blackhole blackhole) {
+        for (final String value : this.values) {
+            blackhole.consume(this.transformer.transform(value));
+        }
+    }
+}
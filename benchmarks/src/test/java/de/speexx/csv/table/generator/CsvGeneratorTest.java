@@ -0,0 +1,106 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.generator;
+
+import de.speexx.csv.table.CsvReader;
+import de.speexx.csv.table.Entry;
+import de.speexx.csv.table.Row;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class CsvGeneratorTest {
+
+    @Test
+    public void sameSeedSameContent() throws Exception {
+        assertEquals(generate(CsvGenerator.builder().addSeed(1), 100), generate(CsvGenerator.builder().addSeed(1), 100));
+        assertNotEquals(generate(CsvGenerator.builder().addSeed(1), 100), generate(CsvGenerator.builder().addSeed(2), 100));
+    }
+
+    @Test
+    public void moreRowsKeepExistingRows() throws Exception {
+        final String small = generate(CsvGenerator.builder().addColumns(5), 10);
+        final String large = generate(CsvGenerator.builder().addColumns(5), 20);
+        assertTrue(large.startsWith(small));
+    }
+
+    @Test
+    public void partsWithSameColumns() throws Exception {
+        final String first = generate(CsvGenerator.builder().addPart(0), 10);
+        final String second = generate(CsvGenerator.builder().addPart(1), 10);
+        assertEquals(first.substring(0, first.indexOf('\n')), second.substring(0, second.indexOf('\n')));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void readableWithEmbeddedLineBreaks() throws Exception {
+        final Map<ColumnKind, Integer> mix = new EnumMap<>(ColumnKind.class);
+        mix.put(ColumnKind.TEXT, 1);
+        mix.put(ColumnKind.INTEGER, 1);
+        final String csv = generate(CsvGenerator.builder().addColumns(6).addMix(mix).addSpecialTextRatio(0.5), 500);
+        assertTrue(csv.contains("\"\""));
+
+        int rows = 0;
+        try (final CsvReader reader = new CsvReader(new StringReader(csv))) {
+            assertEquals(6, reader.getEntryDescriptors().size());
+            for (final Row row : reader) {
+                assertEquals(6, row.size());
+                rows++;
+            }
+        }
+        assertEquals(500, rows);
+    }
+
+    @Test
+    public void emptyRatio() throws Exception {
+        final String csv = generate(CsvGenerator.builder().addColumns(10).addEmptyRatio(0.2).addSpecialTextRatio(0), 1000);
+        int empty = 0;
+        int all = 0;
+        try (final CsvReader reader = new CsvReader(new StringReader(csv))) {
+            for (final Row row : reader) {
+                for (final Entry entry : row) {
+                    all++;
+                    if (String.valueOf(entry.getValue()).isEmpty()) {
+                        empty++;
+                    }
+                }
+            }
+        }
+        assertEquals(0.2, empty / (double) all, 0.02);
+    }
+
+    @Test
+    public void limitSize() throws Exception {
+        final StringWriter out = new StringWriter();
+        final long written = CsvGenerator.builder().build().write(out, Long.MAX_VALUE, 10_000);
+        assertEquals(written, out.toString().length());
+        assertTrue(written >= 10_000 && written < 11_000, "written: " + written);
+    }
+
+    static String generate(final CsvGenerator.Builder builder, final long rows) throws Exception {
+        final StringWriter out = new StringWriter();
+        builder.build().write(out, rows);
+        return out.toString();
+    }
+}
@@ -0,0 +1,72 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.scaling;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ScalingSuiteTest {
+
+    @Test
+    public void detectRegressionAboveThreshold() {
+        final ScalingResults baseline = results(1000, 200, 100);
+        final ScalingResults current = results(1200, 205, 100);
+
+        final List<String> regressions = ScalingSuite.compare(baseline, current, 10, 50);
+        assertEquals(1, regressions.size(), regressions.toString());
+        assertTrue(regressions.get(0).contains("wallMillis: 1000 -> 1200"), regressions.get(0));
+    }
+
+    @Test
+    public void ignoreSmallTimeDifferences() {
+        final ScalingResults baseline = results(100, 10, 100);
+        final ScalingResults current = results(140, 10, 100);
+
+        assertTrue(ScalingSuite.compare(baseline, current, 10, 50).isEmpty());
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        final Path file = Files.createTempFile("scaling", ".json");
+        file.toFile().deleteOnExit();
+        results(1000, 200, 100).write(file);
+
+        final ScalingResults read = ScalingResults.read(file);
+        assertEquals(1, read.runs.size());
+        assertEquals(200, read.runs.get(0).phases.get("load").millis);
+        assertTrue(ScalingSuite.compare(results(1000, 200, 100), read, 10, 50).isEmpty());
+    }
+
+    static ScalingResults results(final long wallMillis, final long loadMillis, final long peakRssBytes) {
+        final ScalingResults results = new ScalingResults();
+        final ScalingResults.Run run = new ScalingResults.Run();
+        run.rows = 1000;
+        run.columns = 10;
+        run.threads = 1;
+        run.wallMillis = wallMillis;
+        run.peakRssBytes = peakRssBytes;
+        run.phases.put("load", new ScalingResults.Phase(loadMillis, 0, 0));
+        results.runs.add(run);
+        return results;
+    }
+}
@@ -0,0 +1,489 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.Expression;
+import de.speexx.csv.table.query.Values;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Partial result of an aggregate for the groups of a {@link GroupTable}. The
+ * values are kept in arrays indexed by the group number. Partial results of
+ * the same aggregate are merged group by group, either from another state or
+ * from a spill file. The result types are the types of the {@link Aggregation}.
+ */
+abstract class AggregateState {
+
+    /**
+     * @param aggregate the aggregate
+     * @param argumentType the type of the aggregated column. {@code null} for <tt>COUNT(*)</tt>
+     */
+    static AggregateState of(final Expression.Aggregate aggregate, final EntryDescriptor.Type argumentType) {
+        Objects.requireNonNull(aggregate, "aggregate is null");
+        switch (aggregate.getFunction()) {
+            case COUNT:
+                return aggregate.isDistinct() ? new CountDistinct() : new Count();
+            case SUM:
+            case AVG:
+                final boolean average = aggregate.getFunction() == Expression.AggregateFunction.AVG;
+                return argumentType == EntryDescriptor.Type.INTEGER ? new IntegerSum(average) : new DecimalSum(average);
+            default:
+                final boolean maximum = aggregate.getFunction() == Expression.AggregateFunction.MAX;
+                switch (argumentType) {
+                    case INTEGER:
+                    case DATE:
+                    case TIME:
+                        return new LongExtreme(maximum);
+                    case DECIMAL:
+                        return new DecimalExtreme(maximum);
+                    default:
+                        return new ObjectExtreme(maximum);
+                }
+        }
+    }
+
+    /** Grows the arrays to hold at least <em>groups</em> groups. */
+    abstract void ensureCapacity(int groups);
+
+    /**
+     * @param group the group of the row
+     * @param argument the aggregated column. {@code null} for <tt>COUNT(*)</tt>
+     * @param row the row of the column
+     */
+    abstract void add(int group, ColumnVector argument, int row);
+
+    /** Merges the group <em>otherGroup</em> of a state of the same aggregate into <em>group</em>. */
+    abstract void merge(int group, AggregateState other, int otherGroup);
+
+    abstract void write(DataOutput out, int group) throws IOException;
+
+    /** Reads a group written by {@link #write(DataOutput, int)} and merges it into <em>group</em>. */
+    abstract void readAndMerge(DataInput in, int group) throws IOException;
+
+    abstract void appendResult(int group, ResultColumn target);
+
+    /** @return the estimated bytes of the values beside the arrays, e.g. the values of a distinct aggregate */
+    long estimatedValueBytes() {
+        return 0;
+    }
+
+    static int capacityFor(final int current, final int groups) {
+        return groups <= current ? current : Math.max(groups, current * 2);
+    }
+
+    static long addExact(final long first, final long second) {
+        try {
+            return Math.addExact(first, second);
+        } catch (final ArithmeticException e) {
+            throw new TableException("The resulting value is outside the range for the data type BIGINT", e);
+        }
+    }
+
+    static final class Count extends AggregateState {
+
+        private long[] counts = new long[0];
+
+        @Override
+        void ensureCapacity(final int groups) {
+            this.counts = Arrays.copyOf(this.counts, capacityFor(this.counts.length, groups));
+        }
+
+        @Override
+        void add(final int group, final ColumnVector argument, final int row) {
+            if (argument == null || !argument.isNull(row)) {
+                this.counts[group]++;
+            }
+        }
+
+        @Override
+        void merge(final int group, final AggregateState other, final int otherGroup) {
+            this.counts[group] += ((Count) other).counts[otherGroup];
+        }
+
+        @Override
+        void write(final DataOutput out, final int group) throws IOException {
+            out.writeLong(this.counts[group]);
+        }
+
+        @Override
+        void readAndMerge(final DataInput in, final int group) throws IOException {
+            this.counts[group] += in.readLong();
+        }
+
+        @Override
+        void appendResult(final int group, final ResultColumn target) {
+            target.appendLong(this.counts[group]);
+        }
+    }
+
+    static final class CountDistinct extends AggregateState {
+
+        private final List<Set<Object>> values = new ArrayList<>();
+        private long valueCount;
+
+        @Override
+        void ensureCapacity(final int groups) {
+            while (this.values.size() < groups) {
+                this.values.add(new HashSet<>());
+            }
+        }
+
+        @Override
+        void add(final int group, final ColumnVector argument, final int row) {
+            if (!argument.isNull(row)) {
+                addValue(group, ColumnarQuery.normalized(argument.getValue(row)));
+            }
+        }
+
+        void addValue(final int group, final Object value) {
+            if (this.values.get(group).add(value)) {
+                this.valueCount++;
+            }
+        }
+
+        @Override
+        void merge(final int group, final AggregateState other, final int otherGroup) {
+            for (final Object value : ((CountDistinct) other).values.get(otherGroup)) {
+                addValue(group, value);
+            }
+        }
+
+        @Override
+        void write(final DataOutput out, final int group) throws IOException {
+            final Set<Object> distinct = this.values.get(group);
+            out.writeInt(distinct.size());
+            for (final Object value : distinct) {
+                GroupTable.writeValue(out, value);
+            }
+        }
+
+        @Override
+        void readAndMerge(final DataInput in, final int group) throws IOException {
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                addValue(group, GroupTable.readValue(in));
+            }
+        }
+
+        @Override
+        void appendResult(final int group, final ResultColumn target) {
+            target.appendLong(this.values.get(group).size());
+        }
+
+        @Override
+        long estimatedValueBytes() {
+            return this.valueCount * GroupTable.DISTINCT_VALUE_BYTES;
+        }
+    }
+
+    static final class IntegerSum extends AggregateState {
+
+        private final boolean average;
+        private long[] sums = new long[0];
+        private long[] counts = new long[0];
+
+        IntegerSum(final boolean average) {
+            this.average = average;
+        }
+
+        @Override
+        void ensureCapacity(final int groups) {
+            final int capacity = capacityFor(this.sums.length, groups);
+            this.sums = Arrays.copyOf(this.sums, capacity);
+            this.counts = Arrays.copyOf(this.counts, capacity);
+        }
+
+        @Override
+        void add(final int group, final ColumnVector argument, final int row) {
+            if (!argument.isNull(row)) {
+                this.sums[group] = addExact(this.sums[group], argument.getLongs()[row]);
+                this.counts[group]++;
+            }
+        }
+
+        @Override
+        void merge(final int group, final AggregateState other, final int otherGroup) {
+            final IntegerSum sum = (IntegerSum) other;
+            this.sums[group] = addExact(this.sums[group], sum.sums[otherGroup]);
+            this.counts[group] += sum.counts[otherGroup];
+        }
+
+        @Override
+        void write(final DataOutput out, final int group) throws IOException {
+            out.writeLong(this.sums[group]);
+            out.writeLong(this.counts[group]);
+        }
+
+        @Override
+        void readAndMerge(final DataInput in, final int group) throws IOException {
+            this.sums[group] = addExact(this.sums[group], in.readLong());
+            this.counts[group] += in.readLong();
+        }
+
+        @Override
+        void appendResult(final int group, final ResultColumn target) {
+            if (this.counts[group] == 0) {
+                target.appendNull();
+            } else {
+                target.appendLong(this.average ? this.sums[group] / this.counts[group] : this.sums[group]);
+            }
+        }
+    }
+
+    static final class DecimalSum extends AggregateState {
+
+        private final boolean average;
+        private double[] sums = new double[0];
+        private long[] counts = new long[0];
+
+        DecimalSum(final boolean average) {
+            this.average = average;
+        }
+
+        @Override
+        void ensureCapacity(final int groups) {
+            final int capacity = capacityFor(this.sums.length, groups);
+            this.sums = Arrays.copyOf(this.sums, capacity);
+            this.counts = Arrays.copyOf(this.counts, capacity);
+        }
+
+        @Override
+        void add(final int group, final ColumnVector argument, final int row) {
+            if (!argument.isNull(row)) {
+                this.sums[group] += argument.getDouble(row);
+                this.counts[group]++;
+            }
+        }
+
+        @Override
+        void merge(final int group, final AggregateState other, final int otherGroup) {
+            final DecimalSum sum = (DecimalSum) other;
+            this.sums[group] += sum.sums[otherGroup];
+            this.counts[group] += sum.counts[otherGroup];
+        }
+
+        @Override
+        void write(final DataOutput out, final int group) throws IOException {
+            out.writeDouble(this.sums[group]);
+            out.writeLong(this.counts[group]);
+        }
+
+        @Override
+        void readAndMerge(final DataInput in, final int group) throws IOException {
+            this.sums[group] += in.readDouble();
+            this.counts[group] += in.readLong();
+        }
+
+        @Override
+        void appendResult(final int group, final ResultColumn target) {
+            if (this.counts[group] == 0) {
+                target.appendNull();
+            } else {
+                target.appendDouble(this.average ? this.sums[group] / this.counts[group] : this.sums[group]);
+            }
+        }
+    }
+
+    /** Minimum or maximum of integers, dates and times by their stored value. */
+    static final class LongExtreme extends AggregateState {
+
+        private final boolean maximum;
+        private long[] extremes = new long[0];
+        private boolean[] seen = new boolean[0];
+
+        LongExtreme(final boolean maximum) {
+            this.maximum = maximum;
+        }
+
+        @Override
+        void ensureCapacity(final int groups) {
+            final int capacity = capacityFor(this.extremes.length, groups);
+            this.extremes = Arrays.copyOf(this.extremes, capacity);
+            this.seen = Arrays.copyOf(this.seen, capacity);
+        }
+
+        @Override
+        void add(final int group, final ColumnVector argument, final int row) {
+            if (!argument.isNull(row)) {
+                addValue(group, argument.getLongs()[row]);
+            }
+        }
+
+        void addValue(final int group, final long value) {
+            if (!this.seen[group] || (this.maximum ? value > this.extremes[group] : value < this.extremes[group])) {
+                this.extremes[group] = value;
+                this.seen[group] = true;
+            }
+        }
+
+        @Override
+        void merge(final int group, final AggregateState other, final int otherGroup) {
+            final LongExtreme extreme = (LongExtreme) other;
+            if (extreme.seen[otherGroup]) {
+                addValue(group, extreme.extremes[otherGroup]);
+            }
+        }
+
+        @Override
+        void write(final DataOutput out, final int group) throws IOException {
+            out.writeBoolean(this.seen[group]);
+            out.writeLong(this.extremes[group]);
+        }
+
+        @Override
+        void readAndMerge(final DataInput in, final int group) throws IOException {
+            final boolean valueSeen = in.readBoolean();
+            final long value = in.readLong();
+            if (valueSeen) {
+                addValue(group, value);
+            }
+        }
+
+        @Override
+        void appendResult(final int group, final ResultColumn target) {
+            if (this.seen[group]) {
+                target.appendLong(this.extremes[group]);
+            } else {
+                target.appendNull();
+            }
+        }
+    }
+
+    static final class DecimalExtreme extends AggregateState {
+
+        private final boolean maximum;
+        private double[] extremes = new double[0];
+        private boolean[] seen = new boolean[0];
+
+        DecimalExtreme(final boolean maximum) {
+            this.maximum = maximum;
+        }
+
+        @Override
+        void ensureCapacity(final int groups) {
+            final int capacity = capacityFor(this.extremes.length, groups);
+            this.extremes = Arrays.copyOf(this.extremes, capacity);
+            this.seen = Arrays.copyOf(this.seen, capacity);
+        }
+
+        @Override
+        void add(final int group, final ColumnVector argument, final int row) {
+            if (!argument.isNull(row)) {
+                addValue(group, argument.getDoubles()[row]);
+            }
+        }
+
+        void addValue(final int group, final double value) {
+            if (!this.seen[group] || (this.maximum ? value > this.extremes[group] : value < this.extremes[group])) {
+                this.extremes[group] = value;
+                this.seen[group] = true;
+            }
+        }
+
+        @Override
+        void merge(final int group, final AggregateState other, final int otherGroup) {
+            final DecimalExtreme extreme = (DecimalExtreme) other;
+            if (extreme.seen[otherGroup]) {
+                addValue(group, extreme.extremes[otherGroup]);
+            }
+        }
+
+        @Override
+        void write(final DataOutput out, final int group) throws IOException {
+            out.writeBoolean(this.seen[group]);
+            out.writeDouble(this.extremes[group]);
+        }
+
+        @Override
+        void readAndMerge(final DataInput in, final int group) throws IOException {
+            final boolean valueSeen = in.readBoolean();
+            final double value = in.readDouble();
+            if (valueSeen) {
+                addValue(group, value);
+            }
+        }
+
+        @Override
+        void appendResult(final int group, final ResultColumn target) {
+            if (this.seen[group]) {
+                target.appendDouble(this.extremes[group]);
+            } else {
+                target.appendNull();
+            }
+        }
+    }
+
+    /** Minimum or maximum of strings and datetimes by their boxed value. */
+    static final class ObjectExtreme extends AggregateState {
+
+        private final boolean maximum;
+        private Object[] extremes = new Object[0];
+
+        ObjectExtreme(final boolean maximum) {
+            this.maximum = maximum;
+        }
+
+        @Override
+        void ensureCapacity(final int groups) {
+            this.extremes = Arrays.copyOf(this.extremes, capacityFor(this.extremes.length, groups));
+        }
+
+        @Override
+        void add(final int group, final ColumnVector argument, final int row) {
+            addValue(group, argument.getValue(row));
+        }
+
+        void addValue(final int group, final Object value) {
+            if (value == null) {
+                return;
+            }
+            final Object extreme = this.extremes[group];
+            if (extreme == null || (this.maximum ? Values.compare(value, extreme) > 0 : Values.compare(value, extreme) < 0)) {
+                this.extremes[group] = value;
+            }
+        }
+
+        @Override
+        void merge(final int group, final AggregateState other, final int otherGroup) {
+            addValue(group, ((ObjectExtreme) other).extremes[otherGroup]);
+        }
+
+        @Override
+        void write(final DataOutput out, final int group) throws IOException {
+            GroupTable.writeValue(out, this.extremes[group]);
+        }
+
+        @Override
+        void readAndMerge(final DataInput in, final int group) throws IOException {
+            addValue(group, GroupTable.readValue(in));
+        }
+
+        @Override
+        void appendResult(final int group, final ResultColumn target) {
+            target.appendValue(this.extremes[group]);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.Expression;
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import de.speexx.csv.table.query.Values;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Computes an aggregate for the groups of a {@link ColumnarQuery}. The result
+ * types are the types of Derby: <tt>COUNT</tt> and <tt>COUNT(DISTINCT ...)</tt>
+ * are integers, <tt>SUM</tt> and <tt>AVG</tt> have the type of the column,
+ * <tt>AVG</tt> of an integer column is truncated. All aggregates except
+ * <tt>COUNT</tt> are null for a group without values.
+ */
+abstract class Aggregation {
+
+    private final EntryDescriptor descriptor;
+    final ResultColumn argument;
+
+    Aggregation(final Expression.Aggregate aggregate, final EntryDescriptor.Type type, final ResultColumn argument) {
+        this.descriptor = EntryDescriptorBuilder.of().addName(aggregate.toString()).addType(type).build();
+        this.argument = argument;
+    }
+
+    /**
+     * @param aggregate the aggregate
+     * @param argument the column of the aggregate. {@code null} for <tt>COUNT(*)</tt>
+     * @throws UnsupportedQueryException if the aggregate is not supported for the type of the column
+     */
+    static Aggregation of(final Expression.Aggregate aggregate, final ResultColumn argument) {
+        Objects.requireNonNull(aggregate, "aggregate is null");
+        if (aggregate.getFunction() == Expression.AggregateFunction.COUNT) {
+            return aggregate.isDistinct() ? new CountDistinct(aggregate, Objects.requireNonNull(argument, "argument is null"))
+                                          : new Count(aggregate, argument);
+        }
+        Objects.requireNonNull(argument, "argument is null");
+        final EntryDescriptor.Type type = argument.getType();
+        switch (aggregate.getFunction()) {
+            case SUM:
+            case AVG:
+                final boolean average = aggregate.getFunction() == Expression.AggregateFunction.AVG;
+                if (type == EntryDescriptor.Type.INTEGER) {
+                    return new IntegerSum(aggregate, argument, average);
+                }
+                if (type == EntryDescriptor.Type.DECIMAL) {
+                    return new DecimalSum(aggregate, argument, average);
+                }
+                throw new UnsupportedQueryException(aggregate + " of type " + type);
+            default:
+                final boolean maximum = aggregate.getFunction() == Expression.AggregateFunction.MAX;
+                switch (type) {
+                    case INTEGER:
+                    case DATE:
+                    case TIME:
+                        return new LongExtreme(aggregate, argument, maximum);
+                    case DECIMAL:
+                        return new DecimalExtreme(aggregate, argument, maximum);
+                    default:
+                        return new ObjectExtreme(aggregate, argument, maximum);
+                }
+        }
+    }
+
+    /**
+     * @param rows the rows to aggregate
+     * @param groupOfRow the group of each row
+     * @param groupCount the number of groups
+     * @return the column with the value for each group
+     */
+    abstract ResultColumn compute(int[] rows, int[] groupOfRow, int groupCount);
+
+    ResultColumn newColumn() {
+        return new ResultColumn(this.descriptor);
+    }
+
+    static final class Count extends Aggregation {
+
+        Count(final Expression.Aggregate aggregate, final ResultColumn argument) {
+            super(aggregate, EntryDescriptor.Type.INTEGER, argument);
+        }
+
+        @Override
+        ResultColumn compute(final int[] rows, final int[] groupOfRow, final int groupCount) {
+            final long[] counts = new long[groupCount];
+            for (int i = 0; i < rows.length; i++) {
+                if (this.argument == null || !this.argument.isNull(rows[i])) {
+                    counts[groupOfRow[i]]++;
+                }
+            }
+            final ResultColumn result = newColumn();
+            for (final long count : counts) {
+                result.appendLong(count);
+            }
+            return result;
+        }
+    }
+
+    static final class CountDistinct extends Aggregation {
+
+        CountDistinct(final Expression.Aggregate aggregate, final ResultColumn argument) {
+            super(aggregate, EntryDescriptor.Type.INTEGER, argument);
+        }
+
+        @Override
+        ResultColumn compute(final int[] rows, final int[] groupOfRow, final int groupCount) {
+            final List<Set<Object>> values = new ArrayList<>(groupCount);
+            for (int group = 0; group < groupCount; group++) {
+                values.add(new HashSet<>());
+            }
+            for (int i = 0; i < rows.length; i++) {
+                final int row = rows[i];
+                if (!this.argument.isNull(row)) {
+                    values.get(groupOfRow[i]).add(ColumnarQuery.normalized(this.argument.getValue(row)));
+                }
+            }
+            final ResultColumn result = newColumn();
+            for (final Set<Object> distinct : values) {
+                result.appendLong(distinct.size());
+            }
+            return result;
+        }
+    }
+
+    static final class IntegerSum extends Aggregation {
+
+        private final boolean average;
+
+        IntegerSum(final Expression.Aggregate aggregate, final ResultColumn argument, final boolean average) {
+            super(aggregate, EntryDescriptor.Type.INTEGER, argument);
+            this.average = average;
+        }
+
+        @Override
+        ResultColumn compute(final int[] rows, final int[] groupOfRow, final int groupCount) {
+            final long[] sums = new long[groupCount];
+            final long[] counts = new long[groupCount];
+            try {
+                for (int i = 0; i < rows.length; i++) {
+                    final int row = rows[i];
+                    if (!this.argument.isNull(row)) {
+                        final int group = groupOfRow[i];
+                        sums[group] = Math.addExact(sums[group], this.argument.getStoredLong(row));
+                        counts[group]++;
+                    }
+                }
+            } catch (final ArithmeticException e) {
+                throw new TableException("The resulting value is outside the range for the data type BIGINT", e);
+            }
+            final ResultColumn result = newColumn();
+            for (int group = 0; group < groupCount; group++) {
+                if (counts[group] == 0) {
+                    result.appendNull();
+                } else {
+                    result.appendLong(this.average ? sums[group] / counts[group] : sums[group]);
+                }
+            }
+            return result;
+        }
+    }
+
+    static final class DecimalSum extends Aggregation {
+
+        private final boolean average;
+
+        DecimalSum(final Expression.Aggregate aggregate, final ResultColumn argument, final boolean average) {
+            super(aggregate, EntryDescriptor.Type.DECIMAL, argument);
+            this.average = average;
+        }
+
+        @Override
+        ResultColumn compute(final int[] rows, final int[] groupOfRow, final int groupCount) {
+            final double[] sums = new double[groupCount];
+            final long[] counts = new long[groupCount];
+            for (int i = 0; i < rows.length; i++) {
+                final int row = rows[i];
+                if (!this.argument.isNull(row)) {
+                    final int group = groupOfRow[i];
+                    sums[group] += this.argument.getDouble(row);
+                    counts[group]++;
+                }
+            }
+            final ResultColumn result = newColumn();
+            for (int group = 0; group < groupCount; group++) {
+                if (counts[group] == 0) {
+                    result.appendNull();
+                } else {
+                    result.appendDouble(this.average ? sums[group] / counts[group] : sums[group]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /** Minimum or maximum of integers, dates and times by their stored value. */
+    static final class LongExtreme extends Aggregation {
+
+        private final boolean maximum;
+
+        LongExtreme(final Expression.Aggregate aggregate, final ResultColumn argument, final boolean maximum) {
+            super(aggregate, argument.getType(), argument);
+            this.maximum = maximum;
+        }
+
+        @Override
+        ResultColumn compute(final int[] rows, final int[] groupOfRow, final int groupCount) {
+            final long[] extremes = new long[groupCount];
+            final boolean[] seen = new boolean[groupCount];
+            for (int i = 0; i < rows.length; i++) {
+                final int row = rows[i];
+                if (!this.argument.isNull(row)) {
+                    final int group = groupOfRow[i];
+                    final long value = this.argument.getStoredLong(row);
+                    if (!seen[group] || (this.maximum ? value > extremes[group] : value < extremes[group])) {
+                        extremes[group] = value;
+                        seen[group] = true;
+                    }
+                }
+            }
+            final ResultColumn result = newColumn();
+            for (int group = 0; group < groupCount; group++) {
+                if (seen[group]) {
+                    result.appendLong(extremes[group]);
+                } else {
+                    result.appendNull();
+                }
+            }
+            return result;
+        }
+    }
+
+    static final class DecimalExtreme extends Aggregation {
+
+        private final boolean maximum;
+
+        DecimalExtreme(final Expression.Aggregate aggregate, final ResultColumn argument, final boolean maximum) {
+            super(aggregate, EntryDescriptor.Type.DECIMAL, argument);
+            this.maximum = maximum;
+        }
+
+        @Override
+        ResultColumn compute(final int[] rows, final int[] groupOfRow, final int groupCount) {
+            final double[] extremes = new double[groupCount];
+            final boolean[] seen = new boolean[groupCount];
+            for (int i = 0; i < rows.length; i++) {
+                final int row = rows[i];
+                if (!this.argument.isNull(row)) {
+                    final int group = groupOfRow[i];
+                    final double value = this.argument.getDouble(row);
+                    if (!seen[group] || (this.maximum ? value > extremes[group] : value < extremes[group])) {
+                        extremes[group] = value;
+                        seen[group] = true;
+                    }
+                }
+            }
+            final ResultColumn result = newColumn();
+            for (int group = 0; group < groupCount; group++) {
+                if (seen[group]) {
+                    result.appendDouble(extremes[group]);
+                } else {
+                    result.appendNull();
+                }
+            }
+            return result;
+        }
+    }
+
+    /** Minimum or maximum of strings and datetimes by their boxed value. */
+    static final class ObjectExtreme extends Aggregation {
+
+        private final boolean maximum;
+
+        ObjectExtreme(final Expression.Aggregate aggregate, final ResultColumn argument, final boolean maximum) {
+            super(aggregate, argument.getType(), argument);
+            this.maximum = maximum;
+        }
+
+        @Override
+        ResultColumn compute(final int[] rows, final int[] groupOfRow, final int groupCount) {
+            final Object[] extremes = new Object[groupCount];
+            for (int i = 0; i < rows.length; i++) {
+                final Object value = this.argument.getValue(rows[i]);
+                if (value != null) {
+                    final int group = groupOfRow[i];
+                    final Object extreme = extremes[group];
+                    if (extreme == null || (this.maximum ? Values.compare(value, extreme) > 0 : Values.compare(value, extreme) < 0)) {
+                        extremes[group] = value;
+                    }
+                }
+            }
+            final ResultColumn result = newColumn();
+            for (final Object extreme : extremes) {
+                result.appendValue(extreme);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+/**
+ * Bloom filter over {@code long} hash codes. A key which was never added is
+ * reported as absent with a false positive rate of about 1% for 10 bits per
+ * key. Added keys are never reported as absent.
+ */
+final class BloomFilter {
+
+    static final int BITS_PER_KEY = 10;
+    static final int HASHES = 3;
+
+    private final long[] words;
+    private final long mask;
+
+    /** @param expectedKeys the number of keys to add */
+    BloomFilter(final long expectedKeys) {
+        final long bits = Long.highestOneBit(Math.max(64, expectedKeys * BITS_PER_KEY - 1) << 1);
+        this.words = new long[(int) Math.min(Integer.MAX_VALUE - 8, bits >>> 6)];
+        this.mask = ((long) this.words.length << 6) - 1;
+    }
+
+    void add(final long hash) {
+        final long h1 = mix(hash);
+        final long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            final long bit = (h1 + i * h2) & this.mask;
+            this.words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /** @return {@code false} if the hash code was never added */
+    boolean mightContain(final long hash) {
+        final long h1 = mix(hash);
+        final long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            final long bit = (h1 + i * h2) & this.mask;
+            if ((this.words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Finalizer of the SplitMix64 generator. */
+    static long mix(final long value) {
+        long h = value + 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
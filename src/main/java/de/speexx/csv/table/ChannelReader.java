@@ -0,0 +1,156 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Objects;
+
+/**
+ * Decodes the bytes of a channel read into a large heap buffer. The decoders
+ * of the JDK decode the ASCII runs of array backed buffers with an intrinsic
+ * loop, so the decoding of UTF-8, ASCII and ISO-8859-1 content costs little
+ * more than copying. Malformed and unmappable bytes are replaced with
+ * <tt>U+FFFD</tt>.
+ * <p>A read returns the characters of the available bytes and doesn't wait
+ * for a full buffer, so rows arriving on a pipe are read as soon as they
+ * arrive.</p>
+ */
+final class ChannelReader extends Reader {
+
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetDecoder decoder;
+    private final char[] pair = new char[2];
+    private long remaining;
+    private boolean endOfInput;
+    private boolean flushed;
+    private boolean pending;
+
+    /**
+     * @param channel the channel to read. Closed by {@link #close()}
+     * @param charset the encoding of the bytes
+     * @throws NullPointerException if a parameter is {@code null}
+     */
+    ChannelReader(final ReadableByteChannel channel, final Charset charset) {
+        this(channel, charset, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param channel the channel to read. Closed by {@link #close()}
+     * @param charset the encoding of the bytes
+     * @param length the maximum number of bytes to read from the channel
+     * @throws NullPointerException if a parameter is {@code null}
+     */
+    ChannelReader(final ReadableByteChannel channel, final Charset charset, final long length) {
+        this.channel = Objects.requireNonNull(channel, "channel is null");
+        this.decoder = Objects.requireNonNull(charset, "charset is null").newDecoder()
+                                                                        .onMalformedInput(CodingErrorAction.REPLACE)
+                                                                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.remaining = length;
+        this.buffer = ByteBuffer.allocate((int) Math.max(16, Math.min(BUFFER_SIZE, length)));
+        this.buffer.limit(0);
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int read = 0;
+        if (this.pending) {
+            cbuf[off] = this.pair[1];
+            this.pending = false;
+            read++;
+        }
+        while (true) {
+            read += decode(cbuf, off + read, len - read);
+            // Don't wait for more bytes if characters are available
+            if (read > 0) {
+                return read;
+            }
+            if (!fill()) {
+                read += decode(cbuf, off + read, len - read);
+                return read > 0 ? read : -1;
+            }
+        }
+    }
+
+    int decode(final char[] cbuf, final int off, final int len) {
+        if (len == 0 || this.flushed) {
+            return 0;
+        }
+        if (len > 1) {
+            return decode(CharBuffer.wrap(cbuf, off, len));
+        }
+        // A surrogate pair doesn't fit into a single character
+        final int decoded = decode(CharBuffer.wrap(this.pair));
+        if (decoded > 0) {
+            cbuf[off] = this.pair[0];
+            this.pending = decoded > 1;
+        }
+        return Math.min(1, decoded);
+    }
+
+    int decode(final CharBuffer out) {
+        final int start = out.position();
+        this.decoder.decode(this.buffer, out, this.endOfInput);
+        if (this.endOfInput && !this.buffer.hasRemaining() && out.hasRemaining()) {
+            this.decoder.flush(out);
+            this.flushed = true;
+        }
+        return out.position() - start;
+    }
+
+    /**
+     * Moves the not decoded bytes to the start of the buffer and reads the
+     * available bytes of the channel behind them.
+     * @return {@code false} at the end of the input
+     */
+    boolean fill() throws IOException {
+        if (this.endOfInput) {
+            return false;
+        }
+        this.buffer.compact();
+        this.buffer.limit((int) Math.min(this.buffer.capacity(), this.buffer.position() + this.remaining));
+        final int read = this.buffer.hasRemaining() ? this.channel.read(this.buffer) : -1;
+        this.buffer.flip();
+        if (read < 0) {
+            this.endOfInput = true;
+            return false;
+        }
+        this.remaining -= read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,266 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.metric.SimpleRowDataMetric;
+import de.speexx.csv.table.query.Expression;
+import de.speexx.csv.table.query.OrderItem;
+import de.speexx.csv.table.query.Query;
+import de.speexx.csv.table.query.SelectItem;
+import de.speexx.csv.table.transformer.TypeTransformer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the string values of {@link Chunk}s of a source into typed
+ * {@link ColumnVector}s for the operators working directly on the rows of a
+ * source. The types of the columns are assumed from the first chunk. All
+ * values are classified like the type detection of a loaded table does, so
+ * the operators can check at the end if the assumed types are the types a
+ * loaded table would have.
+ * <p>A converter is used by a single thread.</p>
+ */
+final class ChunkConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    /** The number of distinct strings per column a converter keeps the detected type of. */
+    static final int TYPE_CACHE_SIZE = 4096;
+
+    private final boolean detectTypes;
+    private final ColumnVector[] vectors;
+    private final TypeTransformer<?, ?>[] transformers;
+    private final List<Set<EntryDescriptor.Type>> detectedTypes = new ArrayList<>();
+    private final List<Map<String, EntryDescriptor.Type>> typeCaches = new ArrayList<>();
+
+    /**
+     * @param descriptors the assumed types of the columns of the chunks
+     * @param detectTypes {@code false} if all values are taken as strings
+     * @param capacity the maximum size of a chunk
+     */
+    ChunkConverter(final EntryDescriptor[] descriptors, final boolean detectTypes, final int capacity) {
+        Objects.requireNonNull(descriptors, "descriptors is null");
+        this.detectTypes = detectTypes;
+        this.vectors = new ColumnVector[descriptors.length];
+        this.transformers = new TypeTransformer<?, ?>[descriptors.length];
+        for (int i = 0; i < descriptors.length; i++) {
+            this.vectors[i] = new ColumnVector(descriptors[i], capacity);
+            this.transformers[i] = TypeTransformer.of(EntryDescriptor.Type.STRING, descriptors[i].getType());
+            this.detectedTypes.add(EnumSet.noneOf(EntryDescriptor.Type.class));
+            this.typeCaches.add(new HashMap<>());
+        }
+    }
+
+    /** @return the vectors with the values of the last converted chunk */
+    ColumnVector[] getVectors() {
+        return this.vectors;
+    }
+
+    /** @return the vectors with the values of the last converted chunk by column name */
+    Map<String, ColumnVector> getVectorsByName() {
+        final Map<String, ColumnVector> vectorsByName = new HashMap<>();
+        for (final ColumnVector vector : this.vectors) {
+            vectorsByName.put(vector.getDescriptor().getName(), vector);
+        }
+        return vectorsByName;
+    }
+
+    /** @return {@code false} if a value doesn't match the assumed type of its column */
+    boolean convert(final Chunk chunk) {
+        for (int column = 0; column < this.vectors.length; column++) {
+            final ColumnVector vector = this.vectors[column];
+            final EntryDescriptor.Type type = vector.getType();
+            final Object[] values = chunk.columns[column];
+            for (int row = 0; row < chunk.size; row++) {
+                final String value = (String) values[row];
+                if (value == null) {
+                    vector.setValue(row, null);
+                    continue;
+                }
+                if (this.detectTypes) {
+                    final EntryDescriptor.Type detected = detectType(column, value);
+                    this.detectedTypes.get(column).add(detected);
+                    if (type != EntryDescriptor.Type.STRING && detected != type
+                            && !(type == EntryDescriptor.Type.DECIMAL && detected == EntryDescriptor.Type.INTEGER)) {
+                        return false;
+                    }
+                }
+                if (!setValue(vector, row, value, this.transformers[column])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    EntryDescriptor.Type detectType(final int column, final String value) {
+        final EntryDescriptor.Type plain = SimpleRowDataMetric.plainTypeOf(value);
+        if (plain != null) {
+            return plain;
+        }
+        final Map<String, EntryDescriptor.Type> cache = this.typeCaches.get(column);
+        EntryDescriptor.Type type = cache.get(value);
+        if (type == null) {
+            type = SimpleRowDataMetric.typeOf(value);
+            if (cache.size() >= TYPE_CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put(value, type);
+        }
+        return type;
+    }
+
+    /** Converts like a loaded table. Infinite values and NaN are null. */
+    @SuppressWarnings("unchecked")
+    static boolean setValue(final ColumnVector vector, final int row, final String value, final TypeTransformer<?, ?> transformer) {
+        switch (vector.getType()) {
+            case STRING:
+                vector.setObject(row, value);
+                return true;
+            case INTEGER:
+                try {
+                    vector.setLong(row, Long.parseLong(value));
+                    return true;
+                } catch (final NumberFormatException e) {
+                    return false;
+                }
+            default:
+                try {
+                    vector.setValue(row, ColumnarTable.validValue(((TypeTransformer<String, Object>) transformer).transform(value)));
+                    return true;
+                } catch (final RuntimeException e) {
+                    return false;
+                }
+        }
+    }
+
+    /**
+     * Checks the types of all converted values against the assumed types.
+     * @param converters the converters of all chunks of a source
+     * @return {@code true} if the types detected over all chunks are the assumed types
+     */
+    static boolean detectedTypesMatch(final Collection<ChunkConverter> converters, final EntryDescriptor[] descriptors) {
+        if (converters.stream().anyMatch(converter -> !converter.detectTypes)) {
+            return true;
+        }
+        for (int column = 0; column < descriptors.length; column++) {
+            final Set<EntryDescriptor.Type> detected = EnumSet.noneOf(EntryDescriptor.Type.class);
+            for (final ChunkConverter converter : converters) {
+                detected.addAll(converter.detectedTypes.get(column));
+            }
+            final EntryDescriptor.Type type = detected.isEmpty() ? EntryDescriptor.Type.STRING
+                                                                 : SimpleRowDataMetric.mostSignificantType(detected);
+            if (type != descriptors[column].getType()) {
+                LOG.debug("Type of column {} is {} and not {}", descriptors[column].getName(), type, descriptors[column].getType());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the indexes of the columns used by the query in order of the source */
+    static int[] usedColumns(final Query query, final List<String> names) {
+        if (query.isSelectAll()) {
+            return IntStream.range(0, names.size()).toArray();
+        }
+        final List<Expression> expressions = new ArrayList<>(query.getGroupBy());
+        query.getSelectItems().stream().map(SelectItem::getExpression).forEach(expressions::add);
+        query.getOrderBy().stream().map(OrderItem::getExpression).forEach(expressions::add);
+        query.getWhere().ifPresent(expressions::add);
+        return expressions.stream().flatMap(expression -> expression.getColumnNames().stream())
+                                   .mapToInt(names::indexOf)
+                                   .filter(index -> index >= 0)
+                                   .distinct()
+                                   .sorted()
+                                   .toArray();
+    }
+
+    /**
+     * @param first the first chunk of a source. May be {@code null} for an empty source
+     * @return the assumed types of the columns of the chunks
+     */
+    static EntryDescriptor.Type[] assumeTypes(final Chunk first, final int columns, final boolean detectTypes) {
+        final EntryDescriptor.Type[] types = new EntryDescriptor.Type[columns];
+        Arrays.fill(types, EntryDescriptor.Type.STRING);
+        if (!detectTypes || first == null) {
+            return types;
+        }
+        for (int column = 0; column < columns; column++) {
+            final Set<EntryDescriptor.Type> detected = EnumSet.noneOf(EntryDescriptor.Type.class);
+            for (int row = 0; row < first.size; row++) {
+                final Object value = first.columns[column][row];
+                if (value != null) {
+                    detected.add(SimpleRowDataMetric.typeOf((String) value));
+                }
+            }
+            if (!detected.isEmpty()) {
+                types[column] = SimpleRowDataMetric.mostSignificantType(detected);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @return the descriptors of all columns of the source with the assumed
+     *         types for the used columns and {@code STRING} for the others
+     */
+    static List<EntryDescriptor> assumedDescriptors(final List<EntryDescriptor> sourceDescriptors, final int[] usedColumns,
+                                                    final EntryDescriptor.Type[] assumedTypes) {
+        final List<EntryDescriptor> descriptors = new ArrayList<>();
+        for (final EntryDescriptor descriptor : sourceDescriptors) {
+            descriptors.add(EntryDescriptorBuilder.of().addName(descriptor.getName()).addType(EntryDescriptor.Type.STRING).build());
+        }
+        for (int i = 0; i < usedColumns.length; i++) {
+            descriptors.set(usedColumns[i], EntryDescriptorBuilder.of().addName(sourceDescriptors.get(usedColumns[i]).getName())
+                                                                       .addType(assumedTypes[i])
+                                                                       .build());
+        }
+        return descriptors;
+    }
+
+    /** The string values of the used columns of some rows. */
+    static final class Chunk {
+
+        final Object[][] columns;
+        final int size;
+
+        Chunk(final Object[][] columns, final int size) {
+            this.columns = columns;
+            this.size = size;
+        }
+
+        /** Copies the values because the reader may reuse the batch. */
+        static Chunk of(final RowBatch batch, final int[] usedColumns) {
+            final Object[][] columns = new Object[usedColumns.length][];
+            for (int i = 0; i < usedColumns.length; i++) {
+                columns[i] = Arrays.copyOf(batch.getColumn(usedColumns[i]).getObjects(), batch.size());
+            }
+            return new Chunk(columns, batch.size());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+/**
+ * Read access to the typed values of a column by the index of the row.
+ * The values are stored by type as described in {@link ColumnVector}.
+ * @see ColumnVector
+ * @see ResultColumn
+ */
+public interface ColumnValues {
+
+    EntryDescriptor getDescriptor();
+
+    /** @return the type of the stored values */
+    EntryDescriptor.Type getType();
+
+    boolean isNull(int row);
+
+    /**
+     * @return the boxed value. {@code LocalDate} for dates, {@code LocalTime}
+     *         for times, {@code LocalDateTime} for datetimes. {@code null} if the value is null
+     */
+    Object getValue(int row);
+
+    /**
+     * @return the integer value or {@code 0} if the value is null
+     * @throws IncompatibleTypeException if the column is not an integer column
+     */
+    long getLong(int row);
+
+    /**
+     * @return the decimal or integer value or {@code 0} if the value is null
+     * @throws IncompatibleTypeException if the column is not a number column
+     */
+    double getDouble(int row);
+
+    /**
+     * @return the epoch day of a date or datetime value or {@code 0} if the value is null
+     * @throws IncompatibleTypeException if the column is not a date or datetime column
+     */
+    long getEpochDay(int row);
+}
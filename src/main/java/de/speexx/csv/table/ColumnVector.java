@@ -0,0 +1,284 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The values of one column of a {@link RowBatch} in a typed array.
+ * <ul>
+ *   <li>{@link EntryDescriptor.Type#INTEGER} values are stored in the {@linkplain #getLongs() longs}</li>
+ *   <li>{@link EntryDescriptor.Type#DATE} values are stored as {@linkplain LocalDate#toEpochDay() epoch day} in the longs</li>
+ *   <li>{@link EntryDescriptor.Type#TIME} values are stored as {@linkplain LocalTime#toNanoOfDay() nano of day} in the longs</li>
+ *   <li>{@link EntryDescriptor.Type#DECIMAL} values are stored in the {@linkplain #getDoubles() doubles}</li>
+ *   <li>{@link EntryDescriptor.Type#STRING} and {@link EntryDescriptor.Type#DATETIME}
+ *       values are stored in the {@linkplain #getObjects() objects}</li>
+ * </ul>
+ * <p>A set bit in the {@linkplain #getNulls() null bitmap} marks a {@code null}
+ * value. The value in the typed array is undefined for a {@code null} value.</p>
+ */
+public final class ColumnVector implements ColumnValues {
+
+    private static final int BITS_PER_WORD_SHIFT = 6;
+
+    private final EntryDescriptor descriptor;
+    private final EntryDescriptor.Type type;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private long[] nulls;
+
+    /**
+     * @param descriptor the descriptor of the column. The type of the vector
+     *                   is the type of the descriptor at creation time
+     * @param capacity the initial number of values
+     */
+    ColumnVector(final EntryDescriptor descriptor, final int capacity) {
+        this.descriptor = Objects.requireNonNull(descriptor, "descriptor is null");
+        this.type = Objects.requireNonNull(descriptor.getType(), "type is null");
+        final int size = Math.max(1, capacity);
+        switch (this.type) {
+            case INTEGER:
+            case DATE:
+            case TIME:
+                this.longs = new long[size];
+                break;
+            case DECIMAL:
+                this.doubles = new double[size];
+                break;
+            case STRING:
+            case DATETIME:
+                this.objects = new Object[size];
+                break;
+            default:
+                throw new TableException("unsupported type: " + this.type);
+        }
+        this.nulls = new long[wordsFor(size)];
+    }
+
+    @Override
+    public EntryDescriptor getDescriptor() {
+        return this.descriptor;
+    }
+
+    @Override
+    public EntryDescriptor.Type getType() {
+        return this.type;
+    }
+
+    /** @return the number of values the vector can hold */
+    public int getCapacity() {
+        if (this.longs != null) {
+            return this.longs.length;
+        }
+        return this.doubles != null ? this.doubles.length : this.objects.length;
+    }
+
+    /** @return the integer, epoch day or nano of day values. {@code null} for other types */
+    public long[] getLongs() {
+        return this.longs;
+    }
+
+    /** @return the decimal values. {@code null} for other types */
+    public double[] getDoubles() {
+        return this.doubles;
+    }
+
+    /** @return the string or datetime values. {@code null} for other types */
+    public Object[] getObjects() {
+        return this.objects;
+    }
+
+    /** @return the null bitmap. Bit <em>n</em> of the bitmap is bit <em>n % 64</em> of word <em>n / 64</em> */
+    public long[] getNulls() {
+        return this.nulls;
+    }
+
+    @Override
+    public boolean isNull(final int row) {
+        return (this.nulls[row >>> BITS_PER_WORD_SHIFT] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return the boxed value. {@code LocalDate} for dates, {@code LocalTime}
+     *         for times. {@code null} if the value is null
+     */
+    @Override
+    public Object getValue(final int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        switch (this.type) {
+            case INTEGER: return this.longs[row];
+            case DECIMAL: return this.doubles[row];
+            case DATE: return LocalDate.ofEpochDay(this.longs[row]);
+            case TIME: return LocalTime.ofNanoOfDay(this.longs[row]);
+            default: return this.objects[row];
+        }
+    }
+
+    /**
+     * @return the integer value or {@code 0} if the value is null
+     * @throws IncompatibleTypeException if the vector is not an integer vector
+     */
+    @Override
+    public long getLong(final int row) {
+        if (this.type != EntryDescriptor.Type.INTEGER) {
+            throw new IncompatibleTypeException("Not an integer column: " + this.descriptor.getName());
+        }
+        return isNull(row) ? 0 : this.longs[row];
+    }
+
+    /**
+     * @return the decimal or integer value or {@code 0} if the value is null
+     * @throws IncompatibleTypeException if the vector is not a number vector
+     */
+    @Override
+    public double getDouble(final int row) {
+        if (this.type == EntryDescriptor.Type.DECIMAL) {
+            return isNull(row) ? 0 : this.doubles[row];
+        }
+        if (this.type == EntryDescriptor.Type.INTEGER) {
+            return isNull(row) ? 0 : this.longs[row];
+        }
+        throw new IncompatibleTypeException("Not a number column: " + this.descriptor.getName());
+    }
+
+    /**
+     * @return the epoch day of a date or datetime value or {@code 0} if the value is null
+     * @throws IncompatibleTypeException if the vector is not a date or datetime vector
+     */
+    @Override
+    public long getEpochDay(final int row) {
+        if (isNull(row)) {
+            return 0;
+        }
+        if (this.type == EntryDescriptor.Type.DATE) {
+            return this.longs[row];
+        }
+        if (this.type == EntryDescriptor.Type.DATETIME) {
+            return ((LocalDateTime) this.objects[row]).toLocalDate().toEpochDay();
+        }
+        throw new IncompatibleTypeException("Not a date column: " + this.descriptor.getName());
+    }
+
+    void setNull(final int row) {
+        this.nulls[row >>> BITS_PER_WORD_SHIFT] |= 1L << row;
+    }
+
+    void setNotNull(final int row) {
+        this.nulls[row >>> BITS_PER_WORD_SHIFT] &= ~(1L << row);
+    }
+
+    void setLong(final int row, final long value) {
+        this.longs[row] = value;
+        setNotNull(row);
+    }
+
+    void setDouble(final int row, final double value) {
+        this.doubles[row] = value;
+        setNotNull(row);
+    }
+
+    void setObject(final int row, final Object value) {
+        if (value == null) {
+            this.objects[row] = null;
+            setNull(row);
+        } else {
+            this.objects[row] = value;
+            setNotNull(row);
+        }
+    }
+
+    /** Sets a boxed value as returned by {@link Entry#getValue()}. */
+    void setValue(final int row, final Object value) {
+        if (value == null) {
+            if (this.objects != null) {
+                this.objects[row] = null;
+            }
+            setNull(row);
+            return;
+        }
+        switch (this.type) {
+            case INTEGER:
+                setLong(row, ((Number) value).longValue());
+                break;
+            case DECIMAL:
+                setDouble(row, ((Number) value).doubleValue());
+                break;
+            case DATE:
+                setLong(row, (value instanceof Date ? ((Date) value).toLocalDate() : (LocalDate) value).toEpochDay());
+                break;
+            case TIME:
+                setLong(row, (value instanceof Time ? ((Time) value).toLocalTime() : (LocalTime) value).toNanoOfDay());
+                break;
+            case DATETIME:
+                setObject(row, value instanceof Timestamp ? ((Timestamp) value).toLocalDateTime() : value);
+                break;
+            default:
+                setObject(row, value);
+        }
+    }
+
+    /** Copies values of this vector into the <em>target</em> vector of the same type. */
+    void copyTo(final int from, final ColumnVector target, final int to, final int length) {
+        assert target.type == this.type : "Different types";
+        if (this.longs != null) {
+            System.arraycopy(this.longs, from, target.longs, to, length);
+        } else if (this.doubles != null) {
+            System.arraycopy(this.doubles, from, target.doubles, to, length);
+        } else {
+            System.arraycopy(this.objects, from, target.objects, to, length);
+        }
+        for (int i = 0; i < length; i++) {
+            if (isNull(from + i)) {
+                target.setNull(to + i);
+            } else {
+                target.setNotNull(to + i);
+            }
+        }
+    }
+
+    /** Grows the vector to hold at least the given number of values. */
+    void ensureCapacity(final int capacity) {
+        final int current = getCapacity();
+        if (current >= capacity) {
+            return;
+        }
+        final int size = Math.max(capacity, current * 2);
+        if (this.longs != null) {
+            this.longs = Arrays.copyOf(this.longs, size);
+        } else if (this.doubles != null) {
+            this.doubles = Arrays.copyOf(this.doubles, size);
+        } else {
+            this.objects = Arrays.copyOf(this.objects, size);
+        }
+        this.nulls = Arrays.copyOf(this.nulls, wordsFor(size));
+    }
+
+    static int wordsFor(final int size) {
+        return ((size - 1) >>> BITS_PER_WORD_SHIFT) + 1;
+    }
+}
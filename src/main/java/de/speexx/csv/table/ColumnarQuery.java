@@ -0,0 +1,693 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.Expression;
+import de.speexx.csv.table.query.ExpressionInterpreter;
+import de.speexx.csv.table.query.PredicateCompiler;
+import de.speexx.csv.table.query.OrderItem;
+import de.speexx.csv.table.query.Query;
+import de.speexx.csv.table.query.SelectItem;
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import de.speexx.csv.table.query.Values;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Executes a {@link Query} on the columns of a {@link ColumnarTable}. The
+ * operators work on arrays of row indexes: the filter selects the rows, the
+ * grouping assigns a group to each selected row and the sort reorders the
+ * indexes. Only the final rows are copied into the result.
+ * <p>The result follows the rules of the Derby based table: columns without
+ * alias have the name of the table column, aggregates without alias the
+ * position in the select list, the groups are ordered by the group columns
+ * and nulls are sorted as the highest values.</p>
+ */
+final class ColumnarQuery {
+
+    private final Query query;
+    private final ColumnarResult data;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final StringBuilder plan;
+
+    /** The columns of the current rows. Either the table columns or the columns of the groups. */
+    private ResultColumn[] columns;
+    private int[] rows;
+
+    private final List<Integer> outputColumns = new ArrayList<>();
+    private final List<String> outputNames = new ArrayList<>();
+    private final List<Integer> sortColumns = new ArrayList<>();
+    private final List<Boolean> sortDescending = new ArrayList<>();
+
+    /**
+     * @param query the query to execute
+     * @param data the columns of the table
+     * @param collectPlan {@code true} to collect the operators with rows and time
+     */
+    ColumnarQuery(final Query query, final ColumnarResult data, final boolean collectPlan) {
+        this.query = Objects.requireNonNull(query, "query is null");
+        this.data = Objects.requireNonNull(data, "data is null");
+        this.plan = collectPlan ? new StringBuilder() : null;
+        for (int i = 0; i < data.getColumnCount(); i++) {
+            this.columnIndexes.put(data.getColumn(i).getDescriptor().getName(), i);
+        }
+    }
+
+    /**
+     * @throws UnsupportedQueryException if the query uses columns, types or
+     *         clauses the columnar execution doesn't support
+     */
+    ColumnarResult execute() {
+        this.columns = new ResultColumn[this.data.getColumnCount()];
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = this.data.getColumn(i);
+        }
+        appendPlan("Scan", this.data.size(), 0);
+
+        // Resolve all names and types before the first row is touched
+        final Optional<Expression> where = this.query.getWhere().map(condition -> ExpressionInterpreter.bind(condition, this::typeOf));
+        if (this.query.isAggregation()) {
+            final Grouping grouping = prepareGrouping();
+            filter(where);
+            group(grouping);
+        } else {
+            prepareProjection();
+            filter(where);
+        }
+        distinct();
+        sort();
+        return materialize();
+    }
+
+    /**
+     * Executes an aggregation with groups computed outside of the query, e.g.
+     * by a {@link ParallelAggregation}. The data only defines the columns and
+     * their types.
+     * @param groups computes the group columns of the grouping: the group
+     *               columns of the query followed by the aggregates in the order
+     *               of {@link Grouping#aggregates}. Empty to abort the execution
+     * @return the result or empty if the computation of the groups was aborted
+     * @throws UnsupportedQueryException if the query is no aggregation or uses
+     *         columns, types or clauses the columnar execution doesn't support
+     */
+    Optional<ColumnarResult> executeGrouped(final Function<Grouping, Optional<ResultColumn[]>> groups) {
+        if (!this.query.isAggregation()) {
+            throw new UnsupportedQueryException("No aggregation");
+        }
+        final Grouping grouping = prepareGrouping();
+        final Optional<ResultColumn[]> groupColumns = groups.apply(grouping);
+        if (!groupColumns.isPresent()) {
+            return Optional.empty();
+        }
+        setGroupColumns(groupColumns.get());
+        distinct();
+        sort();
+        return Optional.of(materialize());
+    }
+
+    /**
+     * Resolves the output and sort columns of a query without aggregation
+     * executed outside of the query, e.g. by an {@link ExternalSort}. The data
+     * only defines the columns and their types.
+     * @throws UnsupportedQueryException if the query is an aggregation or uses
+     *         columns, types or clauses the columnar execution doesn't support
+     */
+    void prepareExternalProjection() {
+        if (this.query.isAggregation()) {
+            throw new UnsupportedQueryException("Aggregation");
+        }
+        this.columns = new ResultColumn[this.data.getColumnCount()];
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = this.data.getColumn(i);
+        }
+        prepareProjection();
+    }
+
+    /** @return the table columns of the select list */
+    List<Integer> getOutputColumns() {
+        return this.outputColumns;
+    }
+
+    /** @return the result names of the select list */
+    List<String> getOutputNames() {
+        return this.outputNames;
+    }
+
+    /** @return the table columns of the sort keys */
+    List<Integer> getSortColumns() {
+        return this.sortColumns;
+    }
+
+    /** @return {@code true} for each descending sort key */
+    List<Boolean> getSortDescending() {
+        return this.sortDescending;
+    }
+
+    EntryDescriptor.Type typeOf(final String name) {
+        final Integer index = this.columnIndexes.get(name);
+        return index == null ? null : this.data.getColumn(index).getType();
+    }
+
+    int columnIndex(final Expression.ColumnReference column) {
+        final Integer index = this.columnIndexes.get(column.getName());
+        if (index == null) {
+            throw new UnsupportedQueryException("Unknown column: " + column);
+        }
+        return index;
+    }
+
+    void filter(final Optional<Expression> where) {
+        final long start = System.currentTimeMillis();
+        final int size = this.data.size();
+        if (!where.isPresent()) {
+            this.rows = new int[size];
+            for (int i = 0; i < size; i++) {
+                this.rows[i] = i;
+            }
+            return;
+        }
+        final Expression condition = where.get();
+        final Map<String, ResultColumn> columnsByName = new HashMap<>();
+        this.columnIndexes.forEach((name, index) -> columnsByName.put(name, this.data.getColumn(index)));
+
+        final IntPredicate predicate = PredicateCompiler.compile(condition, columnsByName::get);
+        int[] selected = new int[Math.min(size, 1024)];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (predicate.test(row)) {
+                if (count == selected.length) {
+                    selected = Arrays.copyOf(selected, Math.min(size, count * 2));
+                }
+                selected[count++] = row;
+            }
+        }
+        this.rows = Arrays.copyOf(selected, count);
+        appendPlan("Filter " + condition, count, System.currentTimeMillis() - start);
+    }
+
+    void prepareProjection() {
+        if (this.query.isSelectAll()) {
+            for (int i = 0; i < this.columns.length; i++) {
+                addOutput(i, this.columns[i].getDescriptor().getName());
+            }
+        } else {
+            for (final SelectItem item : this.query.getSelectItems()) {
+                final Expression expression = item.getExpression();
+                if (!(expression instanceof Expression.ColumnReference)) {
+                    throw new UnsupportedQueryException("Select item " + item);
+                }
+                addOutput(columnIndex((Expression.ColumnReference) expression),
+                          item.getAlias().orElse(((Expression.ColumnReference) expression).getName()));
+            }
+        }
+        for (final OrderItem item : this.query.getOrderBy()) {
+            final Expression expression = item.getExpression();
+            final int column;
+            if (expression instanceof Expression.ColumnReference) {
+                column = columnIndex((Expression.ColumnReference) expression);
+                if (this.query.isDistinct() && !this.outputColumns.contains(column)) {
+                    throw new UnsupportedQueryException("Sort column not in distinct select list: " + item);
+                }
+            } else {
+                column = outputColumnOf(item);
+            }
+            addSortColumn(column, item.isDescending());
+        }
+    }
+
+    Grouping prepareGrouping() {
+        if (this.query.isSelectAll()) {
+            throw new UnsupportedQueryException("Select all with aggregation");
+        }
+        final Grouping grouping = new Grouping();
+        for (final Expression key : this.query.getGroupBy()) {
+            grouping.keys.add(this.data.getColumn(columnIndex((Expression.ColumnReference) key)));
+        }
+        for (final SelectItem item : this.query.getSelectItems()) {
+            grouping.aggregateIndex(item.getExpression());
+        }
+        for (final OrderItem item : this.query.getOrderBy()) {
+            if (item.getExpression() instanceof Expression.Aggregate) {
+                grouping.aggregateIndex(item.getExpression());
+            }
+        }
+        for (final Expression.Aggregate aggregate : grouping.aggregates.keySet()) {
+            final ResultColumn argument = aggregate.getArgument().map(column -> this.data.getColumn(columnIndex(column))).orElse(null);
+            grouping.aggregations.add(Aggregation.of(aggregate, argument));
+        }
+
+        int position = 0;
+        for (final SelectItem item : this.query.getSelectItems()) {
+            position++;
+            final Expression expression = item.getExpression();
+            if (expression instanceof Expression.Aggregate) {
+                addOutput(grouping.keys.size() + grouping.aggregates.get(expression), item.getAlias().orElse(String.valueOf(position)));
+            } else {
+                addOutput(grouping.keyIndex(expression), item.getAlias().orElse(((Expression.ColumnReference) expression).getName()));
+            }
+        }
+        for (final OrderItem item : this.query.getOrderBy()) {
+            final Expression expression = item.getExpression();
+            if (expression instanceof Expression.Aggregate) {
+                addSortColumn(grouping.keys.size() + grouping.aggregates.get(expression), item.isDescending());
+            } else if (expression instanceof Expression.ColumnReference) {
+                addSortColumn(grouping.keyIndex(expression), item.isDescending());
+            } else {
+                addSortColumn(outputColumnOf(item), item.isDescending());
+            }
+        }
+        // Like Derby the groups are ordered by the group columns
+        for (int i = 0; i < grouping.keys.size(); i++) {
+            addSortColumn(i, false);
+        }
+        return grouping;
+    }
+
+    void addOutput(final int column, final String name) {
+        this.outputColumns.add(column);
+        this.outputNames.add(name);
+    }
+
+    void addSortColumn(final int column, final boolean descending) {
+        this.sortColumns.add(column);
+        this.sortDescending.add(descending);
+    }
+
+    /** Resolves a sort position or alias to the column of the select item. */
+    int outputColumnOf(final OrderItem item) {
+        final Expression expression = item.getExpression();
+        if (expression instanceof Expression.Literal) {
+            final long position = (Long) ((Expression.Literal) expression).getValue();
+            if (position < 1 || position > this.outputColumns.size()) {
+                throw new UnsupportedQueryException("Sort position out of range: " + item);
+            }
+            return this.outputColumns.get((int) position - 1);
+        }
+        if (expression instanceof Expression.AliasReference) {
+            final String alias = ((Expression.AliasReference) expression).getAlias();
+            final List<SelectItem> items = this.query.getSelectItems();
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getAlias().map(alias::equals).orElse(false)) {
+                    return this.outputColumns.get(i);
+                }
+            }
+        }
+        throw new UnsupportedQueryException("Sort key " + item);
+    }
+
+    void group(final Grouping grouping) {
+        final long start = System.currentTimeMillis();
+        final int[] groupOfRow = new int[this.rows.length];
+        final int[] firstRows = grouping.assignGroups(this.rows, groupOfRow);
+        final int groupCount = firstRows.length;
+
+        final ResultColumn[] groupColumns = new ResultColumn[grouping.keys.size() + grouping.aggregates.size()];
+        for (int i = 0; i < grouping.keys.size(); i++) {
+            final ResultColumn key = grouping.keys.get(i);
+            groupColumns[i] = new ResultColumn(key.getDescriptor());
+            groupColumns[i].appendFrom(key, firstRows, 0, groupCount);
+        }
+        int index = grouping.keys.size();
+        for (final Aggregation aggregation : grouping.aggregations) {
+            groupColumns[index++] = aggregation.compute(this.rows, groupOfRow, groupCount);
+        }
+        setGroupColumns(groupColumns);
+        appendPlan("Group by " + this.query.getGroupBy() + " with " + grouping.aggregates.keySet(),
+                   groupCount, System.currentTimeMillis() - start);
+    }
+
+    /** Continues the query with one row per group. */
+    void setGroupColumns(final ResultColumn[] groupColumns) {
+        final int groupCount = groupColumns[0].size();
+        this.columns = groupColumns;
+        this.rows = new int[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            this.rows[i] = i;
+        }
+    }
+
+    /** Removes all rows with the same output values as a previous row. */
+    void distinct() {
+        if (!this.query.isDistinct()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final Set<List<Object>> seen = new HashSet<>();
+        int count = 0;
+        for (final int row : this.rows) {
+            final Object[] values = new Object[this.outputColumns.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = normalized(this.columns[this.outputColumns.get(i)].getValue(row));
+            }
+            if (seen.add(Arrays.asList(values))) {
+                this.rows[count++] = row;
+            }
+        }
+        this.rows = Arrays.copyOf(this.rows, count);
+        appendPlan("Distinct", count, System.currentTimeMillis() - start);
+    }
+
+    /** {@code -0.0} and {@code 0.0} are the same value in SQL. */
+    static Object normalized(final Object value) {
+        return value instanceof Double && (Double) value == 0 ? (Object) 0.0 : value;
+    }
+
+    void sort() {
+        if (this.sortColumns.isEmpty()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final SortKey[] keys = new SortKey[this.sortColumns.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new SortKey(this.columns[this.sortColumns.get(i)], this.sortDescending.get(i));
+        }
+        final IntComparator comparator = (first, second) -> {
+            for (final SortKey key : keys) {
+                final int result = key.compare(first, second);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        };
+        mergeSort(this.rows, new int[this.rows.length], 0, this.rows.length, comparator);
+        appendPlan("Sort", this.rows.length, System.currentTimeMillis() - start);
+    }
+
+    ColumnarResult materialize() {
+        final int size = this.rows.length;
+        final int from = (int) Math.min(size, this.query.getOffset());
+        final int to = this.query.getLimit() < 0 ? size : (int) Math.min(size, from + this.query.getLimit());
+        if (from > 0 || to < size) {
+            appendPlan("Offset " + from + " fetch " + (to - from), to - from, 0);
+        }
+
+        final List<EntryDescriptor> descriptors = new ArrayList<>();
+        for (int i = 0; i < this.outputColumns.size(); i++) {
+            descriptors.add(EntryDescriptorBuilder.of().addName(this.outputNames.get(i))
+                                                       .addType(this.columns[this.outputColumns.get(i)].getType())
+                                                       .build());
+        }
+        final ColumnarResult result = new ColumnarResult(descriptors);
+        for (int i = 0; i < this.outputColumns.size(); i++) {
+            result.getColumn(i).appendFrom(this.columns[this.outputColumns.get(i)], this.rows, from, to);
+        }
+        result.trimToSize();
+        return result;
+    }
+
+    void appendPlan(final String operator, final long rows, final long millis) {
+        if (this.plan != null) {
+            this.plan.append(operator).append(": ").append(rows).append(" rows, ").append(millis).append(" ms").append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * @param tableName the name of the table in the plan
+     * @return the operators with rows and time of the last execution. Empty if not collected
+     */
+    Optional<String> getPlan(final String tableName) {
+        return this.plan == null ? Optional.empty() : Optional.of("Columnar query on " + tableName + System.lineSeparator() + this.plan);
+    }
+
+    /** Stable merge sort of the row indexes. */
+    static void mergeSort(final int[] rows, final int[] buffer, final int from, final int to, final IntComparator comparator) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                final int row = rows[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        mergeSort(rows, buffer, from, middle, comparator);
+        mergeSort(rows, buffer, middle, to, comparator);
+        if (comparator.compare(rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface IntComparator {
+        int compare(int first, int second);
+    }
+
+    /** Compares the values of a column. Strings are compared by the rank of their dictionary code. */
+    static final class SortKey {
+
+        private final ResultColumn column;
+        private final boolean descending;
+        private final int[] rankOfCode;
+
+        SortKey(final ResultColumn column, final boolean descending) {
+            this.column = column;
+            this.descending = descending;
+            if (column.getType() == EntryDescriptor.Type.STRING) {
+                final Integer[] codes = new Integer[column.getDictionarySize()];
+                for (int i = 0; i < codes.length; i++) {
+                    codes[i] = i;
+                }
+                Arrays.sort(codes, (first, second) -> column.getDictionaryValue(first).compareTo(column.getDictionaryValue(second)));
+                this.rankOfCode = new int[codes.length];
+                for (int i = 0; i < codes.length; i++) {
+                    this.rankOfCode[codes[i]] = i;
+                }
+            } else {
+                this.rankOfCode = null;
+            }
+        }
+
+        int compare(final int first, final int second) {
+            final int result = compareAscending(first, second);
+            return this.descending ? -result : result;
+        }
+
+        int compareAscending(final int first, final int second) {
+            final boolean firstNull = this.column.isNull(first);
+            final boolean secondNull = this.column.isNull(second);
+            if (firstNull || secondNull) {
+                return firstNull == secondNull ? 0 : (firstNull ? 1 : -1);
+            }
+            switch (this.column.getType()) {
+                case INTEGER:
+                case DATE:
+                case TIME:
+                    return Long.compare(this.column.getStoredLong(first), this.column.getStoredLong(second));
+                case DECIMAL:
+                    return Values.compare(this.column.getDouble(first), this.column.getDouble(second));
+                case STRING:
+                    return Integer.compare(this.rankOfCode[this.column.getCode(first)], this.rankOfCode[this.column.getCode(second)]);
+                default:
+                    return Values.compare(this.column.getValue(first), this.column.getValue(second));
+            }
+        }
+    }
+
+    /** The group columns and the aggregates of a query. */
+    final class Grouping {
+
+        final List<ResultColumn> keys = new ArrayList<>();
+        final Map<Expression.Aggregate, Integer> aggregates = new LinkedHashMap<>();
+        final List<Aggregation> aggregations = new ArrayList<>();
+
+        /** Registers an aggregate or checks a column of the select list. */
+        void aggregateIndex(final Expression expression) {
+            if (expression instanceof Expression.Aggregate) {
+                this.aggregates.putIfAbsent((Expression.Aggregate) expression, this.aggregates.size());
+            } else {
+                keyIndex(expression);
+            }
+        }
+
+        int keyIndex(final Expression expression) {
+            final int index = query.getGroupBy().indexOf(expression);
+            if (index < 0) {
+                throw new UnsupportedQueryException("Not a group column: " + expression);
+            }
+            return index;
+        }
+
+        /**
+         * Assigns a group number to each row in order of the first occurrence.
+         * @return the first row of each group
+         */
+        int[] assignGroups(final int[] rows, final int[] groupOfRow) {
+            if (this.keys.isEmpty()) {
+                // An aggregation without group columns has always one row
+                return new int[] {rows.length == 0 ? -1 : rows[0]};
+            }
+            final GroupNumbers numbers = new GroupNumbers();
+            if (this.keys.size() == 1 && this.keys.get(0).getType() == EntryDescriptor.Type.STRING) {
+                final ResultColumn key = this.keys.get(0);
+                final int[] groupOfCode = new int[key.getDictionarySize() + 1];
+                Arrays.fill(groupOfCode, -1);
+                for (int i = 0; i < rows.length; i++) {
+                    final int code = key.getCode(rows[i]) + 1;
+                    if (groupOfCode[code] < 0) {
+                        groupOfCode[code] = numbers.add(rows[i]);
+                    }
+                    groupOfRow[i] = groupOfCode[code];
+                }
+            } else if (this.keys.size() == 1 && this.keys.get(0).getType() != EntryDescriptor.Type.DECIMAL
+                                             && this.keys.get(0).getType() != EntryDescriptor.Type.DATETIME) {
+                final ResultColumn key = this.keys.get(0);
+                final LongIntMap groupOfValue = new LongIntMap();
+                int nullGroup = -1;
+                for (int i = 0; i < rows.length; i++) {
+                    final int row = rows[i];
+                    if (key.isNull(row)) {
+                        if (nullGroup < 0) {
+                            nullGroup = numbers.add(row);
+                        }
+                        groupOfRow[i] = nullGroup;
+                    } else {
+                        final long value = key.getStoredLong(row);
+                        int group = groupOfValue.get(value);
+                        if (group < 0) {
+                            group = numbers.add(row);
+                            groupOfValue.put(value, group);
+                        }
+                        groupOfRow[i] = group;
+                    }
+                }
+            } else {
+                final Map<List<Object>, Integer> groupOfValues = new HashMap<>();
+                for (int i = 0; i < rows.length; i++) {
+                    final int row = rows[i];
+                    final Object[] values = new Object[this.keys.size()];
+                    for (int k = 0; k < values.length; k++) {
+                        values[k] = normalized(this.keys.get(k).getValue(row));
+                    }
+                    final List<Object> value = Arrays.asList(values);
+                    Integer group = groupOfValues.get(value);
+                    if (group == null) {
+                        group = numbers.add(row);
+                        groupOfValues.put(value, group);
+                    }
+                    groupOfRow[i] = group;
+                }
+            }
+            return numbers.firstRows();
+        }
+    }
+
+    /** Hands out the group numbers and remembers the first row of each group. */
+    static final class GroupNumbers {
+
+        private int[] firstRows = new int[16];
+        private int count;
+
+        int add(final int row) {
+            if (this.count == this.firstRows.length) {
+                this.firstRows = Arrays.copyOf(this.firstRows, this.count * 2);
+            }
+            this.firstRows[this.count] = row;
+            return this.count++;
+        }
+
+        int[] firstRows() {
+            return Arrays.copyOf(this.firstRows, this.count);
+        }
+    }
+
+    /** Open addressing map from {@code long} keys to non negative {@code int} values. */
+    static final class LongIntMap {
+
+        private long[] keys = new long[64];
+        private int[] values = newValues(64);
+        private int size;
+
+        int get(final long key) {
+            final int mask = this.keys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (this.values[slot] < 0) {
+                    return -1;
+                }
+                if (this.keys[slot] == key) {
+                    return this.values[slot];
+                }
+            }
+        }
+
+        void put(final long key, final int value) {
+            assert value >= 0 : "Negative value";
+            if (2 * (this.size + 1) > this.keys.length) {
+                resize();
+            }
+            final int mask = this.keys.length - 1;
+            int slot = hash(key) & mask;
+            while (this.values[slot] >= 0 && this.keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (this.values[slot] < 0) {
+                this.size++;
+            }
+            this.keys[slot] = key;
+            this.values[slot] = value;
+        }
+
+        void resize() {
+            final long[] oldKeys = this.keys;
+            final int[] oldValues = this.values;
+            this.keys = new long[oldKeys.length * 2];
+            this.values = newValues(oldKeys.length * 2);
+            this.size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] >= 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        static int[] newValues(final int capacity) {
+            final int[] values = new int[capacity];
+            Arrays.fill(values, -1);
+            return values;
+        }
+
+        static int hash(final long key) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
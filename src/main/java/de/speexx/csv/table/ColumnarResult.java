@@ -0,0 +1,187 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+
+/**
+ * Rows stored column by column in {@link ResultColumn}s. The memory for a
+ * value is about the size of the primitive value, strings are stored once
+ * per distinct value. The {@linkplain Row rows} of the reader are views on
+ * the columns and may be read more than once.
+ * <p>The rows are appended by the creator of the result and read after that.</p>
+ */
+public final class ColumnarResult implements RowReader {
+
+    private final List<EntryDescriptor> descriptors;
+    private final ResultColumn[] columns;
+
+    /**
+     * @param descriptors the descriptors of the columns with the type of the values
+     * @throws NullPointerException if <em>descriptors</em> is {@code null}
+     */
+    public ColumnarResult(final List<? extends EntryDescriptor> descriptors) {
+        Objects.requireNonNull(descriptors, "descriptors is null");
+        this.descriptors = new ArrayList<>(descriptors);
+        this.columns = new ResultColumn[descriptors.size()];
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = new ResultColumn(descriptors.get(i));
+        }
+    }
+
+    @Override
+    public List<EntryDescriptor> getEntryDescriptors() {
+        return Collections.unmodifiableList(this.descriptors);
+    }
+
+    /** @return the number of rows */
+    public int size() {
+        return this.columns.length == 0 ? 0 : this.columns[0].size();
+    }
+
+    public int getColumnCount() {
+        return this.columns.length;
+    }
+
+    /**
+     * All columns must have the same size after a row is appended column by column.
+     * @param index the ordinal of the column, starting with {@code 0}
+     * @return the column
+     * @throws IndexOutOfBoundsException if there is no column with the index
+     */
+    public ResultColumn getColumn(final int index) {
+        return this.columns[index];
+    }
+
+    /**
+     * Appends the values of the row.
+     * @param row the row with a value for each column
+     * @throws IllegalArgumentException if the row has another number of values
+     */
+    public void add(final Row row) {
+        Objects.requireNonNull(row, "row is null");
+        if (row.size() != this.columns.length) {
+            throw new IllegalArgumentException("Row with " + row.size() + " values for " + this.columns.length + " columns");
+        }
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i].appendValue(row.getValue(i));
+        }
+    }
+
+    /**
+     * Replaces a column with a column of the same size, e.g. with the values
+     * converted to another type.
+     * @throws IllegalArgumentException if the column has another size
+     */
+    void setColumn(final int index, final ResultColumn column) {
+        Objects.requireNonNull(column, "column is null");
+        if (column.size() != size()) {
+            throw new IllegalArgumentException("Column with " + column.size() + " values for " + size() + " rows");
+        }
+        this.columns[index] = column;
+        this.descriptors.set(index, column.getDescriptor());
+    }
+
+    /** @see ResultColumn#trimToSize() */
+    public void trimToSize() {
+        for (final ResultColumn column : this.columns) {
+            column.trimToSize();
+        }
+    }
+
+    /**
+     * @param row the index of the row, starting with {@code 0}
+     * @return a view on the values of the row
+     * @throws IndexOutOfBoundsException if the row is not in the range of {@link #size()}
+     */
+    public Row getRow(final int row) {
+        if (row < 0 || row >= size()) {
+            throw new IndexOutOfBoundsException("Row: " + row + " - size: " + size());
+        }
+        return new VectorRow(this.columns, row);
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < size();
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new VectorRow(ColumnarResult.this.columns, this.index++);
+            }
+        };
+    }
+
+    /** Copies ranges of the columns into the batch. */
+    @Override
+    public Iterator<RowBatch> batches(final int size) {
+        final RowBatch batch = new RowBatch(this.descriptors, size);
+        return new Iterator<RowBatch>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < size();
+            }
+
+            @Override
+            public RowBatch next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int length = Math.min(size, size() - this.index);
+                for (int i = 0; i < ColumnarResult.this.columns.length; i++) {
+                    ColumnarResult.this.columns[i].copyTo(this.index, batch.getColumn(i), 0, length);
+                }
+                batch.setSize(length);
+                this.index += length;
+                return batch;
+            }
+        };
+    }
+
+    /** Splits the rows by index ranges with exact sizes. */
+    @Override
+    public Spliterator<Row> spliterator() {
+        return new VectorRowSpliterator(this.columns, 0, size());
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarResult{" + "descriptors=" + descriptors + ", size=" + size() + '}';
+    }
+}
@@ -0,0 +1,333 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.event.PipelineEvent;
+import de.speexx.csv.table.event.PipelineEvents;
+import de.speexx.csv.table.event.Stage;
+import de.speexx.csv.table.query.Query;
+import de.speexx.csv.table.query.QueryParser;
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import de.speexx.csv.table.transformer.TypeTransformer;
+import de.speexx.csv.table.transformer.UnsupportedTransformationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import static de.speexx.csv.table.EntryDescriptorSupport.cloneEntryDescriptorList;
+import static de.speexx.csv.table.util.UuidSupport.shortUuid;
+
+/**
+ * Table which keeps the rows in memory as typed columns and executes queries
+ * without a database. Strings are stored with a dictionary per column, the
+ * other types as primitive values.
+ * <p>Queries are parsed with the {@link QueryParser}. A query outside of the
+ * supported subset is executed by a Derby based table which is created from
+ * the columns on first use.</p>
+ */
+final class ColumnarTable implements Table {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final String tableName;
+    private String label;
+    private List<EntryDescriptorSupport.TypeChangeableEntryDescriptor> descriptors;
+    private ColumnarResult data;
+    private Table fallback;
+    private boolean collectQueryPlans;
+    private String lastQueryPlan;
+
+    ColumnarTable(final String name) {
+        this.tableName = name;
+    }
+
+    @Override
+    public String getName() {
+        return this.tableName;
+    }
+
+    @Override
+    public String getLabel() {
+        return Objects.isNull(this.label) ? this.tableName : this.label;
+    }
+
+    void setLabel(final String label) {
+        this.label = label;
+    }
+
+    void init(final RowReader reader) {
+        Objects.requireNonNull(reader, "reader is null");
+        this.descriptors = cloneEntryDescriptorList(Objects.requireNonNull(reader.getEntryDescriptors(),
+                                                    "entry descriptor of row is null"));
+        this.data = new ColumnarResult(this.descriptors);
+
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.TABLE_LOAD, getLabel())) {
+            final Iterator<RowBatch> batches = reader.batches(LOAD_BATCH_SIZE);
+            while (batches.hasNext()) {
+                final RowBatch batch = batches.next();
+                final PipelineEvent batchEvent = PipelineEvents.begin(Stage.INSERT_BATCH, getLabel());
+                for (int column = 0; column < batch.getColumnCount(); column++) {
+                    final ColumnVector vector = batch.getColumn(column);
+                    final ResultColumn target = this.data.getColumn(column);
+                    for (int row = 0; row < batch.size(); row++) {
+                        target.appendValue(vector.getValue(row));
+                    }
+                }
+                DbTable.endBatchEvent(batchEvent, batch.size());
+            }
+            this.data.trimToSize();
+            event.setRows(this.data.size());
+        }
+    }
+
+    /**
+     * Appends the converted values to the columns. Before a batch is appended
+     * the columns are widened which can't keep the values of the batch. The
+     * lookups of the dictionary codes are kept for the next append. The Derby
+     * table of the queries outside of the supported subset is created again
+     * on its next use.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public long appendRows(final RowReader rows) {
+        Objects.requireNonNull(rows, "rows is null");
+        if (this.descriptors == null) {
+            throw new IllegalStateException("ColumnarTable not correct initialized");
+        }
+        EntryDescriptorSupport.checkAppendedColumns(this.descriptors, rows.getEntryDescriptors());
+
+        long appended = 0;
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.TABLE_LOAD, getLabel())) {
+            final Iterator<RowBatch> batches = rows.batches(LOAD_BATCH_SIZE);
+            while (batches.hasNext()) {
+                final RowBatch batch = batches.next();
+                changeColumnTypes(EntryDescriptorSupport.widenedDescriptors(this.descriptors, batch));
+                final PipelineEvent batchEvent = PipelineEvents.begin(Stage.INSERT_BATCH, getLabel());
+                for (int column = 0; column < batch.getColumnCount(); column++) {
+                    final ColumnVector vector = batch.getColumn(column);
+                    final ResultColumn target = this.data.getColumn(column);
+                    final TypeTransformer transformer = TypeTransformer.of(EntryDescriptor.Type.STRING, target.getType());
+                    for (int row = 0; row < batch.size(); row++) {
+                        target.appendValue(vector.isNull(row) ? null : validValue(transformer.transform(vector.getValue(row))));
+                    }
+                }
+                appended += batch.size();
+                DbTable.endBatchEvent(batchEvent, batch.size());
+            }
+            event.setRows(appended);
+        }
+        closeFallback();
+        return appended;
+    }
+
+    @Override
+    public List<? extends EntryDescriptor> getEntryDescriptors() {
+        if (this.descriptors == null) {
+            throw new IllegalStateException("ColumnarTable not correct initialized");
+        }
+        return Collections.unmodifiableList(this.descriptors);
+    }
+
+    @Override
+    public RowReader executeSql(final String sql) {
+        Objects.requireNonNull(sql, "sql is null");
+        final Query query;
+        try {
+            query = QueryParser.parse(sql, this.descriptors.stream().map(EntryDescriptor::getName).collect(Collectors.toList()));
+        } catch (final UnsupportedQueryException e) {
+            return executeWithFallback(sql, e);
+        }
+
+        final ColumnarQuery columnarQuery = new ColumnarQuery(query, this.data, this.collectQueryPlans);
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.QUERY, getLabel())) {
+            final ColumnarResult result = columnarQuery.execute();
+            event.setRows(result.size());
+            this.lastQueryPlan = columnarQuery.getPlan(getName()).orElse(null);
+            return result;
+        } catch (final UnsupportedQueryException e) {
+            return executeWithFallback(sql, e);
+        }
+    }
+
+    RowReader executeWithFallback(final String sql, final UnsupportedQueryException reason) {
+        LOG.debug("Execute query with Derby: {}", reason.getMessage());
+        final Table table = getFallback();
+        table.setCollectQueryPlans(this.collectQueryPlans);
+        final RowReader result = table.executeSql(sql);
+        this.lastQueryPlan = table.getLastQueryPlan()
+                                  .map(plan -> "Derby fallback - " + reason.getMessage() + System.lineSeparator()
+                                               + plan.replace(table.getName(), getName()))
+                                  .orElse(null);
+        return result;
+    }
+
+    /**
+     * Creates the Derby table from the string representation of the typed
+     * values. The column types are converted like for a loaded source.
+     */
+    Table getFallback() {
+        if (this.fallback == null) {
+            final List<EntryDescriptor> stringDescriptors = new ArrayList<>();
+            for (final EntryDescriptor descriptor : this.descriptors) {
+                stringDescriptors.add(EntryDescriptorBuilder.of().addName(descriptor.getName()).addType(EntryDescriptor.Type.STRING).build());
+            }
+            final ColumnarResult strings = new ColumnarResult(stringDescriptors);
+            for (int column = 0; column < this.data.getColumnCount(); column++) {
+                final ResultColumn source = this.data.getColumn(column);
+                final ResultColumn target = strings.getColumn(column);
+                final TypeTransformer transformer = TypeTransformer.of(source.getType(), EntryDescriptor.Type.STRING);
+                for (int row = 0; row < source.size(); row++) {
+                    final Object value = source.getValue(row);
+                    @SuppressWarnings("unchecked")
+                    final Optional<Object> string = value == null ? Optional.empty() : transformer.transform(value);
+                    target.appendString(string.map(Object::toString).orElse(null));
+                }
+            }
+
+            final DbTable table = new DbTable(getName() + shortUuid());
+            table.setLabel(getLabel());
+            table.init(strings);
+            table.changeColumnTypes(this.descriptors.stream()
+                                                    .filter(descriptor -> descriptor.getType() != EntryDescriptor.Type.STRING)
+                                                    .toArray(EntryDescriptor[]::new));
+            this.fallback = table;
+        }
+        return this.fallback;
+    }
+
+    /**
+     * Converts each distinct string of a column once.
+     * @see DbTable#changeColumnTypes(EntryDescriptor...)
+     */
+    @Override
+    public void changeColumnTypes(final EntryDescriptor... newDescriptors) {
+        if (this.descriptors == null) {
+            throw new IllegalStateException("ColumnarTable not correct initialized");
+        }
+        if (newDescriptors == null || newDescriptors.length == 0) {
+            return;
+        }
+        for (final EntryDescriptor descriptor : newDescriptors) {
+            Objects.requireNonNull(descriptor, "descriptor is null");
+            Objects.requireNonNull(descriptor.getName(), "name of descriptor is null");
+            Objects.requireNonNull(descriptor.getType(), "type of descriptor is null");
+        }
+
+        for (final EntryDescriptor descriptor : newDescriptors) {
+            final int index = indexOf(descriptor.getName());
+            if (index < 0 || this.descriptors.get(index).getType() == descriptor.getType()) {
+                continue;
+            }
+            final ResultColumn source = this.data.getColumn(index);
+            final TypeTransformer transformer;
+            try {
+                transformer = TypeTransformer.of(source.getType(), descriptor.getType());
+            } catch (final UnsupportedTransformationException e) {
+                throw new TableException("Transformation of column '" + descriptor.getName()
+                                         + "' to type '" + descriptor.getType() + "' not possible.", e);
+            }
+            try (final PipelineEvent event = PipelineEvents.begin(Stage.COLUMN_CONVERSION, getLabel(), descriptor.getName())) {
+                final EntryDescriptor target = EntryDescriptorBuilder.of().addName(descriptor.getName()).addType(descriptor.getType()).build();
+                final ResultColumn converted = convert(source, target, transformer);
+                this.data.setColumn(index, converted);
+                this.descriptors.get(index).setType(descriptor.getType());
+                event.setRows(converted.size());
+            }
+        }
+        closeFallback();
+    }
+
+    @SuppressWarnings("unchecked")
+    static ResultColumn convert(final ResultColumn source, final EntryDescriptor target, final TypeTransformer transformer) {
+        final ResultColumn converted = new ResultColumn(target);
+        if (source.getType() == EntryDescriptor.Type.STRING) {
+            final Object[] values = new Object[source.getDictionarySize()];
+            for (int code = 0; code < values.length; code++) {
+                values[code] = validValue(transformer.transform(source.getDictionaryValue(code)));
+            }
+            for (int row = 0; row < source.size(); row++) {
+                final int code = source.getCode(row);
+                converted.appendValue(code < 0 ? null : values[code]);
+            }
+        } else {
+            for (int row = 0; row < source.size(); row++) {
+                final Object value = source.getValue(row);
+                converted.appendValue(value == null ? null : validValue(transformer.transform(value)));
+            }
+        }
+        converted.trimToSize();
+        return converted;
+    }
+
+    /** Infinite values and NaN are stored as null like in the Derby table. */
+    static Object validValue(final Optional<Object> value) {
+        if (!value.isPresent()) {
+            return null;
+        }
+        final Object v = value.get();
+        if (v instanceof Double && (((Double) v).isInfinite() || ((Double) v).isNaN())) {
+            return null;
+        }
+        return v;
+    }
+
+    int indexOf(final String name) {
+        for (int i = 0; i < this.descriptors.size(); i++) {
+            if (this.descriptors.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void setCollectQueryPlans(final boolean collect) {
+        this.collectQueryPlans = collect;
+        this.lastQueryPlan = null;
+    }
+
+    @Override
+    public Optional<String> getLastQueryPlan() {
+        return Optional.ofNullable(this.lastQueryPlan);
+    }
+
+    @Override
+    public void close() {
+        closeFallback();
+        this.data = null;
+    }
+
+    void closeFallback() {
+        if (this.fallback != null) {
+            this.fallback.close();
+            this.fallback = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarTable{" + "tableName=" + tableName + ", descriptors=" + descriptors + ", rows=" + (data == null ? 0 : data.size()) + '}';
+    }
+}
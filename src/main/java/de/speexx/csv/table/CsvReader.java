@@ -17,17 +17,24 @@
  */
 package de.speexx.csv.table;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import static org.apache.commons.csv.CSVFormat.RFC4180;
+import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
@@ -61,22 +68,62 @@ public final class CsvReader implements RowReader {
         this.ownReader = false;
         init(reader);
     }
+
+    /** Creates a new {@code CsvReader} which closes the given <em>reader</em>.
+     * @param reader the reader to read the CSV content from
+     * @param header the names of the columns of content without header line,
+     *               e.g. the rows appended to a CSV file. {@code null} if
+     *               the first line is the header
+     * @throws IOException if is not possible to init the reader.
+     */
+    CsvReader(final Reader reader, final List<String> header) throws IOException {
+        Objects.requireNonNull(reader, "reader is null");
+        this.reader = reader;
+        this.ownReader = true;
+        init(reader, header == null ? RFC4180.withFirstRecordAsHeader() : RFC4180.withHeader(header.toArray(new String[header.size()])));
+    }
     
+    /** Creates a new {@code CsvReader} for the given UTF-8 encoded <em>path</em>
+     * in the file system.
+     * @param path the path to a CSV file in the file system to read the CSV content from
+     * @throws NullPointerException if the given <em>path</em> is {@code null}
+     * @throws IOException if is not possible to init the reader. 
+     */
+    public CsvReader(final String path) throws IOException {
+        this(Paths.get(Objects.requireNonNull(path, "path is null")), StandardCharsets.UTF_8);
+    }
+
     /** Creates a new {@code CsvReader} for the given <em>path</em> in the
      * file system.
      * @param path the path to a CSV file in the file system to read the CSV content from
-     * @throws NullPointerException if the given <em>reader</em> is {@code null}
+     * @param charset the encoding of the file
+     * @throws NullPointerException if a parameter is {@code null}
      * @throws IOException if is not possible to init the reader. 
      */
-    public CsvReader(final String path) throws IOException, FileNotFoundException {
-        this(new FileReader(path));
-        this.ownReader = true;
+    public CsvReader(final Path path, final Charset charset) throws IOException {
+        this(FileChannel.open(Objects.requireNonNull(path, "path is null"), StandardOpenOption.READ), charset);
+    }
+
+    /** Creates a new {@code CsvReader} which closes the given <em>channel</em>,
+     * e.g. the channel of a pipe. The bytes are read into a large buffer and
+     * decoded by a {@link ChannelReader}.
+     * @param channel the channel to read the CSV content from
+     * @param charset the encoding of the content
+     * @throws NullPointerException if a parameter is {@code null}
+     * @throws IOException if is not possible to init the reader. 
+     */
+    public CsvReader(final ReadableByteChannel channel, final Charset charset) throws IOException {
+        this(new ChannelReader(channel, charset), null);
     }
 
     void init(final Reader reader) throws IOException {
+        init(reader, RFC4180.withFirstRecordAsHeader());
+    }
+
+    void init(final Reader reader, final CSVFormat format) throws IOException {
         synchronized(this) {
             Objects.requireNonNull(reader, "reader is null");
-            this.parser = RFC4180.withFirstRecordAsHeader().parse(reader);
+            this.parser = format.parse(reader);
             this.headerMap = this.parser.getHeaderMap();
             this.itr = this.parser.iterator();
 
@@ -118,6 +165,38 @@ public final class CsvReader implements RowReader {
         };
     }
 
+    /** Stores the values of the records direct into the batch without row and entry instances. */
+    @Override
+    public Iterator<RowBatch> batches(final int size) {
+        final RowBatch batch = new RowBatch(this.descriptors, size);
+        final int columns = this.descriptors.size();
+        return new Iterator<RowBatch>() {
+            @Override
+            public boolean hasNext() {
+                return CsvReader.this.itr.hasNext();
+            }
+
+            @Override
+            public RowBatch next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int row = 0;
+                while (row < size && CsvReader.this.itr.hasNext()) {
+                    final CSVRecord record = CsvReader.this.itr.next();
+                    for (int i = 0; i < columns; i++) {
+                        // Access by name reports records with too few values
+                        final String value = i < record.size() ? record.get(i) : record.get(CsvReader.this.descriptors.get(i).getName());
+                        batch.getColumn(i).setObject(row, value);
+                    }
+                    row++;
+                }
+                batch.setSize(row);
+                return batch;
+            }
+        };
+    }
+
     @Override
     public void close() throws Exception {
         if (this.ownReader) {
@@ -17,14 +17,21 @@
  */
 package de.speexx.csv.table;
 
+import de.speexx.csv.table.event.PipelineEvent;
+import de.speexx.csv.table.event.PipelineEvents;
+import de.speexx.csv.table.event.Stage;
 import de.speexx.csv.table.transformer.TypeTransformer;
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static de.speexx.csv.table.EntryDescriptor.Type.DATE;
 import static de.speexx.csv.table.EntryDescriptor.Type.DATETIME;
@@ -39,16 +46,19 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.sql.ResultSet;
 import java.util.Iterator;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static de.speexx.csv.table.EntryDescriptorSupport.cloneEntryDescriptorList;
 import de.speexx.csv.table.transformer.UnsupportedTransformationException;
 import static java.util.Objects.nonNull;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
 import static de.speexx.csv.table.EntryDescriptorBuilder.of;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 import static de.speexx.csv.table.util.UuidSupport.shortUuid;
 
 final class DbTable implements Table {
@@ -75,15 +85,49 @@ final class DbTable implements Table {
     private static final String FROM_CLAUSE = "from";
     private static final String REPLACABLE = "xXx";
     private static final String DERBY_JDBC_URL_TEMPLATE = "jdbc:derby:memory:" + REPLACABLE + ";create=true";
+    private static final String DERBY_JDBC_DROP_URL_TEMPLATE = "jdbc:derby:memory:" + REPLACABLE + ";drop=true";
+    private static final String DERBY_DROPPED_DATABASE_STATE = "08006";
     private static final String DERBY_JDBC_DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
     private static final int MAX_VARCHAR = 32672;
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final String DERBY_SCHEMA = "APP";
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    private static final String UPDATE_STATISTICS_STMT = "CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS(?, ?, NULL)";
+    private static final String RUNTIME_STATISTICS_STMT = "CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(?)";
+    private static final String STATISTICS_TIMING_STMT = "CALL SYSCS_UTIL.SYSCS_SET_STATISTICS_TIMING(?)";
+    private static final String ROW_NUMBER_PLAN_NAME = "_row_number";
+    private static final String GET_RUNTIME_STATISTICS_STMT = "VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()";
+    private static final Pattern SELECT_ALL = Pattern.compile("^(\\s*select\\s+(?:distinct\\s+|all\\s+)?)\\*(?=\\s*(?:,|from\\s))",
+                                                              Pattern.CASE_INSENSITIVE);
     private final String tableName;
+    private String label;
     private Connection connection;
     private String internalTableName;
     private final OriginalReplacementMap replacementMap = new OriginalReplacementMap();
     private List<? extends EntryDescriptor> descriptors;
     private String rowNumberColumnName;
     private String jdbcUrl;
+    private long rowCount;
+    private boolean rowNumberKeyCreated;
+    private final Set<String> indexedColumns = new HashSet<>();
+    private Pattern originalsPattern;
+    private final Set<String> literalOnlyShapes = new HashSet<>();
+    private boolean collectQueryPlans;
+    private String lastQueryPlan;
+    private final Map<String, PreparedStatement> statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > STATEMENT_CACHE_SIZE) {
+                try {
+                    eldest.getValue().close();
+                } catch (final SQLException e) {
+                    LOG.debug("Unable to close statement: {}", e.getMessage());
+                }
+                return true;
+            }
+            return false;
+        }
+    };
     
     public DbTable(final String name) {
         this.tableName = name;
@@ -93,6 +137,15 @@ final class DbTable implements Table {
     public String getName() {
         return this.tableName;
     }
+
+    @Override
+    public String getLabel() {
+        return Objects.isNull(this.label) ? this.tableName : this.label;
+    }
+
+    void setLabel(final String label) {
+        this.label = label;
+    }
     
     void init(final RowReader reader) {
         Objects.requireNonNull(reader, "reader is null");
@@ -103,12 +156,12 @@ final class DbTable implements Table {
         
         getJdbcDriverClass();
         
-        try {
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.TABLE_LOAD, getLabel())) {
             final Connection conn = getDbConnection(false);
             createDbTable(conn, this.descriptors);
             final String insertStatementTemplate = createInsertDbTablePreparedStatement(this.descriptors);            
-            final AtomicInteger rowNumber = new AtomicInteger();
-            reader.forEach(row -> fillInDbTable(conn, insertStatementTemplate, row, rowNumber));
+            this.rowCount = fillInDbTable(conn, insertStatementTemplate, reader);
+            event.setRows(this.rowCount);
             
             addSupportFunctions();
             
@@ -145,70 +198,326 @@ final class DbTable implements Table {
         }
     }
     
-    void fillInDbTable(final Connection conn, final String insertStmtTemplate, final Row row, final AtomicInteger rowNumber) {
+    /**
+     * Inserts the {@linkplain RowReader#batches(int) row batches} of
+     * {@value #INSERT_BATCH_SIZE} rows within one transaction. The row number
+     * column has no key during the insert, see
+     * {@link #ensureRowNumberKey(java.sql.Connection)}.
+     * @return the number of inserted rows
+     */
+    long fillInDbTable(final Connection conn, final String insertStmtTemplate, final RowReader rows) throws SQLException {
         assert nonNull(conn);
         assert nonNull(insertStmtTemplate);
-        assert nonNull(rowNumber);
+        assert nonNull(rows);
 
-        Objects.requireNonNull(row, "row is null");
+        final boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        long rowNumber = 0;
         try (final PreparedStatement stmt = conn.prepareStatement(insertStmtTemplate)) {
+            final Iterator<RowBatch> batches = rows.batches(INSERT_BATCH_SIZE);
+            while (batches.hasNext()) {
+                final RowBatch batch = batches.next();
+                final PipelineEvent batchEvent = PipelineEvents.begin(Stage.INSERT_BATCH, getLabel());
+                final int columns = batch.getColumnCount();
+                for (int row = 0; row < batch.size(); row++) {
+                    stmt.setLong(1, rowNumber++);
+                    for (int column = 0; column < columns; column++) {
+                        final ColumnVector vector = batch.getColumn(column);
+                        final Object[] values = vector.getObjects();
+                        if (vector.isNull(row)) {
+                            stmt.setNull(column + 2, vector.getType().getSqlType());
+                        } else {
+                            // Like String.valueOf(Object) of the former row by row insert
+                            stmt.setString(column + 2, values != null ? values[row].toString() : String.valueOf(vector.getValue(row)));
+                        }
+                    }
+                    stmt.addBatch();
+                }
+                if (batch.size() > 0) {
+                    stmt.executeBatch();
+                }
+                endBatchEvent(batchEvent, batch.size());
+            }
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return rowNumber;
+    }
 
-            final AtomicInteger stmtIdx = new AtomicInteger();
-            stmt.setInt(stmtIdx.incrementAndGet(), rowNumber.getAndIncrement());
+    /**
+     * Inserts the rows after the rows already loaded. The row numbers
+     * continue the row numbers of the loaded rows. Before a batch is inserted
+     * the columns are widened which can't keep the values of the batch.
+     */
+    @Override
+    public long appendRows(final RowReader rows) {
+        Objects.requireNonNull(rows, "rows is null");
+        if (this.descriptors == null) {
+            throw new IllegalStateException("DbTable not correct initialized");
+        }
+        EntryDescriptorSupport.checkAppendedColumns(this.descriptors, rows.getEntryDescriptors());
 
-            row.forEach(entry -> {
-                try {
-                    stmt.setString(stmtIdx.incrementAndGet(), String.valueOf(entry.getValue()));
-                } catch (final SQLException e) {
-                    throw new TableException(e);
+        long appended = 0;
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.TABLE_LOAD, getLabel())) {
+            final Connection conn = getDbConnection(false);
+            final boolean autoCommit = conn.getAutoCommit();
+            final Iterator<RowBatch> batches = rows.batches(INSERT_BATCH_SIZE);
+            PreparedStatement stmt = null;
+            TypeTransformer[] transformers = null;
+            try {
+                while (batches.hasNext()) {
+                    final RowBatch batch = batches.next();
+                    final EntryDescriptor[] widened = EntryDescriptorSupport.widenedDescriptors(this.descriptors, batch);
+                    if (widened.length > 0) {
+                        LOG.debug("Widen columns for appended rows: {}", Arrays.asList(widened));
+                        if (stmt != null) {
+                            stmt.close();
+                            stmt = null;
+                        }
+                        changeColumnTypes(widened);
+                    }
+                    if (stmt == null) {
+                        conn.setAutoCommit(false);
+                        stmt = conn.prepareStatement(createInsertDbTablePreparedStatement(this.descriptors));
+                        transformers = new TypeTransformer[this.descriptors.size()];
+                        for (int column = 0; column < transformers.length; column++) {
+                            transformers[column] = TypeTransformer.of(STRING, this.descriptors.get(column).getType());
+                        }
+                    }
+                    final PipelineEvent batchEvent = PipelineEvents.begin(Stage.INSERT_BATCH, getLabel());
+                    insertBatch(stmt, batch, transformers);
+                    conn.commit();
+                    appended += batch.size();
+                    endBatchEvent(batchEvent, batch.size());
                 }
-            });
-
-            stmt.execute();
-            
+            } finally {
+                if (stmt != null) {
+                    stmt.close();
+                }
+                conn.setAutoCommit(autoCommit);
+            }
+            event.setRows(appended);
         } catch (final SQLException e) {
             throw new TableException(e);
         }
-        
-        try {
-            conn.commit();
-        } catch (final SQLException e) {
-            throw new TableException(e);
+        return appended;
+    }
+
+    @SuppressWarnings("unchecked")
+    void insertBatch(final PreparedStatement stmt, final RowBatch batch, final TypeTransformer[] transformers) throws SQLException {
+        for (int row = 0; row < batch.size(); row++) {
+            stmt.setLong(1, this.rowCount++);
+            for (int column = 0; column < transformers.length; column++) {
+                final ColumnVector vector = batch.getColumn(column);
+                final EntryDescriptor.Type type = this.descriptors.get(column).getType();
+                final Object value = vector.isNull(row) ? null : ColumnarTable.validValue(transformers[column].transform(vector.getValue(row)));
+                if (value == null) {
+                    stmt.setNull(column + 2, type.getSqlType());
+                } else {
+                    stmt.setObject(column + 2, value, type.getSqlType());
+                }
+            }
+            stmt.addBatch();
+        }
+        if (batch.size() > 0) {
+            stmt.executeBatch();
         }
     }
-    
+
+    static void endBatchEvent(final PipelineEvent event, final int batchSize) {
+        assert nonNull(event);
+        event.setRows(batchSize);
+        event.close();
+    }
+
     @Override
     public RowReader executeSql(final String sql) {
         
-        final AtomicReference<String> useSql = new AtomicReference<>(sql);
-        this.replacementMap.originals().forEachRemaining(original -> {
-            final String replacement = 
+        // This is currently pragmatic but not very stable.
+        // Maybe must change to use JSQLParser also to handle this.
+        // All names are replaced in one pass. Otherwise a short name might
+        // match within the replacement of a longer name.
+        final Matcher originals = getOriginalsPattern().matcher(sql);
+        final StringBuffer useSql = new StringBuffer(sql.length());
+        while (originals.find()) {
+            final String original = originals.group();
+            final String replacement =
                     this.replacementMap.replacementForOriginal(original)
                             .orElseThrow(() -> new TableException("Unable to get internal columnName for '" + original + "'"));
-            // This is currently pragmatic but not very stable.
-            // Maybe must change to use JSQLParser also to handle this.
-            useSql.set(useSql.get().replace(original, replacement));
-        });
+            originals.appendReplacement(useSql, Matcher.quoteReplacement(replacement));
+        }
+        originals.appendTail(useSql);
         
-        final String uSql = useSql.get();
+        final String uSql = expandSelectAll(useSql.toString());
 
         final Optional<String> fromPart = extractFromPartFromSelectSql(uSql);
         final String toExecuteSql = uSql.replace(fromPart.orElseThrow(() -> new TableException("No from part in query: " + uSql)), getInternalTableName());
         
-        try {
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.QUERY, getLabel())) {
             assert !getDbConnection(false).isClosed();
 
-            try (final Statement stmt = getDbConnection(false).createStatement();
-                 final ResultSet result = stmt.executeQuery(toExecuteSql)) {
-                return new ResultSetBackedRowReader(result, getRowNumberColumnName(), this.replacementMap);
+            final QueryShape shape = QueryShape.of(toExecuteSql);
+            if (shape.hasParameters() && !this.literalOnlyShapes.contains(shape.getShape())) {
+                try {
+                    final ResultSetBackedRowReader result = executeStatement(shape.getShape(), shape.getParameters());
+                    event.setRows(result.getRowCount());
+                    return result;
+                } catch (final SQLException e) {
+                    // e.g. a parameter in a function call without a detectable type
+                    LOG.debug("Unable to execute query with parameters: {} - {}", shape, e.getMessage());
+                    this.literalOnlyShapes.add(shape.getShape());
+                    closeStatement(shape.getShape());
+                }
             }
+            final ResultSetBackedRowReader result = executeStatement(toExecuteSql, Collections.emptyList());
+            event.setRows(result.getRowCount());
+            return result;
         } catch (final Exception e) {
             LOG.info("Query: {}", toExecuteSql);
             LOG.info("MAP: {}", this.replacementMap);
             throw new TableException(e);
         }
     }
+
+    /**
+     * Executes a query with a cached prepared statement. The statement cache
+     * holds the last {@value #STATEMENT_CACHE_SIZE} statements.
+     */
+    ResultSetBackedRowReader executeStatement(final String sql, final List<String> parameters) throws SQLException {
+        assert nonNull(sql);
+        assert nonNull(parameters);
+
+        PreparedStatement stmt = this.statementCache.get(sql);
+        if (stmt == null) {
+            stmt = getDbConnection(false).prepareStatement(sql);
+            this.statementCache.put(sql, stmt);
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setString(i + 1, parameters.get(i));
+        }
+        final ResultSetBackedRowReader reader;
+        try (final ResultSet result = stmt.executeQuery()) {
+            reader = new ResultSetBackedRowReader(result, getRowNumberColumnName(), this.replacementMap);
+        }
+        if (this.collectQueryPlans) {
+            this.lastQueryPlan = fetchQueryPlan();
+        }
+        return reader;
+    }
+
+    /**
+     * Enables the Derby runtime statistics with timing for the connection.
+     * The statistics of a statement are available after the result set of
+     * the statement is closed.
+     */
+    @Override
+    public void setCollectQueryPlans(final boolean collect) {
+        if (this.collectQueryPlans == collect) {
+            return;
+        }
+        try {
+            final Connection conn = getDbConnection(false);
+            for (final String stmtString : new String[] {RUNTIME_STATISTICS_STMT, STATISTICS_TIMING_STMT}) {
+                try (final CallableStatement stmt = conn.prepareCall(stmtString)) {
+                    stmt.setInt(1, collect ? 1 : 0);
+                    stmt.execute();
+                }
+            }
+        } catch (final SQLException e) {
+            throw new TableException(e);
+        }
+        // Statements compiled before don't collect the statistics
+        clearStatementCache();
+        this.collectQueryPlans = collect;
+        this.lastQueryPlan = null;
+    }
+
+    @Override
+    public Optional<String> getLastQueryPlan() {
+        return Optional.ofNullable(this.lastQueryPlan);
+    }
+
+    String fetchQueryPlan() throws SQLException {
+        try (final Statement stmt = getDbConnection(false).createStatement();
+             final ResultSet result = stmt.executeQuery(GET_RUNTIME_STATISTICS_STMT)) {
+            return result.next() ? toOriginalNames(result.getString(1)) : null;
+        }
+    }
+
+    /** Replaces the internal table and column names of the plan with the original names. */
+    String toOriginalNames(final String plan) {
+        if (Objects.isNull(plan)) {
+            return null;
+        }
+        final List<String> internals = new ArrayList<>();
+        internals.add(Pattern.quote(getInternalTableName()));
+        internals.add(Pattern.quote(getRowNumberColumnName()));
+        this.replacementMap.replacements().forEachRemaining(replacement -> internals.add(Pattern.quote(replacement)));
+        final Matcher matcher = Pattern.compile("\\b(?:" + String.join("|", internals) + ")\\b", Pattern.CASE_INSENSITIVE).matcher(plan);
+
+        final StringBuffer originalPlan = new StringBuffer(plan.length());
+        while (matcher.find()) {
+            final String internal = matcher.group();
+            final String original;
+            if (internal.equalsIgnoreCase(getInternalTableName())) {
+                original = getName();
+            } else if (internal.equalsIgnoreCase(getRowNumberColumnName())) {
+                original = ROW_NUMBER_PLAN_NAME;
+            } else {
+                original = this.replacementMap.originalForReplacement(internal).orElse(internal);
+            }
+            matcher.appendReplacement(originalPlan, Matcher.quoteReplacement(original));
+        }
+        matcher.appendTail(originalPlan);
+        return originalPlan.toString();
+    }
+
+    void closeStatement(final String sql) {
+        final PreparedStatement stmt = this.statementCache.remove(sql);
+        if (stmt != null) {
+            try {
+                stmt.close();
+            } catch (final SQLException e) {
+                LOG.debug("Unable to close statement: {}", e.getMessage());
+            }
+        }
+    }
+
+    void clearStatementCache() {
+        new ArrayList<>(this.statementCache.keySet()).forEach(this::closeStatement);
+    }
+
+    int getStatementCacheSize() {
+        return this.statementCache.size();
+    }
     
+    /**
+     * Replaces a <tt>*</tt> of the select list with the columns in the order
+     * of the entry descriptors. Derby adds a column with a changed type at
+     * the end of the table, so its own <tt>*</tt> doesn't keep the order of
+     * the source.
+     */
+    String expandSelectAll(final String sql) {
+        final Matcher selectAll = SELECT_ALL.matcher(sql);
+        if (!selectAll.find()) {
+            return sql;
+        }
+        final String columns = this.descriptors.stream()
+                .map(desc -> this.replacementMap.replacementForOriginal(desc.getName()).get())
+                .collect(joining(", "));
+        return selectAll.group(1) + columns + sql.substring(selectAll.end());
+    }
+
+    Pattern getOriginalsPattern() {
+        if (this.originalsPattern == null) {
+            final List<String> quoted = new ArrayList<>();
+            this.replacementMap.originals().forEachRemaining(original -> quoted.add(Pattern.quote(original)));
+            this.originalsPattern = Pattern.compile(quoted.isEmpty() ? "(?!)" : String.join("|", quoted));
+        }
+        return this.originalsPattern;
+    }
+
     Optional<String> extractFromPartFromSelectSql(final String sql) {
         final String[] parts = sql.split(" ");
         boolean fromWasLast = false;
@@ -295,7 +604,26 @@ final class DbTable implements Table {
     }
     
     String createRowNumberColumnPartForTableCreateStatement() {
-        return getRowNumberColumnName() + " INT NOT NULL PRIMARY KEY, ";
+        return getRowNumberColumnName() + " BIGINT NOT NULL, ";
+    }
+
+    /**
+     * Adds the primary key to the row number column if not already done.
+     * Maintaining the key during the bulk insert is expensive and the key is
+     * only required to update rows in {@link #changeColumnTypes(de.speexx.csv.table.EntryDescriptor...)}.
+     */
+    void ensureRowNumberKey(final Connection conn) throws SQLException {
+        assert nonNull(conn);
+        if (this.rowNumberKeyCreated) {
+            return;
+        }
+        final String addKeyStmtString = "ALTER TABLE " + getInternalTableName() + " ADD CONSTRAINT k" + shortUuid()
+                                            + " PRIMARY KEY (" + getRowNumberColumnName() + ")";
+        LOG.debug("ADD KEY STMT: {}", addKeyStmtString);
+        try (final Statement stmt = conn.createStatement()) {
+            stmt.execute(addKeyStmtString);
+        }
+        this.rowNumberKeyCreated = true;
     }
 
     String getRowNumberColumnName() {
@@ -412,12 +740,15 @@ final class DbTable implements Table {
         }
 
 
+        clearStatementCache();
         try {
             final Connection conn = getDbConnection(false);
+            ensureRowNumberKey(conn);
             createNewColumns(conn, changeDatas);
             transformAndCopy(conn, changeDatas);
             dropOldColumnAndRenameIntermediateColumn(conn, changeDatas);
             updateDescriptors(changeDatas);
+            changeDatas.forEach(changeData -> this.indexedColumns.remove(changeData.getSourceDescriptor().getName()));
             conn.commit();
         } catch (final SQLException ex) {
             throw new TableException(ex);
@@ -425,6 +756,55 @@ final class DbTable implements Table {
 
     }
 
+    @Override
+    public List<String> createIndexesFor(final String sql, final int expectedExecutions) {
+        Objects.requireNonNull(sql, "sql is null");
+        if (this.descriptors == null) {
+            throw new IllegalStateException("DbTable not correct initialized");
+        }
+
+        final List<String> columnNames = this.descriptors.stream().map(desc -> desc.getName()).collect(toList());
+        final List<String> indexed = new ArrayList<>();
+        try {
+            final Connection conn = getDbConnection(false);
+            for (final IndexAdvisor.Candidate candidate : IndexAdvisor.candidates(sql, columnNames)) {
+                final String columnName = candidate.getColumn();
+                if (this.indexedColumns.contains(columnName)) {
+                    continue;
+                }
+                if (!IndexAdvisor.isWorthwhile(candidate, this.rowCount, expectedExecutions)) {
+                    LOG.debug("Index not worthwhile for {} with {} rows", candidate, this.rowCount);
+                    continue;
+                }
+                final String realColumnName = this.replacementMap.replacementForOriginal(columnName)
+                        .orElseThrow(() -> new TableException("Unknown column with name: " + columnName));
+                final String createIndexStmtString = "CREATE INDEX x" + shortUuid() + " ON " + getInternalTableName() + " (" + realColumnName + ")";
+                LOG.debug("CREATE INDEX STMT: {}", createIndexStmtString);
+                try (final Statement stmt = conn.createStatement()) {
+                    stmt.execute(createIndexStmtString);
+                }
+                this.indexedColumns.add(columnName);
+                indexed.add(columnName);
+            }
+            if (!indexed.isEmpty()) {
+                updateStatistics(conn);
+                conn.commit();
+            }
+        } catch (final SQLException e) {
+            throw new TableException(e);
+        }
+        return indexed;
+    }
+
+    void updateStatistics(final Connection conn) throws SQLException {
+        assert nonNull(conn);
+        try (final CallableStatement stmt = conn.prepareCall(UPDATE_STATISTICS_STMT)) {
+            stmt.setString(1, DERBY_SCHEMA);
+            stmt.setString(2, getInternalTableName().toUpperCase(Locale.ENGLISH));
+            stmt.execute();
+        }
+    }
+
     void updateDescriptors(final List<ChangeColumnTypeData> changeDatas) {
         assert Objects.nonNull(changeDatas);
     
@@ -445,10 +825,15 @@ final class DbTable implements Table {
         LOG.debug("SELECT Stmt: {}", selectStmtString);
         LOG.debug("UPDATE Stmt: {}", updateStmtString);
 
-        try (final PreparedStatement selectStmt = getDbConnection(false).prepareStatement(selectStmtString);
+        // All columns are copied in one pass, so the event names all of them
+        final String columnNames = changeDatas.stream().map(data -> data.getSourceDescriptor().getName()).collect(joining(","));
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.COLUMN_CONVERSION, getLabel(), columnNames);
+             final PreparedStatement selectStmt = getDbConnection(false).prepareStatement(selectStmtString);
              final ResultSet result = selectStmt.executeQuery()) {
+            long rows = 0;
             while (result.next()) {
-                final int row = result.getInt(getRowNumberColumnName());
+                rows++;
+                final long row = result.getLong(getRowNumberColumnName());
 
                 try (final PreparedStatement updateStmt = getDbConnection(false).prepareStatement(updateStmtString)) {
                     final AtomicInteger statementIndex = new AtomicInteger();
@@ -475,12 +860,13 @@ final class DbTable implements Table {
                             throw new TransformationException(e);
                         }
                     });
-                    updateStmt.setInt(statementIndex.incrementAndGet(), row);
+                    updateStmt.setLong(statementIndex.incrementAndGet(), row);
                     updateStmt.executeUpdate();
                 } catch (final SQLException e) {
                     throw new TransformationException(e);
                 }
            }
+            event.setRows(rows);
         } catch (final SQLException e) {
             throw new TransformationException(e);
         }
@@ -519,10 +905,13 @@ final class DbTable implements Table {
 
         changeDatas.forEach(changeData -> {
             LOG.debug("Create new Column for {}", changeData);
+            final PipelineEvent event = PipelineEvents.begin(Stage.COLUMN_CONVERSION, getLabel(), changeData.getSourceDescriptor().getName());
             try (final Statement alterStmt = getDbConnection(false).createStatement()) {
                 alterStmt.executeUpdate(changeData.getNewColumnStatement());
             } catch (final SQLException e) {
                 throw new TableException(e);
+            } finally {
+                event.close();
             }
         });
         try {
@@ -537,6 +926,7 @@ final class DbTable implements Table {
         assert Objects.nonNull(changeDatas);
 
         changeDatas.forEach(changeData -> {
+            final PipelineEvent event = PipelineEvents.begin(Stage.COLUMN_CONVERSION, getLabel(), changeData.getSourceDescriptor().getName());
             try (final Statement dropStmt = getDbConnection(false).createStatement();
                  final Statement renameStmt = getDbConnection(false).createStatement()) {
                 LOG.debug("Drop old Column for {}", changeData);
@@ -545,6 +935,8 @@ final class DbTable implements Table {
                 renameStmt.executeUpdate(changeData.getRenameColumnStatement());
             } catch (final SQLException e) {
                 throw new TableException(e);
+            } finally {
+                event.close();
             }
         });
         try {
@@ -660,6 +1052,29 @@ final class DbTable implements Table {
         }
     }
     
+    @Override
+    public void close() {
+        clearStatementCache();
+        try {
+            if (this.connection != null && !this.connection.isClosed()) {
+                this.connection.close();
+            }
+        } catch (final SQLException e) {
+            LOG.debug("Unable to close connection: {}", e.getMessage());
+        }
+        this.connection = null;
+
+        final String dropUrl = DERBY_JDBC_DROP_URL_TEMPLATE.replace(REPLACABLE, getName());
+        try {
+            DriverManager.getConnection(dropUrl);
+        } catch (final SQLException e) {
+            // Derby signals a successful drop with an exception
+            if (!DERBY_DROPPED_DATABASE_STATE.equals(e.getSQLState())) {
+                throw new TableException(e);
+            }
+        }
+    }
+    
     @Override
     public String toString() {
         return "DbTable{" + "tableName=" + tableName + ", internalTableName=" + internalTableName + ", replacementMap=" + replacementMap + ", descriptors=" + descriptors + ", rowNumberColumnName=" + rowNumberColumnName + '}';
@@ -17,9 +17,12 @@
  */
 package de.speexx.csv.table;
 
+import de.speexx.csv.table.metric.SimpleRowDataMetric;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 final class EntryDescriptorSupport {
 
@@ -29,6 +32,49 @@ final class EntryDescriptorSupport {
         return newList;
     }
 
+    /**
+     * Detects the types of the string values of an appended batch. String
+     * columns keep all values and are skipped.
+     * @return the descriptors of the columns which must be widened to keep
+     *         the values of the batch. A column is widened to the type a
+     *         load of all rows would detect
+     * @see SimpleRowDataMetric#mostSignificantType(java.util.Collection)
+     */
+    static EntryDescriptor[] widenedDescriptors(final List<? extends EntryDescriptor> descriptors, final RowBatch batch) {
+        final List<EntryDescriptor> widened = new ArrayList<>();
+        for (int column = 0; column < descriptors.size(); column++) {
+            final EntryDescriptor descriptor = descriptors.get(column);
+            if (descriptor.getType() == EntryDescriptor.Type.STRING) {
+                continue;
+            }
+            final Set<EntryDescriptor.Type> types = EnumSet.of(descriptor.getType());
+            final ColumnVector vector = batch.getColumn(column);
+            for (int row = 0; row < batch.size(); row++) {
+                if (!vector.isNull(row)) {
+                    types.add(SimpleRowDataMetric.typeOf((String) vector.getValue(row)));
+                }
+            }
+            final EntryDescriptor.Type type = SimpleRowDataMetric.mostSignificantType(types);
+            if (type != descriptor.getType()) {
+                widened.add(EntryDescriptorBuilder.of().addName(descriptor.getName()).addType(type).build());
+            }
+        }
+        return widened.toArray(new EntryDescriptor[widened.size()]);
+    }
+
+    /**
+     * @throws TableException if the appended columns differ from the columns of the table
+     */
+    static void checkAppendedColumns(final List<? extends EntryDescriptor> descriptors, final List<EntryDescriptor> appended) {
+        final List<String> names = new ArrayList<>();
+        descriptors.forEach(descriptor -> names.add(descriptor.getName()));
+        final List<String> appendedNames = new ArrayList<>();
+        appended.forEach(descriptor -> appendedNames.add(descriptor.getName()));
+        if (!names.equals(appendedNames)) {
+            throw new TableException("Columns of the appended rows " + appendedNames + " differ from the columns " + names);
+        }
+    }
+
     public static final class TypeChangeableEntryDescriptor implements EntryDescriptor {
         
         private Type type;
@@ -0,0 +1,592 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.ChunkConverter.Chunk;
+import de.speexx.csv.table.query.Expression;
+import de.speexx.csv.table.query.ExpressionInterpreter;
+import de.speexx.csv.table.query.PredicateCompiler;
+import de.speexx.csv.table.query.Query;
+import de.speexx.csv.table.query.QueryParser;
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import de.speexx.csv.table.query.Values;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a query with <tt>ORDER BY</tt> directly on the rows of a source
+ * without loading a table. The supported queries are the queries of the
+ * {@link QueryParser} without aggregation and <tt>DISTINCT</tt> whose select
+ * list and sort keys are columns.
+ * <p>The selected rows are collected in runs. If the estimated size of a run
+ * exceeds the memory budget, the run is sorted with a parallel sort and
+ * written as a binary file to a temporary directory. The result merges the
+ * sorted runs while it is read, so only a row per run has to be in memory.
+ * The files are deleted at the end of the result or if the result is closed.
+ * If the first sort key is an <tt>INTEGER</tt>, <tt>DECIMAL</tt>,
+ * <tt>DATE</tt> or <tt>TIME</tt> column, the rows are compared on a primitive
+ * {@code long} of the key first.</p>
+ * <p>With a row limit the first rows up to the offset plus the limit are kept
+ * in a bounded heap and no run is written.</p>
+ * <p>The types of the used columns are assumed from the first rows like the
+ * {@link ParallelAggregation} does.</p>
+ */
+public final class ExternalSort implements SourceQuery {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    static final int CHUNK_SIZE = 4096;
+    /** The number of rows of the blocks the merged rows are read in. */
+    static final int BLOCK_SIZE = 1024;
+    /** The maximum offset plus limit kept in a heap instead of sorted runs. */
+    static final long TOP_N_MAX_ROWS = 1 << 20;
+    static final int ROW_BYTES = 64;
+    static final int VALUE_BYTES = 24;
+    static final int STRING_BYTES = 48;
+
+    private final long memoryBudget;
+    private boolean collectQueryPlans;
+    private String lastQueryPlan;
+
+    /**
+     * @param memoryBudget the bytes the rows of a run may use before the run
+     *                     is written to a temporary file. Must be &gt; 0
+     * @throws IllegalArgumentException if <em>memoryBudget</em> is &lt; 1
+     */
+    public ExternalSort(final long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("memory budget < 1: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public void setCollectQueryPlans(final boolean collect) {
+        this.collectQueryPlans = collect;
+        this.lastQueryPlan = null;
+    }
+
+    @Override
+    public Optional<String> getLastQueryPlan() {
+        return Optional.ofNullable(this.lastQueryPlan);
+    }
+
+    /**
+     * Reads all rows of the source and sorts them.
+     * @throws UnsupportedQueryException if the query has no <tt>ORDER BY</tt>,
+     *         is an aggregation, <tt>DISTINCT</tt> or selects expressions
+     * @throws TableException if a run can't be written or read
+     */
+    @Override
+    public Optional<RowReader> execute(final String sql, final RowReader source, final boolean detectTypes) {
+        Objects.requireNonNull(sql, "sql is null");
+        Objects.requireNonNull(source, "source is null");
+        this.lastQueryPlan = null;
+
+        final List<EntryDescriptor> sourceDescriptors = source.getEntryDescriptors();
+        final List<String> names = sourceDescriptors.stream().map(EntryDescriptor::getName).collect(Collectors.toList());
+        final Query query = QueryParser.parse(sql, names);
+        if (query.getOrderBy().isEmpty()) {
+            throw new UnsupportedQueryException("No order by");
+        }
+        if (query.isDistinct()) {
+            throw new UnsupportedQueryException("Distinct");
+        }
+        final int[] usedColumns = ChunkConverter.usedColumns(query, names);
+
+        final long start = System.currentTimeMillis();
+        final Iterator<RowBatch> batches = source.batches(CHUNK_SIZE);
+        final Chunk first = batches.hasNext() ? Chunk.of(batches.next(), usedColumns) : null;
+        final EntryDescriptor.Type[] assumedTypes = ChunkConverter.assumeTypes(first, usedColumns.length, detectTypes);
+        final List<EntryDescriptor> descriptors = ChunkConverter.assumedDescriptors(sourceDescriptors, usedColumns, assumedTypes);
+
+        final ColumnarQuery columnarQuery = new ColumnarQuery(query, new ColumnarResult(descriptors), this.collectQueryPlans);
+        columnarQuery.prepareExternalProjection();
+        final Execution execution = new Execution(query, columnarQuery, descriptors, usedColumns, detectTypes);
+        final Optional<RowReader> result = execution.run(first, batches);
+        if (result.isPresent()) {
+            columnarQuery.appendPlan("Scan", execution.rows, 0);
+            query.getWhere().ifPresent(where -> columnarQuery.appendPlan("Filter " + where, execution.selected, 0));
+            columnarQuery.appendPlan(execution.heap
+                                     ? "Top-N heap sort of " + execution.topN + " rows"
+                                     : "External sort in " + execution.runs + " runs"
+                                       + (execution.spilledRows > 0 ? ", " + execution.spilledRows + " rows spilled" : ""),
+                                     execution.selected, System.currentTimeMillis() - start);
+            this.lastQueryPlan = columnarQuery.getPlan(query.getFrom())
+                                              .map(plan -> plan.replaceFirst("^Columnar query", "External sort"))
+                                              .orElse(null);
+        }
+        return result;
+    }
+
+    /**
+     * @return a {@code long} with the order of the value of an
+     *         <tt>INTEGER</tt>, <tt>DECIMAL</tt>, <tt>DATE</tt> or <tt>TIME</tt> column
+     */
+    static long primitiveKey(final Object value) {
+        if (value instanceof Double) {
+            final double d = (Double) value;
+            final long bits = Double.doubleToLongBits(d == 0 ? 0.0 : d);
+            return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        return (Long) value;
+    }
+
+    static boolean hasPrimitiveKey(final EntryDescriptor.Type type) {
+        return type == EntryDescriptor.Type.INTEGER || type == EntryDescriptor.Type.DECIMAL
+               || type == EntryDescriptor.Type.DATE || type == EntryDescriptor.Type.TIME;
+    }
+
+    /**
+     * @return the value of a row stored in a run. <tt>DATE</tt> and
+     *         <tt>TIME</tt> values are stored as {@code Long} like in a vector
+     */
+    static Object storedValue(final ColumnVector vector, final int row) {
+        if (vector.isNull(row)) {
+            return null;
+        }
+        switch (vector.getType()) {
+            case INTEGER:
+            case DATE:
+            case TIME:
+                return vector.getLongs()[row];
+            default:
+                return vector.getValue(row);
+        }
+    }
+
+    static long estimatedBytes(final Object[] values) {
+        long bytes = ROW_BYTES + 8L * values.length;
+        for (final Object value : values) {
+            bytes += value instanceof String ? STRING_BYTES + 2L * ((String) value).length() : VALUE_BYTES;
+        }
+        return bytes;
+    }
+
+    /** @return the position of a column in the stored columns. Adds the column if not stored yet */
+    static int storedPosition(final List<Integer> stored, final int column) {
+        final int position = stored.indexOf(column);
+        if (position >= 0) {
+            return position;
+        }
+        stored.add(column);
+        return stored.size() - 1;
+    }
+
+    /** The stored values of a selected row. */
+    static final class SortRow {
+
+        final Object[] values;
+        final long key;
+        final long sequence;
+
+        SortRow(final Object[] values, final long key, final long sequence) {
+            this.values = values;
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+
+    /** The next row of a run. */
+    static final class Head {
+
+        final int run;
+        final SortRow row;
+
+        Head(final int run, final SortRow row) {
+            this.run = run;
+            this.row = row;
+        }
+    }
+
+    /** The state of one execution. */
+    final class Execution {
+
+        private final Query query;
+        private final int[] usedColumns;
+        private final EntryDescriptor[] usedDescriptors;
+        private final boolean detectTypes;
+        private final Expression where;
+        /** The positions of the stored columns in the used columns. */
+        private final int[] storedColumns;
+        private final List<EntryDescriptor> outputDescriptors = new ArrayList<>();
+        private final int[] outputPositions;
+        private final EntryDescriptor.Type[] outputTypes;
+        private final Comparator<SortRow> comparator;
+        /** The position of the first sort key if it is compared as primitive key, otherwise -1. */
+        private final int keyPosition;
+        /** The position of the first sort key if it is compared as primitive key, otherwise -1. */        private final List<Path> runFiles = new ArrayList<>();
+        private Path runDirectory;
+        final boolean heap;
+        final long topN;
+        long rows;
+        long selected;
+        int runs;
+        long spilledRows;
+
+        Execution(final Query query, final ColumnarQuery columnarQuery, final List<EntryDescriptor> descriptors,
+                  final int[] usedColumns, final boolean detectTypes) {
+            this.query = query;
+            this.usedColumns = usedColumns;
+            this.detectTypes = detectTypes;
+            this.usedDescriptors = new EntryDescriptor[usedColumns.length];
+            for (int i = 0; i < usedColumns.length; i++) {
+                this.usedDescriptors[i] = descriptors.get(usedColumns[i]);
+            }
+            this.where = query.getWhere().map(condition -> ExpressionInterpreter.bind(condition, columnarQuery::typeOf)).orElse(null);
+
+            final List<Integer> stored = new ArrayList<>();
+            final List<Integer> outputColumns = columnarQuery.getOutputColumns();
+            this.outputPositions = new int[outputColumns.size()];
+            this.outputTypes = new EntryDescriptor.Type[outputColumns.size()];
+            for (int i = 0; i < outputColumns.size(); i++) {
+                this.outputPositions[i] = storedPosition(stored, outputColumns.get(i));
+                this.outputTypes[i] = descriptors.get(outputColumns.get(i)).getType();
+                this.outputDescriptors.add(EntryDescriptorBuilder.of().addName(columnarQuery.getOutputNames().get(i))
+                                                                      .addType(this.outputTypes[i])
+                                                                      .build());
+            }
+            final List<Integer> sortColumns = columnarQuery.getSortColumns();
+            final int[] sortPositions = new int[sortColumns.size()];
+            final boolean[] descending = new boolean[sortColumns.size()];
+            for (int i = 0; i < sortPositions.length; i++) {
+                sortPositions[i] = storedPosition(stored, sortColumns.get(i));
+                descending[i] = columnarQuery.getSortDescending().get(i);
+            }
+            this.storedColumns = stored.stream().mapToInt(column -> Arrays.binarySearch(usedColumns, column)).toArray();
+            final boolean primitiveKey = hasPrimitiveKey(descriptors.get(sortColumns.get(0)).getType());
+            this.comparator = (first, second) -> {
+                for (int i = 0; i < sortPositions.length; i++) {
+                    final Object firstValue = first.values[sortPositions[i]];
+                    final Object secondValue = second.values[sortPositions[i]];
+                    final int result;
+                    if (firstValue == null || secondValue == null) {
+                        // Like Derby nulls are the highest values
+                        result = firstValue == secondValue ? 0 : (firstValue == null ? 1 : -1);
+                    } else if (i == 0 && primitiveKey) {
+                        result = Long.compare(first.key, second.key);
+                    } else {
+                        result = Values.compare(firstValue, secondValue);
+                    }
+                    if (result != 0) {
+                        return descending[i] ? -result : result;
+                    }
+                }
+                return 0;
+            };
+            this.keyPosition = primitiveKey ? sortPositions[0] : -1;
+
+            final long limit = query.getLimit();
+            this.topN = limit < 0 ? -1 : query.getOffset() + limit;
+            this.heap = limit >= 0 && this.topN <= TOP_N_MAX_ROWS;
+        }
+
+        SortRow sortRow(final Object[] values, final long sequence) {
+            final Object key = this.keyPosition < 0 ? null : values[this.keyPosition];
+            return new SortRow(values, key == null ? 0 : primitiveKey(key), sequence);
+        }
+
+        /** @return the sorted rows or empty if a detected type differs from the assumed type */
+        Optional<RowReader> run(final Chunk first, final Iterator<RowBatch> batches) {
+            final ChunkConverter converter = new ChunkConverter(this.usedDescriptors, this.detectTypes, CHUNK_SIZE);
+            final ColumnVector[] vectors = converter.getVectors();
+            final IntPredicate predicate = this.where == null ? null : PredicateCompiler.compile(this.where, converter.getVectorsByName()::get);
+            // The heap has the greatest of the kept rows on top. Later rows are greater than earlier rows with the same values
+            final Comparator<SortRow> heapOrder = this.comparator.thenComparingLong(row -> row.sequence).reversed();
+            final PriorityQueue<SortRow> topRows = this.heap ? new PriorityQueue<>(heapOrder) : null;
+            List<SortRow> run = new ArrayList<>();
+            long runBytes = 0;
+            boolean handedOver = false;
+            try {
+                Chunk chunk = first;
+                while (chunk != null) {
+                    if (!converter.convert(chunk)) {
+                        return Optional.empty();
+                    }
+                    this.rows += chunk.size;
+                    for (int row = 0; row < chunk.size; row++) {
+                        if (predicate != null && !predicate.test(row)) {
+                            continue;
+                        }
+                        final Object[] values = new Object[this.storedColumns.length];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = storedValue(vectors[this.storedColumns[i]], row);
+                        }
+                        final SortRow sortRow = sortRow(values, this.selected++);
+                        if (topRows != null) {
+                            topRows.add(sortRow);
+                            if (topRows.size() > this.topN) {
+                                topRows.poll();
+                            }
+                        } else {
+                            run.add(sortRow);
+                            runBytes += estimatedBytes(values);
+                            if (runBytes > memoryBudget) {
+                                spill(run);
+                                run = new ArrayList<>();
+                                runBytes = 0;
+                            }
+                        }
+                    }
+                    chunk = batches.hasNext() ? Chunk.of(batches.next(), this.usedColumns) : null;
+                }
+                if (!ChunkConverter.detectedTypesMatch(Collections.singletonList(converter), this.usedDescriptors)) {
+                    return Optional.empty();
+                }
+
+                final SortRow[] last = topRows != null ? sorted(topRows, this.comparator.thenComparingLong(row -> row.sequence))
+                                                       : sorted(run, this.comparator);
+                final List<Iterator<SortRow>> sources = new ArrayList<>();
+                if (last.length > 0) {
+                    sources.add(Arrays.asList(last).iterator());
+                    this.runs++;
+                }
+                for (final Path file : this.runFiles) {
+                    sources.add(new RunReader(file, this.storedColumns.length));
+                }
+                handedOver = true;
+                return Optional.of(new MergedRows(sources));
+            } catch (final IOException e) {
+                throw new TableException("Unable to sort the rows", e);
+            } finally {
+                if (!handedOver) {
+                    deleteRunFiles();
+                }
+            }
+        }
+
+        /** Sorts the rows with a stable parallel sort. */
+        SortRow[] sorted(final Collection<SortRow> rows, final Comparator<SortRow> order) {
+            final SortRow[] sorted = rows.toArray(new SortRow[rows.size()]);
+            Arrays.parallelSort(sorted, order);
+            return sorted;
+        }
+
+        /** Sorts the run and writes it to a temporary file. */
+        void spill(final List<SortRow> run) throws IOException {
+            final SortRow[] sorted = sorted(run, this.comparator);
+            if (this.runDirectory == null) {
+                this.runDirectory = Files.createTempDirectory("scq-sort");
+            }
+            final Path file = Files.createTempFile(this.runDirectory, "run-", ".bin");
+            this.runFiles.add(file);
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+                out.writeInt(sorted.length);
+                for (final SortRow row : sorted) {
+                    for (final Object value : row.values) {
+                        GroupTable.writeValue(out, value);
+                    }
+                }
+            }
+            this.runs++;
+            this.spilledRows += sorted.length;
+        }
+
+        void deleteRunFiles() {
+            try {
+                for (final Path file : this.runFiles) {
+                    Files.deleteIfExists(file);
+                }
+                if (this.runDirectory != null) {
+                    Files.deleteIfExists(this.runDirectory);
+                }
+            } catch (final IOException e) {
+                LOG.warn("Unable to delete sort runs in {}: {}", this.runDirectory, e.getMessage());
+            }
+        }
+
+        /** Reads the rows of a run file. */
+        final class RunReader implements Iterator<SortRow>, AutoCloseable {
+
+            private final DataInputStream in;
+            private final int columns;
+            private int remaining;
+
+            RunReader(final Path file, final int columns) throws IOException {
+                this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+                this.columns = columns;
+                this.remaining = this.in.readInt();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.remaining > 0;
+            }
+
+            @Override
+            public SortRow next() {
+                if (this.remaining <= 0) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    final Object[] values = new Object[this.columns];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = GroupTable.readValue(this.in);
+                    }
+                    if (--this.remaining == 0) {
+                        close();
+                    }
+                    return sortRow(values, 0);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                this.in.close();
+            }
+        }
+
+        /** The rows of the sorted runs merged in blocks. Applies the offset and the limit. */
+        final class MergedRows implements RowReader, Iterator<Row> {
+
+            /** The runs with their next row. Equal rows are taken from the earlier run first. */
+            private final PriorityQueue<Head> heads;
+            private final List<Iterator<SortRow>> sources;
+            private Iterator<Row> block = Collections.emptyIterator();
+            private long skip;
+            private long remaining;
+
+            MergedRows(final List<Iterator<SortRow>> sources) {
+                this.sources = sources;
+                this.heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                        Comparator.<Head, SortRow>comparing(head -> head.row, comparator).thenComparingInt(head -> head.run));
+                for (int i = 0; i < sources.size(); i++) {
+                    if (sources.get(i).hasNext()) {
+                        this.heads.add(new Head(i, sources.get(i).next()));
+                    }
+                }
+                this.skip = query.getOffset();
+                this.remaining = query.getLimit() < 0 ? Long.MAX_VALUE : query.getLimit();
+            }
+
+            @Override
+            public List<EntryDescriptor> getEntryDescriptors() {
+                return Collections.unmodifiableList(outputDescriptors);
+            }
+
+            @Override
+            public Iterator<Row> iterator() {
+                return this;
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (!this.block.hasNext()) {
+                    this.block = nextBlock().iterator();
+                }
+                return this.block.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return this.block.next();
+            }
+
+            ColumnarResult nextBlock() {
+                final ColumnarResult result = new ColumnarResult(outputDescriptors);
+                while (result.size() < BLOCK_SIZE && this.remaining > 0) {
+                    final SortRow row = nextRow();
+                    if (row == null) {
+                        break;
+                    }
+                    if (this.skip > 0) {
+                        this.skip--;
+                        continue;
+                    }
+                    for (int i = 0; i < outputPositions.length; i++) {
+                        result.getColumn(i).appendValue(outputValue(row.values[outputPositions[i]], outputTypes[i]));
+                    }
+                    this.remaining--;
+                }
+                if (this.remaining == 0 || this.heads.isEmpty()) {
+                    close();
+                }
+                return result;
+            }
+
+            SortRow nextRow() {
+                final Head head = this.heads.poll();
+                if (head == null) {
+                    return null;
+                }
+                final Iterator<SortRow> source = this.sources.get(head.run);
+                if (source.hasNext()) {
+                    this.heads.add(new Head(head.run, source.next()));
+                }
+                return head.row;
+            }
+
+            Object outputValue(final Object value, final EntryDescriptor.Type type) {
+                if (value == null) {
+                    return null;
+                }
+                switch (type) {
+                    case DATE:
+                        return LocalDate.ofEpochDay((Long) value);
+                    case TIME:
+                        return LocalTime.ofNanoOfDay((Long) value);
+                    default:
+                        return value;
+                }
+            }
+
+            @Override
+            public void close() {
+                this.heads.clear();
+                for (final Iterator<SortRow> source : this.sources) {
+                    if (source instanceof RunReader) {
+                        try {
+                            ((RunReader) source).close();
+                        } catch (final IOException e) {
+                            LOG.warn("Unable to close sort run: {}", e.getMessage());
+                        }
+                    }
+                }
+                deleteRunFiles();
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.Expression;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The groups of one partition of a {@link ParallelAggregation} with the
+ * partial results of the aggregates. A single group column of type integer,
+ * decimal, date or time is looked up by its primitive value in an open
+ * addressing map. Other group columns are looked up by their boxed values.
+ * <p>The key of a group is the boxed value of a single group column or the
+ * list of the values of several group columns. The key of an aggregation
+ * without group columns is the empty list.</p>
+ */
+final class GroupTable {
+
+    /** Estimated bytes of a group beside the arrays of the aggregates. */
+    static final int GROUP_BYTES = 96;
+    /** Estimated bytes of a value of a distinct aggregate. */
+    static final int DISTINCT_VALUE_BYTES = 48;
+
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte STRING = 3;
+    private static final byte DATE = 4;
+    private static final byte TIME = 5;
+    private static final byte DATETIME = 6;
+
+    private final EntryDescriptor.Type[] keyTypes;
+    private final List<Expression.Aggregate> aggregates;
+    private final EntryDescriptor.Type[] argumentTypes;
+    private final boolean primitiveKey;
+    private final ColumnarQuery.LongIntMap groupOfValue;
+    private final Map<Object, Integer> groupOfKey;
+    private int nullGroup = -1;
+    private Object[] keys = new Object[16];
+    private final AggregateState[] states;
+    private int size;
+
+    /**
+     * @param keyTypes the types of the group columns
+     * @param aggregates the aggregates
+     * @param argumentTypes the types of the aggregated columns. {@code null} for <tt>COUNT(*)</tt>
+     */
+    GroupTable(final EntryDescriptor.Type[] keyTypes, final List<Expression.Aggregate> aggregates, final EntryDescriptor.Type[] argumentTypes) {
+        this.keyTypes = keyTypes;
+        this.aggregates = aggregates;
+        this.argumentTypes = argumentTypes;
+        this.primitiveKey = isPrimitiveKey(keyTypes);
+        this.groupOfValue = this.primitiveKey ? new ColumnarQuery.LongIntMap() : null;
+        this.groupOfKey = this.primitiveKey ? null : new HashMap<>();
+        this.states = new AggregateState[aggregates.size()];
+        for (int i = 0; i < this.states.length; i++) {
+            this.states[i] = AggregateState.of(aggregates.get(i), argumentTypes[i]);
+            this.states[i].ensureCapacity(this.keys.length);
+        }
+    }
+
+    /** @return a new empty table for the same group columns and aggregates */
+    GroupTable newEmpty() {
+        return new GroupTable(this.keyTypes, this.aggregates, this.argumentTypes);
+    }
+
+    static boolean isPrimitiveKey(final EntryDescriptor.Type[] keyTypes) {
+        if (keyTypes.length != 1) {
+            return false;
+        }
+        switch (keyTypes[0]) {
+            case INTEGER:
+            case DECIMAL:
+            case DATE:
+            case TIME:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    boolean hasPrimitiveKey() {
+        return this.primitiveKey;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    Object getKey(final int group) {
+        return this.keys[group];
+    }
+
+    AggregateState getState(final int aggregate) {
+        return this.states[aggregate];
+    }
+
+    long estimatedBytes() {
+        long bytes = (long) this.size * (GROUP_BYTES + 16 * this.states.length);
+        for (final AggregateState state : this.states) {
+            bytes += state.estimatedValueBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the primitive value of a row of a single integer, decimal, date
+     *         or time group column. {@code -0.0} is the same group as {@code 0.0}
+     */
+    static long primitiveValue(final ColumnVector key, final int row) {
+        if (key.getType() == EntryDescriptor.Type.DECIMAL) {
+            return Double.doubleToLongBits(key.getDoubles()[row] + 0.0);
+        }
+        return key.getLongs()[row];
+    }
+
+    /** @return the primitive value of the boxed key of a primitive key column */
+    static long primitiveValue(final Object key) {
+        if (key instanceof Double) {
+            return Double.doubleToLongBits((Double) key + 0.0);
+        }
+        if (key instanceof LocalDate) {
+            return ((LocalDate) key).toEpochDay();
+        }
+        if (key instanceof LocalTime) {
+            return ((LocalTime) key).toNanoOfDay();
+        }
+        return (Long) key;
+    }
+
+    /**
+     * @param value the primitive value of the group column
+     * @param key the column to get the boxed key from for a new group
+     * @return the group of the value. A new group if the value is new
+     */
+    int groupOfPrimitive(final long value, final ColumnVector key, final int row) {
+        final int group = this.groupOfValue.get(value);
+        if (group >= 0) {
+            return group;
+        }
+        final int added = addGroup(ColumnarQuery.normalized(key.getValue(row)));
+        this.groupOfValue.put(value, added);
+        return added;
+    }
+
+    /** @return the group of a null value of a single primitive group column */
+    int nullGroup() {
+        if (this.nullGroup < 0) {
+            this.nullGroup = addGroup(null);
+        }
+        return this.nullGroup;
+    }
+
+    /** @return the group of the key. A new group if the key is new */
+    int groupOf(final Object key) {
+        if (this.primitiveKey) {
+            if (key == null) {
+                return nullGroup();
+            }
+            final long value = primitiveValue(key);
+            final int group = this.groupOfValue.get(value);
+            if (group >= 0) {
+                return group;
+            }
+            final int added = addGroup(key);
+            this.groupOfValue.put(value, added);
+            return added;
+        }
+        final Integer group = this.groupOfKey.get(key);
+        if (group != null) {
+            return group;
+        }
+        final int added = addGroup(key);
+        this.groupOfKey.put(key, added);
+        return added;
+    }
+
+    int addGroup(final Object key) {
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            for (final AggregateState state : this.states) {
+                state.ensureCapacity(this.keys.length);
+            }
+        }
+        this.keys[this.size] = key;
+        return this.size++;
+    }
+
+    /** Merges the groups of another table of the same group columns and aggregates. */
+    void merge(final GroupTable other) {
+        for (int otherGroup = 0; otherGroup < other.size; otherGroup++) {
+            final int group = groupOf(other.keys[otherGroup]);
+            for (int i = 0; i < this.states.length; i++) {
+                this.states[i].merge(group, other.states[i], otherGroup);
+            }
+        }
+    }
+
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(this.size);
+        for (int group = 0; group < this.size; group++) {
+            writeKey(out, this.keys[group]);
+            for (final AggregateState state : this.states) {
+                state.write(out, group);
+            }
+        }
+    }
+
+    /** Merges the groups written by {@link #write(DataOutput)}. */
+    void readAndMerge(final DataInput in) throws IOException {
+        final int groups = in.readInt();
+        for (int i = 0; i < groups; i++) {
+            final int group = groupOf(readKey(in));
+            for (final AggregateState state : this.states) {
+                state.readAndMerge(in, group);
+            }
+        }
+    }
+
+    void writeKey(final DataOutput out, final Object key) throws IOException {
+        if (this.keyTypes.length == 1) {
+            writeValue(out, key);
+            return;
+        }
+        final List<?> values = (List<?>) key;
+        for (final Object value : values) {
+            writeValue(out, value);
+        }
+    }
+
+    Object readKey(final DataInput in) throws IOException {
+        if (this.keyTypes.length == 1) {
+            return readValue(in);
+        }
+        if (this.keyTypes.length == 0) {
+            return Collections.emptyList();
+        }
+        final List<Object> values = new ArrayList<>(this.keyTypes.length);
+        for (int i = 0; i < this.keyTypes.length; i++) {
+            values.add(readValue(in));
+        }
+        return values;
+    }
+
+    static void writeValue(final DataOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Long) {
+            out.writeByte(INTEGER);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DECIMAL);
+            out.writeDouble((Double) value);
+        } else if (value instanceof LocalDate) {
+            out.writeByte(DATE);
+            out.writeLong(((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(TIME);
+            out.writeLong(((LocalTime) value).toNanoOfDay());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(DATETIME);
+            out.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+            out.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+        } else {
+            final byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static Object readValue(final DataInput in) throws IOException {
+        final byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return in.readLong();
+            case DECIMAL:
+                return in.readDouble();
+            case DATE:
+                return LocalDate.ofEpochDay(in.readLong());
+            case TIME:
+                return LocalTime.ofNanoOfDay(in.readLong());
+            case DATETIME:
+                return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+            case STRING:
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A CSV file growing by appended rows, e.g. a log file. The file is read up
+ * to its last complete record, the last line break outside of a quoted value.
+ * So a row written while the file is read is read completely with the next
+ * appended rows. The byte offset after the last read record is kept and
+ * {@link #readAppended()} parses only the bytes appended since then.
+ * <p>The records are found on the bytes of the file, so the encoding must
+ * encode the quote and the line break as single ASCII bytes, like UTF-8 or
+ * ISO-8859-1 do.</p>
+ * @see TableBuilder#addSource(GrowingCsvFile)
+ */
+public final class GrowingCsvFile {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Charset charset;
+    private List<String> header;
+    private long offset;
+    private long appendedEnd;
+    private Object fileKey;
+
+    /**
+     * @param path the UTF-8 encoded CSV file with header line
+     * @throws NullPointerException if <em>path</em> is {@code null}
+     */
+    public GrowingCsvFile(final Path path) {
+        this(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path the CSV file with header line
+     * @param charset the encoding of the file
+     * @throws NullPointerException if a parameter is {@code null}
+     */
+    public GrowingCsvFile(final Path path, final Charset charset) {
+        this.path = Objects.requireNonNull(path, "path is null");
+        this.charset = Objects.requireNonNull(charset, "charset is null");
+    }
+
+    /**
+     * Reads the file from the start up to the last complete record. The
+     * following {@link #readAppended()} starts after the read records.
+     * @return the reader of the rows. The caller must close the reader
+     * @throws TableException if the file has no complete header line
+     * @throws IOException if reading the file fails
+     */
+    public RowReader read() throws IOException {
+        final Object key = fileKey();
+        final long end = lastRecordEnd(0);
+        if (end == 0) {
+            throw new TableException("No complete header line in " + this.path);
+        }
+        final CsvReader reader = new CsvReader(readerOf(0, end), null);
+        this.header = reader.getEntryDescriptors().stream().map(EntryDescriptor::getName).collect(Collectors.toList());
+        this.offset = end;
+        this.appendedEnd = end;
+        this.fileKey = key;
+        return reader;
+    }
+
+    /**
+     * Reads the rows appended since the last read up to the last complete
+     * record. The offset isn't moved until the rows are
+     * {@linkplain #commitAppended() committed}, so the rows are read again if
+     * processing them fails.
+     * @return the reader of the appended rows or empty if there are no new
+     *         complete records. The caller must close the reader
+     * @throws IllegalStateException if the file wasn't {@linkplain #read() read} before
+     * @throws TableException if the file was truncated or replaced
+     * @throws IOException if reading the file fails
+     */
+    public Optional<RowReader> readAppended() throws IOException {
+        if (this.header == null) {
+            throw new IllegalStateException("File not read: " + this.path);
+        }
+        if (isReplaced()) {
+            throw new TableException("File " + this.path + " was truncated or replaced");
+        }
+        final long end = lastRecordEnd(this.offset);
+        if (end <= this.offset) {
+            return Optional.empty();
+        }
+        final RowReader reader = new CsvReader(readerOf(this.offset, end), this.header);
+        this.appendedEnd = end;
+        return Optional.of(reader);
+    }
+
+    /** Moves the offset behind the rows of the last {@link #readAppended()}. */
+    public void commitAppended() {
+        this.offset = this.appendedEnd;
+    }
+
+    /**
+     * @return {@code true} if the file is shorter than the read bytes or
+     *         another file than the read file
+     * @throws IOException if the file isn't accessible
+     */
+    public boolean isReplaced() throws IOException {
+        return Files.size(this.path) < this.offset || !Objects.equals(this.fileKey, fileKey());
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /** @return the byte offset after the last read record */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    Object fileKey() throws IOException {
+        return Files.readAttributes(this.path, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * @param from the offset of the start of a record
+     * @return the offset after the last line break outside of a quoted value
+     *         of the file starting at <em>from</em> or <em>from</em>
+     */
+    long lastRecordEnd(final long from) throws IOException {
+        try (final FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            final long size = channel.size();
+            long recordEnd = from;
+            boolean quoted = false;
+            long position = from;
+            while (position < size) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, size - position));
+                final int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    final byte b = buffer.get(i);
+                    // An escaped quote "" toggles twice
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == '\n' && !quoted) {
+                        recordEnd = position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            return recordEnd;
+        }
+    }
+
+    Reader readerOf(final long start, final long end) throws IOException {
+        final FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ);
+        channel.position(start);
+        return new ChannelReader(channel, this.charset, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return "GrowingCsvFile{" + "path=" + path + ", offset=" + offset + '}';
+    }
+}
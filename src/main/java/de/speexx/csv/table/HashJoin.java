@@ -0,0 +1,464 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.metric.SimpleRowDataMetric;
+import de.speexx.csv.table.transformer.TypeTransformer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Joins the rows of two sources with string values on the equality of a
+ * column of each source. The rows of the build source are read into a hash
+ * table on their key. The rows of the probe source are streamed and looked up
+ * in the hash table, so only the build source has to fit in memory. The
+ * build source is read by a parallel stream of its {@link RowReader#spliterator()},
+ * e.g. each file of a glob source in its own thread, in the order of the source.
+ * <p>The type of the build key is detected on all build rows like a loaded
+ * table does. <tt>INTEGER</tt>, <tt>DECIMAL</tt>, <tt>DATE</tt> and
+ * <tt>TIME</tt> keys are hashed as primitive {@code long}s, other keys by
+ * their value. The probe values are converted to the type of the build key,
+ * so e.g. <tt>7.0</tt> matches <tt>7</tt>. Values which can't be converted
+ * don't match. A build key with a string value is a string column, so all
+ * keys are compared as strings. A Bloom filter of the build keys is tested in the probe scan
+ * before the hash table.</p>
+ * <p>The joined rows contain the columns of the left source followed by the
+ * columns of the right source. A right column with the name of a left column
+ * gets the suffix <tt>_2</tt>. All values are strings. The missing values of
+ * a left join are {@code null}. The rows are only read once.</p>
+ */
+public final class HashJoin implements RowReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    static final int BATCH_SIZE = 4096;
+    static final String DUPLICATE_SUFFIX = "_2";
+
+    private static final TypeTransformer<?, ?> TO_DECIMAL = TypeTransformer.of(EntryDescriptor.Type.STRING, EntryDescriptor.Type.DECIMAL);
+
+    private final RowReader left;
+    private final RowReader right;
+    private final boolean leftJoin;
+    private final boolean buildLeft;
+    private final boolean detectTypes;
+    private final int leftKey;
+    private final int rightKey;
+    private final List<EntryDescriptor> descriptors = new ArrayList<>();
+
+    private EntryDescriptor.Type keyType;
+    private List<String[]> buildRows = Collections.emptyList();
+    /** The next build row with the same key or -1. */
+    private int[] nextRow;
+    private ColumnarQuery.LongIntMap primitiveHeads;
+    private Map<Object, Integer> objectHeads;
+    private BloomFilter bloomFilter;
+    private boolean[] matched;
+    private boolean read;
+
+    private long probeRows;
+    private long droppedByBloomFilter;
+    private long joinedRows;
+
+    /**
+     * @param left the left source of the join
+     * @param right the right source of the join
+     * @param firstColumn a column of the join condition. Either a column of
+     *                    the left or the right source
+     * @param secondColumn the other column of the join condition
+     * @param leftJoin {@code true} for a left outer join, {@code false} for an inner join
+     * @param buildLeft {@code true} to build the hash table on the left source,
+     *                  {@code false} to build on the right source. Should be the smaller source
+     * @param detectTypes {@code false} to compare the keys as strings
+     * @throws TableException if the columns are not a column of each source
+     */
+    public HashJoin(final RowReader left, final RowReader right, final String firstColumn, final String secondColumn,
+                    final boolean leftJoin, final boolean buildLeft, final boolean detectTypes) {
+        this.left = Objects.requireNonNull(left, "left is null");
+        this.right = Objects.requireNonNull(right, "right is null");
+        Objects.requireNonNull(firstColumn, "first column is null");
+        Objects.requireNonNull(secondColumn, "second column is null");
+        this.leftJoin = leftJoin;
+        this.buildLeft = buildLeft;
+        this.detectTypes = detectTypes;
+
+        final List<EntryDescriptor> leftDescriptors = left.getEntryDescriptors();
+        final List<EntryDescriptor> rightDescriptors = right.getEntryDescriptors();
+        if (indexOf(leftDescriptors, firstColumn) >= 0 && indexOf(rightDescriptors, secondColumn) >= 0) {
+            this.leftKey = indexOf(leftDescriptors, firstColumn);
+            this.rightKey = indexOf(rightDescriptors, secondColumn);
+        } else if (indexOf(leftDescriptors, secondColumn) >= 0 && indexOf(rightDescriptors, firstColumn) >= 0) {
+            this.leftKey = indexOf(leftDescriptors, secondColumn);
+            this.rightKey = indexOf(rightDescriptors, firstColumn);
+        } else {
+            throw new TableException("Join condition " + firstColumn + " = " + secondColumn + " doesn't compare a column of each source");
+        }
+
+        final Set<String> names = new HashSet<>();
+        for (final EntryDescriptor descriptor : leftDescriptors) {
+            names.add(descriptor.getName());
+            this.descriptors.add(EntryDescriptorBuilder.of().addName(descriptor.getName()).addType(EntryDescriptor.Type.STRING).build());
+        }
+        for (final EntryDescriptor descriptor : rightDescriptors) {
+            final String name = names.contains(descriptor.getName()) ? descriptor.getName() + DUPLICATE_SUFFIX : descriptor.getName();
+            this.descriptors.add(EntryDescriptorBuilder.of().addName(name).addType(EntryDescriptor.Type.STRING).build());
+        }
+    }
+
+    static int indexOf(final List<EntryDescriptor> descriptors, final String name) {
+        for (int i = 0; i < descriptors.size(); i++) {
+            if (descriptors.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public List<EntryDescriptor> getEntryDescriptors() {
+        return Collections.unmodifiableList(this.descriptors);
+    }
+
+    /** The batch instance is reused for the next batch. */
+    @Override
+    public Iterator<RowBatch> batches(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size < 1: " + size);
+        }
+        final JoinedBatches batches = new JoinedBatches();
+        final RowBatch batch = new RowBatch(this.descriptors, size);
+        return new Iterator<RowBatch>() {
+            @Override
+            public boolean hasNext() {
+                return batches.hasNext();
+            }
+
+            @Override
+            public RowBatch next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                batches.fill(batch);
+                return batch;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        final JoinedBatches batches = new JoinedBatches();
+        return new Iterator<Row>() {
+            private RowBatch batch;
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                if ((this.batch == null || this.row >= this.batch.size()) && batches.hasNext()) {
+                    this.batch = new RowBatch(HashJoin.this.descriptors, BATCH_SIZE);
+                    batches.fill(this.batch);
+                    this.row = 0;
+                }
+                return this.batch != null && this.row < this.batch.size();
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return this.batch.getRow(this.row++);
+            }
+        };
+    }
+
+    /** Reads the build source into the hash table. */
+    void build() {
+        final RowReader build = this.buildLeft ? this.left : this.right;
+        final int key = this.buildLeft ? this.leftKey : this.rightKey;
+        final int columns = build.getEntryDescriptors().size();
+        // Read and classified by parallel streams, e.g. the files of a glob source are parsed in their own threads
+        this.buildRows = StreamSupport.stream(build.spliterator(), true)
+                                      .map(row -> valuesOf(row, columns))
+                                      .collect(Collectors.toList());
+        final Set<EntryDescriptor.Type> keyTypes = !this.detectTypes ? EnumSet.noneOf(EntryDescriptor.Type.class)
+                : this.buildRows.parallelStream()
+                                .map(values -> values[key])
+                                .filter(Objects::nonNull)
+                                .map(SimpleRowDataMetric::typeOf)
+                                .collect(Collectors.toCollection(() -> EnumSet.noneOf(EntryDescriptor.Type.class)));
+        this.keyType = keyTypes.isEmpty() ? EntryDescriptor.Type.STRING : SimpleRowDataMetric.mostSignificantType(keyTypes);
+
+        final int size = this.buildRows.size();
+        this.nextRow = new int[size];
+        this.matched = new boolean[size];
+        this.bloomFilter = new BloomFilter(size);
+        final ColumnVector keys = new ColumnVector(EntryDescriptorBuilder.of().addName("key").addType(this.keyType).build(), 1);
+        final TypeTransformer<?, ?> transformer = TypeTransformer.of(EntryDescriptor.Type.STRING, this.keyType);
+        if (isPrimitive(this.keyType)) {
+            this.primitiveHeads = new ColumnarQuery.LongIntMap();
+        } else {
+            this.objectHeads = new HashMap<>();
+        }
+        // Added from the last row on, so the rows of a key are chained in the order of the source
+        for (int row = size - 1; row >= 0; row--) {
+            this.nextRow[row] = -1;
+            final String value = this.buildRows.get(row)[key];
+            if (value == null || !convertKey(keys, 0, value, transformer)) {
+                continue;
+            }
+            if (this.primitiveHeads != null) {
+                final long primitive = GroupTable.primitiveValue(keys, 0);
+                this.nextRow[row] = this.primitiveHeads.get(primitive);
+                this.primitiveHeads.put(primitive, row);
+                this.bloomFilter.add(primitive);
+            } else {
+                final Object boxed = keys.getValue(0);
+                final Integer next = this.objectHeads.put(boxed, row);
+                this.nextRow[row] = next == null ? -1 : next;
+                this.bloomFilter.add(boxed.hashCode());
+            }
+        }
+    }
+
+    static String[] valuesOf(final Row row, final int columns) {
+        final String[] values = new String[columns];
+        int i = 0;
+        for (final Entry entry : row) {
+            if (i == columns) {
+                break;
+            }
+            values[i++] = (String) entry.getValue();
+        }
+        return values;
+    }
+
+    /**
+     * Converts a key value to the type of the build key. A decimal with an
+     * integral value is converted to an integer key.
+     * @return {@code false} if the value can't be converted or is no valid value
+     */
+    @SuppressWarnings("unchecked")
+    static boolean convertKey(final ColumnVector keys, final int row, final String value, final TypeTransformer<?, ?> transformer) {
+        if (ChunkConverter.setValue(keys, row, value, transformer)) {
+            return !keys.isNull(row);
+        }
+        if (keys.getType() != EntryDescriptor.Type.INTEGER) {
+            return false;
+        }
+        try {
+            final Object decimal = ColumnarTable.validValue(((TypeTransformer<String, Object>) TO_DECIMAL).transform(value));
+            if (decimal == null) {
+                return false;
+            }
+            final double d = (Double) decimal;
+            if (d != Math.rint(d) || d < Long.MIN_VALUE || d >= Long.MAX_VALUE) {
+                return false;
+            }
+            keys.setLong(row, (long) d);
+            return true;
+        } catch (final RuntimeException e) {
+            return false;
+        }
+    }
+
+    static boolean isPrimitive(final EntryDescriptor.Type type) {
+        return type == EntryDescriptor.Type.INTEGER || type == EntryDescriptor.Type.DECIMAL
+               || type == EntryDescriptor.Type.DATE || type == EntryDescriptor.Type.TIME;
+    }
+
+    @Override
+    public void close() throws Exception {
+        LOG.debug("{}", this);
+        try {
+            this.left.close();
+        } finally {
+            this.right.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HashJoin{" + (this.leftJoin ? "left" : "inner") + " join, build on " + (this.buildLeft ? "left" : "right")
+               + " source with " + this.buildRows.size() + " rows and " + this.keyType + " key, " + this.probeRows + " probe rows, "
+               + this.droppedByBloomFilter + " dropped by Bloom filter, " + this.joinedRows + " joined rows}";
+    }
+
+    /** Probes the rows of the probe source and fills the joined rows into batches. */
+    final class JoinedBatches {
+
+        private final Iterator<RowBatch> probeBatches;
+        private final int probeKey;
+        private final int leftColumns;
+        private final int rightColumns;
+        private final TypeTransformer<?, ?> transformer;
+        private ColumnVector keys;
+        private int[] heads;
+        private RowBatch probe;
+        private int probeRow = -1;
+        /** The next build row joined with the current probe row or -1. */
+        private int buildRow = -1;
+        /** {@code true} if the current probe row has to be joined with nulls. */
+        private boolean unmatchedProbe;
+        /** The next build row to check for a missing match at the end of a left join on the left build source. */
+        private int unmatchedBuild = -1;
+
+        JoinedBatches() {
+            if (read) {
+                throw new IllegalStateException("Rows of the join already read");
+            }
+            read = true;
+            build();
+            this.probeBatches = (buildLeft ? right : left).batches(BATCH_SIZE);
+            this.probeKey = buildLeft ? rightKey : leftKey;
+            this.leftColumns = left.getEntryDescriptors().size();
+            this.rightColumns = right.getEntryDescriptors().size();
+            this.transformer = TypeTransformer.of(EntryDescriptor.Type.STRING, keyType);
+            advance();
+        }
+
+        boolean hasNext() {
+            if (this.buildRow >= 0 || this.unmatchedProbe) {
+                return true;
+            }
+            while (this.unmatchedBuild >= 0 && this.unmatchedBuild < buildRows.size() && matched[this.unmatchedBuild]) {
+                this.unmatchedBuild++;
+            }
+            return this.unmatchedBuild >= 0 && this.unmatchedBuild < buildRows.size();
+        }
+
+        void fill(final RowBatch batch) {
+            int row = 0;
+            while (row < batch.getCapacity() && hasNext()) {
+                if (this.buildRow >= 0) {
+                    matched[this.buildRow] = true;
+                    if (buildLeft) {
+                        set(batch, row, buildRows.get(this.buildRow), this.probeRow);
+                    } else {
+                        set(batch, row, this.probeRow, buildRows.get(this.buildRow));
+                    }
+                    this.buildRow = nextRow[this.buildRow];
+                    row++;
+                    if (this.buildRow < 0) {
+                        advance();
+                    }
+                } else if (this.unmatchedProbe) {
+                    set(batch, row, this.probeRow, null);
+                    row++;
+                    advance();
+                } else {
+                    set(batch, row, buildRows.get(this.unmatchedBuild++), -1);
+                    row++;
+                }
+            }
+            batch.setSize(row);
+            joinedRows += row;
+        }
+
+        /** Sets the left values of the build row and the right values of the probe row. -1 for nulls */
+        void set(final RowBatch batch, final int row, final String[] build, final int probeRow) {
+            for (int i = 0; i < this.leftColumns; i++) {
+                batch.getColumn(i).setValue(row, build[i]);
+            }
+            for (int i = 0; i < this.rightColumns; i++) {
+                batch.getColumn(this.leftColumns + i).setValue(row, probeRow < 0 ? null : this.probe.getColumn(i).getObjects()[probeRow]);
+            }
+        }
+
+        /** Sets the left values of the probe row and the right values of the build row. {@code null} for nulls */
+        void set(final RowBatch batch, final int row, final int probeRow, final String[] build) {
+            for (int i = 0; i < this.leftColumns; i++) {
+                batch.getColumn(i).setValue(row, this.probe.getColumn(i).getObjects()[probeRow]);
+            }
+            for (int i = 0; i < this.rightColumns; i++) {
+                batch.getColumn(this.leftColumns + i).setValue(row, build == null ? null : build[i]);
+            }
+        }
+
+        /** Moves to the next probe row with a joined row. */
+        void advance() {
+            this.buildRow = -1;
+            this.unmatchedProbe = false;
+            while (true) {
+                this.probeRow++;
+                if (this.probe == null || this.probeRow >= this.probe.size()) {
+                    if (!this.probeBatches.hasNext()) {
+                        this.probe = null;
+                        if (leftJoin && buildLeft && this.unmatchedBuild < 0) {
+                            this.unmatchedBuild = 0;
+                        }
+                        return;
+                    }
+                    this.probe = this.probeBatches.next();
+                    probeKeys();
+                    this.probeRow = 0;
+                }
+                this.buildRow = this.heads[this.probeRow];
+                this.unmatchedProbe = this.buildRow < 0 && leftJoin && !buildLeft;
+                if (this.buildRow >= 0 || this.unmatchedProbe) {
+                    return;
+                }
+            }
+        }
+
+        /** Looks up the first build row of each row of the probe batch. */
+        void probeKeys() {
+            final int size = this.probe.size();
+            if (this.keys == null || this.keys.getCapacity() < size) {
+                this.keys = new ColumnVector(EntryDescriptorBuilder.of().addName("key").addType(keyType).build(), size);
+                this.heads = new int[size];
+            }
+            final Object[] values = this.probe.getColumn(this.probeKey).getObjects();
+            for (int row = 0; row < size; row++) {
+                this.heads[row] = -1;
+                final String value = (String) values[row];
+                if (value == null || !convertKey(this.keys, row, value, this.transformer)) {
+                    continue;
+                }
+                if (primitiveHeads != null) {
+                    final long primitive = GroupTable.primitiveValue(this.keys, row);
+                    if (bloomFilter.mightContain(primitive)) {
+                        this.heads[row] = primitiveHeads.get(primitive);
+                    } else {
+                        droppedByBloomFilter++;
+                    }
+                } else {
+                    final Object boxed = this.keys.getValue(row);
+                    if (bloomFilter.mightContain(boxed.hashCode())) {
+                        final Integer head = objectHeads.get(boxed);
+                        this.heads[row] = head == null ? -1 : head;
+                    } else {
+                        droppedByBloomFilter++;
+                    }
+                }
+            }
+            probeRows += size;
+        }
+    }
+}
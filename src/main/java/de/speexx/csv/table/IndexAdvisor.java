@@ -0,0 +1,200 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects columns of a query which may profit of an index and estimates
+ * whether the index is worth its creation costs.
+ * <p>The cost model compares the work to build an index (one scan of the table
+ * plus a sort of the narrow index keys) with the work saved by the index for
+ * the expected number of executions of the query. An equality predicate saves
+ * nearly a full table scan, a range predicate about half of a scan and an
+ * <tt>ORDER BY</tt> or <tt>GROUP BY</tt> a part of the sort, because Derby
+ * must still fetch the rows in index order. As a consequence an index never
+ * pays off for a query executed only once.</p>
+ */
+final class IndexAdvisor {
+
+    /** Tables smaller than this are always scanned fast enough. */
+    static final long MIN_ROWS = 1000;
+
+    private static final double KEY_SORT_WEIGHT = 0.25;
+    private static final double SORT_SAVING_WEIGHT = 0.2;
+    private static final double RANGE_SELECTIVITY = 0.5;
+
+    private static final Pattern CLAUSE_START = Pattern.compile(
+            "\\b(where|on|group\\s+by|order\\s+by|having|fetch|offset|union|join|inner|left|right|full|cross)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    enum Usage {
+        EQUALITY,
+        RANGE,
+        SORT;
+    }
+
+    static final class Candidate {
+        private final String column;
+        private final Usage usage;
+
+        Candidate(final String column, final Usage usage) {
+            this.column = Objects.requireNonNull(column, "column is null");
+            this.usage = Objects.requireNonNull(usage, "usage is null");
+        }
+
+        String getColumn() {
+            return this.column;
+        }
+
+        Usage getUsage() {
+            return this.usage;
+        }
+
+        @Override
+        public String toString() {
+            return "Candidate{" + "column=" + column + ", usage=" + usage + '}';
+        }
+    }
+
+    private IndexAdvisor() {
+        throw new AssertionError("Forbidden to create instance from " + IndexAdvisor.class);
+    }
+
+    /**
+     * Detects the columns used in equality or range predicates of the
+     * <tt>WHERE</tt> and <tt>ON</tt> clauses and in the <tt>ORDER BY</tt> and
+     * <tt>GROUP BY</tt> clauses of the given query. If a column has more
+     * than one usage the most profitable usage wins.
+     * @param sql the query with the original column names
+     * @param columns the original column names of the table
+     * @return the candidates. Never {@code null}
+     */
+    static List<Candidate> candidates(final String sql, final Collection<String> columns) {
+        Objects.requireNonNull(sql, "sql is null");
+        Objects.requireNonNull(columns, "columns is null");
+
+        final String query = withoutLiterals(sql);
+        final Map<String, Usage> usages = new LinkedHashMap<>();
+        final Matcher clauses = CLAUSE_START.matcher(query);
+        int start = -1;
+        String keyword = null;
+        while (true) {
+            final boolean found = clauses.find();
+            if (keyword != null) {
+                final String clause = query.substring(start, found ? clauses.start() : query.length());
+                analyzeClause(keyword, clause, columns, usages);
+            }
+            if (!found) {
+                break;
+            }
+            keyword = clauses.group(1).toLowerCase(Locale.ENGLISH).replaceAll("\\s+", " ");
+            start = clauses.end();
+        }
+
+        final List<Candidate> candidates = new ArrayList<>();
+        usages.forEach((column, usage) -> candidates.add(new Candidate(column, usage)));
+        return candidates;
+    }
+
+    static void analyzeClause(final String keyword, final String clause, final Collection<String> columns, final Map<String, Usage> usages) {
+        final boolean predicateClause = "where".equals(keyword) || "on".equals(keyword) || "having".equals(keyword);
+        final boolean sortClause = "order by".equals(keyword) || "group by".equals(keyword);
+        if (!predicateClause && !sortClause) {
+            return;
+        }
+        for (final String column : columns) {
+            final String name = "(?<![\\w.])" + Pattern.quote(column) + "(?!\\w)";
+            if (predicateClause) {
+                final Pattern equality = Pattern.compile(name + "\\s*=|(?<![<>!])=\\s*(\\w+\\.)?" + Pattern.quote(column) + "(?!\\w)|" + name + "\\s+in\\b",
+                                                         Pattern.CASE_INSENSITIVE);
+                final Pattern range = Pattern.compile(name + "\\s*(<(?!>)|>|\\bbetween\\b)|(<|>)=?\\s*(\\w+\\.)?" + Pattern.quote(column) + "(?!\\w)",
+                                                      Pattern.CASE_INSENSITIVE);
+                if (equality.matcher(clause).find()) {
+                    merge(usages, column, Usage.EQUALITY);
+                } else if (range.matcher(clause).find()) {
+                    merge(usages, column, Usage.RANGE);
+                }
+            } else if (Pattern.compile(name, Pattern.CASE_INSENSITIVE).matcher(clause).find()) {
+                merge(usages, column, Usage.SORT);
+            }
+        }
+    }
+
+    static void merge(final Map<String, Usage> usages, final String column, final Usage usage) {
+        final Usage current = usages.get(column);
+        if (current == null || usage.ordinal() < current.ordinal()) {
+            usages.put(column, usage);
+        }
+    }
+
+    /**
+     * Estimates whether an index for the given candidate pays off.
+     * @param candidate the candidate
+     * @param rows the number of rows of the table
+     * @param executions the expected number of query executions using the index
+     * @return {@code true} if the estimated benefit exceeds the build costs
+     */
+    static boolean isWorthwhile(final Candidate candidate, final long rows, final int executions) {
+        Objects.requireNonNull(candidate, "candidate is null");
+        if (rows < MIN_ROWS || executions < 1) {
+            return false;
+        }
+        return executions * benefit(candidate.getUsage(), rows) > buildCost(rows);
+    }
+
+    static double buildCost(final long rows) {
+        return rows + rows * log2(rows) * KEY_SORT_WEIGHT;
+    }
+
+    static double benefit(final Usage usage, final long rows) {
+        switch (usage) {
+            case EQUALITY: return rows - log2(rows);
+            case RANGE: return rows * RANGE_SELECTIVITY;
+            case SORT: return rows * log2(rows) * SORT_SAVING_WEIGHT;
+            default: throw new IllegalArgumentException("unsupported usage: " + usage);
+        }
+    }
+
+    static double log2(final long value) {
+        return value <= 1 ? 0 : Math.log(value) / Math.log(2);
+    }
+
+    static String withoutLiterals(final String s) {
+        final StringBuilder sb = new StringBuilder(s.length());
+        boolean inLiteral = false;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+                sb.append(c);
+            } else {
+                sb.append(inLiteral ? ' ' : c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,560 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.ChunkConverter.Chunk;
+import de.speexx.csv.table.query.Expression;
+import de.speexx.csv.table.query.ExpressionInterpreter;
+import de.speexx.csv.table.query.PredicateCompiler;
+import de.speexx.csv.table.query.Query;
+import de.speexx.csv.table.query.QueryParser;
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes an aggregation query directly on the rows of a source without
+ * loading a table. The supported queries are the aggregations of the
+ * {@link QueryParser} with <tt>COUNT</tt>, <tt>COUNT(DISTINCT ...)</tt>,
+ * <tt>SUM</tt>, <tt>AVG</tt>, <tt>MIN</tt> and <tt>MAX</tt>.
+ * <p>The rows are read in chunks and aggregated by a pool of workers. A worker
+ * hashes the groups of its chunks into partitions of {@link GroupTable}s. If
+ * the estimated size of the groups of a worker exceeds its share of the
+ * memory budget, the worker writes its partitions to temporary files and
+ * continues with empty partitions. At the end the partial results of the
+ * workers and the files are merged partition by partition. At most one
+ * partition per worker is merged at a time and each merged partition is
+ * appended to the result columns before the next one is merged. So besides
+ * the result only the partitions in the merge have to fit in memory.</p>
+ * <p>The types of the used columns are assumed from the first chunk. All
+ * values are classified like the type detection of a loaded table does. If
+ * the detected type of a column differs from the assumed type, e.g. an
+ * integer column with decimals after the first chunk, the execution returns
+ * no result and the query has to be executed on a loaded table. The source is
+ * read a second time then.</p>
+ */
+public final class ParallelAggregation implements SourceQuery {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    static final int CHUNK_SIZE = 4096;
+    static final int PARTITION_BITS = 4;
+    static final int PARTITIONS = 1 << PARTITION_BITS;
+
+    private static final Chunk END = new Chunk(new Object[0][], 0);
+
+    private final int threads;
+    private final long memoryBudget;
+    private boolean collectQueryPlans;
+    private String lastQueryPlan;
+
+    /**
+     * @param threads the number of workers. Must be &gt; 0
+     * @param memoryBudget the bytes the groups of all workers may use before
+     *                     they are written to temporary files. Must be &gt; 0
+     * @throws IllegalArgumentException if <em>threads</em> or <em>memoryBudget</em> is &lt; 1
+     */
+    public ParallelAggregation(final int threads, final long memoryBudget) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads < 1: " + threads);
+        }
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("memory budget < 1: " + memoryBudget);
+        }
+        this.threads = threads;
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public void setCollectQueryPlans(final boolean collect) {
+        this.collectQueryPlans = collect;
+        this.lastQueryPlan = null;
+    }
+
+    @Override
+    public Optional<String> getLastQueryPlan() {
+        return Optional.ofNullable(this.lastQueryPlan);
+    }
+
+    /**
+     * Reads all rows of the source and aggregates them.
+     * @throws UnsupportedQueryException if the query is no supported aggregation
+     * @throws TableException if the aggregation fails, e.g. on an overflow of a sum
+     */
+    @Override
+    public Optional<RowReader> execute(final String sql, final RowReader source, final boolean detectTypes) {
+        Objects.requireNonNull(sql, "sql is null");
+        Objects.requireNonNull(source, "source is null");
+        this.lastQueryPlan = null;
+
+        final List<EntryDescriptor> sourceDescriptors = source.getEntryDescriptors();
+        final List<String> names = sourceDescriptors.stream().map(EntryDescriptor::getName).collect(Collectors.toList());
+        final Query query = QueryParser.parse(sql, names);
+        if (!query.isAggregation()) {
+            throw new UnsupportedQueryException("No aggregation");
+        }
+        final int[] usedColumns = ChunkConverter.usedColumns(query, names);
+
+        final long start = System.currentTimeMillis();
+        final Iterator<RowBatch> batches = source.batches(CHUNK_SIZE);
+        final Chunk first = batches.hasNext() ? Chunk.of(batches.next(), usedColumns) : null;
+        final EntryDescriptor.Type[] assumedTypes = ChunkConverter.assumeTypes(first, usedColumns.length, detectTypes);
+        final List<EntryDescriptor> descriptors = ChunkConverter.assumedDescriptors(sourceDescriptors, usedColumns, assumedTypes);
+
+        final ColumnarQuery columnarQuery = new ColumnarQuery(query, new ColumnarResult(descriptors), this.collectQueryPlans);
+        final Optional<ColumnarResult> result = columnarQuery.executeGrouped(grouping -> {
+            final Execution execution = new Execution(query, grouping, descriptors, usedColumns, detectTypes);
+            final Optional<ResultColumn[]> groups = execution.run(first, batches);
+            if (groups.isPresent()) {
+                columnarQuery.appendPlan("Scan", execution.rows.get(), 0);
+                query.getWhere().ifPresent(where -> columnarQuery.appendPlan("Filter " + where, execution.selected.get(), 0));
+                columnarQuery.appendPlan("Hash aggregation by " + query.getGroupBy() + " with " + grouping.aggregates.keySet()
+                                         + " in " + this.threads + " threads and " + PARTITIONS + " partitions"
+                                         + (execution.spilledGroups.get() > 0 ? ", " + execution.spilledGroups.get() + " groups spilled" : ""),
+                                         groups.get()[0].size(), System.currentTimeMillis() - start);
+            }
+            return groups;
+        });
+        if (result.isPresent()) {
+            this.lastQueryPlan = columnarQuery.getPlan(query.getFrom())
+                                              .map(plan -> plan.replaceFirst("^Columnar query", "Parallel aggregation"))
+                                              .orElse(null);
+        }
+        return result.map(rows -> (RowReader) rows);
+    }
+
+    /** @return the partition of a hash code of a group key */
+    static int partitionOf(final long hash) {
+        return (int) ((hash * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - PARTITION_BITS));
+    }
+
+    /** The state of one execution shared by the workers. */
+    final class Execution {
+
+        private final List<Expression.Aggregate> aggregates;
+        private final int[] usedColumns;
+        private final EntryDescriptor[] usedDescriptors;
+        private final int[] keyColumns;
+        private final int[] argumentColumns;
+        private final Expression where;
+        private final boolean detectTypes;
+        private final GroupTable prototype;
+        private final ColumnarQuery.Grouping grouping;
+        private final List<ConcurrentLinkedQueue<Path>> spillFiles = new ArrayList<>();
+        private Path spillDirectory;
+        private volatile boolean mismatch;
+        private volatile boolean failed;
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong selected = new AtomicLong();
+        final AtomicLong spilledGroups = new AtomicLong();
+
+        Execution(final Query query, final ColumnarQuery.Grouping grouping, final List<EntryDescriptor> descriptors,
+                  final int[] usedColumns, final boolean detectTypes) {
+            this.grouping = grouping;
+            this.aggregates = new ArrayList<>(grouping.aggregates.keySet());
+            this.detectTypes = detectTypes;
+            this.usedColumns = usedColumns;
+            this.usedDescriptors = new EntryDescriptor[usedColumns.length];
+            final Map<String, Integer> usedIndexes = new HashMap<>();
+            for (int i = 0; i < usedColumns.length; i++) {
+                this.usedDescriptors[i] = descriptors.get(usedColumns[i]);
+                usedIndexes.put(this.usedDescriptors[i].getName(), i);
+            }
+
+            final EntryDescriptor.Type[] keyTypes = new EntryDescriptor.Type[grouping.keys.size()];
+            this.keyColumns = new int[keyTypes.length];
+            for (int i = 0; i < keyTypes.length; i++) {
+                this.keyColumns[i] = usedIndexes.get(grouping.keys.get(i).getDescriptor().getName());
+                keyTypes[i] = this.usedDescriptors[this.keyColumns[i]].getType();
+            }
+            final EntryDescriptor.Type[] argumentTypes = new EntryDescriptor.Type[this.aggregates.size()];
+            this.argumentColumns = new int[argumentTypes.length];
+            for (int i = 0; i < argumentTypes.length; i++) {
+                final Optional<Expression.ColumnReference> argument = this.aggregates.get(i).getArgument();
+                this.argumentColumns[i] = argument.map(column -> usedIndexes.get(column.getName())).orElse(-1);
+                argumentTypes[i] = argument.isPresent() ? this.usedDescriptors[this.argumentColumns[i]].getType() : null;
+            }
+            this.where = query.getWhere().map(condition -> ExpressionInterpreter.bind(condition, name -> {
+                final Integer index = usedIndexes.get(name);
+                return index == null ? null : this.usedDescriptors[index].getType();
+            })).orElse(null);
+            this.prototype = new GroupTable(keyTypes, this.aggregates, argumentTypes);
+            for (int i = 0; i < PARTITIONS; i++) {
+                this.spillFiles.add(new ConcurrentLinkedQueue<>());
+            }
+        }
+
+        /** @return the group columns or empty if a detected type differs from the assumed type */
+        Optional<ResultColumn[]> run(final Chunk first, final Iterator<RowBatch> batches) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+                final Thread t = new Thread(runnable, "parallel-aggregation");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(2 * threads);
+                final List<Worker> workers = new ArrayList<>();
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    final Worker worker = new Worker(queue);
+                    workers.add(worker);
+                    futures.add(executor.submit(worker));
+                }
+                if (first != null) {
+                    offer(queue, first);
+                }
+                while (!isAborted() && batches.hasNext()) {
+                    offer(queue, Chunk.of(batches.next(), this.usedColumns));
+                }
+                for (int i = 0; i < threads; i++) {
+                    offer(queue, END);
+                }
+                for (final Future<?> future : futures) {
+                    await(future);
+                }
+                if (this.mismatch || !ChunkConverter.detectedTypesMatch(
+                        workers.stream().map(worker -> worker.converter).collect(Collectors.toList()), this.usedDescriptors)) {
+                    return Optional.empty();
+                }
+
+                // At most one partition per thread is merged at a time. Each
+                // merged partition is appended to the result before it's released
+                final ResultColumn[] columns = newGroupColumns();
+                final Deque<Future<GroupTable>> merges = new ArrayDeque<>();
+                int next = 0;
+                while (next < PARTITIONS || !merges.isEmpty()) {
+                    while (next < PARTITIONS && merges.size() < threads) {
+                        final int partition = next++;
+                        merges.add(executor.submit(() -> mergePartition(partition, workers)));
+                    }
+                    appendGroups(await(merges.poll()), columns);
+                }
+                return Optional.of(completeGroupColumns(columns));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TableException("Aggregation interrupted", e);
+            } finally {
+                this.failed = true;
+                executor.shutdownNow();
+                deleteSpillFiles();
+            }
+        }
+
+        /** @return empty partitions for the groups of the execution */
+        GroupTable[] newPartitions() {
+            final GroupTable[] partitions = new GroupTable[PARTITIONS];
+            for (int i = 0; i < PARTITIONS; i++) {
+                partitions[i] = this.prototype.newEmpty();
+            }
+            return partitions;
+        }
+
+        boolean isAborted() {
+            return this.mismatch || this.failed;
+        }
+
+        /** Waits for free space in the queue as long as the workers are running. */
+        void offer(final BlockingQueue<Chunk> queue, final Chunk chunk) throws InterruptedException {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (isAborted()) {
+                    return;
+                }
+            }
+        }
+
+        <T> T await(final Future<T> future) throws InterruptedException {
+            try {
+                return future.get();
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new TableException("Aggregation failed", (Exception) cause);
+            }
+        }
+
+        GroupTable mergePartition(final int partition, final List<Worker> workers) throws IOException {
+            final GroupTable merged = this.prototype.newEmpty();
+            for (final Worker worker : workers) {
+                merged.merge(worker.partitions[partition]);
+                worker.partitions[partition] = null;
+            }
+            for (final Path file : this.spillFiles.get(partition)) {
+                try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    merged.readAndMerge(in);
+                }
+                Files.delete(file);
+            }
+            return merged;
+        }
+
+        /** @return the empty key and aggregate columns of the groups */
+        ResultColumn[] newGroupColumns() {
+            final int keys = this.grouping.keys.size();
+            final ResultColumn[] columns = new ResultColumn[keys + this.aggregates.size()];
+            for (int i = 0; i < keys; i++) {
+                columns[i] = new ResultColumn(this.grouping.keys.get(i).getDescriptor());
+            }
+            for (int i = 0; i < this.aggregates.size(); i++) {
+                columns[keys + i] = this.grouping.aggregations.get(i).newColumn();
+            }
+            return columns;
+        }
+
+        ResultColumn[] groupColumns(final List<GroupTable> partitions) {
+            final ResultColumn[] columns = newGroupColumns();
+            for (final GroupTable partition : partitions) {
+                appendGroups(partition, columns);
+            }
+            return completeGroupColumns(columns);
+        }
+
+        /** Appends the keys and aggregate results of the groups of a partition to the group columns. */
+        void appendGroups(final GroupTable partition, final ResultColumn[] columns) {
+            final int keys = this.grouping.keys.size();
+            for (int group = 0; group < partition.size(); group++) {
+                final Object key = partition.getKey(group);
+                if (keys == 1) {
+                    columns[0].appendValue(key);
+                } else {
+                    final List<?> values = (List<?>) key;
+                    for (int i = 0; i < keys; i++) {
+                        columns[i].appendValue(values.get(i));
+                    }
+                }
+                for (int i = 0; i < this.aggregates.size(); i++) {
+                    partition.getState(i).appendResult(group, columns[keys + i]);
+                }
+            }
+        }
+
+        ResultColumn[] completeGroupColumns(final ResultColumn[] columns) {
+            if (this.grouping.keys.isEmpty() && columns[0].size() == 0) {
+                // An aggregation without group columns has always one row
+                final GroupTable empty = this.prototype.newEmpty();
+                empty.groupOf(Collections.emptyList());
+                appendGroups(empty, columns);
+            }
+            for (final ResultColumn column : columns) {
+                column.trimToSize();
+            }
+            return columns;
+        }
+
+        synchronized Path spillDirectory() throws IOException {
+            if (this.spillDirectory == null) {
+                this.spillDirectory = Files.createTempDirectory("scq-aggregation");
+            }
+            return this.spillDirectory;
+        }
+
+        void deleteSpillFiles() {
+            try {
+                for (final ConcurrentLinkedQueue<Path> files : this.spillFiles) {
+                    for (final Path file : files) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                if (this.spillDirectory != null) {
+                    Files.deleteIfExists(this.spillDirectory);
+                }
+            } catch (final IOException e) {
+                LOG.warn("Unable to delete spill files in {}: {}", this.spillDirectory, e.getMessage());
+            }
+        }
+
+        /** Aggregates chunks until the end of the source into its own partitions. */
+        final class Worker implements Callable<Void> {
+
+            private final BlockingQueue<Chunk> queue;
+            final GroupTable[] partitions;
+            final ChunkConverter converter;
+            private final ColumnVector[] vectors;
+            private final IntPredicate predicate;
+
+            Worker(final BlockingQueue<Chunk> queue) {
+                this.queue = queue;
+                this.converter = new ChunkConverter(usedDescriptors, detectTypes, CHUNK_SIZE);
+                this.vectors = this.converter.getVectors();
+                this.predicate = where == null ? null : PredicateCompiler.compile(where, this.converter.getVectorsByName()::get);
+                this.partitions = newPartitions();
+            }
+
+            @Override
+            public Void call() throws Exception {
+                try {
+                    while (!isAborted()) {
+                        final Chunk chunk = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                        if (chunk == null) {
+                            continue;
+                        }
+                        if (chunk == END) {
+                            return null;
+                        }
+                        if (!add(chunk)) {
+                            mismatch = true;
+                            return null;
+                        }
+                        if (estimatedBytes() > memoryBudget / threads) {
+                            spill();
+                        }
+                    }
+                    return null;
+                } catch (final Exception | Error e) {
+                    failed = true;
+                    throw e;
+                }
+            }
+
+            /** @return {@code false} if a value of the chunk doesn't match the assumed type of its column */
+            boolean add(final Chunk chunk) {
+                if (!convert(chunk)) {
+                    return false;
+                }
+                aggregate(chunk.size);
+                return true;
+            }
+
+            /** @return {@code false} if a value of the chunk doesn't match the assumed type of its column */
+            boolean convert(final Chunk chunk) {
+                if (!this.converter.convert(chunk)) {
+                    return false;
+                }
+                rows.addAndGet(chunk.size);
+                return true;
+            }
+
+            void aggregate(final int size) {
+                aggregate(size, this.partitions, null);
+            }
+
+            /**
+             * Aggregates the converted rows into the given partitions.
+             * @param filter selects the rows beside the where clause. May be {@code null}
+             */
+            void aggregate(final int size, final GroupTable[] target, final IntPredicate filter) {
+                final int keyCount = keyColumns.length;
+                final ColumnVector singleKey = keyCount == 1 ? this.vectors[keyColumns[0]] : null;
+                final boolean primitiveKey = prototype.hasPrimitiveKey();
+                final ColumnVector[] arguments = new ColumnVector[argumentColumns.length];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = argumentColumns[i] < 0 ? null : this.vectors[argumentColumns[i]];
+                }
+                long count = 0;
+                for (int row = 0; row < size; row++) {
+                    if ((filter != null && !filter.test(row)) || (this.predicate != null && !this.predicate.test(row))) {
+                        continue;
+                    }
+                    count++;
+                    final GroupTable partition;
+                    final int group;
+                    if (primitiveKey) {
+                        if (singleKey.isNull(row)) {
+                            partition = target[0];
+                            group = partition.nullGroup();
+                        } else {
+                            final long value = GroupTable.primitiveValue(singleKey, row);
+                            partition = target[partitionOf(value)];
+                            group = partition.groupOfPrimitive(value, singleKey, row);
+                        }
+                    } else {
+                        final Object key = keyOf(row, singleKey);
+                        partition = target[partitionOf(key == null ? 0 : key.hashCode())];
+                        group = partition.groupOf(key);
+                    }
+                    for (int i = 0; i < arguments.length; i++) {
+                        partition.getState(i).add(group, arguments[i], row);
+                    }
+                }
+                selected.addAndGet(count);
+            }
+
+            Object keyOf(final int row, final ColumnVector singleKey) {
+                if (singleKey != null) {
+                    return singleKey.getValue(row);
+                }
+                if (keyColumns.length == 0) {
+                    return Collections.emptyList();
+                }
+                final List<Object> key = new ArrayList<>(keyColumns.length);
+                for (final int column : keyColumns) {
+                    key.add(ColumnarQuery.normalized(this.vectors[column].getValue(row)));
+                }
+                return key;
+            }
+
+            long estimatedBytes() {
+                long bytes = 0;
+                for (final GroupTable partition : this.partitions) {
+                    bytes += partition.estimatedBytes();
+                }
+                return bytes;
+            }
+
+            /** Writes the non empty partitions to temporary files and continues with empty partitions. */
+            void spill() throws IOException {
+                for (int i = 0; i < PARTITIONS; i++) {
+                    final GroupTable partition = this.partitions[i];
+                    if (partition.size() == 0) {
+                        continue;
+                    }
+                    final Path file = Files.createTempFile(spillDirectory(), "partition-" + i + "-", ".bin");
+                    spillFiles.get(i).add(file);
+                    try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                        partition.write(out);
+                    }
+                    spilledGroups.addAndGet(partition.size());
+                    this.partitions[i] = prototype.newEmpty();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The shape of a query is the query with the literals of comparisons replaced
+ * by parameter markers. Queries with the same shape share one prepared
+ * statement and differ only in the parameter values.
+ * <p>Only literals directly following a comparison operator or <tt>LIKE</tt>
+ * are replaced. Literals in the select list keep the result types of the
+ * query stable.</p>
+ */
+final class QueryShape {
+
+    private static final Pattern COMPARED_LITERAL = Pattern.compile(
+            "(=|<>|!=|<=|>=|<|>|\\blike\\b)(\\s*)('(?:[^']|'')*'|-?\\d+(?:\\.\\d+)?(?![\\w.]))",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String shape;
+    private final List<String> parameters;
+
+    private QueryShape(final String shape, final List<String> parameters) {
+        this.shape = shape;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    static QueryShape of(final String sql) {
+        Objects.requireNonNull(sql, "sql is null");
+
+        final List<String> parameters = new ArrayList<>();
+        final StringBuffer shape = new StringBuffer(sql.length());
+        final Matcher matcher = COMPARED_LITERAL.matcher(sql);
+        while (matcher.find()) {
+            if (!isOutsideLiteral(sql, matcher.start())) {
+                continue;
+            }
+            final String literal = matcher.group(3);
+            parameters.add(literal.startsWith("'") ? literal.substring(1, literal.length() - 1).replace("''", "'") : literal);
+            matcher.appendReplacement(shape, Matcher.quoteReplacement(matcher.group(1) + matcher.group(2) + "?"));
+        }
+        matcher.appendTail(shape);
+        return new QueryShape(shape.toString(), parameters);
+    }
+
+    static boolean isOutsideLiteral(final String s, final int position) {
+        int quotes = 0;
+        for (int i = 0; i < position; i++) {
+            if (s.charAt(i) == '\'') {
+                quotes++;
+            }
+        }
+        return quotes % 2 == 0;
+    }
+
+    /** @return the query with parameter markers */
+    String getShape() {
+        return this.shape;
+    }
+
+    /** @return the values of the parameter markers in order of occurrence */
+    List<String> getParameters() {
+        return this.parameters;
+    }
+
+    boolean hasParameters() {
+        return !this.parameters.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryShape{" + "shape=" + shape + ", parameters=" + parameters + '}';
+    }
+}
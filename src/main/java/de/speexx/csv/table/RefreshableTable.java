@@ -0,0 +1,113 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A table built from a {@link GrowingCsvFile}. A {@linkplain #refresh()
+ * refresh} appends the rows appended to the file since the last read. All
+ * other operations are executed by the built table.
+ */
+final class RefreshableTable implements Table {
+
+    private final Table table;
+    private final GrowingCsvFile source;
+
+    RefreshableTable(final Table table, final GrowingCsvFile source) {
+        this.table = Objects.requireNonNull(table, "table is null");
+        this.source = Objects.requireNonNull(source, "source is null");
+    }
+
+    @Override
+    public long refresh() {
+        try {
+            final Optional<RowReader> appended = this.source.readAppended();
+            if (!appended.isPresent()) {
+                return 0;
+            }
+            final long rows;
+            try (final RowReader reader = appended.get()) {
+                rows = this.table.appendRows(reader);
+            }
+            this.source.commitAppended();
+            return rows;
+        } catch (final TableException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new TableException("Unable to refresh from " + this.source.getPath(), e);
+        }
+    }
+
+    @Override
+    public long appendRows(final RowReader rows) {
+        return this.table.appendRows(rows);
+    }
+
+    @Override
+    public String getName() {
+        return this.table.getName();
+    }
+
+    @Override
+    public String getLabel() {
+        return this.table.getLabel();
+    }
+
+    @Override
+    public List<? extends EntryDescriptor> getEntryDescriptors() {
+        return this.table.getEntryDescriptors();
+    }
+
+    @Override
+    public RowReader executeSql(final String sql) {
+        return this.table.executeSql(sql);
+    }
+
+    @Override
+    public void changeColumnTypes(final EntryDescriptor... descriptors) {
+        this.table.changeColumnTypes(descriptors);
+    }
+
+    @Override
+    public List<String> createIndexesFor(final String sql, final int expectedExecutions) {
+        return this.table.createIndexesFor(sql, expectedExecutions);
+    }
+
+    @Override
+    public void setCollectQueryPlans(final boolean collect) {
+        this.table.setCollectQueryPlans(collect);
+    }
+
+    @Override
+    public Optional<String> getLastQueryPlan() {
+        return this.table.getLastQueryPlan();
+    }
+
+    @Override
+    public void close() {
+        this.table.close();
+    }
+
+    @Override
+    public String toString() {
+        return "RefreshableTable{" + "table=" + table + ", source=" + source + '}';
+    }
+}
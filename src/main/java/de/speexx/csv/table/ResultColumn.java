@@ -0,0 +1,468 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A growing column of a {@link ColumnarResult}. The values are stored in
+ * chunks of {@value #CHUNK_SIZE} typed values, so appending never copies the
+ * values already stored.
+ * <ul>
+ *   <li>{@link EntryDescriptor.Type#INTEGER}, {@link EntryDescriptor.Type#DATE}
+ *       and {@link EntryDescriptor.Type#TIME} values are stored as {@code long}
+ *       like in a {@link ColumnVector}</li>
+ *   <li>{@link EntryDescriptor.Type#DECIMAL} values are stored as {@code double}</li>
+ *   <li>{@link EntryDescriptor.Type#DATETIME} values are stored as epoch day
+ *       and nano of day in two {@code long}s</li>
+ *   <li>{@link EntryDescriptor.Type#STRING} values are stored as {@code int}
+ *       code of a dictionary with the distinct values of the column</li>
+ * </ul>
+ * <p>The values are appended by the creator of the column and read after that.
+ * The column is not thread safe while values are appended.</p>
+ */
+public final class ResultColumn implements ColumnValues {
+
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int BITS_PER_WORD_SHIFT = 6;
+    private static final int FIRST_CHUNK_CAPACITY = 16;
+
+    private final EntryDescriptor descriptor;
+    private final EntryDescriptor.Type type;
+    private long[][] longs;
+    private long[][] nanos;
+    private double[][] doubles;
+    private int[][] codes;
+    private long[][] nulls;
+    private int firstChunkCapacity;
+    private int size;
+
+    private String[] dictionary;
+    private int dictionarySize;
+    private Map<String, Integer> codeOfValue;
+
+    /**
+     * @param descriptor the descriptor of the column. The type of the column
+     *                   is the type of the descriptor at creation time
+     * @throws NullPointerException if the descriptor or its type is {@code null}
+     */
+    public ResultColumn(final EntryDescriptor descriptor) {
+        this.descriptor = Objects.requireNonNull(descriptor, "descriptor is null");
+        this.type = Objects.requireNonNull(descriptor.getType(), "type is null");
+        switch (this.type) {
+            case DATETIME:
+                this.nanos = new long[1][];
+                this.longs = new long[1][];
+                break;
+            case INTEGER:
+            case DATE:
+            case TIME:
+                this.longs = new long[1][];
+                break;
+            case DECIMAL:
+                this.doubles = new double[1][];
+                break;
+            case STRING:
+                this.codes = new int[1][];
+                this.dictionary = new String[FIRST_CHUNK_CAPACITY];
+                this.codeOfValue = new HashMap<>();
+                break;
+            default:
+                throw new TableException("unsupported type: " + this.type);
+        }
+        this.nulls = new long[1][];
+    }
+
+    @Override
+    public EntryDescriptor getDescriptor() {
+        return this.descriptor;
+    }
+
+    @Override
+    public EntryDescriptor.Type getType() {
+        return this.type;
+    }
+
+    /** @return the number of values in the column */
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isNull(final int row) {
+        return (this.nulls[row >>> CHUNK_SHIFT][(row & CHUNK_MASK) >>> BITS_PER_WORD_SHIFT] & (1L << row)) != 0;
+    }
+
+    @Override
+    public Object getValue(final int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        final int chunk = row >>> CHUNK_SHIFT;
+        final int offset = row & CHUNK_MASK;
+        switch (this.type) {
+            case INTEGER: return this.longs[chunk][offset];
+            case DECIMAL: return this.doubles[chunk][offset];
+            case DATE: return LocalDate.ofEpochDay(this.longs[chunk][offset]);
+            case TIME: return LocalTime.ofNanoOfDay(this.longs[chunk][offset]);
+            case DATETIME: return LocalDateTime.of(LocalDate.ofEpochDay(this.longs[chunk][offset]),
+                                                   LocalTime.ofNanoOfDay(this.nanos[chunk][offset]));
+            default: return this.dictionary[this.codes[chunk][offset]];
+        }
+    }
+
+    @Override
+    public long getLong(final int row) {
+        if (this.type != EntryDescriptor.Type.INTEGER) {
+            throw new IncompatibleTypeException("Not an integer column: " + this.descriptor.getName());
+        }
+        return isNull(row) ? 0 : this.longs[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    @Override
+    public double getDouble(final int row) {
+        if (this.type == EntryDescriptor.Type.DECIMAL) {
+            return isNull(row) ? 0 : this.doubles[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        }
+        if (this.type == EntryDescriptor.Type.INTEGER) {
+            return isNull(row) ? 0 : this.longs[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        }
+        throw new IncompatibleTypeException("Not a number column: " + this.descriptor.getName());
+    }
+
+    @Override
+    public long getEpochDay(final int row) {
+        if (this.type != EntryDescriptor.Type.DATE && this.type != EntryDescriptor.Type.DATETIME) {
+            throw new IncompatibleTypeException("Not a date column: " + this.descriptor.getName());
+        }
+        return isNull(row) ? 0 : this.longs[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * @return the dictionary code of a string value. Equal values have the same
+     *         code. {@code -1} if the value is null
+     * @throws IncompatibleTypeException if the column is not a string column
+     */
+    public int getCode(final int row) {
+        if (this.type != EntryDescriptor.Type.STRING) {
+            throw new IncompatibleTypeException("Not a string column: " + this.descriptor.getName());
+        }
+        return isNull(row) ? -1 : this.codes[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * @param code a code returned by {@link #getCode(int)}
+     * @return the string value of the code
+     * @throws IndexOutOfBoundsException if the code is not in the dictionary
+     */
+    public String getDictionaryValue(final int code) {
+        if (code < 0 || code >= this.dictionarySize) {
+            throw new IndexOutOfBoundsException("Code: " + code + " - size: " + this.dictionarySize);
+        }
+        return this.dictionary[code];
+    }
+
+    /** @return the number of distinct non null values of a string column. {@code 0} for other types */
+    public int getDictionarySize() {
+        return this.dictionarySize;
+    }
+
+    public void appendNull() {
+        final int row = nextRow();
+        this.nulls[row >>> CHUNK_SHIFT][(row & CHUNK_MASK) >>> BITS_PER_WORD_SHIFT] |= 1L << row;
+    }
+
+    /**
+     * Appends an integer, the epoch day of a date or the nano of day of a time.
+     * @throws IncompatibleTypeException if the column is not stored as {@code long}
+     */
+    public void appendLong(final long value) {
+        if (this.longs == null || this.nanos != null) {
+            throw new IncompatibleTypeException("Not an integer, date or time column: " + this.descriptor.getName());
+        }
+        final int row = nextRow();
+        this.longs[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = value;
+    }
+
+    /** @throws IncompatibleTypeException if the column is not a decimal column */
+    public void appendDouble(final double value) {
+        if (this.doubles == null) {
+            throw new IncompatibleTypeException("Not a decimal column: " + this.descriptor.getName());
+        }
+        final int row = nextRow();
+        this.doubles[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = value;
+    }
+
+    /** @throws IncompatibleTypeException if the column is not a datetime column */
+    public void appendDateTime(final LocalDateTime value) {
+        if (this.nanos == null) {
+            throw new IncompatibleTypeException("Not a datetime column: " + this.descriptor.getName());
+        }
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        final int row = nextRow();
+        this.longs[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = value.toLocalDate().toEpochDay();
+        this.nanos[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = value.toLocalTime().toNanoOfDay();
+    }
+
+    /** @throws IncompatibleTypeException if the column is not a string column */
+    public void appendString(final String value) {
+        if (this.codes == null) {
+            throw new IncompatibleTypeException("Not a string column: " + this.descriptor.getName());
+        }
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        final int code = codeOf(value);
+        final int row = nextRow();
+        this.codes[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = code;
+    }
+
+    /**
+     * Appends a boxed value as returned by {@link Entry#getValue()}. The JDBC
+     * date and time types are accepted as well.
+     * @throws ClassCastException if the value doesn't match the type of the column
+     */
+    public void appendValue(final Object value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        switch (this.type) {
+            case INTEGER:
+                appendLong(((Number) value).longValue());
+                break;
+            case DECIMAL:
+                appendDouble(((Number) value).doubleValue());
+                break;
+            case DATE:
+                appendLong((value instanceof Date ? ((Date) value).toLocalDate() : (LocalDate) value).toEpochDay());
+                break;
+            case TIME:
+                appendLong((value instanceof Time ? ((Time) value).toLocalTime() : (LocalTime) value).toNanoOfDay());
+                break;
+            case DATETIME:
+                appendDateTime(value instanceof Timestamp ? ((Timestamp) value).toLocalDateTime() : (LocalDateTime) value);
+                break;
+            default:
+                appendString(value.toString());
+        }
+    }
+
+    /**
+     * Releases the lookup of the dictionary codes which is only needed to
+     * append values. A later append builds the lookup again.
+     */
+    public void trimToSize() {
+        this.codeOfValue = null;
+        if (this.dictionary != null) {
+            this.dictionary = Arrays.copyOf(this.dictionary, Math.max(1, this.dictionarySize));
+        }
+    }
+
+    /**
+     * @return the stored value of an integer, date or time column. The epoch
+     *         day of a date, the nano of day of a time. {@code 0} if the value is null
+     */
+    long getStoredLong(final int row) {
+        assert this.longs != null && this.nanos == null : "Not an integer, date or time column";
+        return this.longs[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * Appends the values of the <em>rows</em> from index <em>from</em> to
+     * <em>to</em> of a column of the same type. The dictionary entry of a
+     * string is looked up once per distinct value.
+     */
+    void appendFrom(final ResultColumn source, final int[] rows, final int from, final int to) {
+        assert source.type == this.type : "Different types";
+        final int[] codeMapping = this.codes == null ? null : new int[source.dictionarySize];
+        if (codeMapping != null) {
+            Arrays.fill(codeMapping, -1);
+        }
+        for (int i = from; i < to; i++) {
+            final int row = rows[i];
+            if (source.isNull(row)) {
+                appendNull();
+                continue;
+            }
+            final int chunk = row >>> CHUNK_SHIFT;
+            final int offset = row & CHUNK_MASK;
+            final int target = nextRow();
+            final int targetChunk = target >>> CHUNK_SHIFT;
+            final int targetOffset = target & CHUNK_MASK;
+            switch (this.type) {
+                case DATETIME:
+                    this.nanos[targetChunk][targetOffset] = source.nanos[chunk][offset];
+                    this.longs[targetChunk][targetOffset] = source.longs[chunk][offset];
+                    break;
+                case INTEGER:
+                case DATE:
+                case TIME:
+                    this.longs[targetChunk][targetOffset] = source.longs[chunk][offset];
+                    break;
+                case DECIMAL:
+                    this.doubles[targetChunk][targetOffset] = source.doubles[chunk][offset];
+                    break;
+                default:
+                    final int sourceCode = source.codes[chunk][offset];
+                    int code = codeMapping[sourceCode];
+                    if (code < 0) {
+                        code = codeOf(source.dictionary[sourceCode]);
+                        codeMapping[sourceCode] = code;
+                    }
+                    this.codes[targetChunk][targetOffset] = code;
+                    break;
+            }
+        }
+    }
+
+    /** Copies values of this column into the <em>target</em> vector of the same type. */
+    void copyTo(final int from, final ColumnVector target, final int to, final int length) {
+        assert target.getType() == this.type : "Different types";
+        assert from + length <= this.size : "Range exceeds size";
+        int copied = 0;
+        while (copied < length) {
+            final int row = from + copied;
+            final int chunk = row >>> CHUNK_SHIFT;
+            final int offset = row & CHUNK_MASK;
+            final int count = Math.min(length - copied, CHUNK_SIZE - offset);
+            final int targetRow = to + copied;
+            switch (this.type) {
+                case INTEGER:
+                case DATE:
+                case TIME:
+                    System.arraycopy(this.longs[chunk], offset, target.getLongs(), targetRow, count);
+                    break;
+                case DECIMAL:
+                    System.arraycopy(this.doubles[chunk], offset, target.getDoubles(), targetRow, count);
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) {
+                        target.setObject(targetRow + i, getValue(row + i));
+                    }
+            }
+            for (int i = 0; i < count; i++) {
+                if (isNull(row + i)) {
+                    target.setNull(targetRow + i);
+                } else {
+                    target.setNotNull(targetRow + i);
+                }
+            }
+            copied += count;
+        }
+    }
+
+    final int codeOf(final String value) {
+        if (this.codeOfValue == null) {
+            this.codeOfValue = new HashMap<>();
+            for (int i = 0; i < this.dictionarySize; i++) {
+                this.codeOfValue.put(this.dictionary[i], i);
+            }
+        }
+        final Integer code = this.codeOfValue.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (this.dictionarySize == this.dictionary.length) {
+            this.dictionary = Arrays.copyOf(this.dictionary, this.dictionarySize * 2);
+        }
+        this.dictionary[this.dictionarySize] = value;
+        this.codeOfValue.put(value, this.dictionarySize);
+        return this.dictionarySize++;
+    }
+
+    /** Makes room for one more value and returns its row with a cleared null bit. */
+    final int nextRow() {
+        final int row = this.size;
+        final int chunk = row >>> CHUNK_SHIFT;
+        final int offset = row & CHUNK_MASK;
+        if (chunk == this.nulls.length) {
+            growChunkTable();
+        }
+        if (this.nulls[chunk] == null) {
+            allocateChunk(chunk, chunk == 0 ? FIRST_CHUNK_CAPACITY : CHUNK_SIZE);
+        } else if (chunk == 0 && offset == this.firstChunkCapacity) {
+            allocateChunk(0, Math.min(CHUNK_SIZE, this.firstChunkCapacity * 2));
+        }
+        this.nulls[chunk][offset >>> BITS_PER_WORD_SHIFT] &= ~(1L << row);
+        this.size++;
+        return row;
+    }
+
+    final void growChunkTable() {
+        final int chunks = this.nulls.length * 2;
+        this.nulls = Arrays.copyOf(this.nulls, chunks);
+        if (this.longs != null) {
+            this.longs = Arrays.copyOf(this.longs, chunks);
+        }
+        if (this.nanos != null) {
+            this.nanos = Arrays.copyOf(this.nanos, chunks);
+        }
+        if (this.doubles != null) {
+            this.doubles = Arrays.copyOf(this.doubles, chunks);
+        }
+        if (this.codes != null) {
+            this.codes = Arrays.copyOf(this.codes, chunks);
+        }
+    }
+
+    /** Allocates a chunk or grows the first chunk. Only the first chunk is smaller than {@value #CHUNK_SIZE}. */
+    final void allocateChunk(final int chunk, final int capacity) {
+        if (chunk == 0) {
+            this.firstChunkCapacity = capacity;
+        }
+        this.nulls[chunk] = grow(this.nulls[chunk], ColumnVector.wordsFor(capacity));
+        if (this.longs != null) {
+            this.longs[chunk] = grow(this.longs[chunk], capacity);
+        }
+        if (this.nanos != null) {
+            this.nanos[chunk] = grow(this.nanos[chunk], capacity);
+        }
+        if (this.doubles != null) {
+            this.doubles[chunk] = this.doubles[chunk] == null ? new double[capacity] : Arrays.copyOf(this.doubles[chunk], capacity);
+        }
+        if (this.codes != null) {
+            this.codes[chunk] = this.codes[chunk] == null ? new int[capacity] : Arrays.copyOf(this.codes[chunk], capacity);
+        }
+    }
+
+    static long[] grow(final long[] values, final int capacity) {
+        return values == null ? new long[capacity] : Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "ResultColumn{" + "descriptor=" + descriptor + ", size=" + size + '}';
+    }
+}
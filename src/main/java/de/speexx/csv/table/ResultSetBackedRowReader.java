@@ -20,33 +20,28 @@ package de.speexx.csv.table;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
-import static de.speexx.csv.table.EntryDescriptor.Type.DATE;
-import static de.speexx.csv.table.EntryDescriptor.Type.DATETIME;
-import static de.speexx.csv.table.EntryDescriptor.Type.DECIMAL;
-import static de.speexx.csv.table.EntryDescriptor.Type.INTEGER;
-import static de.speexx.csv.table.EntryDescriptor.Type.STRING;
-import static de.speexx.csv.table.EntryDescriptor.Type.TIME;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.Optional;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Spliterator;
 
+/**
+ * Holds the result of a query in a {@link ColumnarResult}. Integers, decimals,
+ * dates and times are stored as primitive values, strings in a dictionary per
+ * column. The {@linkplain Row rows} are views on the columns and create
+ * {@link Entry} instances only for the {@linkplain Row#iterator() iterator}.
+ */
 class ResultSetBackedRowReader implements RowReader {
 
-    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
-
     private final List<EntryDescriptor> descriptors;
     private final DbTable.OriginalReplacementMap replacementMap;
     private final String rowNumberColumnName;
-    private final List<Row> rows = new ArrayList<>();
+    private final ColumnarResult result;
     int rowNumberColumn = -1;
 
     public ResultSetBackedRowReader(final ResultSet result,
@@ -56,7 +51,9 @@ class ResultSetBackedRowReader implements RowReader {
         this.replacementMap = Objects.requireNonNull(replacementMap, "replacementMap is null");
         Objects.requireNonNull(result, "resultset is null");
         this.descriptors = createEntryListDescriptorsList(result);
+        this.result = new ColumnarResult(this.descriptors);
         fillRows(result);
+        this.result.trimToSize();
     }
 
     @Override
@@ -66,98 +63,90 @@ class ResultSetBackedRowReader implements RowReader {
 
     @Override
     public Iterator<Row> iterator() {
-        return this.rows.iterator();
+        return this.result.iterator();
+    }
+
+    @Override
+    public Iterator<RowBatch> batches(final int size) {
+        return this.result.batches(size);
+    }
+
+    @Override
+    public Spliterator<Row> spliterator() {
+        return this.result.spliterator();
     }
 
     @Override
     public void close() throws Exception {
     }
 
+    long getRowCount() {
+        return this.result.size();
+    }
+
     final void fillRows(final ResultSet rs) throws SQLException {
         assert rs != null;
-        final int descriptorSize = this.descriptors.size();
-        final int maxEntriesPerDbRow = this.rowNumberColumn == -1 ? descriptorSize : descriptorSize + 1;
+        final int columnCount = this.result.getColumnCount();
+        final int maxColumns = this.rowNumberColumn == -1 ? columnCount : columnCount + 1;
 
         while (rs.next()) {
-            final List<Entry> entries = new ArrayList<>(descriptorSize);
-            for (int columnIdx = 1, entryIdx = 0; columnIdx <= maxEntriesPerDbRow; columnIdx++, entryIdx++) {
+            for (int columnIdx = 1, entryIdx = 0; columnIdx <= maxColumns; columnIdx++) {
                 if (columnIdx != this.rowNumberColumn) {
-                    final EntryDescriptor desc = this.descriptors.get(entryIdx);
-                    switch (desc.getType()) {
-                        case DATE: {
-                            final LocalDate date = rs.getDate(columnIdx).toLocalDate();
-                            entries.add(toEntry(desc, date));
-                            break;
-                        }
-                        case DATETIME: {
-                            final LocalDateTime datetime = rs.getTimestamp(columnIdx).toLocalDateTime();
-                            entries.add(toEntry(desc, datetime));
-                            break;
-                        }
-                        case TIME: {
-                            final LocalTime datetime = rs.getTime(columnIdx).toLocalTime();
-                            entries.add(toEntry(desc, datetime));
-                            break;
-                        }
-                        case DECIMAL: {
-                            final double d = rs.getDouble(columnIdx);
-                            entries.add(toEntry(desc, d));
-                            break;
-                        }
-                        case INTEGER: {
-                            final long l = rs.getLong(columnIdx);
-                            entries.add(toEntry(desc, l));
-                            break;
-                        }
-                        case STRING: {
-                            final String s = rs.getString(columnIdx);
-                            entries.add(toEntry(desc, s));
-                            break;
-                        }
-                        default:
-                            throw new TableException("unsupported type: " + desc.getType());
-                    }
-                } else {
-                    entryIdx--;
+                    read(rs, columnIdx, this.result.getColumn(entryIdx++));
                 }
             }
-            final Row row = new Row() {
-                @Override
-                public int size() {
-                    return entries.size();
-                }
-
-                @Override
-                public Iterator<Entry> iterator() {
-                    return entries.listIterator();
-                }
-
-                @Override
-                public String toString() {
-                    return "Row{" + entries + "}";
-                }
-            };
-            this.rows.add(row);
         }
     }
 
-    final Entry toEntry(final EntryDescriptor desc, final Object o) {
-        return new Entry() {
-            @Override
-            public EntryDescriptor getDescriptor() {
-                return desc;
+    static void read(final ResultSet rs, final int columnIdx, final ResultColumn column) throws SQLException {
+        switch (column.getType()) {
+            case INTEGER: {
+                final long value = rs.getLong(columnIdx);
+                if (rs.wasNull()) {
+                    column.appendNull();
+                } else {
+                    column.appendLong(value);
+                }
+                break;
             }
-
-            @Override
-            public Object getValue() {
-                return o;
+            case DECIMAL: {
+                final double value = rs.getDouble(columnIdx);
+                if (rs.wasNull()) {
+                    column.appendNull();
+                } else {
+                    column.appendDouble(value);
+                }
+                break;
             }
-
-            @Override
-            public String toString() {
-                return "Entry{" + getDescriptor() + "; Value: " + getValue() + "}";
+            case DATE: {
+                final java.sql.Date date = rs.getDate(columnIdx);
+                if (date == null) {
+                    column.appendNull();
+                } else {
+                    column.appendLong(date.toLocalDate().toEpochDay());
+                }
+                break;
             }
-        };
+            case TIME: {
+                final java.sql.Time time = rs.getTime(columnIdx);
+                if (time == null) {
+                    column.appendNull();
+                } else {
+                    column.appendLong(time.toLocalTime().toNanoOfDay());
+                }
+                break;
+            }
+            case DATETIME: {
+                final Timestamp timestamp = rs.getTimestamp(columnIdx);
+                column.appendDateTime(timestamp == null ? null : timestamp.toLocalDateTime());
+                break;
+            }
+            case STRING:
+                column.appendString(rs.getString(columnIdx));
+                break;
+            default:
+                throw new TableException("unsupported type: " + column.getType());
+        }
     }
 
     final List<EntryDescriptor> createEntryListDescriptorsList(final ResultSet result) throws SQLException {
@@ -187,6 +176,6 @@ class ResultSetBackedRowReader implements RowReader {
 
     @Override
     public String toString() {
-        return "ResultSetBackedRowReader{" + "descriptors=" + descriptors + ", entries=" + rows + '}';
+        return "ResultSetBackedRowReader{" + "descriptors=" + descriptors + ", rows=" + getRowCount() + '}';
     }
 }
@@ -17,8 +17,16 @@
  */
 package de.speexx.csv.table;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+
 /**
  * A row contains the {@linkplain Entry entries} of the row in a {@link Table}.
+ * <p>Besides the {@link #iterator()} the entries are accessible by their
+ * ordinal. The primitive getters return the value without boxing, if the
+ * implementation stores primitive values. The default implementations use
+ * the iterator.</p>
  */
 public interface Row extends Iterable<Entry> {
     
@@ -27,4 +35,96 @@ public interface Row extends Iterable<Entry> {
      * @return never < 0
      */
     int size();
+
+    /**
+     * @param index the ordinal of the entry, starting with {@code 0}
+     * @return the entry with the given ordinal. Never {@code null}
+     * @throws IndexOutOfBoundsException if the index is not in the range of {@link #size()}
+     */
+    default Entry get(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + " - size: " + size());
+        }
+        final Iterator<Entry> entries = iterator();
+        for (int i = 0; i < index; i++) {
+            entries.next();
+        }
+        return entries.next();
+    }
+
+    /**
+     * @param index the ordinal of the entry, starting with {@code 0}
+     * @return the value of the entry. Can be {@code null}
+     * @throws IndexOutOfBoundsException if the index is not in the range of {@link #size()}
+     */
+    default Object getValue(final int index) {
+        return get(index).getValue();
+    }
+
+    /**
+     * @param index the ordinal of the entry, starting with {@code 0}
+     * @return {@code true} if the value of the entry is {@code null}
+     * @throws IndexOutOfBoundsException if the index is not in the range of {@link #size()}
+     */
+    default boolean isNull(final int index) {
+        return getValue(index) == null;
+    }
+
+    /**
+     * The value of an {@link EntryDescriptor.Type#INTEGER} entry.
+     * @param index the ordinal of the entry, starting with {@code 0}
+     * @return the value or {@code 0} if the value {@linkplain #isNull(int) is null}
+     * @throws IndexOutOfBoundsException if the index is not in the range of {@link #size()}
+     * @throws IncompatibleTypeException if the value is not an integer
+     */
+    default long getLong(final int index) {
+        final Object value = getValue(index);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        throw new IncompatibleTypeException("Not an integer value at index " + index + ": " + value.getClass().getName());
+    }
+
+    /**
+     * The value of a {@link EntryDescriptor.Type#DECIMAL} or {@link EntryDescriptor.Type#INTEGER} entry.
+     * @param index the ordinal of the entry, starting with {@code 0}
+     * @return the value or {@code 0} if the value {@linkplain #isNull(int) is null}
+     * @throws IndexOutOfBoundsException if the index is not in the range of {@link #size()}
+     * @throws IncompatibleTypeException if the value is not a number
+     */
+    default double getDouble(final int index) {
+        final Object value = getValue(index);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        throw new IncompatibleTypeException("Not a number value at index " + index + ": " + value.getClass().getName());
+    }
+
+    /**
+     * The day of a {@link EntryDescriptor.Type#DATE} or {@link EntryDescriptor.Type#DATETIME}
+     * entry as {@linkplain LocalDate#toEpochDay() epoch day}.
+     * @param index the ordinal of the entry, starting with {@code 0}
+     * @return the epoch day or {@code 0} if the value {@linkplain #isNull(int) is null}
+     * @throws IndexOutOfBoundsException if the index is not in the range of {@link #size()}
+     * @throws IncompatibleTypeException if the value is not a date
+     */
+    default long getEpochDay(final int index) {
+        final Object value = getValue(index);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).toEpochDay();
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalDate().toEpochDay();
+        }
+        throw new IncompatibleTypeException("Not a date value at index " + index + ": " + value.getClass().getName());
+    }
 }
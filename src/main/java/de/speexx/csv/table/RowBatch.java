@@ -0,0 +1,130 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A batch of rows stored as one {@link ColumnVector} per column. Batches are
+ * delivered by {@link RowReader#batches(int)}.
+ * <p>A reader may reuse the batch instance for the next batch. The values of a
+ * batch are only valid until the next batch is requested.</p>
+ */
+public final class RowBatch {
+
+    private final List<EntryDescriptor> descriptors;
+    private final ColumnVector[] columns;
+    private final int capacity;
+    private int size;
+
+    /**
+     * @param descriptors the descriptors of the columns
+     * @param capacity the maximum number of rows of the batch
+     */
+    RowBatch(final List<? extends EntryDescriptor> descriptors, final int capacity) {
+        Objects.requireNonNull(descriptors, "descriptors is null");
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+        }
+        this.descriptors = Collections.unmodifiableList(new ArrayList<>(descriptors));
+        this.capacity = capacity;
+        this.columns = new ColumnVector[descriptors.size()];
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = new ColumnVector(descriptors.get(i), capacity);
+        }
+    }
+
+    public List<EntryDescriptor> getEntryDescriptors() {
+        return this.descriptors;
+    }
+
+    /** @return the number of rows in the batch */
+    public int size() {
+        return this.size;
+    }
+
+    /** @return the maximum number of rows in the batch */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int getColumnCount() {
+        return this.columns.length;
+    }
+
+    /**
+     * @param index the ordinal of the column, starting with {@code 0}
+     * @return the vector of the column
+     * @throws IndexOutOfBoundsException if there is no column with the index
+     */
+    public ColumnVector getColumn(final int index) {
+        return this.columns[index];
+    }
+
+    /**
+     * @param row the index of the row in the batch, starting with {@code 0}
+     * @return a view on the values of the row. Only valid as long as the batch is valid
+     * @throws IndexOutOfBoundsException if the row is not in the range of {@link #size()}
+     */
+    public Row getRow(final int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("Row: " + row + " - size: " + this.size);
+        }
+        return new VectorRow(this.columns, row);
+    }
+
+    ColumnVector[] columns() {
+        return this.columns;
+    }
+
+    /** @return a new batch with a copy of the rows of this batch and a capacity of its size */
+    RowBatch copy() {
+        final RowBatch copy = new RowBatch(this.descriptors, Math.max(1, this.size));
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i].copyTo(0, copy.columns[i], 0, this.size);
+        }
+        copy.size = this.size;
+        return copy;
+    }
+
+    void setSize(final int size) {
+        assert size >= 0 && size <= this.capacity : "Illegal size " + size;
+        this.size = size;
+    }
+
+    /** Appends the values of the row. */
+    void add(final Row row) {
+        assert this.size < this.capacity : "Batch is full";
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i].setValue(this.size, row.getValue(i));
+        }
+        this.size++;
+    }
+
+    boolean isFull() {
+        return this.size == this.capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "RowBatch{" + "descriptors=" + descriptors + ", size=" + size + '}';
+    }
+}
@@ -0,0 +1,55 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Collects the rows of a row iterator into a reused {@link RowBatch}.
+ * @see RowReader#batches(int)
+ */
+final class RowBatchIterator implements Iterator<RowBatch> {
+
+    private final Iterator<Row> rows;
+    private final RowBatch batch;
+
+    RowBatchIterator(final Iterator<Row> rows, final List<? extends EntryDescriptor> descriptors, final int size) {
+        this.rows = Objects.requireNonNull(rows, "rows is null");
+        this.batch = new RowBatch(descriptors, size);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.rows.hasNext();
+    }
+
+    @Override
+    public RowBatch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        this.batch.setSize(0);
+        while (!this.batch.isFull() && this.rows.hasNext()) {
+            this.batch.add(this.rows.next());
+        }
+        return this.batch;
+    }
+}
@@ -0,0 +1,98 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the {@linkplain RowReader#batches(int) batches} of a reader
+ * with unknown size. A split hands off the next batch as a sized
+ * {@link VectorRowSpliterator}, so the parallel workers get the rows in
+ * chunks of {@value #SPLIT_SIZE} rows without competing for the source.
+ * <p>The batches of the source may be reused. Each batch is therefore copied
+ * before its rows are handed out.</p>
+ */
+final class RowBatchSpliterator implements Spliterator<Row> {
+
+    static final int SPLIT_SIZE = 4096;
+
+    private final Iterator<RowBatch> batches;
+    private Spliterator<Row> current;
+
+    /** @param batches the batches of a reader with at most {@value #SPLIT_SIZE} rows */
+    RowBatchSpliterator(final Iterator<RowBatch> batches) {
+        this.batches = Objects.requireNonNull(batches, "batches is null");
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Row> action) {
+        Objects.requireNonNull(action, "action is null");
+        while (true) {
+            if (this.current != null && this.current.tryAdvance(action)) {
+                return true;
+            }
+            this.current = nextBatch();
+            if (this.current == null) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Row> action) {
+        Objects.requireNonNull(action, "action is null");
+        if (this.current != null) {
+            this.current.forEachRemaining(action);
+            this.current = null;
+        }
+        for (Spliterator<Row> batch = nextBatch(); batch != null; batch = nextBatch()) {
+            batch.forEachRemaining(action);
+        }
+    }
+
+    @Override
+    public Spliterator<Row> trySplit() {
+        if (this.current != null) {
+            final Spliterator<Row> rest = this.current;
+            this.current = null;
+            return rest;
+        }
+        return nextBatch();
+    }
+
+    final Spliterator<Row> nextBatch() {
+        if (!this.batches.hasNext()) {
+            return null;
+        }
+        final RowBatch batch = this.batches.next().copy();
+        return new VectorRowSpliterator(batch.columns(), 0, batch.size());
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -19,6 +19,7 @@ package de.speexx.csv.table;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
 
 /**
  * Implementation of {@code RowReader} instances are the main construction
@@ -43,4 +44,33 @@ public interface RowReader extends Iterable<Row>, AutoCloseable {
      */
     @Override
     Iterator<Row> iterator();
+
+    /**
+     * Iterator over the rows of the reader in batches of column vectors.
+     * Each batch contains at most <em>size</em> rows. The batch instance may
+     * be reused for the next batch. Use either the batches or the
+     * {@linkplain #iterator() row iterator} of a reader, not both.
+     * <p>The default implementation collects the rows of the {@link #iterator()}.</p>
+     * @param size the maximum number of rows of a batch
+     * @return never {@code null}
+     * @throws IllegalArgumentException if the size is &lt; 1
+     */
+    default Iterator<RowBatch> batches(final int size) {
+        return new RowBatchIterator(iterator(), getEntryDescriptors(), size);
+    }
+
+    /**
+     * Spliterator over the rows of the reader for sequential and parallel
+     * streams, e.g. with {@link de.speexx.csv.table.util.IteratorSupport#asStream(java.lang.Iterable, boolean)}.
+     * Use either the spliterator or the {@linkplain #iterator() row iterator}
+     * of a reader, not both.
+     * <p>The default implementation splits off the {@linkplain #batches(int) batches}
+     * of the reader. Readers with the rows in memory split by index ranges and
+     * report the exact sizes.</p>
+     * @return never {@code null}
+     */
+    @Override
+    default Spliterator<Row> spliterator() {
+        return new RowBatchSpliterator(batches(RowBatchSpliterator.SPLIT_SIZE));
+    }
 }
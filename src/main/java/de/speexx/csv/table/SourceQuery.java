@@ -0,0 +1,50 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import java.util.Optional;
+
+/**
+ * A query executed directly on the rows of a source without loading a table.
+ * The types of the columns are assumed from the first rows of the source. If
+ * the types of all rows differ from the assumed types, the execution returns
+ * no result and the query has to be executed on a loaded table.
+ * @see ParallelAggregation
+ * @see ExternalSort
+ */
+public interface SourceQuery {
+
+    /**
+     * Reads the rows of the source and executes the query on them.
+     * @param sql the query on the columns of the source
+     * @param source the source with string values
+     * @param detectTypes {@code false} to take all values as strings
+     * @return the result or empty if the detected types differ from the types
+     *         assumed on the first rows
+     * @throws UnsupportedQueryException if the query isn't supported by the execution
+     * @throws TableException if the execution fails
+     */
+    Optional<RowReader> execute(String sql, RowReader source, boolean detectTypes);
+
+    /** @param collect {@code true} to collect the operators with rows and time */
+    void setCollectQueryPlans(boolean collect);
+
+    /** @return the plan of the last execution. Empty if not collected */
+    Optional<String> getLastQueryPlan();
+}
@@ -0,0 +1,509 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.ChunkConverter.Chunk;
+import de.speexx.csv.table.query.Expression;
+import de.speexx.csv.table.query.OrderItem;
+import de.speexx.csv.table.query.Query;
+import de.speexx.csv.table.query.QueryParser;
+import de.speexx.csv.table.query.SelectItem;
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes an aggregation query on an unbounded source like the standard
+ * input. Only the aggregate state of the groups is kept, so the memory
+ * doesn't grow with the rows. The supported queries are the aggregations of
+ * the {@link ParallelAggregation} without <tt>COUNT(DISTINCT ...)</tt>.
+ * <p>With an emit interval the current result is passed to the listener in
+ * each interval new rows arrived. The final result at the end of the source
+ * is returned by {@link #execute(String, RowReader, boolean)}.</p>
+ * <p>With a {@link TimeWindow} the rows are aggregated per window. The result
+ * of a window has the additional columns {@value #WINDOW_START} and
+ * {@value #WINDOW_END} in front and is passed to the listener as soon as the
+ * window is closed. The rows are aggregated into panes of the length of the
+ * slide, so each row is aggregated once. The panes of a window are merged
+ * when the window is closed. Only the panes of the open windows are kept.
+ * The watermark advances after each chunk, so the rows of a chunk are never
+ * late to each other. The emit interval aggregates the pending rows, so
+ * windows are closed even if the source delivers less rows than a chunk.</p>
+ * <p>The types of the used columns are assumed from the first rows. A source
+ * can't be read twice, so a value not matching the assumed type of its column
+ * ends the execution with a {@link TableException}.</p>
+ */
+public final class StreamingAggregation implements SourceQuery {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    static final int CHUNK_SIZE = ParallelAggregation.CHUNK_SIZE;
+    public static final String WINDOW_START = "window_start";
+    public static final String WINDOW_END = "window_end";
+
+    private final long emitIntervalMillis;
+    private final TimeWindow window;
+    private final Consumer<RowReader> listener;
+    private boolean collectQueryPlans;
+    private String lastQueryPlan;
+
+    /** Creates an aggregation returning the result at the end of the source only. */
+    public StreamingAggregation() {
+        this(0, null, rows -> {});
+    }
+
+    /**
+     * @param emitIntervalMillis the interval of the intermediate results. 0 for no intermediate results
+     * @param listener gets the intermediate results
+     * @throws IllegalArgumentException if <em>emitIntervalMillis</em> is &lt; 0
+     */
+    public StreamingAggregation(final long emitIntervalMillis, final Consumer<RowReader> listener) {
+        this(emitIntervalMillis, null, listener);
+    }
+
+    /**
+     * @param emitIntervalMillis the interval of the intermediate results or
+     *                           of the aggregation of the pending rows with
+     *                           a window. 0 for no intermediate results
+     * @param window the windows to aggregate the rows in. May be {@code null}
+     * @param listener gets the intermediate results or the results of the closed windows
+     * @throws IllegalArgumentException if <em>emitIntervalMillis</em> is &lt; 0
+     */
+    public StreamingAggregation(final long emitIntervalMillis, final TimeWindow window, final Consumer<RowReader> listener) {
+        if (emitIntervalMillis < 0) {
+            throw new IllegalArgumentException("emit interval < 0: " + emitIntervalMillis);
+        }
+        this.emitIntervalMillis = emitIntervalMillis;
+        this.window = window;
+        this.listener = Objects.requireNonNull(listener, "listener is null");
+    }
+
+    @Override
+    public void setCollectQueryPlans(final boolean collect) {
+        this.collectQueryPlans = collect;
+        this.lastQueryPlan = null;
+    }
+
+    @Override
+    public Optional<String> getLastQueryPlan() {
+        return Optional.ofNullable(this.lastQueryPlan);
+    }
+
+    /**
+     * Reads the source until its end and aggregates the rows.
+     * @return the final result. Never empty. Without rows for a windowed
+     *         aggregation, because all windows are passed to the listener
+     * @throws UnsupportedQueryException if the query is no supported
+     *         aggregation. Thrown before the first row is read
+     * @throws TableException if a value doesn't match the assumed type of its
+     *         column or the aggregation fails, e.g. on an overflow of a sum
+     */
+    @Override
+    public Optional<RowReader> execute(final String sql, final RowReader source, final boolean detectTypes) {
+        Objects.requireNonNull(sql, "sql is null");
+        Objects.requireNonNull(source, "source is null");
+        this.lastQueryPlan = null;
+
+        final List<EntryDescriptor> sourceDescriptors = source.getEntryDescriptors();
+        final List<String> names = sourceDescriptors.stream().map(EntryDescriptor::getName).collect(Collectors.toList());
+        final Query query = QueryParser.parse(sql, names);
+        if (!query.isAggregation()) {
+            throw new UnsupportedQueryException("No aggregation");
+        }
+        if (query.getSelectItems().stream().anyMatch(item -> isDistinctAggregate(item.getExpression()))
+                || query.getOrderBy().stream().anyMatch(item -> isDistinctAggregate(item.getExpression()))) {
+            throw new UnsupportedQueryException("Distinct aggregate");
+        }
+
+        int[] usedColumns = ChunkConverter.usedColumns(query, names);
+        if (this.window != null) {
+            if (names.contains(WINDOW_START) || names.contains(WINDOW_END)) {
+                throw new TableException("Source has a column " + WINDOW_START + " or " + WINDOW_END);
+            }
+            final int timeColumn = names.indexOf(this.window.getColumn());
+            if (timeColumn < 0) {
+                throw new TableException("Unknown window column: " + this.window.getColumn());
+            }
+            usedColumns = IntStream.concat(Arrays.stream(usedColumns), IntStream.of(timeColumn)).distinct().sorted().toArray();
+        }
+
+        final long start = System.currentTimeMillis();
+        final Stream stream = new Stream(query, sourceDescriptors, usedColumns, detectTypes);
+        final ScheduledExecutorService timer = this.emitIntervalMillis == 0 ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread t = new Thread(runnable, "streaming-aggregation");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            if (timer != null) {
+                timer.scheduleAtFixedRate(stream::emit, this.emitIntervalMillis, this.emitIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+            stream.read(source.batches(timer == null ? CHUNK_SIZE : 1));
+        } finally {
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+        }
+
+        synchronized (stream) {
+            stream.checkFailure();
+            stream.flush();
+            if (this.window != null) {
+                stream.closeWindows(Long.MAX_VALUE);
+            }
+            final ColumnarQuery columnarQuery = stream.newColumnarQuery(this.collectQueryPlans);
+            final ColumnarResult result = columnarQuery.executeGrouped(grouping -> {
+                final ResultColumn[] groups = this.window == null ? stream.groupColumns()
+                                                                  : stream.withWindow(0, 0, stream.execution.newGroupColumns());
+                columnarQuery.appendPlan("Scan", stream.execution.rows.get(), 0);
+                query.getWhere().ifPresent(where -> columnarQuery.appendPlan("Filter " + where, stream.execution.selected.get(), 0));
+                if (this.window == null) {
+                    columnarQuery.appendPlan("Streaming aggregation by " + query.getGroupBy() + " with " + stream.emissions + " intermediate results",
+                                             groups[0].size(), System.currentTimeMillis() - start);
+                } else {
+                    columnarQuery.appendPlan("Windowed aggregation by " + query.getGroupBy() + " in " + this.window + ", "
+                                             + stream.lateRows + " late rows dropped", stream.windows, System.currentTimeMillis() - start);
+                }
+                return Optional.of(groups);
+            }).get();
+            this.lastQueryPlan = columnarQuery.getPlan(query.getFrom())
+                                              .map(plan -> plan.replaceFirst("^Columnar query", "Streaming aggregation"))
+                                              .orElse(null);
+            return Optional.of(result);
+        }
+    }
+
+    static boolean isDistinctAggregate(final Expression expression) {
+        return expression instanceof Expression.Aggregate && ((Expression.Aggregate) expression).isDistinct();
+    }
+
+    /**
+     * @return the query with the window columns in front of the select list
+     *         and the group columns
+     */
+    static Query windowQuery(final Query query) {
+        final List<SelectItem> selectItems = new ArrayList<>();
+        selectItems.add(new SelectItem(new Expression.ColumnReference(WINDOW_START), null));
+        selectItems.add(new SelectItem(new Expression.ColumnReference(WINDOW_END), null));
+        selectItems.addAll(query.getSelectItems());
+        final List<Expression> groupBy = new ArrayList<>();
+        groupBy.add(new Expression.ColumnReference(WINDOW_START));
+        groupBy.add(new Expression.ColumnReference(WINDOW_END));
+        groupBy.addAll(query.getGroupBy());
+        final List<OrderItem> orderBy = new ArrayList<>();
+        for (final OrderItem item : query.getOrderBy()) {
+            if (item.getExpression() instanceof Expression.Literal) {
+                final long position = (Long) ((Expression.Literal) item.getExpression()).getValue();
+                orderBy.add(new OrderItem(new Expression.Literal(position + 2), item.isDescending()));
+            } else {
+                orderBy.add(item);
+            }
+        }
+        return new Query(query.isDistinct(), selectItems, query.getFrom(), query.getWhere().orElse(null),
+                         groupBy, orderBy, query.getOffset(), query.getLimit());
+    }
+
+    /** @return the milliseconds since the epoch of a date or datetime */
+    static long millisOf(final ColumnVector time, final int row) {
+        if (time.getType() == EntryDescriptor.Type.DATE) {
+            return time.getEpochDay(row) * 86_400_000L;
+        }
+        final LocalDateTime datetime = (LocalDateTime) time.getValue(row);
+        return datetime.toEpochSecond(ZoneOffset.UTC) * 1000 + datetime.getNano() / 1_000_000;
+    }
+
+    static LocalDateTime datetimeOf(final long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * The aggregate state of one execution. The rows are collected in a
+     * pending chunk and aggregated if the chunk is full or an intermediate
+     * result is emitted. All access is synchronized on the stream.
+     */
+    final class Stream {
+
+        private final Query query;
+        private final Query windowQuery;
+        private final List<EntryDescriptor> sourceDescriptors;
+        private final int[] usedColumns;
+        private final boolean detectTypes;
+        private final Object[][] pending;
+        private int pendingSize;
+        private List<EntryDescriptor> descriptors;
+        ParallelAggregation.Execution execution;
+        ParallelAggregation.Execution.Worker worker;
+        private long emittedRows = -1;
+        long emissions;
+        private RuntimeException failure;
+        private int timeColumn;
+        private final TreeMap<Long, GroupTable[]> panes = new TreeMap<>();
+        private long nextWindowStart = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        long windows;
+        long lateRows;
+
+        Stream(final Query query, final List<EntryDescriptor> sourceDescriptors, final int[] usedColumns, final boolean detectTypes) {
+            this.query = query;
+            this.windowQuery = window == null ? null : windowQuery(query);
+            this.sourceDescriptors = sourceDescriptors;
+            this.usedColumns = usedColumns;
+            this.detectTypes = detectTypes;
+            this.pending = new Object[usedColumns.length][CHUNK_SIZE];
+        }
+
+        void read(final Iterator<RowBatch> batches) {
+            while (batches.hasNext()) {
+                final RowBatch batch = batches.next();
+                synchronized (this) {
+                    checkFailure();
+                    for (int row = 0; row < batch.size(); row++) {
+                        for (int i = 0; i < this.usedColumns.length; i++) {
+                            this.pending[i][this.pendingSize] = batch.getColumn(this.usedColumns[i]).getObjects()[row];
+                        }
+                        if (++this.pendingSize == CHUNK_SIZE) {
+                            flush();
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Aggregates the pending rows. The first rows define the assumed types. */
+        synchronized void flush() {
+            final Chunk chunk = new Chunk(this.pending, this.pendingSize);
+            if (this.execution == null) {
+                start(this.pendingSize == 0 ? null : chunk);
+            }
+            if (this.pendingSize == 0) {
+                return;
+            }
+            if (!(window == null ? this.worker.add(chunk) : this.worker.convert(chunk))) {
+                throw new TableException("Values of the source don't match the column types " + this.descriptors
+                                         + " of the first rows. Execute the query without type detection");
+            }
+            this.pendingSize = 0;
+            if (window != null) {
+                aggregatePanes(chunk.size);
+            }
+        }
+
+        /**
+         * Aggregates each converted row into the pane of its time. The watermark
+         * follows the latest time of the rows minus the lateness. A row is late
+         * if its last window ends at or before the watermark. A window is closed
+         * as soon as the watermark passes its end.
+         */
+        void aggregatePanes(final int size) {
+            final ColumnVector time = this.worker.converter.getVectors()[this.timeColumn];
+            final long[] paneOfRow = new long[size];
+            final Set<Long> segmentPanes = new TreeSet<>();
+            int segmentStart = 0;
+            for (int row = 0; row < size; row++) {
+                paneOfRow[row] = Long.MIN_VALUE;
+                if (time.isNull(row)) {
+                    this.lateRows++;
+                    continue;
+                }
+                final long millis = millisOf(time, row);
+                final long pane = window.paneOf(millis);
+                if (pane + window.getSizeMillis() <= watermark()) {
+                    this.lateRows++;
+                    continue;
+                }
+                if (this.windows == 0) {
+                    this.nextWindowStart = Math.min(this.nextWindowStart, window.firstWindowOf(millis));
+                }
+                paneOfRow[row] = pane;
+                segmentPanes.add(pane);
+                if (millis > this.maxTime) {
+                    this.maxTime = millis;
+                    if (this.nextWindowStart + window.getSizeMillis() <= watermark()) {
+                        // The windows to close need the rows up to the current row
+                        aggregateSegment(segmentStart, row + 1, paneOfRow, segmentPanes);
+                        segmentStart = row + 1;
+                        closeWindows(watermark());
+                    }
+                }
+            }
+            aggregateSegment(segmentStart, size, paneOfRow, segmentPanes);
+        }
+
+        /** Aggregates the rows from <em>from</em> to <em>to</em> (exclusive) into their panes. */
+        void aggregateSegment(final int from, final int to, final long[] paneOfRow, final Set<Long> segmentPanes) {
+            for (final long pane : segmentPanes) {
+                final GroupTable[] partitions = this.panes.computeIfAbsent(pane, key -> this.execution.newPartitions());
+                this.worker.aggregate(to, partitions, row -> row >= from && paneOfRow[row] == pane);
+            }
+            segmentPanes.clear();
+        }
+
+        /** @return the latest time minus the lateness or {@link Long#MIN_VALUE} before the first row */
+        long watermark() {
+            return this.maxTime == Long.MIN_VALUE ? Long.MIN_VALUE : this.maxTime - window.getLatenessMillis();
+        }
+
+        /** Passes the result of each window ending before the watermark to the listener. */
+        void closeWindows(final long watermark) {
+            final long size = window.getSizeMillis();
+            while (!this.panes.isEmpty()) {
+                final long firstPane = this.panes.firstKey();
+                if (firstPane >= this.nextWindowStart + size) {
+                    // Skip the closed windows without rows
+                    this.nextWindowStart = Math.max(this.nextWindowStart, Math.min(window.firstWindowOf(firstPane),
+                                                                                   window.paneOf(watermark - size) + window.getSlideMillis()));
+                }
+                final long end = this.nextWindowStart + size;
+                if (end > watermark) {
+                    return;
+                }
+                final ResultColumn[] groups = this.execution.groupColumns(Arrays.asList(merge(this.panes.subMap(this.nextWindowStart, end).values())));
+                final ResultColumn[] columns = withWindow(this.nextWindowStart, end, groups);
+                this.windows++;
+                listener.accept(new ColumnarQuery(this.windowQuery, new ColumnarResult(windowDescriptors()), false)
+                                        .executeGrouped(grouping -> Optional.of(columns)).get());
+                this.nextWindowStart += window.getSlideMillis();
+                this.panes.headMap(this.nextWindowStart).clear();
+            }
+        }
+
+        GroupTable[] merge(final Collection<GroupTable[]> windowPanes) {
+            if (windowPanes.size() == 1) {
+                return windowPanes.iterator().next();
+            }
+            final GroupTable[] merged = this.execution.newPartitions();
+            for (final GroupTable[] pane : windowPanes) {
+                for (int i = 0; i < merged.length; i++) {
+                    merged[i].merge(pane[i]);
+                }
+            }
+            return merged;
+        }
+
+        /** @return the group columns with the window columns in front */
+        ResultColumn[] withWindow(final long windowStart, final long windowEnd, final ResultColumn[] groups) {
+            final ResultColumn[] columns = new ResultColumn[groups.length + 2];
+            columns[0] = new ResultColumn(windowDescriptor(WINDOW_START));
+            columns[1] = new ResultColumn(windowDescriptor(WINDOW_END));
+            for (int row = 0; row < groups[0].size(); row++) {
+                columns[0].appendValue(datetimeOf(windowStart));
+                columns[1].appendValue(datetimeOf(windowEnd));
+            }
+            System.arraycopy(groups, 0, columns, 2, groups.length);
+            return columns;
+        }
+
+        List<EntryDescriptor> windowDescriptors() {
+            final List<EntryDescriptor> windowDescriptors = new ArrayList<>(this.descriptors);
+            windowDescriptors.add(windowDescriptor(WINDOW_START));
+            windowDescriptors.add(windowDescriptor(WINDOW_END));
+            return windowDescriptors;
+        }
+
+        EntryDescriptor windowDescriptor(final String name) {
+            return EntryDescriptorBuilder.of().addName(name).addType(EntryDescriptor.Type.DATETIME).build();
+        }
+
+        void start(final Chunk first) {
+            final EntryDescriptor.Type[] assumedTypes = ChunkConverter.assumeTypes(first, this.usedColumns.length, this.detectTypes);
+            this.descriptors = ChunkConverter.assumedDescriptors(this.sourceDescriptors, this.usedColumns, assumedTypes);
+            final ColumnarQuery.Grouping grouping;
+            try {
+                grouping = new ColumnarQuery(this.query, new ColumnarResult(this.descriptors), false).prepareGrouping();
+            } catch (final UnsupportedQueryException e) {
+                if (first == null) {
+                    throw e;
+                }
+                throw new TableException("Streaming aggregation not supported: " + e.getMessage(), e);
+            }
+            this.execution = new ParallelAggregation(1, Long.MAX_VALUE).new Execution(this.query, grouping, this.descriptors,
+                                                                                       this.usedColumns, this.detectTypes);
+            this.worker = this.execution.new Worker(null);
+            if (window != null) {
+                for (int i = 0; i < this.usedColumns.length; i++) {
+                    if (this.sourceDescriptors.get(this.usedColumns[i]).getName().equals(window.getColumn())) {
+                        this.timeColumn = i;
+                    }
+                }
+                final EntryDescriptor.Type type = this.descriptors.get(this.usedColumns[this.timeColumn]).getType();
+                if (type != EntryDescriptor.Type.DATETIME && type != EntryDescriptor.Type.DATE) {
+                    throw new TableException("Window column " + window.getColumn() + " is of type " + type + " and not a datetime or date");
+                }
+            }
+        }
+
+        ColumnarQuery newColumnarQuery(final boolean collectQueryPlans) {
+            if (window != null) {
+                return new ColumnarQuery(this.windowQuery, new ColumnarResult(windowDescriptors()), collectQueryPlans);
+            }
+            return new ColumnarQuery(this.query, new ColumnarResult(this.descriptors), collectQueryPlans);
+        }
+
+        /** @return the columns of the groups aggregated so far */
+        synchronized ResultColumn[] groupColumns() {
+            return this.execution.groupColumns(Arrays.asList(this.worker.partitions));
+        }
+
+        /** Passes the current result to the listener if rows arrived since the last emission. */
+        synchronized void emit() {
+            if (this.failure != null || (this.execution == null && this.pendingSize == 0)) {
+                return;
+            }
+            try {
+                flush();
+                if (window != null) {
+                    return;
+                }
+                final long rows = this.execution.rows.get();
+                if (rows == this.emittedRows) {
+                    return;
+                }
+                this.emittedRows = rows;
+                this.emissions++;
+                listener.accept(newColumnarQuery(false).executeGrouped(grouping -> Optional.of(groupColumns())).get());
+            } catch (final RuntimeException e) {
+                LOG.debug("Streaming aggregation failed: {}", e.getMessage());
+                this.failure = e;
+            }
+        }
+
+        synchronized void checkFailure() {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+}
@@ -17,7 +17,9 @@
  */
 package de.speexx.csv.table;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * A Table represents a set of columns with rows. The columns are types by the
@@ -29,11 +31,23 @@ import java.util.List;
  * {@linkplain TableBuilder#of() create additional tables}.
  * @see TableBuilder
  */
-public interface Table {
+public interface Table extends AutoCloseable {
 
     /** The name of the table.
      * @return the table name. */
     String getName();
+
+    /**
+     * The name of the table for users, e.g. the source the table was loaded
+     * from. The {@linkplain #getName() name} may be a generated name only
+     * known inside of a query.
+     * <p>The default implementation returns the {@linkplain #getName() name}.</p>
+     * @return the label of the table
+     * @see TableBuilder#addLabel(String)
+     */
+    default String getLabel() {
+        return getName();
+    }
     
     /** Descriptor of the table columns.
      * <p>The implementation may change the type of the columns during runtime.</p>
@@ -66,4 +80,84 @@ public interface Table {
      * @throws TableException if the transformation of the type is not possible
      */
     void changeColumnTypes(final EntryDescriptor... descriptors);
+
+    /**
+     * Appends the rows of the given reader to the table. The string values
+     * of the rows are converted to the types of the columns. The types of
+     * the appended values are detected like for a loaded source. A column is
+     * widened if the type of the column doesn't keep an appended value, e.g.
+     * an integer column with an appended decimal value becomes a decimal
+     * column.
+     * <p>The default implementation doesn't support appending rows.</p>
+     * @param rows the rows to append with the same columns as the table
+     * @return the number of appended rows
+     * @throws NullPointerException if <em>rows</em> is {@code null}
+     * @throws TableException if the columns differ or appending is not supported
+     */
+    default long appendRows(final RowReader rows) {
+        throw new TableException("Appending rows to table " + getName() + " not supported");
+    }
+
+    /**
+     * Appends the rows added to the source of the table since the last load
+     * or refresh. Only tables {@linkplain TableBuilder#addSource(GrowingCsvFile)
+     * built from a growing file} have a source to refresh.
+     * <p>The default implementation has no source and appends nothing.</p>
+     * @return the number of appended rows
+     * @throws TableException if the source was truncated or replaced or
+     *                        appending the rows fails
+     * @see #appendRows(RowReader)
+     */
+    default long refresh() {
+        return 0;
+    }
+
+    /**
+     * Creates indexes for the columns used in equality or range predicates,
+     * join conditions, <tt>GROUP BY</tt> and <tt>ORDER BY</tt> clauses of the
+     * given query. An index is only created if its estimated benefit for the
+     * <em>expectedExecutions</em> exceeds its build costs.
+     * <p>The default implementation creates no index.</p>
+     * @param sql the select statement to create the indexes for
+     * @param expectedExecutions the expected number of executions of the query
+     *                           or queries with the same columns
+     * @return the names of the columns with a new index. Never {@code null}
+     * @throws NullPointerException if the query is {@code null}
+     * @throws TableException if the creation of an index fails
+     */
+    default List<String> createIndexesFor(final String sql, final int expectedExecutions) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Enables or disables the collection of the execution plan for the
+     * following {@linkplain #executeSql(java.lang.String) queries}. Collecting
+     * the plan slows down the execution of a query.
+     * <p>The default implementation collects no plan.</p>
+     * @param collect {@code true} to collect the execution plans
+     * @throws TableException if enabling the collection fails
+     */
+    default void setCollectQueryPlans(final boolean collect) {
+    }
+
+    /**
+     * The execution plan of the last {@linkplain #executeSql(java.lang.String) query}
+     * with the rows seen and the time of each operator. The plan uses the
+     * original column names and the {@linkplain #getName() table name}.
+     * <p>The default implementation returns always an empty plan.</p>
+     * @return the plan of the last query, if the {@linkplain #setCollectQueryPlans(boolean)
+     *         plan collection} was enabled. Never {@code null}
+     */
+    default Optional<String> getLastQueryPlan() {
+        return Optional.empty();
+    }
+
+    /**
+     * Releases all resources of the table. The table is not usable afterwards.
+     * <p>The default implementation does nothing.</p>
+     * @throws TableException if releasing the resources fails
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -27,6 +27,18 @@ import static de.speexx.csv.table.util.UuidSupport.shortUuid;
  */
 public abstract class TableBuilder {
 
+    /** The implementation of the {@linkplain #build() built} table. */
+    public enum Engine {
+        /** Stores the rows in an in-memory Derby database. */
+        DERBY,
+        /**
+         * Stores the rows as typed columns in memory. Queries outside of the
+         * supported subset are executed with a Derby table created on demand.
+         * @see de.speexx.csv.table.query.QueryParser
+         */
+        COLUMNAR
+    }
+
     /**
      * Creates a new instance.
      * @return never {@code null}
@@ -35,7 +47,10 @@ public abstract class TableBuilder {
 
         return new TableBuilder() {
             private String name;
+            private String label;
             private RowReader reader;
+            private GrowingCsvFile source;
+            private Engine engine = Engine.DERBY;
 
             @Override
             public TableBuilder addName(final String name) {
@@ -43,22 +58,59 @@ public abstract class TableBuilder {
                 return this;
             }
             @Override
+            public TableBuilder addLabel(final String label) {
+                this.label = label;
+                return this;
+            }
+            @Override
             public TableBuilder addRowReader(final RowReader reader) {
                 this.reader = reader;
                 return this;
             }
             @Override
+            public TableBuilder addSource(final GrowingCsvFile source) {
+                this.source = Objects.requireNonNull(source, "source is null");
+                return this;
+            }
+            @Override
+            public TableBuilder addEngine(final Engine engine) {
+                this.engine = Objects.requireNonNull(engine, "engine is null");
+                return this;
+            }
+            @Override
             public Table build() {
                 this.name = Conditions.requireNonNullElse(this.name, createTempTableName());
-                this.reader = Objects.requireNonNull(this.reader, "reader is null");
                 if (this.name.length() == 0) {
                     throw new IllegalStateException("table name is zero");
                 }
-                
+                if (this.reader != null || this.source == null) {
+                    return withSource(build(Objects.requireNonNull(this.reader, "reader is null")));
+                }
+                try (final RowReader sourceReader = this.source.read()) {
+                    return withSource(build(sourceReader));
+                } catch (final TableException e) {
+                    throw e;
+                } catch (final Exception e) {
+                    throw new TableException("Unable to read " + this.source.getPath(), e);
+                }
+            }
+
+            Table build(final RowReader rows) {
+                if (this.engine == Engine.COLUMNAR) {
+                    final ColumnarTable table = new ColumnarTable(this.name);
+                    table.setLabel(this.label);
+                    table.init(rows);
+                    return table;
+                }
                 final DbTable table = new DbTable(this.name);
-                table.init(this.reader);
+                table.setLabel(this.label);
+                table.init(rows);
                 return table;
             }
+
+            Table withSource(final Table table) {
+                return this.source == null ? table : new RefreshableTable(table, this.source);
+            }
             
             final String createTempTableName() {
                 return "a" + shortUuid();
@@ -74,12 +126,43 @@ public abstract class TableBuilder {
      * @return a reference to this object
      */
     public abstract TableBuilder addName(final String name);
+
+    /**
+     * Sets the name of the table for users, e.g. the source the table is
+     * loaded from. The label is reported in the pipeline events. Without
+     * label the {@linkplain #addName(String) name} is the label.
+     * @param label the label of the table
+     * @return a reference to this object
+     * @see Table#getLabel()
+     */
+    public abstract TableBuilder addLabel(final String label);
     /**
      * Sets the reader to get the table content from (column, rows).
      * @param reader the reader
      * @return a reference to this object
      */
     public abstract TableBuilder addRowReader(final RowReader reader);
+
+    /**
+     * Sets the growing file the {@linkplain Table#refresh() refresh} of the
+     * table appends the new rows from. Without
+     * {@linkplain #addRowReader(RowReader) reader} the table is built from
+     * the {@linkplain GrowingCsvFile#read() rows of the file}. A given reader
+     * must read the rows of {@link GrowingCsvFile#read()}, e.g. to detect
+     * the column types.
+     * @param source the file
+     * @return a reference to this object
+     * @throws NullPointerException if <em>source</em> is {@code null}
+     */
+    public abstract TableBuilder addSource(final GrowingCsvFile source);
+
+    /**
+     * Sets the engine of the table. The default is {@link Engine#DERBY}.
+     * @param engine the engine
+     * @return a reference to this object
+     * @throws NullPointerException if <em>engine</em> is {@code null}
+     */
+    public abstract TableBuilder addEngine(final Engine engine);
     
     /**
      * Builds a new table from the given data.
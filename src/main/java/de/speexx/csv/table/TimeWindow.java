@@ -0,0 +1,102 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Tumbling or sliding time windows over a {@link EntryDescriptor.Type#DATETIME}
+ * or {@link EntryDescriptor.Type#DATE} column for a {@link StreamingAggregation}.
+ * A window starts at a multiple of the slide and covers the rows with a time
+ * in <tt>[start, start + size)</tt>. With a slide equal to the size the
+ * windows are tumbling, otherwise a row is in <tt>size / slide</tt> windows.
+ * <p>A window is emitted as soon as the watermark, the latest time seen minus
+ * the lateness, passes its end. Rows arriving for an emitted window are
+ * dropped.</p>
+ */
+public final class TimeWindow {
+
+    private final String column;
+    private final long sizeMillis;
+    private final long slideMillis;
+    private final long latenessMillis;
+
+    /**
+     * @param column the name of the time column
+     * @param size the duration of a window
+     * @param slide the duration between the starts of two windows
+     * @param lateness the time rows may arrive out of order
+     * @throws IllegalArgumentException if <em>size</em> or <em>slide</em> is
+     *         less than a millisecond, <em>size</em> is no multiple of
+     *         <em>slide</em> or <em>lateness</em> is negative
+     */
+    public TimeWindow(final String column, final Duration size, final Duration slide, final Duration lateness) {
+        this.column = Objects.requireNonNull(column, "column is null");
+        this.sizeMillis = Objects.requireNonNull(size, "size is null").toMillis();
+        this.slideMillis = Objects.requireNonNull(slide, "slide is null").toMillis();
+        this.latenessMillis = Objects.requireNonNull(lateness, "lateness is null").toMillis();
+        if (this.sizeMillis < 1 || this.slideMillis < 1) {
+            throw new IllegalArgumentException("window size or slide < 1 ms: " + size + ", " + slide);
+        }
+        if (this.sizeMillis % this.slideMillis != 0) {
+            throw new IllegalArgumentException("window size " + size + " is no multiple of the slide " + slide);
+        }
+        if (this.latenessMillis < 0) {
+            throw new IllegalArgumentException("lateness < 0: " + lateness);
+        }
+    }
+
+    /** Creates tumbling windows without lateness. */
+    public static TimeWindow tumbling(final String column, final Duration size) {
+        return new TimeWindow(column, size, size, Duration.ZERO);
+    }
+
+    public String getColumn() {
+        return this.column;
+    }
+
+    public long getSizeMillis() {
+        return this.sizeMillis;
+    }
+
+    public long getSlideMillis() {
+        return this.slideMillis;
+    }
+
+    public long getLatenessMillis() {
+        return this.latenessMillis;
+    }
+
+    /** @return the start of the last window containing the given time */
+    long paneOf(final long millis) {
+        return Math.floorDiv(millis, this.slideMillis) * this.slideMillis;
+    }
+
+    /** @return the start of the first window containing the given time */
+    long firstWindowOf(final long millis) {
+        return paneOf(millis) - this.sizeMillis + this.slideMillis;
+    }
+
+    @Override
+    public String toString() {
+        return Duration.ofMillis(this.sizeMillis) + " windows on " + this.column
+               + (this.slideMillis == this.sizeMillis ? "" : " every " + Duration.ofMillis(this.slideMillis))
+               + " with " + Duration.ofMillis(this.latenessMillis) + " lateness";
+    }
+}
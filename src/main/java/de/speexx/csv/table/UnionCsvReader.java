@@ -0,0 +1,491 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a list of CSV files as one logical table. All files must have the
+ * identical header. The files are parsed in parallel, the order of the rows
+ * between files is therefore not defined.
+ * <p>Optionally the reader adds the virtual column {@value #FILE_COLUMN_NAME}
+ * with the path of the source file of a row. If the path of all files contains
+ * a date like <tt>2016-08-03</tt>, the additional virtual column
+ * {@value #FILE_DATE_COLUMN_NAME} contains this date.</p>
+ */
+public final class UnionCsvReader implements RowReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    /** Name of the virtual column with the path of the source file. */
+    public static final String FILE_COLUMN_NAME = "_file";
+    /** Name of the virtual column with the date encoded in the path of the source file. */
+    public static final String FILE_DATE_COLUMN_NAME = "_file_date";
+
+    private static final Pattern PATH_DATE_PATTERN = Pattern.compile("(\\d{4})-([01]?\\d)-([0-3]?\\d)");
+    private static final int ROWS_PER_THREAD_IN_QUEUE = 1024;
+
+    private final List<Path> files;
+    private final boolean withFileColumns;
+    private final int threads;
+    private final Charset charset;
+    private final List<EntryDescriptor> descriptors;
+    private final List<EntryDescriptor> sourceDescriptors;
+    private final boolean withFileDateColumn;
+    private ExecutorService executor;
+    private final Set<CsvReader> openReaders = new HashSet<>();
+
+    /**
+     * Creates a new reader for the given UTF-8 encoded <em>files</em>.
+     * @param files the CSV files to read. Must contain at least one file.
+     * @param withFileColumns {@code true} to add the virtual file columns
+     * @param threads number of threads to parse the files with. Must be &gt; 0
+     * @throws NullPointerException if <em>files</em> is {@code null}
+     * @throws IllegalArgumentException if <em>files</em> is empty or <em>threads</em> &lt; 1
+     * @throws TableException if it is not possible to read the header of a file
+     *                        or the headers of the files differ
+     */
+    public UnionCsvReader(final List<Path> files, final boolean withFileColumns, final int threads) {
+        this(files, withFileColumns, threads, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a new reader for the given <em>files</em>.
+     * @param files the CSV files to read. Must contain at least one file.
+     * @param withFileColumns {@code true} to add the virtual file columns
+     * @param threads number of threads to parse the files with. Must be &gt; 0
+     * @param charset the encoding of the files
+     * @throws NullPointerException if <em>files</em> or <em>charset</em> is {@code null}
+     * @throws IllegalArgumentException if <em>files</em> is empty or <em>threads</em> &lt; 1
+     * @throws TableException if it is not possible to read the header of a file
+     *                        or the headers of the files differ
+     */
+    public UnionCsvReader(final List<Path> files, final boolean withFileColumns, final int threads, final Charset charset) {
+        Objects.requireNonNull(files, "files is null");
+        this.charset = Objects.requireNonNull(charset, "charset is null");
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("no files to read");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("number of threads < 1: " + threads);
+        }
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        this.withFileColumns = withFileColumns;
+        this.threads = threads;
+        this.sourceDescriptors = readHeader(this.files.get(0));
+        this.files.stream().skip(1).forEach(file -> checkHeader(file, readHeader(file)));
+        this.withFileDateColumn = withFileColumns && this.files.stream().allMatch(file -> dateFromPath(file).isPresent());
+        this.descriptors = createDescriptors();
+    }
+
+    final List<EntryDescriptor> readHeader(final Path file) {
+        try (final CsvReader reader = new CsvReader(file, this.charset)) {
+            return new ArrayList<>(reader.getEntryDescriptors());
+        } catch (final Exception e) {
+            throw new TableException("Unable to read header of " + file, e);
+        }
+    }
+
+    final List<EntryDescriptor> createDescriptors() {
+        final List<EntryDescriptor> descs = new ArrayList<>(this.sourceDescriptors);
+        if (this.withFileColumns) {
+            descs.add(EntryDescriptorBuilder.of().addName(FILE_COLUMN_NAME).build());
+            if (this.withFileDateColumn) {
+                descs.add(EntryDescriptorBuilder.of().addName(FILE_DATE_COLUMN_NAME).build());
+            }
+        }
+        return Collections.unmodifiableList(descs);
+    }
+
+    /**
+     * Extracts a date like <tt>2016-08-03</tt> or <tt>2016-8-3</tt> from the
+     * given path. If the path contains more than one date, the last one wins.
+     * @param path the path to get the date from
+     * @return the date or an empty value if the path contains no date
+     */
+    public static Optional<LocalDate> dateFromPath(final Path path) {
+        if (Objects.isNull(path)) {
+            return Optional.empty();
+        }
+        final Matcher matcher = PATH_DATE_PATTERN.matcher(path.toString());
+        LocalDate date = null;
+        while (matcher.find()) {
+            try {
+                date = LocalDate.of(Integer.parseInt(matcher.group(1)),
+                                    Integer.parseInt(matcher.group(2)),
+                                    Integer.parseInt(matcher.group(3)));
+            } catch (final RuntimeException e) {
+                LOG.trace("No date in {}: {}", path, e.getMessage());
+            }
+        }
+        return Optional.ofNullable(date);
+    }
+
+    @Override
+    public List<EntryDescriptor> getEntryDescriptors() {
+        return this.descriptors;
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        synchronized (this) {
+            if (this.executor != null) {
+                throw new IllegalStateException("iterator already requested");
+            }
+            this.executor = Executors.newFixedThreadPool(Math.min(this.threads, this.files.size()), runnable -> {
+                final Thread t = new Thread(runnable, "union-csv-reader");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(ROWS_PER_THREAD_IN_QUEUE * this.threads);
+        this.files.forEach(file -> this.executor.execute(() -> readFile(file, queue)));
+        return new QueueIterator(queue, this.files.size());
+    }
+
+    final void readFile(final Path file, final BlockingQueue<Object> queue) {
+        try {
+            try (final CsvReader reader = new CsvReader(file, this.charset)) {
+                checkHeader(file, reader.getEntryDescriptors());
+                final List<Entry> fileEntries = createFileEntries(file);
+                for (final Row row : reader) {
+                    queue.put(toUnionRow(row, fileEntries));
+                }
+            }
+            queue.put(FileDone.INSTANCE);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            try {
+                queue.put(new TableException("Unable to read " + file, e));
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    final Row toUnionRow(final Row row, final List<Entry> fileEntries) {
+        final List<Entry> entries = new ArrayList<>(this.descriptors.size());
+        int idx = 0;
+        for (final Entry entry : row) {
+            entries.add(new CsvReader.SimpleEntry<>(entry.getValue(), this.descriptors.get(idx++)));
+        }
+        entries.addAll(fileEntries);
+        return new CsvReader.SimpleRow(entries);
+    }
+
+    /**
+     * Splits the files into ranges of about the same size in bytes. The range
+     * of a single file splits off batches of its rows. Other than the
+     * {@link #iterator()} the spliterator parses the files in the threads of
+     * the consuming stream. Use either the spliterator or the iterator, not both.
+     */
+    @Override
+    public Spliterator<Row> spliterator() {
+        final long[] endOffsets = new long[this.files.size()];
+        long offset = 0;
+        for (int i = 0; i < endOffsets.length; i++) {
+            offset += sizeOf(this.files.get(i));
+            endOffsets[i] = offset;
+        }
+        return new FileSpliterator(endOffsets, 0, endOffsets.length);
+    }
+
+    static long sizeOf(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (final IOException e) {
+            LOG.debug("Unable to get size of {}: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    final void checkHeader(final Path file, final List<EntryDescriptor> fileDescriptors) {
+        final int size = this.sourceDescriptors.size();
+        boolean equal = size == fileDescriptors.size();
+        for (int i = 0; equal && i < size; i++) {
+            equal = this.sourceDescriptors.get(i).getName().equals(fileDescriptors.get(i).getName());
+        }
+        if (!equal) {
+            throw new TableException("Header of " + file + " differs from header of " + this.files.get(0));
+        }
+    }
+
+    final List<Entry> createFileEntries(final Path file) {
+        if (!this.withFileColumns) {
+            return Collections.emptyList();
+        }
+        final int fileColumnIdx = this.sourceDescriptors.size();
+        final List<Entry> entries = new ArrayList<>(2);
+        entries.add(new CsvReader.SimpleEntry<>(file.toString(), this.descriptors.get(fileColumnIdx)));
+        if (this.withFileDateColumn) {
+            final LocalDate date = dateFromPath(file).orElseThrow(() -> new TableException("No date in path " + file));
+            entries.add(new CsvReader.SimpleEntry<>(date.toString(), this.descriptors.get(fileColumnIdx + 1)));
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() throws Exception {
+        synchronized (this.openReaders) {
+            for (final CsvReader reader : this.openReaders) {
+                reader.close();
+            }
+            this.openReaders.clear();
+        }
+        synchronized (this) {
+            if (this.executor != null) {
+                this.executor.shutdownNow();
+                if (!this.executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    LOG.debug("Reader threads not terminated");
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UnionCsvReader{" + "files=" + files + ", withFileColumns=" + withFileColumns + ", threads=" + threads + '}';
+    }
+
+    enum FileDone {
+        INSTANCE
+    }
+
+    /**
+     * Spliterator over the rows of a range of files. The end offsets of the
+     * files are the cumulated file sizes and the base to split the range.
+     */
+    final class FileSpliterator implements Spliterator<Row> {
+
+        private final long[] endOffsets;
+        private int from;
+        private final int to;
+        private CsvReader reader;
+        private Spliterator<Row> rows;
+
+        FileSpliterator(final long[] endOffsets, final int from, final int to) {
+            this.endOffsets = endOffsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Row> action) {
+            Objects.requireNonNull(action, "action is null");
+            while (true) {
+                if (this.rows != null && this.rows.tryAdvance(action)) {
+                    return true;
+                }
+                if (!openNextFile()) {
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super Row> action) {
+            Objects.requireNonNull(action, "action is null");
+            do {
+                if (this.rows != null) {
+                    this.rows.forEachRemaining(action);
+                }
+            } while (openNextFile());
+        }
+
+        @Override
+        public Spliterator<Row> trySplit() {
+            if (this.to - this.from > 1) {
+                final int middle = middleFile();
+                final Spliterator<Row> prefix = new FileSpliterator(this.endOffsets, this.from, middle);
+                this.from = middle;
+                return prefix;
+            }
+            if (this.rows == null && !openNextFile()) {
+                return null;
+            }
+            return this.rows.trySplit();
+        }
+
+        /** @return the index of the first file of the second half in bytes, always &gt; from and &lt; to */
+        final int middleFile() {
+            final long start = this.from == 0 ? 0 : this.endOffsets[this.from - 1];
+            final long half = start + (this.endOffsets[this.to - 1] - start) / 2;
+            int middle = this.from + 1;
+            while (middle < this.to - 1 && this.endOffsets[middle - 1] < half) {
+                middle++;
+            }
+            return middle;
+        }
+
+        /** Closes the current file and opens the next file of the range. */
+        final boolean openNextFile() {
+            closeFile();
+            if (this.from >= this.to) {
+                return false;
+            }
+            final Path file = UnionCsvReader.this.files.get(this.from++);
+            try {
+                this.reader = new CsvReader(file, UnionCsvReader.this.charset);
+                synchronized (UnionCsvReader.this.openReaders) {
+                    UnionCsvReader.this.openReaders.add(this.reader);
+                }
+                checkHeader(file, this.reader.getEntryDescriptors());
+            } catch (final TableException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new TableException("Unable to read " + file, e);
+            }
+            this.rows = new UnionRowSpliterator(this.reader.spliterator(), createFileEntries(file));
+            return true;
+        }
+
+        final void closeFile() {
+            this.rows = null;
+            if (this.reader != null) {
+                synchronized (UnionCsvReader.this.openReaders) {
+                    UnionCsvReader.this.openReaders.remove(this.reader);
+                }
+                try {
+                    this.reader.close();
+                } catch (final Exception e) {
+                    LOG.debug("Unable to close reader: {}", e.getMessage());
+                }
+                this.reader = null;
+            }
+        }
+
+        /** @return 0 at the end of the range, otherwise unknown as the byte ranges don't tell the rows */
+        @Override
+        public long estimateSize() {
+            return this.rows == null && this.from >= this.to ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+
+    /** Adds the virtual file columns to the rows of a file. */
+    final class UnionRowSpliterator implements Spliterator<Row> {
+
+        private final Spliterator<Row> fileRows;
+        private final List<Entry> fileEntries;
+
+        UnionRowSpliterator(final Spliterator<Row> fileRows, final List<Entry> fileEntries) {
+            this.fileRows = fileRows;
+            this.fileEntries = fileEntries;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Row> action) {
+            return this.fileRows.tryAdvance(row -> action.accept(toUnionRow(row, this.fileEntries)));
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super Row> action) {
+            this.fileRows.forEachRemaining(row -> action.accept(toUnionRow(row, this.fileEntries)));
+        }
+
+        @Override
+        public Spliterator<Row> trySplit() {
+            final Spliterator<Row> split = this.fileRows.trySplit();
+            return split == null ? null : new UnionRowSpliterator(split, this.fileEntries);
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.fileRows.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return this.fileRows.characteristics();
+        }
+    }
+
+    static final class QueueIterator implements Iterator<Row> {
+
+        private final BlockingQueue<Object> queue;
+        private int remainingFiles;
+        private Row next;
+
+        QueueIterator(final BlockingQueue<Object> queue, final int files) {
+            this.queue = queue;
+            this.remainingFiles = files;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.next == null && this.remainingFiles > 0) {
+                final Object element;
+                try {
+                    element = this.queue.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TableException("Interrupted while reading rows", e);
+                }
+                if (element == FileDone.INSTANCE) {
+                    this.remainingFiles--;
+                } else if (element instanceof TableException) {
+                    this.remainingFiles = 0;
+                    throw (TableException) element;
+                } else {
+                    this.next = (Row) element;
+                }
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Row row = this.next;
+            this.next = null;
+            return row;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A row as view on the values of {@link ColumnValues} like {@link ColumnVector}s. The row creates
+ * {@link Entry} instances only for the {@link #iterator()} and {@link #get(int)}.
+ */
+final class VectorRow implements Row {
+
+    private final ColumnValues[] columns;
+    private final int row;
+
+    VectorRow(final ColumnValues[] columns, final int row) {
+        assert columns != null;
+        this.columns = columns;
+        this.row = row;
+    }
+
+    @Override
+    public int size() {
+        return this.columns.length;
+    }
+
+    @Override
+    public Entry get(final int index) {
+        final ColumnValues column = column(index);
+        return toEntry(column.getDescriptor(), column.getValue(this.row));
+    }
+
+    @Override
+    public Object getValue(final int index) {
+        return column(index).getValue(this.row);
+    }
+
+    @Override
+    public boolean isNull(final int index) {
+        return column(index).isNull(this.row);
+    }
+
+    @Override
+    public long getLong(final int index) {
+        return column(index).getLong(this.row);
+    }
+
+    @Override
+    public double getDouble(final int index) {
+        return column(index).getDouble(this.row);
+    }
+
+    @Override
+    public long getEpochDay(final int index) {
+        return column(index).getEpochDay(this.row);
+    }
+
+    @Override
+    public Iterator<Entry> iterator() {
+        return new AbstractList<Entry>() {
+            @Override
+            public Entry get(final int index) {
+                return VectorRow.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return VectorRow.this.size();
+            }
+        }.iterator();
+    }
+
+    ColumnValues column(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + " - size: " + size());
+        }
+        return this.columns[index];
+    }
+
+    static Entry toEntry(final EntryDescriptor desc, final Object o) {
+        return new Entry() {
+            @Override
+            public EntryDescriptor getDescriptor() {
+                return desc;
+            }
+
+            @Override
+            public Object getValue() {
+                return o;
+            }
+
+            @Override
+            public String toString() {
+                return "Entry{" + getDescriptor() + "; Value: " + getValue() + "}";
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final List<Entry> entries = new ArrayList<>(size());
+        forEach(entries::add);
+        return "Row{" + entries + "}";
+    }
+}
@@ -0,0 +1,89 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over an index range of the rows of {@link ColumnValues}. The
+ * spliterator splits the range in halves and knows the exact size of each part.
+ * The rows are {@link VectorRow} views on the columns.
+ */
+final class VectorRowSpliterator implements Spliterator<Row> {
+
+    static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+    private final ColumnValues[] columns;
+    private int from;
+    private final int to;
+
+    /**
+     * @param columns the columns with the values of the rows
+     * @param from the index of the first row, inclusive
+     * @param to the index of the last row, exclusive
+     */
+    VectorRowSpliterator(final ColumnValues[] columns, final int from, final int to) {
+        assert from >= 0 && from <= to : "Illegal range " + from + " - " + to;
+        this.columns = Objects.requireNonNull(columns, "columns is null");
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Row> action) {
+        Objects.requireNonNull(action, "action is null");
+        if (this.from < this.to) {
+            action.accept(new VectorRow(this.columns, this.from++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Row> action) {
+        Objects.requireNonNull(action, "action is null");
+        final int end = this.to;
+        for (int i = this.from; i < end; i++) {
+            action.accept(new VectorRow(this.columns, i));
+        }
+        this.from = end;
+    }
+
+    @Override
+    public Spliterator<Row> trySplit() {
+        final int middle = (this.from + this.to) >>> 1;
+        if (middle <= this.from) {
+            return null;
+        }
+        final Spliterator<Row> prefix = new VectorRowSpliterator(this.columns, this.from, middle);
+        this.from = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return this.to - this.from;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+}
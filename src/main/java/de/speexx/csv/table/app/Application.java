@@ -19,24 +19,63 @@ package de.speexx.csv.table.app;
 
 import com.beust.jcommander.JCommander;
 import de.speexx.csv.table.CsvReader;
-import de.speexx.csv.table.Entry;
 import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.ExternalSort;
+import de.speexx.csv.table.GrowingCsvFile;
+import de.speexx.csv.table.HashJoin;
+import de.speexx.csv.table.ParallelAggregation;
 import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowBatch;
 import de.speexx.csv.table.RowReader;
+import de.speexx.csv.table.SourceQuery;
+import de.speexx.csv.table.StreamingAggregation;
 import de.speexx.csv.table.Table;
 import de.speexx.csv.table.TableBuilder;
 import de.speexx.csv.table.TableException;
+import de.speexx.csv.table.UnionCsvReader;
 import de.speexx.csv.table.app.sql.FromInfo;
+import de.speexx.csv.table.app.sql.JoinInfo;
+import de.speexx.csv.table.app.sql.PartitionFilter;
 import de.speexx.csv.table.app.sql.SelectData;
 import de.speexx.csv.table.app.sql.SelectQueryData;
+import de.speexx.csv.table.event.PipelineEvent;
+import de.speexx.csv.table.event.PipelineEvents;
+import de.speexx.csv.table.event.Stage;
+import de.speexx.csv.table.metric.RowDataMetric;
 import de.speexx.csv.table.metric.SimpleRowDataMetric;
 import de.speexx.csv.table.metric.TypeIndentifyRowReaderDelegate;
+import de.speexx.csv.table.query.Prefilter;
+import de.speexx.csv.table.query.Query;
+import de.speexx.csv.table.query.QueryParser;
+import de.speexx.csv.table.query.UnsupportedQueryException;
 import de.speexx.csv.table.transformer.TypeTransformer;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
@@ -61,25 +100,187 @@ public class Application {
         System.exit(0);
     }
     
+    private final PrintStream out;
+    private final Charset outCharset;
+    private final PrintStream err;
+    private final InputStream in;
+    private final TableCache cache;
+    private final Path workingDirectory;
+    private final Map<String, Integer> executions = new HashMap<>();
+    private RowReader standardInput;
+
+    public Application() {
+        this(System.out, null, Paths.get(""));
+    }
+
+    Application(final PrintStream out, final TableCache cache, final Path workingDirectory) {
+        this(out, System.err, cache, workingDirectory);
+    }
+
+    /**
+     * @param out the stream to write the query result to
+     * @param err the stream to write reports like the statistics to
+     * @param cache the cache to keep loaded tables. May be {@code null}
+     * @param workingDirectory the directory to resolve relative sources against
+     */
+    Application(final PrintStream out, final PrintStream err, final TableCache cache, final Path workingDirectory) {
+        this(out, err, System.in, cache, workingDirectory);
+    }
+
+    /**
+     * @param in the stream of the source <tt>-</tt>. May be {@code null} if
+     *           no standard input is available, e.g. in the server
+     */
+    Application(final PrintStream out, final PrintStream err, final InputStream in, final TableCache cache, final Path workingDirectory) {
+        this(out, Charset.defaultCharset(), err, in, cache, workingDirectory);
+    }
+
+    /**
+     * @param outCharset the charset {@code out} encodes with. The exported
+     *                   bytes of the statistics are counted in this charset
+     */
+    Application(final PrintStream out, final Charset outCharset, final PrintStream err, final InputStream in, final TableCache cache,
+                final Path workingDirectory) {
+        this.out = Objects.requireNonNull(out, "out is null");
+        this.outCharset = Objects.requireNonNull(outCharset, "outCharset is null");
+        this.err = Objects.requireNonNull(err, "err is null");
+        this.in = in;
+        this.cache = cache;
+        this.workingDirectory = Objects.requireNonNull(workingDirectory, "workingDirectory is null");
+    }
+    
     void run(final String... args) throws Exception {
         final Configuration conf = new Configuration();
         final JCommander jc = new JCommander(conf);
         jc.setProgramName(APPLICATION_NAME);
-        jc.parse(args);
+        jc.parse(Configuration.withStandardInputAlias(args));
         
         if (conf.isHelp()) {
-            jc.usage();
+            final StringBuilder usage = new StringBuilder();
+            jc.usage(usage);
+            this.out.print(usage);
+            return;
+        }
+        if (conf.isServe()) {
+            if (Objects.nonNull(this.cache)) {
+                throw new TableException("Server already running");
+            }
+            new ScqServer(conf.getPort(), conf.getMemoryBudget(), conf.getTokenFile()).serve();
+            return;
+        }
+        if (conf.isWatch()) {
+            if (Objects.nonNull(this.cache)) {
+                throw new TableException("Watch mode not supported by the server");
+            }
+            new Watcher(conf, this, this.out).run();
             return;
         }
+        if (conf.getInteractiveSource().isPresent()) {
+            if (Objects.nonNull(this.cache)) {
+                throw new TableException("Interactive mode not supported by the server");
+            }
+            if (Objects.isNull(this.in)) {
+                throw new TableException("No standard input available");
+            }
+            new Shell(conf, Shell.withoutInteractiveOption(args)).run(new BufferedReader(new InputStreamReader(this.in)), this.out);
+            return;
+        }
+        final Optional<Path> jfrFile = conf.getJfrFile();
+        if (jfrFile.isPresent()) {
+            final Closeable recording = PipelineEvents.startRecording(this.workingDirectory.resolve(jfrFile.get()));
+            try {
+                execute(conf);
+            } finally {
+                recording.close();
+            }
+            return;
+        }
+        execute(conf);
+    }
 
-        final Optional<List<Table>> tables = loadTable(conf);
-        final Optional<RowReader> rows = executeQuery(conf, tables.orElseThrow(() -> new TableException("No table available")));
+    /**
+     * Loads the tables of the query, executes the query and exports the result.
+     * @param conf the configuration with the query
+     * @return the number of result rows
+     */
+    long execute(final Configuration conf) throws Exception {
+        if (conf.getQueryData().getQuery().trim().isEmpty()) {
+            throw new TableException("No query available");
+        }
+        try {
+            return executeQuery(conf);
+        } finally {
+            if (Objects.nonNull(this.standardInput)) {
+                closeQuietly(this.standardInput);
+                this.standardInput = null;
+            }
+        }
+    }
+
+    long executeQuery(final Configuration conf) throws Exception {
+        if (conf.getWindow().isPresent()) {
+            return executeWindowedAggregation(conf);
+        }
+        final PhaseStatistics statistics = conf.isStats() ? new PhaseStatistics() : null;
+        final boolean statisticsAsJson = conf.isStats() && conf.isStatsAsJson();
+
+        final PhaseStatistics.Mark directMark = Objects.isNull(statistics) ? null : statistics.mark();
+        final boolean standardInput = readsStandardInput(conf);
+        Optional<RowReader> direct = standardInput ? executeStreamingAggregation(conf)
+                                   : conf.isHashAggregation() ? executeHashAggregation(conf) : Optional.empty();
+        if (!direct.isPresent() && conf.isExternalSort() && !standardInput) {
+            direct = executeExternalSort(conf);
+        }
+        final PhaseStatistics.Mark queryMark;
+        final Optional<RowReader> rows;
+        if (direct.isPresent()) {
+            queryMark = directMark;
+            rows = direct;
+        } else {
+            final Optional<List<Table>> tables = loadTable(conf, statistics);
+            queryMark = Objects.isNull(statistics) ? null : statistics.mark();
+            rows = executeQuery(conf, tables.orElseThrow(() -> new TableException("No table available")));
+        }
+        long count = 0;
+        if (Objects.isNull(statistics)) {
+            if (rows.isPresent()) {
+                count = exportResult(conf, rows.get());
+            }
+            return count;
+        }
+
+        final PhaseStatistics.Counter query = statistics.end(PhaseStatistics.Phase.QUERY, queryMark, 0, 0);
         if (rows.isPresent()) {
-            exportResult(conf, rows.get());
+            final PhaseStatistics.Mark exportMark = statistics.mark();
+            final CountingOutputStream counting = new CountingOutputStream(this.out);
+            final PrintStream target = new PrintStream(counting, false, this.outCharset.name());
+            count = exportResult(conf, rows.get(), target);
+            target.flush();
+            query.addRows(count);
+            statistics.end(PhaseStatistics.Phase.EXPORT, exportMark, count, counting.getCount());
         }
+        statistics.print(this.err, statisticsAsJson);
+        return count;
     }
-    
+
     Optional<List<Table>> loadTable(final Configuration conf) throws Exception {
+        return loadTable(conf, null);
+    }
+
+    /**
+     * @param statistics collects the open, parse, detect, insert and convert
+     *                   phases. May be {@code null}
+     */
+    Optional<List<Table>> loadTable(final Configuration conf, final PhaseStatistics statistics) throws Exception {
+        // The standard input can't be read again if the detected types don't match the prefilter
+        return loadTable(conf, statistics, conf.isPrefilter() && !readsStandardInput(conf));
+    }
+
+    /**
+     * @param prefilter {@code true} if the rows which can't match the where
+     *                  clause should be dropped while loading
+     */
+    Optional<List<Table>> loadTable(final Configuration conf, final PhaseStatistics statistics, final boolean prefilter) throws Exception {
         if (conf.isVerbose()) {LOG.info("Load table");}
         final long loadStart = System.currentTimeMillis();
 
@@ -89,34 +290,290 @@ public class Application {
         final List<Table> tables = new ArrayList<>();
         for (final FromInfo fromInfo : queryData.getFromInfo()) {
 
-            final RowReader reader = createSourceReader(fromInfo);
-            if (conf.isWithoutTypeDetections()) {
-                final Table table = loadTableFromSource(fromInfo, reader);
-                doVerboseLog(conf, "Load table tock {}ms", System.currentTimeMillis() - loadStart);
-                tables.add(table);
-            } else {
-                final SimpleRowDataMetric metric = new SimpleRowDataMetric();
-                final TypeIndentifyRowReaderDelegate delegationReader = new TypeIndentifyRowReaderDelegate(reader, metric);
+            final List<Path> files = resolveSourceFiles(conf, fromInfo);
+            final String cacheKey = createCacheKey(conf, files);
+            final boolean cacheable = Objects.nonNull(this.cache) && !readsStandardInput(conf);
+            final Optional<Table> cached = cacheable ? this.cache.get(cacheKey) : Optional.empty();
+            if (cached.isPresent()) {
+                doVerboseLog(conf, "Use loaded table for {}", fromInfo.getOriginalFrom());
+                tables.add(cached.get());
+                continue;
+            }
+
+            final PhaseStatistics.Mark openMark = Objects.isNull(statistics) ? null : statistics.mark();
+            try (final RowReader reader = createSourceReader(conf, fromInfo, files)) {
+                final RowReader source;
+                final PhaseStatistics.Mark loadMark;
+                if (Objects.isNull(statistics)) {
+                    source = reader;
+                    loadMark = null;
+                } else {
+                    statistics.end(PhaseStatistics.Phase.OPEN, openMark, 0, 0);
+                    statistics.counter(PhaseStatistics.Phase.PARSE).addBytes(sizeOf(files));
+                    source = statistics.parsing(reader);
+                    loadMark = statistics.mark();
+                }
 
-                final Table table = loadTableFromSource(fromInfo, delegationReader);
-                doVerboseLog(conf, "Load table tock {}ms", System.currentTimeMillis() - loadStart);
-                adjustTableColumns(conf, table, metric);
+                final Optional<Prefilter> filter = prefilter ? createPrefilter(conf, queryData, reader) : Optional.empty();
+                final Table table;
+                if (conf.isWithoutTypeDetections()) {
+                    table = loadTableFromSource(conf, fromInfo, filter.map(f -> f.filter(source)).orElse(source));
+                    doVerboseLog(conf, "Load table tock {}ms", System.currentTimeMillis() - loadStart);
+                    if (Objects.nonNull(statistics)) {
+                        statistics.endLoad(loadMark);
+                    }
+                } else {
+                    final SimpleRowDataMetric metric = new SimpleRowDataMetric();
+                    final RowDataMetric collector = Objects.isNull(statistics) ? metric : statistics.detecting(metric);
+                    final TypeIndentifyRowReaderDelegate delegationReader = new TypeIndentifyRowReaderDelegate(source, collector);
+
+                    table = loadTableFromSource(conf, fromInfo, filter.map(f -> f.filter(delegationReader)).orElse(delegationReader));
+                    doVerboseLog(conf, "Load table tock {}ms", System.currentTimeMillis() - loadStart);
+                    if (Objects.isNull(statistics)) {
+                        adjustTableColumns(conf, table, metric);
+                    } else {
+                        final long rows = statistics.endLoad(loadMark).getRows();
+                        final PhaseStatistics.Mark convertMark = statistics.mark();
+                        adjustTableColumns(conf, table, metric);
+                        statistics.end(PhaseStatistics.Phase.CONVERT, convertMark, rows, 0);
+                    }
+                }
+                if (filter.isPresent()) {
+                    if (!filter.get().isApplicableTo(table.getEntryDescriptors())) {
+                        doVerboseLog(conf, "Detected column types don't match the prefilter {}. Load all rows", filter.get().getAssumedTypes());
+                        table.close();
+                        return loadTable(conf, statistics, false);
+                    }
+                    doVerboseLog(conf, "Prefilter dropped {} rows", filter.get().getDroppedRows());
+                }
                 tables.add(table);
+                if (cacheable) {
+                    this.cache.put(cacheKey, table, files);
+                }
             }
         }
         
         return Optional.of(tables);
     }
 
-    RowReader createSourceReader(final FromInfo fromInfo) throws IOException {
-        final String source = fromInfo.getOriginalFrom();
-        return new CsvReader(source);
+    /**
+     * @return the prefilter for the where clause of a query on a single
+     *         source or empty if the query is not supported by the
+     *         {@link QueryParser}
+     */
+    Optional<Prefilter> createPrefilter(final Configuration conf, final SelectQueryData queryData, final RowReader reader) {
+        if (queryData.getFromInfo().size() != 1) {
+            return Optional.empty();
+        }
+        final List<EntryDescriptor> descriptors = reader.getEntryDescriptors();
+        try {
+            final Query query = QueryParser.parse(queryData.getAdjustedQuery().getQuery(),
+                                                  descriptors.stream().map(EntryDescriptor::getName).collect(Collectors.toList()));
+            final Optional<Prefilter> prefilter = Prefilter.of(query, descriptors, !conf.isWithoutTypeDetections());
+            doVerboseLog(conf, "Use {}", prefilter.map(Prefilter::toString).orElse("no prefilter"));
+            return prefilter;
+        } catch (final UnsupportedQueryException e) {
+            doVerboseLog(conf, "No prefilter: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Removes the tables of the query from the cache.
+     * @return {@code true} if at least one table was removed
+     */
+    boolean dropTable(final Configuration conf) throws IOException {
+        if (Objects.isNull(this.cache)) {
+            return false;
+        }
+        boolean dropped = false;
+        for (final FromInfo fromInfo : conf.getQueryData().getQueryData().getFromInfo()) {
+            dropped |= this.cache.remove(createCacheKey(conf, resolveSourceFiles(conf, fromInfo)));
+        }
+        return dropped;
+    }
+
+    String createCacheKey(final Configuration conf, final List<Path> files) {
+        return files.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator,
+                "notype=" + conf.isWithoutTypeDetections() + ";filecolumn=" + conf.isWithFileColumn()
+                + ";engine=" + conf.getEngine() + ";charset=" + conf.getCharset().name() + ";"
+                + (conf.isPrefilter() ? "prefilter=" + conf.getQueryData().getQuery() + ";" : "")
+                + conf.getQueryData().getQueryData().getJoinInfo().map(join -> (join.isLeftJoin() ? "leftjoin=" : "join=") + resolveSource(join)
+                        + " on " + join.getFirstConditionColumn() + "=" + join.getSecondConditionColumn() + ";").orElse(""), ""));
+    }
+
+    String resolveSource(final FromInfo fromInfo) {
+        if (Objects.isNull(fromInfo.getOriginalFrom())) {
+            throw new TableException("No source in from clause");
+        }
+        final String source = SourceResolver.unquoted(fromInfo.getOriginalFrom());
+        if (this.workingDirectory.toString().isEmpty() || SourceResolver.isStandardInput(source) || Paths.get(source).isAbsolute()) {
+            return source;
+        }
+        return this.workingDirectory.resolve(source).toString();
+    }
+
+    List<Path> resolveSourceFiles(final Configuration conf, final FromInfo fromInfo) throws IOException {
+        final String source = resolveSource(fromInfo);
+        if (!SourceResolver.isMultiFileSource(source)) {
+            return Collections.singletonList(Paths.get(source));
+        }
+
+        final List<Path> files = SourceResolver.resolve(source);
+        final List<Path> toRead = pruneSourceFiles(conf, files);
+        doVerboseLog(conf, "Read {} of {} files for source {}", toRead.size(), files.size(), source);
+        return toRead;
+    }
+
+    /**
+     * @return the reader of the source files. If the query joins a second
+     *         source, a {@link HashJoin} building on the smaller source
+     */
+    RowReader createSourceReader(final Configuration conf, final FromInfo fromInfo, final List<Path> files) throws IOException {
+        final RowReader reader = createFileReader(conf, fromInfo, files);
+        final Optional<JoinInfo> join = conf.getQueryData().getQueryData().getJoinInfo();
+        if (!join.isPresent()) {
+            return reader;
+        }
+        final List<Path> joinFiles = resolveSourceFiles(conf, join.get());
+        // The standard input is streamed and never kept in the hash table
+        final boolean buildLeft = SourceResolver.isStandardInput(join.get().getOriginalFrom())
+                                  || !SourceResolver.isStandardInput(fromInfo.getOriginalFrom()) && sizeOf(files) < sizeOf(joinFiles);
+        doVerboseLog(conf, "Hash join with {} on {} = {}. Build on {}", join.get().getOriginalFrom(), join.get().getFirstConditionColumn(),
+                     join.get().getSecondConditionColumn(), buildLeft ? fromInfo.getOriginalFrom() : join.get().getOriginalFrom());
+        final RowReader joined = createFileReader(conf, join.get(), joinFiles);
+        try {
+            return new HashJoin(reader, joined, join.get().getFirstConditionColumn(), join.get().getSecondConditionColumn(),
+                                join.get().isLeftJoin(), buildLeft, !conf.isWithoutTypeDetections());
+        } catch (final TableException e) {
+            closeQuietly(reader);
+            closeQuietly(joined);
+            throw e;
+        }
+    }
+
+    static void closeQuietly(final RowReader reader) {
+        try {
+            reader.close();
+        } catch (final Exception e) {
+            LOG.warn("Unable to close source: {}", e.getMessage());
+        }
+    }
+
+    RowReader createFileReader(final Configuration conf, final FromInfo fromInfo, final List<Path> files) throws IOException {
+        final String source = resolveSource(fromInfo);
+        if (SourceResolver.isStandardInput(source)) {
+            return standardInputReader(conf.getCharset());
+        }
+        if (!SourceResolver.isMultiFileSource(source)) {
+            return new CsvReader(Paths.get(source), conf.getCharset());
+        }
+        return new UnionCsvReader(files, conf.isWithFileColumn(), conf.getThreads(), conf.getCharset());
+    }
+
+    /**
+     * The header of the standard input can be read only once. So the reader
+     * is kept until the end of the execution and a query not supported by the
+     * {@link StreamingAggregation} loads the table from the same reader.
+     * @return a reader of the standard input which isn't closed by {@link RowReader#close()}
+     */
+    RowReader standardInputReader(final Charset charset) throws IOException {
+        if (Objects.isNull(this.in)) {
+            throw new TableException("No standard input available");
+        }
+        if (Objects.isNull(this.standardInput)) {
+            this.standardInput = new CsvReader(standardInputChannel(), charset);
+        }
+        final RowReader reader = this.standardInput;
+        return new RowReader() {
+            @Override
+            public List<EntryDescriptor> getEntryDescriptors() {
+                return reader.getEntryDescriptors();
+            }
+
+            @Override
+            public Iterator<Row> iterator() {
+                return reader.iterator();
+            }
+
+            @Override
+            public Iterator<RowBatch> batches(final int size) {
+                return reader.batches(size);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * The standard input of the process is read direct from its file
+     * descriptor, so the bytes of a pipe are read into the large buffer of
+     * the {@link CsvReader} without copying through a buffered stream.
+     */
+    ReadableByteChannel standardInputChannel() {
+        if (this.in == System.in) {
+            return new FileInputStream(FileDescriptor.in).getChannel();
+        }
+        return Channels.newChannel(this.in);
     }
 
-    Table loadTableFromSource(final FromInfo fromInfo, final RowReader delegationReader) {
+    boolean readsStandardInput(final Configuration conf) {
+        final SelectQueryData queryData = conf.getQueryData().getQueryData();
+        return queryData.getFromInfo().stream().anyMatch(fromInfo -> SourceResolver.isStandardInput(fromInfo.getOriginalFrom()))
+               || queryData.getJoinInfo().map(join -> SourceResolver.isStandardInput(join.getOriginalFrom())).orElse(false);
+    }
+
+    List<Path> pruneSourceFiles(final Configuration conf, final List<Path> files) {
+        assert Objects.nonNull(files) && !files.isEmpty() : "No files";
+        if (!conf.isWithFileColumn()) {
+            return files;
+        }
+        final String query = conf.getQueryData().getQueryData().getOriginalQuery().getQuery();
+        final Predicate<Path> filter = PartitionFilter.of(query);
+        final List<Path> pruned = files.stream().filter(filter).collect(Collectors.toList());
+
+        // The query filters all rows anyway. The first file delivers the columns.
+        return pruned.isEmpty() ? files.subList(0, 1) : pruned;
+    }
+
+    Table loadTableFromSource(final Configuration conf, final FromInfo fromInfo, final RowReader delegationReader) {
+        return loadTableFromSource(conf, fromInfo, delegationReader, null);
+    }
+
+    /**
+     * @param source the file the {@linkplain Table#refresh() refresh} of the
+     *               table appends the new rows from. May be {@code null}
+     */
+    Table loadTableFromSource(final Configuration conf, final FromInfo fromInfo, final RowReader delegationReader, final GrowingCsvFile source) {
         final String adjusted = fromInfo.getAdjustedFrom();
         final TableBuilder tableBuilder = TableBuilder.of();
-        return tableBuilder.addName(adjusted).addRowReader(delegationReader).build();
+        if (Objects.nonNull(source)) {
+            tableBuilder.addSource(source);
+        }
+        return tableBuilder.addName(adjusted).addLabel(SourceResolver.unquoted(fromInfo.getOriginalFrom()))
+                           .addRowReader(delegationReader).addEngine(conf.getEngine()).build();
+    }
+
+    /**
+     * Loads the single source file of a watched query with the detected
+     * column types. The {@linkplain Table#refresh() refresh} of the table
+     * appends the rows appended to the file.
+     */
+    Table loadGrowingTable(final Configuration conf, final GrowingCsvFile file) throws Exception {
+        final FromInfo fromInfo = conf.getQueryData().getQueryData().getFromInfo().get(0);
+        final long loadStart = System.currentTimeMillis();
+        try (final RowReader reader = file.read()) {
+            if (conf.isWithoutTypeDetections()) {
+                return loadTableFromSource(conf, fromInfo, reader, file);
+            }
+            final SimpleRowDataMetric metric = new SimpleRowDataMetric();
+            final Table table = loadTableFromSource(conf, fromInfo, new TypeIndentifyRowReaderDelegate(reader, metric), file);
+            adjustTableColumns(conf, table, metric);
+            doVerboseLog(conf, "Load table tock {}ms", System.currentTimeMillis() - loadStart);
+            return table;
+        }
     }
 
     void adjustTableColumns(final Configuration conf, final Table table, final SimpleRowDataMetric metric) {
@@ -157,37 +614,233 @@ public class Application {
             final SelectQueryData queryData = conf.getQueryData().getQueryData();
             final String select = queryData.getAdjustedQuery().getQuery();
             final Table table = tables.get(0);
+            // An index never pays off for a single execution. So indexes are
+            // created in the modes executing queries repeatedly only.
+            if (Objects.nonNull(this.cache) || conf.isWatch()) {
+                final String query = conf.getQueryData().getQuery();
+                final int executions = Objects.nonNull(this.cache) ? this.cache.countExecution(query)
+                                                                   : this.executions.merge(query, 1, Integer::sum);
+                final List<String> indexed = table.createIndexesFor(select, executions);
+                doVerboseLog(conf, "Created indexes for columns {}", indexed);
+            }
+            final long slowQueryMillis = conf.getSlowQueryMillis();
+            table.setCollectQueryPlans(conf.isExplain() || slowQueryMillis > 0);
+            final long start = System.currentTimeMillis();
             final RowReader result = table.executeSql(select);
+            final long millis = System.currentTimeMillis() - start;
+            if (conf.isExplain() || (slowQueryMillis > 0 && millis >= slowQueryMillis)) {
+                printQueryPlan(conf, table, millis);
+            }
             return Optional.of(result);
         }
         return Optional.empty();
     }
     
-    void exportResult(final Configuration conf, final RowReader rows) throws Exception {
+    /**
+     * Executes an aggregation query on a single source with a
+     * {@link ParallelAggregation} without loading the table.
+     * @return the result or empty if the query must be executed on a loaded table
+     */
+    Optional<RowReader> executeHashAggregation(final Configuration conf) throws Exception {
+        return executeOnSource(conf, new ParallelAggregation(conf.getThreads(), conf.getMemoryBudget()), "hash aggregation");
+    }
+
+    /**
+     * Executes an aggregation query on the standard input with a
+     * {@link StreamingAggregation}. The intermediate results are exported
+     * like the final result.
+     * @return the result or empty if the query must be executed on a loaded table
+     */
+    Optional<RowReader> executeStreamingAggregation(final Configuration conf) throws Exception {
+        final StreamingAggregation aggregation = new StreamingAggregation(conf.getEmitIntervalMillis(), rows -> {
+            try {
+                exportResult(conf, rows);
+            } catch (final Exception e) {
+                throw new TableException("Unable to export the intermediate result", e);
+            }
+        });
+        return executeOnSource(conf, aggregation, "streaming aggregation");
+    }
+
+    /**
+     * Executes an aggregation query on a single source with a
+     * {@link StreamingAggregation} per time window. Each closed window is
+     * exported as soon as it is closed. The header is exported once.
+     * @return the number of exported rows
+     * @throws TableException if the query can't be executed per time window
+     */
+    long executeWindowedAggregation(final Configuration conf) throws Exception {
+        final SelectQueryData queryData = conf.getQueryData().getQueryData();
+        if (queryData.getFromInfo().size() != 1) {
+            throw new TableException("Time windows require a single source");
+        }
+        final AtomicBoolean withHeader = new AtomicBoolean(!conf.isWithoutHeader());
+        final AtomicLong count = new AtomicLong();
+        final StreamingAggregation aggregation = new StreamingAggregation(conf.getEmitIntervalMillis(), conf.getWindow().get(), rows -> {
+            try {
+                count.addAndGet(exportResult(conf, rows, this.out, withHeader.getAndSet(false)));
+            } catch (final Exception e) {
+                throw new TableException("Unable to export the result of a window", e);
+            }
+        });
+        final FromInfo fromInfo = queryData.getFromInfo().get(0);
+        final Optional<RowReader> rows;
+        try {
+            rows = executeSourceQuery(conf, fromInfo, resolveSourceFiles(conf, fromInfo), aggregation, "windowed aggregation");
+        } catch (final UnsupportedQueryException e) {
+            throw new TableException("No windowed aggregation: " + e.getMessage(), e);
+        }
+        if (!rows.isPresent()) {
+            throw new TableException("Values of the source don't match the column types of the first rows. Execute the query without type detection");
+        }
+        if (withHeader.get()) {
+            exportResult(conf, rows.get(), this.out, true);
+        }
+        return count.get();
+    }
+
+    /**
+     * Executes a query with <tt>ORDER BY</tt> on a single source with an
+     * {@link ExternalSort} without loading the table.
+     * @return the result or empty if the query must be executed on a loaded table
+     */
+    Optional<RowReader> executeExternalSort(final Configuration conf) throws Exception {
+        return executeOnSource(conf, new ExternalSort(conf.getMemoryBudget()), "external sort");
+    }
+
+    /**
+     * Executes the query directly on the rows of a single source if the
+     * source isn't loaded already.
+     * @param sourceQuery the execution of the query
+     * @param name the name of the execution in the log
+     * @return the result or empty if the query has to be executed on a loaded table
+     */
+    Optional<RowReader> executeOnSource(final Configuration conf, final SourceQuery sourceQuery, final String name) throws Exception {
+        final SelectQueryData queryData = conf.getQueryData().getQueryData();
+        if (queryData.getFromInfo().size() != 1) {
+            return Optional.empty();
+        }
+        final FromInfo fromInfo = queryData.getFromInfo().get(0);
+        final List<Path> files = resolveSourceFiles(conf, fromInfo);
+        if (Objects.nonNull(this.cache) && this.cache.get(createCacheKey(conf, files)).isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            return executeSourceQuery(conf, fromInfo, files, sourceQuery, name);
+        } catch (final UnsupportedQueryException e) {
+            doVerboseLog(conf, "No {}: {}", name, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Executes the query directly on the rows of the given source.
+     * @return the result or empty if the detected types differ from the types of the first rows
+     * @throws UnsupportedQueryException if the query can't be executed on the rows of the source
+     */
+    Optional<RowReader> executeSourceQuery(final Configuration conf, final FromInfo fromInfo, final List<Path> files,
+                                           final SourceQuery sourceQuery, final String name) throws Exception {
+        final SelectQueryData queryData = conf.getQueryData().getQueryData();
+        final long slowQueryMillis = conf.getSlowQueryMillis();
+        sourceQuery.setCollectQueryPlans(conf.isExplain() || slowQueryMillis > 0);
+        final long start = System.currentTimeMillis();
+        try (final RowReader reader = createSourceReader(conf, fromInfo, files)) {
+            final Optional<RowReader> result = sourceQuery.execute(queryData.getAdjustedQuery().getQuery(), reader, !conf.isWithoutTypeDetections());
+            final long millis = System.currentTimeMillis() - start;
+            if (!result.isPresent()) {
+                doVerboseLog(conf, "Detected column types differ from the types of the first rows. Load the table");
+                return Optional.empty();
+            }
+            doVerboseLog(conf, "{} tock {}ms", name, millis);
+            if (conf.isExplain() || (slowQueryMillis > 0 && millis >= slowQueryMillis)) {
+                printQueryPlan(conf, sourceQuery.getLastQueryPlan(), fromInfo.getAdjustedFrom(), millis);
+            }
+            return result;
+        }
+    }
+
+    void printQueryPlan(final Configuration conf, final Table table, final long millis) {
+        printQueryPlan(conf, table.getLastQueryPlan(), table.getName(), millis);
+    }
+
+    /**
+     * @param plan the plan of the query
+     * @param tableName the name of the table in the plan
+     */
+    void printQueryPlan(final Configuration conf, final Optional<String> plan, final String tableName, final long millis) {
+        final String query = conf.getQueryData().getQuery();
+        this.err.println((conf.isExplain() ? "Query" : "Slow query") + " (" + millis + " ms): " + query);
+        final String source = conf.getQueryData().getQueryData().getFromInfo().get(0).getOriginalFrom();
+        this.err.println(plan.map(p -> p.replace(tableName, source)).orElse("No execution plan available"));
+        this.err.flush();
+    }
+
+    long exportResult(final Configuration conf, final RowReader rows) throws Exception {
+        return exportResult(conf, rows, this.out);
+    }
+
+    long exportResult(final Configuration conf, final RowReader rows, final PrintStream target) throws Exception {
+        return exportResult(conf, rows, target, !conf.isWithoutHeader());
+    }
+
+    long exportResult(final Configuration conf, final RowReader rows, final PrintStream target, final boolean withHeader) throws Exception {
         assert Objects.nonNull(rows) : "Rows are null";
         assert Objects.nonNull(conf) : "configuration is null";
+        assert Objects.nonNull(target) : "target is null";
         
-        final CSVPrinter printer = createCsvPrinter(rows, conf);
+        final CSVPrinter printer = createCsvPrinter(rows, withHeader, target);
+        final String table = conf.getQueryData().getQueryData().getFromInfo().stream()
+                .map(fromInfo -> SourceResolver.unquoted(fromInfo.getOriginalFrom())).collect(Collectors.joining(","));
         
-        for (final Row row : rows) {
-            final List<String> recordEntries = new ArrayList<>();
-            for (final Entry entry : row) {
-                final EntryDescriptor.Type type = entry.getDescriptor().getType();
-                final TypeTransformer transformer = TypeTransformer.of(type, EntryDescriptor.Type.STRING);
-                final Optional<String> opt = transformer.transform(entry.getValue());
-                recordEntries.add(opt.orElseGet(() -> ""));
+        long count = 0;
+        try (final PipelineEvent event = PipelineEvents.begin(Stage.EXPORT, table)) {
+            final List<EntryDescriptor> descriptors = rows.getEntryDescriptors();
+            final int columns = descriptors.size();
+            final EntryDescriptor.Type[] types = new EntryDescriptor.Type[columns];
+            final TypeTransformer[] transformers = new TypeTransformer[columns];
+            for (int i = 0; i < columns; i++) {
+                types[i] = descriptors.get(i).getType();
+                transformers[i] = TypeTransformer.of(types[i], EntryDescriptor.Type.STRING);
+            }
+            final String[] record = new String[columns];
+            for (final Row row : rows) {
+                count++;
+                for (int i = 0; i < columns; i++) {
+                    if (row.isNull(i)) {
+                        record[i] = "";
+                    } else if (types[i] == EntryDescriptor.Type.INTEGER) {
+                        record[i] = Long.toString(row.getLong(i));
+                    } else {
+                        final Optional<String> opt = transformers[i].transform(row.getValue(i));
+                        record[i] = opt.orElse("");
+                    }
+                }
+                printer.printRecord((Object[]) record);
             }
-            printer.printRecord(recordEntries);
+            printer.flush();
+            event.setRows(count);
         }
+        return count;
     }
 
-    CSVPrinter createCsvPrinter(final RowReader rows, final Configuration conf) throws IOException {
+    CSVPrinter createCsvPrinter(final RowReader rows, final boolean withHeader, final PrintStream target) throws IOException {
         final List<EntryDescriptor> descriptors = rows.getEntryDescriptors();
-        if (conf.isWithoutHeader()) {
-            return CSVFormat.RFC4180.print(System.out);
+        if (!withHeader) {
+            return CSVFormat.RFC4180.print(target);
         }
         final List<String> headers = descriptors.stream().map(desc -> desc.getName()).collect(Collectors.toList());
-        return CSVFormat.RFC4180.withHeader(headers.toArray(new String[headers.size()])).print(System.out);
+        return CSVFormat.RFC4180.withHeader(headers.toArray(new String[headers.size()])).print(target);
+    }
+
+    static long sizeOf(final List<Path> files) throws IOException {
+        long size = 0;
+        for (final Path file : files) {
+            if (SourceResolver.isStandardInput(file.toString())) {
+                continue;
+            }
+            size += Files.size(file);
+        }
+        return size;
     }
     
     void doVerboseLog(final Configuration conf, final String message, final Object... values) {
@@ -19,9 +19,26 @@ package de.speexx.csv.table.app;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParametersDelegate;
+import de.speexx.csv.table.TableBuilder;
+import de.speexx.csv.table.TableException;
+import de.speexx.csv.table.TimeWindow;
 import de.speexx.csv.table.app.sql.SelectData;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class Configuration {
+
+    private static final long MEGABYTE = 1024 * 1024;
+    static final List<String> INTERACTIVE_OPTIONS = Arrays.asList("-i", "--interactive");
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s|m|h|d)?");
     
     @Parameter(names={"-n", "--no-header"}, description="If set no column name header is in the output.")
     private boolean withoutHeader = false;
@@ -29,6 +46,69 @@ public class Configuration {
     @Parameter(names={"-t", "--no-type"}, description="If set no automated type detection is performed.")
     private boolean withoutTypeDetections = false;
 
+    @Parameter(names={"-f", "--file-column"}, description="If set the virtual columns '_file' and '_file_date' are added for a glob or directory source.")
+    private boolean withFileColumn = false;
+
+    @Parameter(names={"--threads"}, description="Number of threads to load the files of a glob or directory source and to execute a hash aggregation in parallel.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names={"--charset"}, description="Encoding of the source files and the standard input, e.g. 'UTF-8', 'ISO-8859-1' or 'windows-1252'.")
+    private String charset = "UTF-8";
+
+    @Parameter(names={"--engine"}, description="Engine of the loaded tables: 'derby' or 'columnar'. The columnar engine executes simple queries in memory and uses Derby for the others.")
+    private String engine = "derby";
+
+    @Parameter(names={"--prefilter"}, description="If set the rows of a source which can't match the where clause are dropped while loading. The loaded table is cached only for the same query.")
+    private boolean prefilter = false;
+
+    @Parameter(names={"--hash-aggregation"}, description="If set an aggregation query on a single source is executed by parallel workers directly on the rows of the source without loading a table.")
+    private boolean hashAggregation = false;
+
+    @Parameter(names={"--external-sort"}, description="If set a query with ORDER BY on a single source is sorted directly on the rows of the source without loading a table. Sorted runs exceeding the memory budget are written to temporary files.")
+    private boolean externalSort = false;
+
+    @Parameter(names={"--emit-interval"}, description="Seconds between the intermediate results of an aggregation query on the standard input source '-'. 0 prints the result at the end of the input only.")
+    private long emitIntervalSeconds = 0;
+
+    @Parameter(names={"--window"}, description="Aggregates a GROUP BY query on a single source per time window: '<column>,<size>[,<slide>]'. The column must be a datetime or date. Durations are numbers with the unit 'ms', 's', 'm', 'h' or 'd', seconds by default. Each window is printed when it is closed with the additional columns 'window_start' and 'window_end'.")
+    private String window;
+
+    @Parameter(names={"--lateness"}, description="Duration rows of a time window may arrive out of order. Rows whose windows end at or before the latest time seen minus the lateness are dropped.")
+    private String lateness = "0";
+
+    @Parameter(names={"--serve"}, description="If set scq runs as a server on the loopback interface and keeps loaded tables for repeated queries of the 'scqc' client.")
+    private boolean serve = false;
+
+    @Parameter(names={"--port"}, description="Port of the scq server.")
+    private int port = ScqServer.DEFAULT_PORT;
+
+    @Parameter(names={"--token-file"}, description="File the scq server writes the token of its clients to. Only the user running the server can read the file. Default is '~/.scq/server-<port>.token'.")
+    private String tokenFile;
+
+    @Parameter(names={"--memory-budget"}, description="Memory in MB, by default half of the maximum heap, for the tables cached by the scq server and for the groups of a hash aggregation or the rows of an external sort before they are written to temporary files.")
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2 / MEGABYTE;
+
+    @Parameter(names={"--watch"}, description="If set the table of a query on a single source file is kept loaded and the query is executed again each time the file changes. The result is printed if it changed. Rows appended to the file are loaded incrementally.")
+    private boolean watch = false;
+
+    @Parameter(names={"-i", "--interactive"}, description="Starts an interactive shell with the given source loaded. Each input line is executed as query.")
+    private String interactiveSource;
+
+    @Parameter(names={"--stats"}, description="If set a report with time, rows, bytes, allocation and GC pauses of each phase is printed to stderr.")
+    private boolean stats = false;
+
+    @Parameter(names={"--stats-format"}, description="Format of the statistics report: 'table' or 'json'.")
+    private String statsFormat = "table";
+
+    @Parameter(names={"--explain"}, description="If set the execution plan of the query with rows and time of each operator is printed to stderr.")
+    private boolean explain = false;
+
+    @Parameter(names={"--slow-query"}, description="Prints the execution plan of a query to stderr if the query takes at least the given milliseconds. 0 disables the slow query log.")
+    private long slowQueryMillis = 0;
+
+    @Parameter(names={"--jfr"}, description="Records the run with the Java Flight Recorder into the given file. The recording contains events for load, insert, conversion, query and export.")
+    private String jfrFile;
+
     @Parameter(names={"-v", "--verbose"}, description="Print out more information.")
     private boolean verbose = false;
     
@@ -39,6 +119,22 @@ public class Configuration {
     private final SelectData selectData = new SelectData();
 
     
+    /**
+     * JCommander takes the source <tt>-</tt> as an option. So a <tt>-</tt>
+     * following <tt>FROM</tt> or <tt>JOIN</tt> is replaced by the alias
+     * {@value SourceResolver#STANDARD_INPUT_ALIAS} of the standard input.
+     */
+    static String[] withStandardInputAlias(final String... args) {
+        final String[] replaced = args.clone();
+        for (int i = 1; i < replaced.length; i++) {
+            if (SourceResolver.STANDARD_INPUT.equals(replaced[i])
+                    && ("from".equalsIgnoreCase(replaced[i - 1]) || "join".equalsIgnoreCase(replaced[i - 1]))) {
+                replaced[i] = SourceResolver.STANDARD_INPUT_ALIAS;
+            }
+        }
+        return replaced;
+    }
+
     public SelectData getQueryData() {
         return this.selectData;
     }
@@ -51,6 +147,136 @@ public class Configuration {
         return this.withoutTypeDetections;
     }
 
+    public boolean isWithFileColumn() {
+        return this.withFileColumn;
+    }
+
+    public int getThreads() {
+        return Math.max(1, this.threads);
+    }
+
+    public Charset getCharset() {
+        try {
+            return Charset.forName(this.charset.trim());
+        } catch (final IllegalArgumentException e) {
+            throw new TableException("Unknown charset: " + this.charset, e);
+        }
+    }
+
+    public TableBuilder.Engine getEngine() {
+        final String name = this.engine.trim();
+        for (final TableBuilder.Engine candidate : TableBuilder.Engine.values()) {
+            if (candidate.name().equalsIgnoreCase(name)) {
+                return candidate;
+            }
+        }
+        throw new TableException("Unknown engine: " + this.engine);
+    }
+
+    public boolean isPrefilter() {
+        return this.prefilter;
+    }
+
+    public boolean isHashAggregation() {
+        return this.hashAggregation;
+    }
+
+    public boolean isExternalSort() {
+        return this.externalSort;
+    }
+
+    /** @return the interval of the intermediate results of a streaming aggregation. {@code 0} if disabled */
+    public long getEmitIntervalMillis() {
+        return Math.max(0, this.emitIntervalSeconds) * 1000;
+    }
+
+    /** @return the time windows of an aggregation query */
+    public Optional<TimeWindow> getWindow() {
+        if (this.window == null) {
+            return Optional.empty();
+        }
+        final String[] parts = this.window.split(",");
+        if (parts.length < 2 || parts.length > 3 || parts[0].trim().isEmpty()) {
+            throw new TableException("Window not '<column>,<size>[,<slide>]': " + this.window);
+        }
+        final Duration size = durationOf(parts[1]);
+        final Duration slide = parts.length == 3 ? durationOf(parts[2]) : size;
+        try {
+            return Optional.of(new TimeWindow(parts[0].trim(), size, slide, durationOf(this.lateness)));
+        } catch (final IllegalArgumentException e) {
+            throw new TableException(e.getMessage(), e);
+        }
+    }
+
+    static Duration durationOf(final String value) {
+        final Matcher matcher = DURATION.matcher(value.trim());
+        if (!matcher.matches()) {
+            throw new TableException("Invalid duration: " + value);
+        }
+        final long amount = Long.parseLong(matcher.group(1));
+        final String unit = matcher.group(2) == null ? "s" : matcher.group(2);
+        switch (unit) {
+            case "ms": return Duration.ofMillis(amount);
+            case "m":  return Duration.ofMinutes(amount);
+            case "h":  return Duration.ofHours(amount);
+            case "d":  return Duration.ofDays(amount);
+            default:   return Duration.ofSeconds(amount);
+        }
+    }
+
+    public boolean isServe() {
+        return this.serve;
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    public Path getTokenFile() {
+        return Objects.isNull(this.tokenFile) ? ServerToken.defaultFile(getPort()) : Paths.get(this.tokenFile);
+    }
+
+    /** @return the memory budget in bytes */
+    public long getMemoryBudget() {
+        return Math.max(1, this.memoryBudget) * MEGABYTE;
+    }
+
+    public boolean isWatch() {
+        return this.watch;
+    }
+
+    public Optional<String> getInteractiveSource() {
+        return Optional.ofNullable(this.interactiveSource);
+    }
+
+    public boolean isStats() {
+        return this.stats;
+    }
+
+    public boolean isStatsAsJson() {
+        final String format = this.statsFormat.trim();
+        if ("json".equalsIgnoreCase(format)) {
+            return true;
+        }
+        if ("table".equalsIgnoreCase(format)) {
+            return false;
+        }
+        throw new TableException("Unknown statistics format: " + this.statsFormat);
+    }
+
+    public boolean isExplain() {
+        return this.explain;
+    }
+
+    /** @return the slow query threshold in milliseconds. {@code 0} if disabled */
+    public long getSlowQueryMillis() {
+        return Math.max(0, this.slowQueryMillis);
+    }
+
+    public Optional<Path> getJfrFile() {
+        return Optional.ofNullable(this.jfrFile).map(Paths::get);
+    }
+
     public boolean isVerbose() {
         return this.verbose;
     }
@@ -0,0 +1,379 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowBatch;
+import de.speexx.csv.table.RowReader;
+import de.speexx.csv.table.metric.RowDataMetric;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Collects the elapsed time, rows, bytes, allocated bytes and GC pauses of
+ * the phases of a <tt>scq</tt> call for the <tt>--stats</tt> report.
+ * <p>Reading, type detection and inserting a source interleave row by row.
+ * The {@linkplain #parsing(RowReader) parse} and
+ * {@linkplain #detecting(RowDataMetric) detect} phases are measured around
+ * each row or batch. The <em>insert</em> phase gets the rest of the load time. GC
+ * pauses can't be split that fine, so all GC pauses of the load are
+ * reported for the <em>insert</em> phase.</p>
+ * <p>Allocated bytes are counted for the calling thread only. The reader
+ * threads of a glob or directory source are not included.</p>
+ */
+final class PhaseStatistics {
+
+    enum Phase {
+        OPEN, PARSE, DETECT, INSERT, CONVERT, QUERY, EXPORT;
+
+        String label() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private static final long NANOS_PER_MILLI = 1_000_000;
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+
+    private final Map<Phase, Counter> counters = new EnumMap<>(Phase.class);
+    private final com.sun.management.ThreadMXBean threads;
+    private final long threadId = Thread.currentThread().getId();
+
+    PhaseStatistics() {
+        this.threads = allocationMXBean();
+        for (final Phase phase : Phase.values()) {
+            this.counters.put(phase, new Counter(Objects.isNull(this.threads) ? -1 : 0));
+        }
+    }
+
+    /** @return a snapshot to measure a phase from */
+    Mark mark() {
+        return new Mark(System.nanoTime(), allocatedBytes(), gcCount(), gcMillis(),
+                        counter(Phase.PARSE), counter(Phase.DETECT));
+    }
+
+    /**
+     * Adds the time, allocation and GC pauses since the mark to the phase.
+     * @return the counter of the phase
+     */
+    Counter end(final Phase phase, final Mark mark, final long rows, final long bytes) {
+        Objects.requireNonNull(mark, "mark is null");
+        final Counter counter = counter(phase);
+        counter.nanos += System.nanoTime() - mark.nanos;
+        counter.allocatedBytes += allocationSince(mark.allocatedBytes);
+        counter.gcCount += gcCount() - mark.gcCount;
+        counter.gcMillis += gcMillis() - mark.gcMillis;
+        counter.rows += rows;
+        counter.bytes += bytes;
+        return counter;
+    }
+
+    /**
+     * Ends a load started with the mark. The time and allocation of the parse
+     * and detect phases since the mark are subtracted from the insert phase.
+     */
+    Counter endLoad(final Mark mark) {
+        final Counter parse = counter(Phase.PARSE);
+        final Counter detect = counter(Phase.DETECT);
+        final Counter insert = end(Phase.INSERT, mark, parse.rows - mark.parseRows, 0);
+        insert.nanos -= (parse.nanos - mark.parseNanos) + (detect.nanos - mark.detectNanos);
+        if (insert.allocatedBytes >= 0) {
+            insert.allocatedBytes -= (parse.allocatedBytes - mark.parseAllocatedBytes) + (detect.allocatedBytes - mark.detectAllocatedBytes);
+        }
+        return insert;
+    }
+
+    Counter counter(final Phase phase) {
+        return this.counters.get(Objects.requireNonNull(phase, "phase is null"));
+    }
+
+    /** @return a reader measuring the time each row needs to be read as parse phase */
+    RowReader parsing(final RowReader reader) {
+        return new ParseRowReader(Objects.requireNonNull(reader, "reader is null"));
+    }
+
+    /** @return a metric measuring the time each row needs to be collected as detect phase */
+    RowDataMetric detecting(final RowDataMetric metric) {
+        Objects.requireNonNull(metric, "metric is null");
+        final Counter detect = counter(Phase.DETECT);
+        return new RowDataMetric() {
+            @Override
+            public void collectRowData(final Row row) {
+                final long start = System.nanoTime();
+                final long allocated = allocatedBytes();
+                metric.collectRowData(row);
+                detect.allocatedBytes += allocationSince(allocated);
+                detect.nanos += System.nanoTime() - start;
+                detect.rows++;
+            }
+
+            @Override
+            public void collectBatchData(final RowBatch batch) {
+                final long start = System.nanoTime();
+                final long allocated = allocatedBytes();
+                metric.collectBatchData(batch);
+                detect.allocatedBytes += allocationSince(allocated);
+                detect.nanos += System.nanoTime() - start;
+                detect.rows += batch.size();
+            }
+        };
+    }
+
+    void print(final PrintStream out, final boolean json) {
+        out.print(json ? toJson() : toTable());
+        out.flush();
+    }
+
+    String toTable() {
+        final String format = "%-8s %10s %12s %14s %12s %16s %6s %8s%n";
+        final StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ENGLISH, format, "phase", "millis", "rows", "bytes", "rows/s", "allocated", "gc", "gc-ms"));
+        for (final Map.Entry<Phase, Counter> entry : this.counters.entrySet()) {
+            final Counter counter = entry.getValue();
+            table.append(String.format(Locale.ENGLISH, format,
+                                       entry.getKey().label(),
+                                       counter.getMillis(),
+                                       counter.rows,
+                                       counter.bytes,
+                                       counter.getRowsPerSecond(),
+                                       counter.allocatedBytes < 0 ? "-" : String.valueOf(counter.allocatedBytes),
+                                       counter.gcCount,
+                                       counter.gcMillis));
+        }
+        return table.toString();
+    }
+
+    String toJson() {
+        final StringBuilder json = new StringBuilder("{\"phases\":[");
+        String separator = "";
+        for (final Map.Entry<Phase, Counter> entry : this.counters.entrySet()) {
+            final Counter counter = entry.getValue();
+            json.append(separator)
+                .append("{\"phase\":\"").append(entry.getKey().label())
+                .append("\",\"millis\":").append(counter.getMillis())
+                .append(",\"rows\":").append(counter.rows)
+                .append(",\"bytes\":").append(counter.bytes)
+                .append(",\"rowsPerSecond\":").append(counter.getRowsPerSecond())
+                .append(",\"allocatedBytes\":").append(counter.allocatedBytes < 0 ? "null" : String.valueOf(counter.allocatedBytes))
+                .append(",\"gcCount\":").append(counter.gcCount)
+                .append(",\"gcMillis\":").append(counter.gcMillis)
+                .append('}');
+            separator = ",";
+        }
+        return json.append("]}").append(System.lineSeparator()).toString();
+    }
+
+    long allocatedBytes() {
+        return Objects.isNull(this.threads) ? -1 : this.threads.getThreadAllocatedBytes(this.threadId);
+    }
+
+    long allocationSince(final long allocated) {
+        return allocated < 0 ? 0 : allocatedBytes() - allocated;
+    }
+
+    static long gcCount() {
+        long count = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    static long gcMillis() {
+        long millis = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    static com.sun.management.ThreadMXBean allocationMXBean() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+            if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationBean;
+            }
+        }
+        return null;
+    }
+
+    /** Measured values of one phase. Allocated bytes are negative if not supported by the JVM. */
+    static final class Counter {
+        private long nanos;
+        private long rows;
+        private long bytes;
+        private long allocatedBytes;
+        private long gcCount;
+        private long gcMillis;
+
+        Counter(final long allocatedBytes) {
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        long getMillis() {
+            return this.nanos / NANOS_PER_MILLI;
+        }
+
+        long getRows() {
+            return this.rows;
+        }
+
+        void addRows(final long rows) {
+            this.rows += rows;
+        }
+
+        void addBytes(final long bytes) {
+            this.bytes += bytes;
+        }
+
+        long getBytes() {
+            return this.bytes;
+        }
+
+        long getRowsPerSecond() {
+            return this.nanos <= 0 ? 0 : this.rows * NANOS_PER_SECOND / this.nanos;
+        }
+
+        long getAllocatedBytes() {
+            return this.allocatedBytes;
+        }
+
+        long getGcCount() {
+            return this.gcCount;
+        }
+    }
+
+    static final class Mark {
+        private final long nanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long parseRows;
+        private final long parseNanos;
+        private final long parseAllocatedBytes;
+        private final long detectNanos;
+        private final long detectAllocatedBytes;
+
+        Mark(final long nanos, final long allocatedBytes, final long gcCount, final long gcMillis,
+             final Counter parse, final Counter detect) {
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.parseRows = parse.rows;
+            this.parseNanos = parse.nanos;
+            this.parseAllocatedBytes = parse.allocatedBytes;
+            this.detectNanos = detect.nanos;
+            this.detectAllocatedBytes = detect.allocatedBytes;
+        }
+    }
+
+    final class ParseRowReader implements RowReader {
+
+        private final RowReader delegate;
+
+        ParseRowReader(final RowReader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<EntryDescriptor> getEntryDescriptors() {
+            return this.delegate.getEntryDescriptors();
+        }
+
+        @Override
+        public Iterator<Row> iterator() {
+            final Iterator<Row> rows = this.delegate.iterator();
+            final Counter parse = counter(Phase.PARSE);
+            return new Iterator<Row>() {
+                @Override
+                public boolean hasNext() {
+                    final long start = System.nanoTime();
+                    final long allocated = allocatedBytes();
+                    try {
+                        return rows.hasNext();
+                    } finally {
+                        parse.allocatedBytes += allocationSince(allocated);
+                        parse.nanos += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public Row next() {
+                    final long start = System.nanoTime();
+                    final long allocated = allocatedBytes();
+                    try {
+                        final Row row = rows.next();
+                        parse.rows++;
+                        return row;
+                    } finally {
+                        parse.allocatedBytes += allocationSince(allocated);
+                        parse.nanos += System.nanoTime() - start;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Iterator<RowBatch> batches(final int size) {
+            final Iterator<RowBatch> batches = this.delegate.batches(size);
+            final Counter parse = counter(Phase.PARSE);
+            return new Iterator<RowBatch>() {
+                @Override
+                public boolean hasNext() {
+                    final long start = System.nanoTime();
+                    final long allocated = allocatedBytes();
+                    try {
+                        return batches.hasNext();
+                    } finally {
+                        parse.allocatedBytes += allocationSince(allocated);
+                        parse.nanos += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public RowBatch next() {
+                    final long start = System.nanoTime();
+                    final long allocated = allocatedBytes();
+                    try {
+                        final RowBatch batch = batches.next();
+                        parse.rows += batch.size();
+                        return batch;
+                    } finally {
+                        parse.allocatedBytes += allocationSince(allocated);
+                        parse.nanos += System.nanoTime() - start;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void close() throws Exception {
+            this.delegate.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+/**
+ * Thin client for the {@link ScqServer}. The client has the same command line
+ * as <tt>scq</tt> and passes it unchanged to the server. The port of the
+ * server can be set with the environment variable {@value #PORT_VARIABLE}.
+ * The {@link ServerToken} is read from the default token file of the port or
+ * the file of the environment variable {@value #TOKEN_FILE_VARIABLE}.
+ */
+public final class ScqClient {
+
+    static final String PORT_VARIABLE = "SCQ_PORT";
+    static final String TOKEN_FILE_VARIABLE = "SCQ_TOKEN_FILE";
+
+    public static void main(final String... args) {
+        final String portValue = System.getenv(PORT_VARIABLE);
+        final int port = Objects.isNull(portValue) ? ScqServer.DEFAULT_PORT : Integer.parseInt(portValue.trim());
+        final String tokenFileValue = System.getenv(TOKEN_FILE_VARIABLE);
+        final Path tokenFile = Objects.isNull(tokenFileValue) ? ServerToken.defaultFile(port) : Paths.get(tokenFileValue.trim());
+        try {
+            System.exit(execute(port, ServerToken.read(tokenFile), args));
+        } catch (final ConnectException | NoSuchFileException e) {
+            System.err.println("No scq server available on port " + port + ". Start one with 'scq --serve'.");
+        } catch (final IOException e) {
+            System.err.println("Unexpected end of application: " + e.getMessage());
+        }
+        System.exit(1);
+    }
+
+    static int execute(final int port, final String token, final String... args) throws IOException {
+        try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ServerProtocol.writeRequest(out, token, Paths.get("").toAbsolutePath().toString(), args);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            return ServerProtocol.readResponse(in, System.out, System.err);
+        }
+    }
+
+    private ScqClient() {
+        throw new AssertionError("Forbidden to create instance from " + ScqClient.class);
+    }
+}
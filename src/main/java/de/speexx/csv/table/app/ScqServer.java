@@ -0,0 +1,150 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps loaded tables resident and executes the queries of {@link ScqClient}s.
+ * The server only listens on the loopback interface and executes only
+ * requests with the {@link ServerToken} written to the token file at start.
+ * The requests are executed
+ * one after the other because a table doesn't support concurrent queries.
+ * Each request runs like a single <tt>scq</tt> call with the working
+ * directory of the client. A client which doesn't send its request within
+ * the read timeout is dropped, so it doesn't block the other clients.
+ */
+final class ScqServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    static final int DEFAULT_PORT = 7464;
+    static final int DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+
+    private final int port;
+    private final TableCache cache;
+    private final Path tokenFile;
+    private String token;
+    private int readTimeout = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    /**
+     * @param port the port to listen on
+     * @param memoryBudget the memory budget in bytes for the loaded tables
+     * @param tokenFile the file to write the token of the clients to
+     */
+    ScqServer(final int port, final long memoryBudget, final Path tokenFile) {
+        this.port = port;
+        this.cache = new TableCache(memoryBudget);
+        this.tokenFile = Objects.requireNonNull(tokenFile, "tokenFile is null");
+    }
+
+    void serve() throws IOException {
+        this.token = ServerToken.create(this.tokenFile);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            this.cache.clear();
+            this.tokenFile.toFile().delete();
+        }));
+        LOG.info("scq server token written to {}", this.tokenFile);
+        try (final ServerSocket server = new ServerSocket(this.port, 50, InetAddress.getLoopbackAddress())) {
+            LOG.info("scq server listening on {}", server.getLocalSocketAddress());
+            while (true) {
+                accept(server);
+            }
+        }
+    }
+
+    /** Handles the next request. Failures of the request don't stop the server. */
+    void accept(final ServerSocket server) throws IOException {
+        try (final Socket socket = server.accept()) {
+            socket.setSoTimeout(this.readTimeout);
+            handle(socket);
+        } catch (final SocketTimeoutException e) {
+            LOG.warn("Dropped client without request in {} ms", this.readTimeout);
+        } catch (final IOException e) {
+            if (server.isClosed()) {
+                throw e;
+            }
+            LOG.warn("Unable to handle request: {}", e.getMessage());
+        } catch (final Throwable t) {
+            LOG.error("Unable to handle request", t);
+        }
+    }
+
+    void handle(final Socket socket) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        final ServerProtocol.Request request = ServerProtocol.readRequest(in);
+
+        final PrintStream result = new PrintStream(
+                new BufferedOutputStream(new ServerProtocol.FrameOutputStream(out, ServerProtocol.OUT), 64 * 1024),
+                false, StandardCharsets.UTF_8.name());
+        final PrintStream report = new PrintStream(
+                new BufferedOutputStream(new ServerProtocol.FrameOutputStream(out, ServerProtocol.ERR)),
+                false, StandardCharsets.UTF_8.name());
+        if (!ServerToken.matches(this.token, request.getToken())) {
+            LOG.warn("Rejected request with invalid token");
+            new ServerProtocol.FrameOutputStream(out, ServerProtocol.ERR).write(
+                    ("Invalid server token. Read it from " + this.tokenFile + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            ServerProtocol.writeExit(out, 1);
+            return;
+        }
+        int exitCode = 0;
+        try {
+            final Application application = new Application(result, StandardCharsets.UTF_8, report, null, this.cache, Paths.get(request.getWorkingDirectory()));
+            application.run(request.getArgs());
+        } catch (final Throwable e) {
+            result.flush();
+            report.flush();
+            final String message = "Unexpected end of application: " + e.getMessage() + System.lineSeparator();
+            new ServerProtocol.FrameOutputStream(out, ServerProtocol.ERR).write(message.getBytes(StandardCharsets.UTF_8));
+            exitCode = 1;
+        }
+        result.flush();
+        report.flush();
+        ServerProtocol.writeExit(out, exitCode);
+    }
+
+    /** Sets the token without writing the token file. */
+    void setToken(final String token) {
+        this.token = Objects.requireNonNull(token, "token is null");
+    }
+
+    /** @param readTimeout the time in milliseconds to wait for the request of a client */
+    void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    TableCache getCache() {
+        return this.cache;
+    }
+}
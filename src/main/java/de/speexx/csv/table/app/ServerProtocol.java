@@ -0,0 +1,168 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The wire format between the {@link ScqClient} and the {@link ScqServer}.
+ * <p>A request contains the {@link ServerToken}, the working directory of the
+ * client and the command line arguments, each written with
+ * {@link DataOutputStream#writeUTF(String)}.
+ * The response is a sequence of frames. Each frame starts with a type byte.
+ * An {@linkplain #OUT output} or {@linkplain #ERR error} frame continues with
+ * the length of the data and the data. The {@linkplain #EXIT exit} frame
+ * continues with the exit code and ends the response.</p>
+ */
+final class ServerProtocol {
+
+    static final byte EXIT = 0;
+    static final byte OUT = 1;
+    static final byte ERR = 2;
+
+    private ServerProtocol() {
+        throw new AssertionError("Forbidden to create instance from " + ServerProtocol.class);
+    }
+
+    static void writeRequest(final DataOutputStream out, final String token, final String workingDirectory, final String... args) throws IOException {
+        Objects.requireNonNull(token, "token is null");
+        Objects.requireNonNull(workingDirectory, "workingDirectory is null");
+        Objects.requireNonNull(args, "args is null");
+        out.writeUTF(token);
+        out.writeUTF(workingDirectory);
+        out.writeInt(args.length);
+        for (final String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    static Request readRequest(final DataInputStream in) throws IOException {
+        final String token = in.readUTF();
+        final String workingDirectory = in.readUTF();
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Illegal number of arguments: " + count);
+        }
+        final List<String> args = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            args.add(in.readUTF());
+        }
+        return new Request(token, workingDirectory, args.toArray(new String[args.size()]));
+    }
+
+    static void writeExit(final DataOutputStream out, final int exitCode) throws IOException {
+        out.writeByte(EXIT);
+        out.writeInt(exitCode);
+        out.flush();
+    }
+
+    /**
+     * Reads the frames of a response and copies the data to the given streams.
+     * @param in the response
+     * @param out target of the {@linkplain #OUT output} frames
+     * @param err target of the {@linkplain #ERR error} frames
+     * @return the exit code
+     */
+    static int readResponse(final DataInputStream in, final OutputStream out, final OutputStream err) throws IOException {
+        final byte[] buffer = new byte[8192];
+        while (true) {
+            final byte type = in.readByte();
+            if (type == EXIT) {
+                return in.readInt();
+            }
+            if (type != OUT && type != ERR) {
+                throw new IOException("Unknown frame type: " + type);
+            }
+            final OutputStream target = type == OUT ? out : err;
+            int remaining = in.readInt();
+            while (remaining > 0) {
+                final int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Unexpected end of response");
+                }
+                target.write(buffer, 0, read);
+                remaining -= read;
+            }
+            target.flush();
+        }
+    }
+
+    static final class Request {
+        private final String token;
+        private final String workingDirectory;
+        private final String[] args;
+
+        Request(final String token, final String workingDirectory, final String[] args) {
+            this.token = token;
+            this.workingDirectory = workingDirectory;
+            this.args = args;
+        }
+
+        String getToken() {
+            return this.token;
+        }
+
+        String getWorkingDirectory() {
+            return this.workingDirectory;
+        }
+
+        String[] getArgs() {
+            return this.args.clone();
+        }
+    }
+
+    /** Writes all data as frames of the given type. */
+    static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(final DataOutputStream out, final byte type) {
+            assert type == OUT || type == ERR : "Illegal frame type " + type;
+            this.out = Objects.requireNonNull(out, "out is null");
+            this.type = type;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            this.out.writeByte(this.type);
+            this.out.writeInt(len);
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+    }
+}
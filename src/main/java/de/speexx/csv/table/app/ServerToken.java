@@ -0,0 +1,103 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The secret a {@link ScqClient} must send with each request to the
+ * {@link ScqServer}. The server creates a new random token at start and
+ * writes it into a file only the user running the server can read. So only
+ * processes of this user are able to execute queries, although every local
+ * process can connect to the loopback port.
+ */
+final class ServerToken {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final Set<PosixFilePermission> OWNER_ONLY =
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+
+    private ServerToken() {
+        throw new AssertionError("Forbidden to create instance from " + ServerToken.class);
+    }
+
+    /** @return the token file of the server with the given <em>port</em> in the directory <tt>~/.scq</tt> */
+    static Path defaultFile(final int port) {
+        return Paths.get(System.getProperty("user.home"), ".scq", "server-" + port + ".token");
+    }
+
+    /**
+     * Creates a new random token and writes it to the given <em>file</em>
+     * readable by the owner only. An existing file is replaced.
+     * @return the token
+     * @throws IOException if it is not possible to write the file
+     */
+    static String create(final Path file) throws IOException {
+        Objects.requireNonNull(file, "file is null");
+        final byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        final StringBuilder token = new StringBuilder(2 * TOKEN_BYTES);
+        for (final byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+
+        final Path parent = file.toAbsolutePath().getParent();
+        if (Objects.nonNull(parent)) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(file);
+        if (Files.getFileStore(parent).supportsFileAttributeView("posix")) {
+            // The permissions are set at creation, so no other user can open the file in between
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } else {
+            Files.createFile(file);
+            file.toFile().setReadable(false, false);
+            file.toFile().setReadable(true, true);
+        }
+        Files.write(file, token.toString().getBytes(StandardCharsets.US_ASCII), StandardOpenOption.TRUNCATE_EXISTING);
+        return token.toString();
+    }
+
+    /**
+     * @return the token of the given <em>file</em>
+     * @throws IOException if it is not possible to read the file
+     */
+    static String read(final Path file) throws IOException {
+        Objects.requireNonNull(file, "file is null");
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+    }
+
+    /** Compares the tokens in constant time. */
+    static boolean matches(final String expected, final String actual) {
+        Objects.requireNonNull(expected, "expected is null");
+        return Objects.nonNull(actual) && MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                                                                actual.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,198 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import com.beust.jcommander.JCommander;
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.Table;
+import de.speexx.csv.table.TableException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Interactive shell started with <tt>scq -i source</tt>. The shell loads the
+ * source once and executes each input line as a query against the loaded
+ * tables. Lines starting with a backslash are commands:
+ * <ul>
+ *   <li><tt>\load source</tt> - loads a further source</li>
+ *   <li><tt>\drop source</tt> - drops a loaded source</li>
+ *   <li><tt>\types [source]</tt> - prints the columns and types of a source</li>
+ *   <li><tt>\help</tt> - prints the commands</li>
+ *   <li><tt>\q</tt> - ends the shell</li>
+ * </ul>
+ * <p>The result of a query is printed to the output stream. Timings and
+ * messages are printed to the info stream.</p>
+ */
+final class Shell {
+
+    private static final String PROMPT = "scq> ";
+    private static final String COMMAND_PREFIX = "\\";
+    private static final String HELP = "Commands: \\load <source>, \\drop <source>, \\types [<source>], \\help, \\q"
+                                        + System.lineSeparator() + "Any other line is executed as query.";
+
+    private final Configuration configuration;
+    private final List<String> options;
+
+    /**
+     * @param configuration the configuration of the shell call
+     * @param options the command line options applied to each query
+     */
+    Shell(final Configuration configuration, final List<String> options) {
+        this.configuration = Objects.requireNonNull(configuration, "configuration is null");
+        this.options = new ArrayList<>(Objects.requireNonNull(options, "options is null"));
+        if (!configuration.getQueryData().getQuery().trim().isEmpty()) {
+            throw new TableException("No query allowed in interactive mode");
+        }
+    }
+
+    void run(final BufferedReader in, final PrintStream out) throws IOException {
+        run(in, out, System.err);
+    }
+
+    void run(final BufferedReader in, final PrintStream out, final PrintStream info) throws IOException {
+        final Application application =
+                new Application(out, info, null, new TableCache(this.configuration.getMemoryBudget()), Paths.get(""));
+        final String source = this.configuration.getInteractiveSource().orElseThrow(() -> new TableException("No source"));
+
+        execute(application, COMMAND_PREFIX + "load " + source, out, info);
+        while (true) {
+            info.print(PROMPT);
+            info.flush();
+            final String line = in.readLine();
+            if (line == null || !execute(application, line, out, info)) {
+                break;
+            }
+        }
+        info.println();
+    }
+
+    /**
+     * Executes a command or query line.
+     * @return {@code false} if the shell should end
+     */
+    boolean execute(final Application application, final String line, final PrintStream out, final PrintStream info) {
+        final String trimmed = line.trim();
+        final String statement = trimmed.endsWith(";") ? trimmed.substring(0, trimmed.length() - 1).trim() : trimmed;
+        if (statement.isEmpty()) {
+            return true;
+        }
+        try {
+            if (statement.startsWith(COMMAND_PREFIX)) {
+                return executeCommand(application, statement.substring(COMMAND_PREFIX.length()), out, info);
+            }
+            final long start = System.currentTimeMillis();
+            final long rows = application.execute(parse(tokenize(statement)));
+            info.println(rows + " row(s) in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (final Exception e) {
+            info.println("Error: " + e.getMessage());
+        }
+        return true;
+    }
+
+    boolean executeCommand(final Application application, final String command, final PrintStream out, final PrintStream info) throws Exception {
+        final List<String> parts = tokenize(command);
+        final String name = parts.get(0);
+        final String source = parts.size() > 1 ? String.join(" ", parts.subList(1, parts.size()))
+                                               : this.configuration.getInteractiveSource().orElse("");
+        switch (name) {
+            case "q":
+            case "quit":
+                return false;
+            case "help":
+                info.println(HELP);
+                return true;
+            case "load": {
+                final long start = System.currentTimeMillis();
+                final List<Table> tables = application.loadTable(parse(selectAllFrom(source))).orElseThrow(() -> new TableException("No table available"));
+                info.println("Loaded " + source + " with " + tables.get(0).getEntryDescriptors().size()
+                             + " column(s) in " + (System.currentTimeMillis() - start) + " ms");
+                return true;
+            }
+            case "drop":
+                info.println(application.dropTable(parse(selectAllFrom(source))) ? "Dropped " + source : "Not loaded: " + source);
+                return true;
+            case "types": {
+                final List<Table> tables = application.loadTable(parse(selectAllFrom(source))).orElseThrow(() -> new TableException("No table available"));
+                for (final EntryDescriptor descriptor : tables.get(0).getEntryDescriptors()) {
+                    out.println(descriptor.getName() + " " + descriptor.getType());
+                }
+                out.flush();
+                return true;
+            }
+            default:
+                info.println("Unknown command: " + COMMAND_PREFIX + name);
+                info.println(HELP);
+                return true;
+        }
+    }
+
+    Configuration parse(final List<String> queryParts) {
+        final Configuration conf = new Configuration();
+        final List<String> args = new ArrayList<>(this.options);
+        args.addAll(queryParts);
+        new JCommander(conf).parse(Configuration.withStandardInputAlias(args.toArray(new String[args.size()])));
+        return conf;
+    }
+
+    static List<String> selectAllFrom(final String source) {
+        return Arrays.asList("select", "*", "from", source);
+    }
+
+    /** Splits the line at white spaces outside of string literals. */
+    static List<String> tokenize(final String line) {
+        final List<String> tokens = new ArrayList<>();
+        final StringBuilder token = new StringBuilder();
+        boolean inLiteral = false;
+        for (final char c : line.toCharArray()) {
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+            }
+            if (!inLiteral && Character.isWhitespace(c)) {
+                if (token.length() > 0) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                }
+            } else {
+                token.append(c);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /** Removes the interactive option and its source from the given arguments. */
+    static List<String> withoutInteractiveOption(final String... args) {
+        final List<String> options = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (Configuration.INTERACTIVE_OPTIONS.contains(args[i])) {
+                i++;
+            } else {
+                options.add(args[i]);
+            }
+        }
+        return options;
+    }
+}
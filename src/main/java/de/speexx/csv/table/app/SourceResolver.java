@@ -0,0 +1,143 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import de.speexx.csv.table.TableException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resolves the source of a from clause to a list of files. A source is either
+ * a simple file, a directory or a glob pattern like <tt>logs/2016-08-*.csv</tt>.
+ * For a directory all files with the extension <tt>.csv</tt> in the directory
+ * are resolved. The source <tt>-</tt> or <tt>/dev/stdin</tt> is the standard input.
+ */
+final class SourceResolver {
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final String DIRECTORY_GLOB = "*.csv";
+    static final String STANDARD_INPUT = "-";
+    static final String STANDARD_INPUT_ALIAS = "/dev/stdin";
+
+    private SourceResolver() {
+        throw new AssertionError("Forbidden to create instance from " + SourceResolver.class);
+    }
+
+    /**
+     * A glob pattern must be quoted in the query, e.g. <tt>from "'logs/*.csv'"</tt>,
+     * so the shell doesn't expand it.
+     * @return the given <em>source</em> without surrounding single or double quotes
+     */
+    static String unquoted(final String source) {
+        Objects.requireNonNull(source, "source is null");
+        final String trimmed = source.trim();
+        if (trimmed.length() >= 2 && trimmed.charAt(0) == trimmed.charAt(trimmed.length() - 1)
+                && (trimmed.charAt(0) == '\'' || trimmed.charAt(0) == '"')) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return source;
+    }
+
+    static boolean isStandardInput(final String source) {
+        return STANDARD_INPUT.equals(source) || STANDARD_INPUT_ALIAS.equals(source);
+    }
+
+    static boolean isGlob(final String source) {
+        Objects.requireNonNull(source, "source is null");
+        return source.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) != -1);
+    }
+
+    static boolean isMultiFileSource(final String source) {
+        return isGlob(source) || Files.isDirectory(Paths.get(source));
+    }
+
+    /**
+     * Resolves the given <em>source</em> to a sorted list of files.
+     * @param quotedSource the source to resolve. May be {@linkplain #unquoted(String) quoted}
+     * @return the list of regular files for the source. Never {@code null}
+     * @throws TableException if no file exists for the source
+     */
+    static List<Path> resolve(final String quotedSource) throws IOException {
+        final String source = unquoted(Objects.requireNonNull(quotedSource, "source is null"));
+
+        final List<Path> files;
+        if (isGlob(source)) {
+            files = resolveGlob(source);
+        } else {
+            final Path path = Paths.get(source);
+            if (Files.isDirectory(path)) {
+                files = resolveGlob(path.resolve(DIRECTORY_GLOB).toString());
+            } else {
+                files = Files.isRegularFile(path) ? Collections.singletonList(path) : Collections.emptyList();
+            }
+        }
+        if (files.isEmpty()) {
+            throw new TableException("No file available for " + source);
+        }
+        return files;
+    }
+
+    static List<Path> resolveGlob(final String glob) throws IOException {
+        final Path base = baseDirectory(glob);
+        final String pattern = glob.replace('\\', '/');
+        final PathMatcher matcher = base.getFileSystem().getPathMatcher("glob:" + pattern);
+        final int maxDepth = pattern.contains("**") ? Integer.MAX_VALUE : depth(pattern) - depth(base.toString());
+
+        try (final Stream<Path> paths = Files.walk(base, Math.max(maxDepth, 1))) {
+            return paths.filter(Files::isRegularFile)
+                        .filter(path -> matcher.matches(path))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    /** The longest directory prefix of the given glob without glob characters. */
+    static Path baseDirectory(final String glob) {
+        final String normalized = glob.replace('\\', '/');
+        int end = normalized.length();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(normalized.charAt(i)) != -1) {
+                end = i;
+                break;
+            }
+        }
+        final int lastSeparator = normalized.lastIndexOf('/', end);
+        if (lastSeparator == -1) {
+            return Paths.get("");
+        }
+        if (lastSeparator == 0) {
+            return Paths.get("/");
+        }
+        return Paths.get(normalized.substring(0, lastSeparator));
+    }
+
+    static int depth(final String path) {
+        if (path.isEmpty()) {
+            return 0;
+        }
+        return (int) path.chars().filter(c -> c == '/').count() + 1;
+    }
+}
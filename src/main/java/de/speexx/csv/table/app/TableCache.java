@@ -0,0 +1,219 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import de.speexx.csv.table.Table;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps loaded tables resident for repeated queries. A cached table is
+ * invalidated if the size or the modification time of one of its source files
+ * changes.
+ * <p>The cache has a memory budget. The memory of a table is estimated with
+ * {@value #MEMORY_PER_SOURCE_BYTE} times the size of its source files. If the
+ * estimated memory of all tables exceeds the budget, the least recently used
+ * tables are evicted and {@linkplain Table#close() closed}. The most recently
+ * added table is never evicted.</p>
+ * <p>The executions of the last {@value #EXECUTION_COUNT_SIZE} different
+ * queries are counted.</p>
+ */
+final class TableCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    static final int MEMORY_PER_SOURCE_BYTE = 4;
+    static final int EXECUTION_COUNT_SIZE = 256;
+
+    private final long memoryBudget;
+    private final Map<String, CachedTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> executions = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Integer> eldest) {
+            return size() > EXECUTION_COUNT_SIZE;
+        }
+    };
+    private long usedMemory;
+
+    /**
+     * @param memoryBudget the memory budget in bytes
+     */
+    TableCache(final long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memory budget must be > 0: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns the table for the given key if the table is still up to date.
+     * An outdated table is removed and closed.
+     * @param key the key of the table
+     * @return the table or an empty value
+     */
+    synchronized Optional<Table> get(final String key) {
+        Objects.requireNonNull(key, "key is null");
+        final CachedTable cached = this.tables.get(key);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        if (!cached.isUpToDate()) {
+            LOG.info("Source of table changed: {}", key);
+            remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(cached.table);
+    }
+
+    /**
+     * Adds a table loaded from the given <em>files</em>. Evicts the least
+     * recently used tables if the memory budget is exceeded.
+     * @param key the key of the table
+     * @param table the table
+     * @param files the source files of the table
+     * @throws IOException if it is not possible to get the attributes of the files
+     */
+    synchronized void put(final String key, final Table table, final List<Path> files) throws IOException {
+        Objects.requireNonNull(key, "key is null");
+        Objects.requireNonNull(table, "table is null");
+        Objects.requireNonNull(files, "files is null");
+
+        remove(key);
+        final CachedTable cached = new CachedTable(table, files);
+        this.tables.put(key, cached);
+        this.usedMemory += cached.estimatedMemory;
+        evict();
+    }
+
+    /**
+     * Removes and closes the table for the given key.
+     * @param key the key of the table
+     * @return {@code true} if a table was removed
+     */
+    synchronized boolean remove(final String key) {
+        final CachedTable cached = this.tables.remove(key);
+        if (cached == null) {
+            return false;
+        }
+        this.usedMemory -= cached.estimatedMemory;
+        closeQuietly(cached.table);
+        return true;
+    }
+
+    /** Removes and closes all tables. */
+    synchronized void clear() {
+        new ArrayList<>(this.tables.keySet()).forEach(this::remove);
+    }
+
+    /**
+     * Counts the executions of the given query over all requests. The count
+     * of the least recently executed query is dropped if more than
+     * {@value #EXECUTION_COUNT_SIZE} queries are counted.
+     * @param query the query
+     * @return the number of executions including the current one
+     */
+    synchronized int countExecution(final String query) {
+        Objects.requireNonNull(query, "query is null");
+        return this.executions.merge(query, 1, Integer::sum);
+    }
+
+    synchronized int size() {
+        return this.tables.size();
+    }
+
+    synchronized long getUsedMemory() {
+        return this.usedMemory;
+    }
+
+    void evict() {
+        final Iterator<Map.Entry<String, CachedTable>> itr = this.tables.entrySet().iterator();
+        while (this.usedMemory > this.memoryBudget && this.tables.size() > 1 && itr.hasNext()) {
+            final Map.Entry<String, CachedTable> eldest = itr.next();
+            LOG.info("Evict table: {}", eldest.getKey());
+            itr.remove();
+            this.usedMemory -= eldest.getValue().estimatedMemory;
+            closeQuietly(eldest.getValue().table);
+        }
+    }
+
+    static void closeQuietly(final Table table) {
+        try {
+            table.close();
+        } catch (final RuntimeException e) {
+            LOG.warn("Unable to close table {}: {}", table.getName(), e.getMessage());
+        }
+    }
+
+    static final class CachedTable {
+
+        private final Table table;
+        private final List<FileStamp> stamps = new ArrayList<>();
+        private final long estimatedMemory;
+
+        CachedTable(final Table table, final List<Path> files) throws IOException {
+            this.table = table;
+            long size = 0;
+            for (final Path file : files) {
+                final FileStamp stamp = FileStamp.of(file);
+                this.stamps.add(stamp);
+                size += stamp.size;
+            }
+            this.estimatedMemory = size * MEMORY_PER_SOURCE_BYTE;
+        }
+
+        boolean isUpToDate() {
+            return this.stamps.stream().allMatch(FileStamp::isUpToDate);
+        }
+    }
+
+    static final class FileStamp {
+
+        private final Path file;
+        private final long size;
+        private final long lastModified;
+
+        FileStamp(final Path file, final long size, final long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static FileStamp of(final Path file) throws IOException {
+            return new FileStamp(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+
+        boolean isUpToDate() {
+            try {
+                final FileStamp current = of(this.file);
+                return current.size == this.size && current.lastModified == this.lastModified;
+            } catch (final IOException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import de.speexx.csv.table.GrowingCsvFile;
+import de.speexx.csv.table.RowReader;
+import de.speexx.csv.table.Table;
+import de.speexx.csv.table.TableException;
+import de.speexx.csv.table.app.sql.FromInfo;
+import de.speexx.csv.table.app.sql.SelectQueryData;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watch mode started with <tt>scq --watch query</tt>. The table of the single
+ * source file is kept loaded. Each time the file changes the query is
+ * executed again and the result is printed if it differs from the last
+ * printed result. If the file only grew, the appended rows are
+ * {@linkplain Table#refresh() loaded incrementally}. A truncated or replaced
+ * file, e.g. after a log rotation, is loaded again. Failures to read the
+ * file are logged and the file is watched further, so a removed file is
+ * loaded again when it reappears.
+ */
+final class Watcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    private final Configuration configuration;
+    private final Application application;
+    private final PrintStream out;
+    private final GrowingCsvFile file;
+    private Table table;
+    private String lastResult;
+
+    /**
+     * @param configuration the configuration with the watched query
+     * @param application the application loading the table and executing the query
+     * @param out the stream to print the results to
+     * @throws TableException if the query doesn't read a single source file
+     */
+    Watcher(final Configuration configuration, final Application application, final PrintStream out) {
+        this.configuration = Objects.requireNonNull(configuration, "configuration is null");
+        this.application = Objects.requireNonNull(application, "application is null");
+        this.out = Objects.requireNonNull(out, "out is null");
+        final SelectQueryData queryData = configuration.getQueryData().getQueryData();
+        if (queryData.getFromInfo().size() != 1 || queryData.getJoinInfo().isPresent()) {
+            throw new TableException("Watch mode requires a query on a single source");
+        }
+        final FromInfo fromInfo = queryData.getFromInfo().get(0);
+        final String source = application.resolveSource(fromInfo);
+        if (SourceResolver.isStandardInput(source) || SourceResolver.isMultiFileSource(source)) {
+            throw new TableException("Watch mode requires a single source file: " + fromInfo.getOriginalFrom());
+        }
+        this.file = new GrowingCsvFile(Paths.get(source), configuration.getCharset());
+    }
+
+    /** Executes the query and again on each change of the file until the thread is interrupted. */
+    void run() throws Exception {
+        final Path path = this.file.getPath().toAbsolutePath();
+        try (final WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                                      StandardWatchEventKinds.ENTRY_DELETE);
+            update();
+            while (!Thread.currentThread().isInterrupted()) {
+                final WatchKey key = watchService.take();
+                boolean changed = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || path.getFileName().equals(event.context());
+                }
+                if (!key.reset()) {
+                    throw new TableException("Directory of " + path + " not accessible");
+                }
+                if (changed) {
+                    updateAfterChange();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Like {@link #update()} but logs the failures to read the file, so the
+     * watching continues.
+     * @return {@code true} if the result was printed
+     */
+    boolean updateAfterChange() throws Exception {
+        try {
+            return update();
+        } catch (final NoSuchFileException e) {
+            // E.g. removed by a log rotation. The new file may get the same file key, so it's loaded again without check
+            LOG.warn("File {} not available. Waiting for the file to reappear", this.file.getPath());
+            close();
+        } catch (final TableException | IOException e) {
+            // E.g. a new file without header line. The next change loads the file again.
+            LOG.warn("Unable to update the result: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Loads the appended rows or the complete file, executes the query and
+     * prints the result if it changed.
+     * @return {@code true} if the result was printed
+     */
+    boolean update() throws Exception {
+        final long start = System.currentTimeMillis();
+        if (Objects.isNull(this.table)) {
+            this.table = this.application.loadGrowingTable(this.configuration, this.file);
+        } else if (this.file.isReplaced()) {
+            this.application.doVerboseLog(this.configuration, "File {} truncated or replaced. Load the table again", this.file.getPath());
+            close();
+            this.table = this.application.loadGrowingTable(this.configuration, this.file);
+        } else {
+            final long rows = this.table.refresh();
+            this.application.doVerboseLog(this.configuration, "Appended {} rows in {}ms", rows, System.currentTimeMillis() - start);
+            if (rows == 0) {
+                return false;
+            }
+        }
+
+        final Optional<RowReader> rows = this.application.executeQuery(this.configuration, Collections.singletonList(this.table));
+        if (!rows.isPresent()) {
+            return false;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final PrintStream target = new PrintStream(bytes, false, StandardCharsets.UTF_8.name())) {
+            this.application.exportResult(this.configuration, rows.get(), target);
+        }
+        final String result = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        if (result.equals(this.lastResult)) {
+            return false;
+        }
+        this.lastResult = result;
+        this.out.print(result);
+        this.out.flush();
+        return true;
+    }
+
+    void close() {
+        if (Objects.nonNull(this.table)) {
+            this.table.close();
+            this.table = null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app.sql;
+
+
+/**
+ * The second source of an equi-join <tt>FROM a [INNER | LEFT [OUTER]] JOIN b
+ * ON x = y</tt>. The original from is the joined source. The columns of the
+ * condition are in the order of the query, either of them may be the column
+ * of the first source.
+ */
+public interface JoinInfo extends FromInfo {
+
+    /** @return {@code true} for a left outer join, {@code false} for an inner join */
+    boolean isLeftJoin();
+
+    String getFirstConditionColumn();
+    String getSecondConditionColumn();
+}
@@ -0,0 +1,199 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app.sql;
+
+import de.speexx.csv.table.UnionCsvReader;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates a filter for source files out of the where clause of a query. The
+ * filter supports predicates on the virtual columns
+ * {@value de.speexx.csv.table.UnionCsvReader#FILE_COLUMN_NAME} and
+ * {@value de.speexx.csv.table.UnionCsvReader#FILE_DATE_COLUMN_NAME} with a
+ * string literal on the right side.
+ * <p>The filter is conservative. If the where clause contains <tt>OR</tt>,
+ * <tt>NOT</tt> or parenthesis, all files are accepted. Otherwise all supported
+ * predicates are combined with <tt>AND</tt>. A file rejected by the filter
+ * can't contribute rows to the result of the query.</p>
+ */
+public final class PartitionFilter {
+
+    private static final String WHERE = "where";
+    private static final Pattern END_OF_WHERE =
+            Pattern.compile("\\b(group\\s+by|order\\s+by|having|fetch|offset)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UNSUPPORTED_IN_WHERE =
+            Pattern.compile("\\b(or|not)\\b|[()]", Pattern.CASE_INSENSITIVE);
+    private static final String COLUMN = "(?<![\\w.])(" + UnionCsvReader.FILE_DATE_COLUMN_NAME + "|" + UnionCsvReader.FILE_COLUMN_NAME + ")(?![\\w])";
+    private static final Pattern COMPARISON =
+            Pattern.compile(COLUMN + "\\s*(=|<>|!=|<=|>=|<|>|\\blike\\b)\\s*'([^']*)'", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BETWEEN =
+            Pattern.compile(COLUMN + "\\s+between\\s+'([^']*)'\\s+and\\s+'([^']*)'", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DATE_LITERAL = Pattern.compile("(\\d{4})-([01]?\\d)-([0-3]?\\d)");
+
+    private PartitionFilter() {
+        throw new AssertionError("Forbidden to create instance from " + PartitionFilter.class);
+    }
+
+    /**
+     * Creates a filter for the given <em>query</em>.
+     * @param query the query to analyze
+     * @return a filter for the source files. Never {@code null}
+     * @throws NullPointerException if <em>query</em> is {@code null}
+     */
+    public static Predicate<Path> of(final String query) {
+        Objects.requireNonNull(query, "query is null");
+
+        final Optional<String> where = whereClause(query);
+        if (!where.isPresent()) {
+            return file -> true;
+        }
+        final String clause = where.get();
+        if (UNSUPPORTED_IN_WHERE.matcher(withoutLiterals(clause)).find()) {
+            return file -> true;
+        }
+
+        Predicate<Path> filter = file -> true;
+        final Matcher between = BETWEEN.matcher(clause);
+        while (between.find()) {
+            if (isOutsideLiteral(clause, between.start())) {
+                filter = filter.and(comparison(between.group(1), ">=", between.group(2)))
+                               .and(comparison(between.group(1), "<=", between.group(3)));
+            }
+        }
+        final String withoutBetween = BETWEEN.matcher(clause).replaceAll(" ");
+        final Matcher comparison = COMPARISON.matcher(withoutBetween);
+        while (comparison.find()) {
+            if (isOutsideLiteral(withoutBetween, comparison.start())) {
+                filter = filter.and(comparison(comparison.group(1), comparison.group(2), comparison.group(3)));
+            }
+        }
+        return filter;
+    }
+
+    static Optional<String> whereClause(final String query) {
+        final String noLiterals = withoutLiterals(query);
+        final Matcher whereMatcher = Pattern.compile("\\b" + WHERE + "\\b", Pattern.CASE_INSENSITIVE).matcher(noLiterals);
+        if (!whereMatcher.find()) {
+            return Optional.empty();
+        }
+        final int start = whereMatcher.end();
+        final Matcher endMatcher = END_OF_WHERE.matcher(noLiterals);
+        final int end = endMatcher.find(start) ? endMatcher.start() : query.length();
+        return Optional.of(query.substring(start, end));
+    }
+
+    /** Replaces the content of all string literals with blanks to keep the positions stable. */
+    static String withoutLiterals(final String s) {
+        final StringBuilder sb = new StringBuilder(s.length());
+        boolean inLiteral = false;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+                sb.append(c);
+            } else {
+                sb.append(inLiteral ? ' ' : c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static boolean isOutsideLiteral(final String s, final int position) {
+        int quotes = 0;
+        for (int i = 0; i < position; i++) {
+            if (s.charAt(i) == '\'') {
+                quotes++;
+            }
+        }
+        return quotes % 2 == 0;
+    }
+
+    static Predicate<Path> comparison(final String column, final String operator, final String literal) {
+        final String op = operator.toLowerCase(Locale.ENGLISH);
+        if (UnionCsvReader.FILE_DATE_COLUMN_NAME.equalsIgnoreCase(column)) {
+            final Optional<LocalDate> date = parseDate(literal);
+            if (!date.isPresent() || "like".equals(op)) {
+                return file -> true;
+            }
+            final LocalDate value = date.get();
+            return file -> {
+                final Optional<LocalDate> fileDate = UnionCsvReader.dateFromPath(file);
+                return !fileDate.isPresent() || compare(op, fileDate.get().compareTo(value));
+            };
+        }
+        if ("like".equals(op)) {
+            final Pattern pattern = likeToPattern(literal);
+            return file -> pattern.matcher(file.toString()).matches();
+        }
+        return file -> compare(op, file.toString().compareTo(literal));
+    }
+
+    static boolean compare(final String operator, final int comparison) {
+        switch (operator) {
+            case "=": return comparison == 0;
+            case "<>":
+            case "!=": return comparison != 0;
+            case "<": return comparison < 0;
+            case "<=": return comparison <= 0;
+            case ">": return comparison > 0;
+            case ">=": return comparison >= 0;
+            default: return true;
+        }
+    }
+
+    static Pattern likeToPattern(final String like) {
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (final char c : like.toCharArray()) {
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    static Optional<LocalDate> parseDate(final String literal) {
+        final Matcher matcher = DATE_LITERAL.matcher(literal.trim());
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(LocalDate.of(Integer.parseInt(matcher.group(1)),
+                                            Integer.parseInt(matcher.group(2)),
+                                            Integer.parseInt(matcher.group(3))));
+        } catch (final RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -22,40 +22,47 @@ import de.speexx.csv.table.util.UuidSupport;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 import static java.util.stream.Collectors.joining;
 
 
 public final class SelectData implements SelectQuery {
     
     private static final String FROM_CLAUSE = "from";
+    private static final String JOIN_CLAUSE = "join";
+    private static final Set<String> JOIN_END_CLAUSES =
+            new HashSet<>(Arrays.asList("where", "group", "order", "offset", "fetch", "union", "intersect", "except"));
 
-    @Parameter(description = "query", required = true)
+    @Parameter(description = "query")
     private final List<String> queryParts = new ArrayList<>();
 
     public SelectQueryData getQueryData() {
 
-        final AtomicBoolean fromFound = new AtomicBoolean(false);
-        final AtomicBoolean fromWasLast = new AtomicBoolean(false);
         final AtomicReference<String> originalFrom = new AtomicReference<>(null);
+        final AtomicReference<JoinInfo> joinInfo = new AtomicReference<>(null);
         final String newTableName = "t" + UuidSupport.shortUuid();
-        
-        final List<String> newQuery = this.queryParts.stream().map(qp -> {
-            if (fromFound.get() && fromWasLast.get()) {
-                originalFrom.set(qp);
-                fromWasLast.set(false);
-                return newTableName;
-            }
-            if (FROM_CLAUSE.equalsIgnoreCase(qp)) {
-                fromFound.set(true);
-                fromWasLast.set(true);
+
+        final List<String> newQuery = new ArrayList<>();
+        for (int i = 0; i < this.queryParts.size(); i++) {
+            final String part = this.queryParts.get(i);
+            if (i > 0 && FROM_CLAUSE.equalsIgnoreCase(this.queryParts.get(i - 1))) {
+                originalFrom.set(part);
+                newQuery.add(newTableName);
+                final int joinEnd = joinEnd(i + 1);
+                if (joinEnd > i + 1) {
+                    joinInfo.set(parseJoin(i + 1, joinEnd, newTableName));
+                    i = joinEnd - 1;
+                }
+                continue;
             }
-            return qp;
-        }).collect(Collectors.toList());
+            newQuery.add(part);
+        }
 
         return new SelectQueryData() {
             
@@ -93,6 +100,11 @@ public final class SelectData implements SelectQuery {
                 }));
             }
             
+            @Override
+            public Optional<JoinInfo> getJoinInfo() {
+                return Optional.ofNullable(joinInfo.get());
+            }
+
             @Override
             public String toString() {
                 return new StringBuilder("SelectQueryData{AdjustedQuery=")
@@ -108,6 +120,59 @@ public final class SelectData implements SelectQuery {
         
     }
 
+    /**
+     * @param start the index of the part following the source of a from clause
+     * @return the index after the join clause starting at <em>start</em> or
+     *         <em>start</em> if there is no join
+     */
+    int joinEnd(final int start) {
+        int i = start;
+        if (i < this.queryParts.size() && ("inner".equalsIgnoreCase(this.queryParts.get(i)) || "left".equalsIgnoreCase(this.queryParts.get(i)))) {
+            i++;
+            if (i < this.queryParts.size() && "outer".equalsIgnoreCase(this.queryParts.get(i))) {
+                i++;
+            }
+        }
+        if (i >= this.queryParts.size() || !JOIN_CLAUSE.equalsIgnoreCase(this.queryParts.get(i))) {
+            return start;
+        }
+        while (i < this.queryParts.size() && !JOIN_END_CLAUSES.contains(this.queryParts.get(i).toLowerCase(Locale.ENGLISH))) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Parses <tt>[INNER | LEFT [OUTER]] JOIN source ON column = column</tt>. */
+    JoinInfo parseJoin(final int start, final int end, final String adjustedFrom) {
+        final List<String> parts = this.queryParts.subList(start, end);
+        final boolean leftJoin = "left".equalsIgnoreCase(parts.get(0));
+        int i = 0;
+        while (!JOIN_CLAUSE.equalsIgnoreCase(parts.get(i))) {
+            i++;
+        }
+        if (i + 2 >= parts.size() || !"on".equalsIgnoreCase(parts.get(i + 2))) {
+            throw new SqlException("Join without source or on clause: " + stringListToString(parts));
+        }
+        final String source = parts.get(i + 1);
+        final String[] columns = stringListToString(parts.subList(i + 3, parts.size())).split("=", -1);
+        if (columns.length != 2 || columns[0].trim().isEmpty() || columns[1].trim().isEmpty()) {
+            throw new SqlException("Only equi-joins of two columns are supported: " + stringListToString(parts));
+        }
+        return new JoinInfo() {
+            @Override public boolean isLeftJoin() {return leftJoin;}
+            @Override public String getFirstConditionColumn() {return columns[0].trim();}
+            @Override public String getSecondConditionColumn() {return columns[1].trim();}
+            @Override public String getOriginalFrom() {return source;}
+            @Override public String getAdjustedFrom() {return adjustedFrom;}
+
+            @Override
+            public String toString() {
+                return "JoinInfo{OriginalFrom=" + source + " - leftJoin=" + leftJoin
+                       + " - condition=" + getFirstConditionColumn() + " = " + getSecondConditionColumn() + '}';
+            }
+        };
+    }
+
     @Override
     public String toString() {
         return "SelectData{" + "queryParts=" + queryParts + '}';
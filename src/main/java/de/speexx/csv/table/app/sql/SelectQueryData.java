@@ -18,6 +18,7 @@
 package de.speexx.csv.table.app.sql;
 
 import java.util.List;
+import java.util.Optional;
 
 
 public interface SelectQueryData {
@@ -26,4 +27,9 @@ public interface SelectQueryData {
     SelectQuery getAdjustedQuery();
     List<FromInfo> getFromInfo();
 
+    /** @return the joined second source of the first from. Empty if the query has no join */
+    default Optional<JoinInfo> getJoinInfo() {
+        return Optional.empty();
+    }
+
 }
@@ -0,0 +1,172 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.event;
+
+import de.speexx.csv.table.TableException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flight Recorder backend of the {@link PipelineEvents}. The project is
+ * compiled for Java 8, whose API doesn't contain <tt>jdk.jfr</tt>. So the
+ * event types are created at runtime with <tt>jdk.jfr.EventFactory</tt> and
+ * the whole API is used reflectively.
+ */
+final class JfrEventSupport implements EventSupport {
+
+    static final String EVENT_FACTORY_CLASS = "jdk.jfr.EventFactory";
+
+    private static final String RECORDING_SETTINGS = "profile";
+    private static final String CATEGORY = "sql4csv";
+    private static final int TABLE_FIELD = 0;
+    private static final int COLUMN_FIELD = 1;
+    private static final int ROWS_FIELD = 2;
+
+    private final Map<Stage, Object> factories = new EnumMap<>(Stage.class);
+    private final Method newEvent;
+    private final Method set;
+    private final Method begin;
+    private final Method end;
+    private final Method commit;
+    private final Method isAvailable;
+    private final Method getConfiguration;
+    private final Constructor<?> newRecording;
+    private final Method setDestination;
+    private final Method start;
+    private final Method stop;
+    private final Method close;
+
+    /** @throws ReflectiveOperationException if the Flight Recorder API isn't available */
+    JfrEventSupport() throws ReflectiveOperationException {
+        final Class<?> eventFactory = Class.forName(EVENT_FACTORY_CLASS);
+        final Class<?> event = Class.forName("jdk.jfr.Event");
+        final Class<?> configuration = Class.forName("jdk.jfr.Configuration");
+        final Class<?> recording = Class.forName("jdk.jfr.Recording");
+        final Constructor<?> annotation = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+        final Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+        final Class<?> label = annotationType("jdk.jfr.Label");
+
+        final List<Object> fields = Arrays.asList(
+                field.newInstance(String.class, "table", Collections.singletonList(annotation.newInstance(label, "Table"))),
+                field.newInstance(String.class, "column", Collections.singletonList(annotation.newInstance(label, "Column"))),
+                field.newInstance(long.class, "rows", Collections.singletonList(annotation.newInstance(label, "Rows"))));
+        final Method create = eventFactory.getMethod("create", List.class, List.class);
+        for (final Stage stage : Stage.values()) {
+            final String[] metadata = metadataOf(stage);
+            final List<Object> annotations = Arrays.asList(
+                    annotation.newInstance(annotationType("jdk.jfr.Name"), "de.speexx.csv." + metadata[0]),
+                    annotation.newInstance(label, metadata[1]),
+                    annotation.newInstance(annotationType("jdk.jfr.Description"), metadata[2]),
+                    annotation.newInstance(annotationType("jdk.jfr.Category"), new String[] {CATEGORY}));
+            this.factories.put(stage, create.invoke(null, annotations, fields));
+        }
+
+        this.newEvent = eventFactory.getMethod("newEvent");
+        this.set = event.getMethod("set", int.class, Object.class);
+        this.begin = event.getMethod("begin");
+        this.end = event.getMethod("end");
+        this.commit = event.getMethod("commit");
+        this.isAvailable = Class.forName("jdk.jfr.FlightRecorder").getMethod("isAvailable");
+        this.getConfiguration = configuration.getMethod("getConfiguration", String.class);
+        this.newRecording = recording.getConstructor(configuration);
+        this.setDestination = recording.getMethod("setDestination", Path.class);
+        this.start = recording.getMethod("start");
+        this.stop = recording.getMethod("stop");
+        this.close = recording.getMethod("close");
+    }
+
+    /** @return the type name, label and description of the events of the given stage */
+    static String[] metadataOf(final Stage stage) {
+        switch (stage) {
+            case TABLE_LOAD: return new String[] {"TableLoad", "Table Load", "Loading a source into a table"};
+            case INSERT_BATCH: return new String[] {"InsertBatch", "Insert Batch", "Inserting one batch of rows into a table"};
+            case COLUMN_CONVERSION: return new String[] {"ColumnConversion", "Column Conversion", "Converting the values of a column to the detected type"};
+            case QUERY: return new String[] {"Query", "Query", "Executing a query against a table"};
+            case EXPORT: return new String[] {"Export", "Export", "Writing the result of a query"};
+            default: throw new IllegalArgumentException("Unsupported stage: " + stage);
+        }
+    }
+
+    static Class<?> annotationType(final String name) throws ClassNotFoundException {
+        return Class.forName(name).asSubclass(Annotation.class);
+    }
+
+    @Override
+    public PipelineEvent begin(final Stage stage, final String table, final String column) {
+        final Object event = invoke(this.newEvent, this.factories.get(stage));
+        invoke(this.set, event, TABLE_FIELD, table);
+        invoke(this.set, event, COLUMN_FIELD, column);
+        invoke(this.begin, event);
+        return new PipelineEvent() {
+            @Override
+            public void setRows(final long rows) {
+                invoke(JfrEventSupport.this.set, event, ROWS_FIELD, rows);
+            }
+
+            @Override
+            public void close() {
+                invoke(JfrEventSupport.this.end, event);
+                invoke(JfrEventSupport.this.commit, event);
+            }
+        };
+    }
+
+    @Override
+    public boolean isRecordingSupported() {
+        return (Boolean) invoke(this.isAvailable, null);
+    }
+
+    @Override
+    public Closeable startRecording(final Path file) throws IOException {
+        final Object recording;
+        try {
+            recording = this.newRecording.newInstance(this.getConfiguration.invoke(null, RECORDING_SETTINGS));
+        } catch (final InvocationTargetException e) {
+            throw new IOException(e.getCause());
+        } catch (final ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+        invoke(this.setDestination, recording, file);
+        invoke(this.start, recording);
+        return () -> {
+            // A stopped recording with a destination is written to the destination
+            invoke(this.stop, recording);
+            invoke(this.close, recording);
+        };
+    }
+
+    static Object invoke(final Method method, final Object target, final Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw new TableException("Flight Recorder call " + method.getName() + " failed", e);
+        } catch (final IllegalAccessException e) {
+            throw new TableException("Flight Recorder call " + method.getName() + " not accessible", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.event;
+
+/**
+ * A running event of a pipeline {@link Stage}. The event is reported with the
+ * time between {@link PipelineEvents#begin(Stage, String, String) begin} and
+ * {@link #close()}.
+ * <pre>
+ * try (final PipelineEvent event = PipelineEvents.begin(Stage.QUERY, tableName)) {
+ *     ...
+ *     event.setRows(rows);
+ * }
+ * </pre>
+ */
+public interface PipelineEvent extends AutoCloseable {
+
+    /** @param rows the number of rows handled in the stage */
+    void setRows(long rows);
+
+    /** Ends and reports the event. */
+    @Override
+    void close();
+}
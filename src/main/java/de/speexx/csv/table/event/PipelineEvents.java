@@ -0,0 +1,114 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.event;
+
+import de.speexx.csv.table.TableException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports the {@linkplain Stage stages} of a query pipeline as Java Flight
+ * Recorder events. The events are in the category <tt>sql4csv</tt> and carry
+ * the table name, the column name if available and the number of rows.
+ * <p>The Flight Recorder API is only available since Java 8u262 and not part
+ * of the Java 8 API the project is compiled against. The events are
+ * therefore created reflectively by the {@link JfrEventSupport}. Without the
+ * API all events are no-ops.</p>
+ */
+public final class PipelineEvents {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    static final PipelineEvent NO_EVENT = new PipelineEvent() {
+        @Override public void setRows(final long rows) {}
+        @Override public void close() {}
+    };
+
+    static final EventSupport NO_EVENT_SUPPORT = new EventSupport() {
+        @Override
+        public PipelineEvent begin(final Stage stage, final String table, final String column) {
+            return NO_EVENT;
+        }
+
+        @Override
+        public boolean isRecordingSupported() {
+            return false;
+        }
+
+        @Override
+        public Closeable startRecording(final Path file) {
+            throw new TableException("Java Flight Recorder not available");
+        }
+    };
+
+    private static final EventSupport SUPPORT = loadEventSupport();
+
+    private PipelineEvents() {
+        throw new AssertionError("Forbidden to create instance from " + PipelineEvents.class);
+    }
+
+    /**
+     * @param stage the stage of the event
+     * @param table the name of the table
+     * @return a started event. Never {@code null}
+     */
+    public static PipelineEvent begin(final Stage stage, final String table) {
+        return begin(stage, table, null);
+    }
+
+    /**
+     * @param stage the stage of the event
+     * @param table the name of the table
+     * @param column the name of the column. May be {@code null}
+     * @return a started event. Never {@code null}
+     */
+    public static PipelineEvent begin(final Stage stage, final String table, final String column) {
+        Objects.requireNonNull(stage, "stage is null");
+        return SUPPORT.begin(stage, table, column);
+    }
+
+    /** @return {@code true} if {@link #startRecording(Path)} is supported by the JVM */
+    public static boolean isRecordingSupported() {
+        return SUPPORT.isRecordingSupported();
+    }
+
+    /**
+     * Starts a Flight Recorder recording with the <tt>profile</tt> settings.
+     * Closing the returned recording stops it and writes it to the file.
+     * @param file the file to write the recording to
+     * @return the running recording
+     * @throws TableException if the Flight Recorder is not available
+     */
+    public static Closeable startRecording(final Path file) throws IOException {
+        Objects.requireNonNull(file, "file is null");
+        return SUPPORT.startRecording(file);
+    }
+
+    static EventSupport loadEventSupport() {
+        try {
+            return new JfrEventSupport();
+        } catch (final ReflectiveOperationException | LinkageError | RuntimeException e) {
+            LOG.debug("Java Flight Recorder events not available: {}", e.getMessage());
+            return NO_EVENT_SUPPORT;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.event;
+
+/**
+ * The stages of a query pipeline reported as {@link PipelineEvent}.
+ */
+public enum Stage {
+
+    /** Loading a source into a table. */
+    TABLE_LOAD,
+
+    /** Inserting one batch of rows into a table. */
+    INSERT_BATCH,
+
+    /** Converting the values of a column to the detected type. */
+    COLUMN_CONVERSION,
+
+    /** Executing a query against a table. */
+    QUERY,
+
+    /** Writing the result of a query. */
+    EXPORT
+}
@@ -18,8 +18,20 @@
 package de.speexx.csv.table.metric;
 
 import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowBatch;
 
 public interface RowDataMetric {
     
     void collectRowData(final Row row);
+
+    /**
+     * Collects the data of all rows of the batch.
+     * <p>The default implementation collects each {@linkplain RowBatch#getRow(int) row}.</p>
+     * @param batch the batch to collect the data from
+     */
+    default void collectBatchData(final RowBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            collectRowData(batch.getRow(i));
+        }
+    }
 }
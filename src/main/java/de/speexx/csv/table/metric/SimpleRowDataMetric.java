@@ -18,9 +18,12 @@
 package de.speexx.csv.table.metric;
 
 import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.ColumnVector;
 import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowBatch;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -54,28 +57,85 @@ public final class SimpleRowDataMetric implements RowDataMetric {
             return Optional.empty();
         }
         
-        if (frequencyMap.containsKey(DECIMAL) 
-                && !(frequencyMap.containsKey(STRING) || frequencyMap.containsKey(TIME) || frequencyMap.containsKey(DATE) || frequencyMap.containsKey(DATETIME))) {
-            return Optional.of(DECIMAL);
+        return Optional.of(mostSignificantType(frequencyMap.keySet()));
+    }
+
+    /**
+     * @param types the types of the values of a column
+     * @return the type of the column. A mix of integer and decimal values is
+     *         decimal, any other mix is a string column. {@code STRING} if
+     *         there are no types
+     */
+    public static Type mostSignificantType(final Collection<Type> types) {
+        Objects.requireNonNull(types, "types is null");
+        if (types.size() == 1) {
+            return types.iterator().next();
         }
-        if (frequencyMap.containsKey(INTEGER) 
-                && !(frequencyMap.containsKey(STRING) || frequencyMap.containsKey(TIME) || frequencyMap.containsKey(DATE) || frequencyMap.containsKey(DATETIME))) {
-            return Optional.of(INTEGER);
+        if (types.size() == 2 && types.contains(INTEGER) && types.contains(DECIMAL)) {
+            return DECIMAL;
+        }
+        return STRING;
+    }
+
+    /**
+     * Classifies a single value like the type detection does. Plain integers,
+     * decimals and ISO dates are recognized without the patterns.
+     * @param value the value to classify
+     * @return the first type matching the value
+     */
+    public static Type typeOf(final String value) {
+        Objects.requireNonNull(value, "value is null");
+        final Type plain = plainTypeOf(value);
+        if (plain != null) {
+            return plain;
+        }
+        for (final Type checker : CHECKERS) {
+            if (checker.isTypeMatch(value)) {
+                return checker;
+            }
         }
-        if (frequencyMap.containsKey(TIME) 
-                && !(frequencyMap.containsKey(STRING) || frequencyMap.containsKey(INTEGER) || frequencyMap.containsKey(DECIMAL) || frequencyMap.containsKey(DATE) || frequencyMap.containsKey(DATETIME))) {
-            return Optional.of(TIME);
+        return STRING;
+    }
+
+    /**
+     * Classifies the common values without the patterns.
+     * @param value the value to classify
+     * @return {@code INTEGER} or {@code DECIMAL} for an optionally signed
+     *         number without exponent, {@code DATE} for <tt>yyyy-mm-dd</tt>,
+     *         otherwise {@code null}
+     * @see #typeOf(String)
+     */
+    public static Type plainTypeOf(final String value) {
+        Objects.requireNonNull(value, "value is null");
+        final int length = value.length();
+        if (length == 10 && value.charAt(4) == '-' && value.charAt(7) == '-'
+                && digits(value, 0, 4) && digits(value, 5, 7) && digits(value, 8, 10)
+                && value.charAt(5) <= '1' && value.charAt(8) <= '3') {
+            return DATE;
         }
-        if (frequencyMap.containsKey(DATE) 
-                && !(frequencyMap.containsKey(STRING) || frequencyMap.containsKey(INTEGER) || frequencyMap.containsKey(DECIMAL) || frequencyMap.containsKey(TIME) || frequencyMap.containsKey(DATETIME))) {
-            return Optional.of(DATE);
+        final int start = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        final int dot = value.indexOf('.', start);
+        final int end = dot < 0 ? length : dot;
+        if (!digits(value, start, end)) {
+            return null;
         }
-        if (frequencyMap.containsKey(DATETIME) 
-                && !(frequencyMap.containsKey(STRING) || frequencyMap.containsKey(INTEGER) || frequencyMap.containsKey(DECIMAL) || frequencyMap.containsKey(DATE) || frequencyMap.containsKey(TIME))) {
-            return Optional.of(DATETIME);
+        if (dot < 0) {
+            if (end == start) {
+                return null;
+            }
+            return end - start == 1 || value.charAt(start) != '0' ? INTEGER : DECIMAL;
         }
+        return dot + 1 < length && digits(value, dot + 1, length) ? DECIMAL : null;
+    }
 
-        return Optional.of(STRING);
+    static boolean digits(final String value, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -84,7 +144,7 @@ public final class SimpleRowDataMetric implements RowDataMetric {
             return;
         }
         
-        asStream(row, row.size() >= 20 /* check this */ ).filter(Objects::nonNull)
+        asStream(row).filter(Objects::nonNull)
                     .forEach(e -> {
             
             assert Objects.nonNull(CHECKERS);
@@ -101,6 +161,45 @@ public final class SimpleRowDataMetric implements RowDataMetric {
         });
     }
     
+    /**
+     * Checks the values column by column and adds the type counts of a
+     * column once per batch.
+     */
+    @Override
+    public void collectBatchData(final RowBatch batch) {
+        if (Objects.isNull(batch)) {
+            return;
+        }
+        final int checkers = CHECKERS.size();
+        final int[] counts = new int[checkers];
+        for (int column = 0; column < batch.getColumnCount(); column++) {
+            final ColumnVector vector = batch.getColumn(column);
+            if (vector.getType() != STRING) {
+                continue;
+            }
+            final Object[] values = vector.getObjects();
+            Arrays.fill(counts, 0);
+            for (int row = 0; row < batch.size(); row++) {
+                if (vector.isNull(row)) {
+                    continue;
+                }
+                final String value = (String) values[row];
+                for (int checker = 0; checker < checkers; checker++) {
+                    if (CHECKERS.get(checker).isTypeMatch(value)) {
+                        counts[checker]++;
+                        break;
+                    }
+                }
+            }
+            final String name = vector.getDescriptor().getName();
+            for (int checker = 0; checker < checkers; checker++) {
+                if (counts[checker] > 0) {
+                    this.metric.addTypeCountForName(name, CHECKERS.get(checker), counts[checker]);
+                }
+            }
+        }
+    }
+
     final TypeMetric getTypeMetric() {
         return this.metric;
     }
@@ -19,6 +19,7 @@ package de.speexx.csv.table.metric;
 
 import de.speexx.csv.table.EntryDescriptor;
 import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowBatch;
 import de.speexx.csv.table.RowReader;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +50,26 @@ public final class TypeIndentifyRowReaderDelegate implements RowReader {
         return new IteratorDelegate(this.delegate.iterator());
     }
 
+    /** Collects the data of each batch of the delegate. */
+    @Override
+    public Iterator<RowBatch> batches(final int size) {
+        assert this.delegate != null;
+        final Iterator<RowBatch> batches = this.delegate.batches(size);
+        return new Iterator<RowBatch>() {
+            @Override
+            public boolean hasNext() {
+                return batches.hasNext();
+            }
+
+            @Override
+            public RowBatch next() {
+                final RowBatch batch = batches.next();
+                TypeIndentifyRowReaderDelegate.this.rowDataCollector.collectBatchData(batch);
+                return batch;
+            }
+        };
+    }
+
     @Override
     public void close() throws Exception {
         assert this.delegate != null;
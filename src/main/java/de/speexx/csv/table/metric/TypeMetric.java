@@ -29,6 +29,10 @@ final class TypeMetric {
     private final Map<String, Map<Type, AtomicInteger>> nameTypeFrequence = new HashMap<>();
 
     public void incrementTypeForName(final String name, final Type type) {
+        addTypeCountForName(name, type, 1);
+    }
+
+    public void addTypeCountForName(final String name, final Type type, final int count) {
         Objects.requireNonNull(name, "name is null");
         Objects.requireNonNull(type, "type class is null");
 
@@ -42,7 +46,7 @@ final class TypeMetric {
             typeCount = new AtomicInteger(0);
             typeCountMap.put(type, typeCount);
         }
-        typeCount.incrementAndGet();
+        typeCount.addAndGet(count);
     }
 
     final Map<Type, AtomicInteger> getFrequencyMapForName(final String name) {
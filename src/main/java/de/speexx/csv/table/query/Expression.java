@@ -0,0 +1,506 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Node of the expression tree of a {@link Query}. Two expressions are equal if
+ * they have the same type and the same SQL representation returned by
+ * {@link #toString()}.
+ */
+public abstract class Expression {
+
+    Expression() {
+    }
+
+    /** @return the direct sub expressions. Never {@code null} */
+    public List<Expression> getOperands() {
+        return Collections.emptyList();
+    }
+
+    /** @return {@code true} if the expression or a sub expression is an {@link Aggregate} */
+    public boolean containsAggregate() {
+        return getOperands().stream().anyMatch(Expression::containsAggregate);
+    }
+
+    /** @return the names of all columns referenced by the expression and its sub expressions */
+    public List<String> getColumnNames() {
+        final List<String> names = new ArrayList<>();
+        collectColumnNames(names);
+        return names;
+    }
+
+    void collectColumnNames(final List<String> names) {
+        getOperands().forEach(operand -> operand.collectColumnNames(names));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj != null && getClass() == obj.getClass() && toString().equals(obj.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /** Operators of a {@link Comparison}. */
+    public enum ComparisonOperator {
+        EQUAL("="), NOT_EQUAL("<>"), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">=");
+
+        private final String symbol;
+
+        ComparisonOperator(final String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return this.symbol;
+        }
+
+        /**
+         * @param comparison the result of a comparison like {@link Comparable#compareTo(java.lang.Object)}
+         * @return {@code true} if the result satisfies the operator
+         */
+        public boolean matches(final int comparison) {
+            switch (this) {
+                case EQUAL: return comparison == 0;
+                case NOT_EQUAL: return comparison != 0;
+                case LESS: return comparison < 0;
+                case LESS_OR_EQUAL: return comparison <= 0;
+                case GREATER: return comparison > 0;
+                default: return comparison >= 0;
+            }
+        }
+
+        /** @return the operator for swapped operands, e.g. {@code >} for {@code <} */
+        public ComparisonOperator swap() {
+            switch (this) {
+                case LESS: return GREATER;
+                case LESS_OR_EQUAL: return GREATER_OR_EQUAL;
+                case GREATER: return LESS;
+                case GREATER_OR_EQUAL: return LESS_OR_EQUAL;
+                default: return this;
+            }
+        }
+
+        /** @return the operator matching exactly the comparisons this operator doesn't match, e.g. {@code >=} for {@code <} */
+        public ComparisonOperator negate() {
+            switch (this) {
+                case EQUAL: return NOT_EQUAL;
+                case NOT_EQUAL: return EQUAL;
+                case LESS: return GREATER_OR_EQUAL;
+                case LESS_OR_EQUAL: return GREATER;
+                case GREATER: return LESS_OR_EQUAL;
+                default: return LESS;
+            }
+        }
+
+        static Optional<ComparisonOperator> forSymbol(final String symbol) {
+            if ("!=".equals(symbol)) {
+                return Optional.of(NOT_EQUAL);
+            }
+            for (final ComparisonOperator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return Optional.of(operator);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    /** Aggregate functions. */
+    public enum AggregateFunction {
+        COUNT, SUM, AVG, MIN, MAX
+    }
+
+    /** Reference to a column of the table. */
+    public static final class ColumnReference extends Expression {
+
+        private final String name;
+
+        public ColumnReference(final String name) {
+            this.name = Objects.requireNonNull(name, "name is null");
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        void collectColumnNames(final List<String> names) {
+            names.add(this.name);
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    /**
+     * Reference to a select item by its alias. Only used in
+     * <tt>ORDER BY</tt> clauses.
+     */
+    public static final class AliasReference extends Expression {
+
+        private final String alias;
+
+        public AliasReference(final String alias) {
+            this.alias = Objects.requireNonNull(alias, "alias is null");
+        }
+
+        /** @return the alias as normalized by {@link SelectItem#getAlias()} */
+        public String getAlias() {
+            return this.alias;
+        }
+
+        @Override
+        public String toString() {
+            return this.alias;
+        }
+    }
+
+    /**
+     * A constant value. The value is a {@code String}, {@code Long},
+     * {@code Double}, {@code LocalDate}, {@code LocalTime} or {@code LocalDateTime}.
+     */
+    public static final class Literal extends Expression {
+
+        private final Object value;
+
+        public Literal(final Object value) {
+            this.value = Objects.requireNonNull(value, "value is null");
+        }
+
+        public Object getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            if (this.value instanceof Number) {
+                return this.value.toString();
+            }
+            return "'" + this.value.toString().replace("'", "''") + "'";
+        }
+    }
+
+    /** Comparison of two operands. */
+    public static final class Comparison extends Expression {
+
+        private final ComparisonOperator operator;
+        private final Expression left;
+        private final Expression right;
+
+        public Comparison(final ComparisonOperator operator, final Expression left, final Expression right) {
+            this.operator = Objects.requireNonNull(operator, "operator is null");
+            this.left = Objects.requireNonNull(left, "left is null");
+            this.right = Objects.requireNonNull(right, "right is null");
+        }
+
+        public ComparisonOperator getOperator() {
+            return this.operator;
+        }
+
+        public Expression getLeft() {
+            return this.left;
+        }
+
+        public Expression getRight() {
+            return this.right;
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return Collections.unmodifiableList(Arrays.asList(this.left, this.right));
+        }
+
+        @Override
+        public String toString() {
+            return this.left + " " + this.operator.getSymbol() + " " + this.right;
+        }
+    }
+
+    /** Conjunction of two or more operands. */
+    public static final class And extends Expression {
+
+        private final List<Expression> operands;
+
+        public And(final List<Expression> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return this.operands;
+        }
+
+        @Override
+        public String toString() {
+            return this.operands.stream().map(Object::toString).collect(Collectors.joining(" AND ", "(", ")"));
+        }
+    }
+
+    /** Disjunction of two or more operands. */
+    public static final class Or extends Expression {
+
+        private final List<Expression> operands;
+
+        public Or(final List<Expression> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return this.operands;
+        }
+
+        @Override
+        public String toString() {
+            return this.operands.stream().map(Object::toString).collect(Collectors.joining(" OR ", "(", ")"));
+        }
+    }
+
+    /** Negation of an operand. */
+    public static final class Not extends Expression {
+
+        private final Expression operand;
+
+        public Not(final Expression operand) {
+            this.operand = Objects.requireNonNull(operand, "operand is null");
+        }
+
+        public Expression getOperand() {
+            return this.operand;
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return Collections.singletonList(this.operand);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT (" + this.operand + ")";
+        }
+    }
+
+    /** <tt>IS NULL</tt> or <tt>IS NOT NULL</tt> check of an operand. */
+    public static final class IsNull extends Expression {
+
+        private final Expression operand;
+        private final boolean negated;
+
+        public IsNull(final Expression operand, final boolean negated) {
+            this.operand = Objects.requireNonNull(operand, "operand is null");
+            this.negated = negated;
+        }
+
+        public Expression getOperand() {
+            return this.operand;
+        }
+
+        /** @return {@code true} for <tt>IS NOT NULL</tt> */
+        public boolean isNegated() {
+            return this.negated;
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return Collections.singletonList(this.operand);
+        }
+
+        @Override
+        public String toString() {
+            return this.operand + (this.negated ? " IS NOT NULL" : " IS NULL");
+        }
+    }
+
+    /** <tt>LIKE</tt> match of an operand with the wildcards <tt>%</tt> and <tt>_</tt>. */
+    public static final class Like extends Expression {
+
+        private final Expression operand;
+        private final String pattern;
+        private final boolean negated;
+        private final Pattern regex;
+
+        public Like(final Expression operand, final String pattern, final boolean negated) {
+            this.operand = Objects.requireNonNull(operand, "operand is null");
+            this.pattern = Objects.requireNonNull(pattern, "pattern is null");
+            this.negated = negated;
+            this.regex = toRegex(pattern);
+        }
+
+        public Expression getOperand() {
+            return this.operand;
+        }
+
+        public String getPattern() {
+            return this.pattern;
+        }
+
+        /** @return {@code true} for <tt>NOT LIKE</tt> */
+        public boolean isNegated() {
+            return this.negated;
+        }
+
+        /** @return the pattern as regular expression matching the whole value */
+        public Pattern getRegex() {
+            return this.regex;
+        }
+
+        static Pattern toRegex(final String pattern) {
+            final StringBuilder regex = new StringBuilder(pattern.length() + 8);
+            final StringBuilder literal = new StringBuilder();
+            for (final char c : pattern.toCharArray()) {
+                if (c == '%' || c == '_') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '%' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return Collections.singletonList(this.operand);
+        }
+
+        @Override
+        public String toString() {
+            return this.operand + (this.negated ? " NOT LIKE '" : " LIKE '") + this.pattern.replace("'", "''") + "'";
+        }
+    }
+
+    /** <tt>IN</tt> check of an operand against a list of literals. */
+    public static final class In extends Expression {
+
+        private final Expression operand;
+        private final List<Literal> values;
+        private final boolean negated;
+
+        public In(final Expression operand, final List<Literal> values, final boolean negated) {
+            this.operand = Objects.requireNonNull(operand, "operand is null");
+            this.values = Collections.unmodifiableList(new ArrayList<>(values));
+            this.negated = negated;
+        }
+
+        public Expression getOperand() {
+            return this.operand;
+        }
+
+        public List<Literal> getValues() {
+            return this.values;
+        }
+
+        /** @return {@code true} for <tt>NOT IN</tt> */
+        public boolean isNegated() {
+            return this.negated;
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return Collections.singletonList(this.operand);
+        }
+
+        @Override
+        public String toString() {
+            return this.operand + (this.negated ? " NOT IN " : " IN ")
+                    + this.values.stream().map(Object::toString).collect(Collectors.joining(", ", "(", ")"));
+        }
+    }
+
+    /** Aggregate function over a column or <tt>COUNT(*)</tt>. */
+    public static final class Aggregate extends Expression {
+
+        private final AggregateFunction function;
+        private final ColumnReference argument;
+        private final boolean distinct;
+
+        /**
+         * @param function the function
+         * @param argument the column to aggregate. {@code null} for <tt>COUNT(*)</tt>
+         */
+        public Aggregate(final AggregateFunction function, final ColumnReference argument) {
+            this(function, argument, false);
+        }
+
+        /**
+         * @param function the function
+         * @param argument the column to aggregate. {@code null} for <tt>COUNT(*)</tt>
+         * @param distinct {@code true} to aggregate only the distinct values, e.g. <tt>COUNT(DISTINCT column)</tt>
+         */
+        public Aggregate(final AggregateFunction function, final ColumnReference argument, final boolean distinct) {
+            this.function = Objects.requireNonNull(function, "function is null");
+            this.argument = argument;
+            this.distinct = distinct;
+            if (argument == null && function != AggregateFunction.COUNT) {
+                throw new IllegalArgumentException("Only COUNT without argument");
+            }
+            if (argument == null && distinct) {
+                throw new IllegalArgumentException("DISTINCT without argument");
+            }
+        }
+
+        public AggregateFunction getFunction() {
+            return this.function;
+        }
+
+        /** @return {@code true} if only the distinct values are aggregated */
+        public boolean isDistinct() {
+            return this.distinct;
+        }
+
+        /** @return the column to aggregate. Empty for <tt>COUNT(*)</tt> */
+        public Optional<ColumnReference> getArgument() {
+            return Optional.ofNullable(this.argument);
+        }
+
+        @Override
+        public List<Expression> getOperands() {
+            return this.argument == null ? Collections.emptyList() : Collections.singletonList(this.argument);
+        }
+
+        @Override
+        public boolean containsAggregate() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return this.function + "(" + (this.distinct ? "DISTINCT " : "") + (this.argument == null ? "*" : this.argument.toString()) + ")";
+        }
+    }
+}
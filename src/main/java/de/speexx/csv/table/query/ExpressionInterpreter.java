@@ -0,0 +1,222 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import de.speexx.csv.table.ColumnValues;
+import de.speexx.csv.table.EntryDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Evaluates conditions row by row by walking the expression tree. The values
+ * are read boxed from the columns. A condition is <em>unknown</em> if it
+ * depends on a null value, like in SQL. An unknown condition is represented
+ * by {@code null}.
+ */
+public final class ExpressionInterpreter {
+
+    /**
+     * Checks a condition against the types of the columns and converts the
+     * literals to values of the type of the compared column.
+     * @param condition the condition of a where clause
+     * @param types the type of each column by name
+     * @return the condition with converted literals
+     * @throws UnsupportedQueryException if the condition compares values
+     *         of types without an implicit conversion or is not a condition
+     */
+    public static Expression bind(final Expression condition, final Function<String, EntryDescriptor.Type> types) {
+        Objects.requireNonNull(condition, "condition is null");
+        Objects.requireNonNull(types, "types is null");
+        if (condition instanceof Expression.And) {
+            return new Expression.And(bindAll(condition.getOperands(), types));
+        }
+        if (condition instanceof Expression.Or) {
+            return new Expression.Or(bindAll(condition.getOperands(), types));
+        }
+        if (condition instanceof Expression.Not) {
+            return new Expression.Not(bind(((Expression.Not) condition).getOperand(), types));
+        }
+        if (condition instanceof Expression.IsNull) {
+            final Expression.IsNull isNull = (Expression.IsNull) condition;
+            requireColumn(isNull.getOperand(), types);
+            return condition;
+        }
+        if (condition instanceof Expression.Like) {
+            final Expression.Like like = (Expression.Like) condition;
+            if (requireColumn(like.getOperand(), types) != EntryDescriptor.Type.STRING) {
+                throw new UnsupportedQueryException("LIKE for non string column: " + like);
+            }
+            return condition;
+        }
+        if (condition instanceof Expression.In) {
+            final Expression.In in = (Expression.In) condition;
+            final EntryDescriptor.Type type = requireColumn(in.getOperand(), types);
+            final List<Expression.Literal> values = new ArrayList<>();
+            for (final Expression.Literal value : in.getValues()) {
+                values.add(new Expression.Literal(Values.coerce(value.getValue(), type)));
+            }
+            return new Expression.In(in.getOperand(), values, in.isNegated());
+        }
+        if (condition instanceof Expression.Comparison) {
+            return bindComparison((Expression.Comparison) condition, types);
+        }
+        throw new UnsupportedQueryException("Not a condition: " + condition);
+    }
+
+    static List<Expression> bindAll(final List<Expression> conditions, final Function<String, EntryDescriptor.Type> types) {
+        final List<Expression> bound = new ArrayList<>(conditions.size());
+        for (final Expression condition : conditions) {
+            bound.add(bind(condition, types));
+        }
+        return bound;
+    }
+
+    static Expression bindComparison(final Expression.Comparison comparison, final Function<String, EntryDescriptor.Type> types) {
+        final Expression left = comparison.getLeft();
+        final Expression right = comparison.getRight();
+        if (left instanceof Expression.ColumnReference && right instanceof Expression.Literal) {
+            final EntryDescriptor.Type type = requireColumn(left, types);
+            return new Expression.Comparison(comparison.getOperator(), left,
+                                             new Expression.Literal(Values.coerce(((Expression.Literal) right).getValue(), type)));
+        }
+        if (left instanceof Expression.Literal && right instanceof Expression.ColumnReference) {
+            // The column is always the left side of a bound comparison
+            return bindComparison(new Expression.Comparison(comparison.getOperator().swap(), right, left), types);
+        }
+        if (left instanceof Expression.ColumnReference && right instanceof Expression.ColumnReference) {
+            if (!Values.isComparable(requireColumn(left, types), requireColumn(right, types))) {
+                throw new UnsupportedQueryException("Comparison of columns with different types: " + comparison);
+            }
+            return comparison;
+        }
+        if (left instanceof Expression.Literal && right instanceof Expression.Literal) {
+            final Object first = ((Expression.Literal) left).getValue();
+            final Object second = ((Expression.Literal) right).getValue();
+            if (!first.getClass().equals(second.getClass()) && !(first instanceof Number && second instanceof Number)) {
+                throw new UnsupportedQueryException("Comparison of literals with different types: " + comparison);
+            }
+            return comparison;
+        }
+        throw new UnsupportedQueryException("Comparison of " + comparison);
+    }
+
+    static EntryDescriptor.Type requireColumn(final Expression operand, final Function<String, EntryDescriptor.Type> types) {
+        if (!(operand instanceof Expression.ColumnReference)) {
+            throw new UnsupportedQueryException("Column expected: " + operand);
+        }
+        final String name = ((Expression.ColumnReference) operand).getName();
+        final EntryDescriptor.Type type = types.apply(name);
+        if (type == null) {
+            throw new UnsupportedQueryException("Unknown column: " + name);
+        }
+        return type;
+    }
+
+    /**
+     * @param condition a {@linkplain #bind(Expression, Function) bound} condition
+     * @param columns the column for each name
+     * @param row the index of the row
+     * @return {@code true} only if the condition is true for the row
+     */
+    public static boolean test(final Expression condition, final Function<String, ? extends ColumnValues> columns, final int row) {
+        return Boolean.TRUE.equals(evaluate(condition, columns, row));
+    }
+
+    /**
+     * @param condition a {@linkplain #bind(Expression, Function) bound} condition
+     * @param columns the column for each name
+     * @param row the index of the row
+     * @return the value of the condition for the row. {@code null} if the value is unknown
+     */
+    public static Boolean evaluate(final Expression condition, final Function<String, ? extends ColumnValues> columns, final int row) {
+        if (condition instanceof Expression.And) {
+            boolean unknown = false;
+            for (final Expression operand : condition.getOperands()) {
+                final Boolean value = evaluate(operand, columns, row);
+                if (Boolean.FALSE.equals(value)) {
+                    return false;
+                }
+                unknown |= value == null;
+            }
+            return unknown ? null : true;
+        }
+        if (condition instanceof Expression.Or) {
+            boolean unknown = false;
+            for (final Expression operand : condition.getOperands()) {
+                final Boolean value = evaluate(operand, columns, row);
+                if (Boolean.TRUE.equals(value)) {
+                    return true;
+                }
+                unknown |= value == null;
+            }
+            return unknown ? null : false;
+        }
+        if (condition instanceof Expression.Not) {
+            final Boolean value = evaluate(((Expression.Not) condition).getOperand(), columns, row);
+            return value == null ? null : !value;
+        }
+        if (condition instanceof Expression.IsNull) {
+            final Expression.IsNull isNull = (Expression.IsNull) condition;
+            return (value(isNull.getOperand(), columns, row) == null) != isNull.isNegated();
+        }
+        if (condition instanceof Expression.Like) {
+            final Expression.Like like = (Expression.Like) condition;
+            final Object value = value(like.getOperand(), columns, row);
+            return value == null ? null : like.getRegex().matcher((String) value).matches() != like.isNegated();
+        }
+        if (condition instanceof Expression.In) {
+            final Expression.In in = (Expression.In) condition;
+            final Object value = value(in.getOperand(), columns, row);
+            if (value == null) {
+                return null;
+            }
+            for (final Expression.Literal literal : in.getValues()) {
+                if (Values.compare(value, literal.getValue()) == 0) {
+                    return !in.isNegated();
+                }
+            }
+            return in.isNegated();
+        }
+        if (condition instanceof Expression.Comparison) {
+            final Expression.Comparison comparison = (Expression.Comparison) condition;
+            final Object left = value(comparison.getLeft(), columns, row);
+            final Object right = value(comparison.getRight(), columns, row);
+            if (left == null || right == null) {
+                return null;
+            }
+            return comparison.getOperator().matches(Values.compare(left, right));
+        }
+        throw new UnsupportedQueryException("Not a condition: " + condition);
+    }
+
+    static Object value(final Expression operand, final Function<String, ? extends ColumnValues> columns, final int row) {
+        if (operand instanceof Expression.Literal) {
+            return ((Expression.Literal) operand).getValue();
+        }
+        if (operand instanceof Expression.ColumnReference) {
+            return columns.apply(((Expression.ColumnReference) operand).getName()).getValue(row);
+        }
+        throw new UnsupportedQueryException("Not a value: " + operand);
+    }
+
+    private ExpressionInterpreter() {
+        throw new AssertionError("Forbidden to create instance from " + ExpressionInterpreter.class);
+    }
+}
@@ -0,0 +1,51 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import java.util.Objects;
+
+/**
+ * A sort key of the <tt>ORDER BY</tt> clause of a {@link Query}. The
+ * expression is a {@link Expression.ColumnReference}, an
+ * {@link Expression.Aggregate}, an {@link Expression.AliasReference} or a
+ * {@link Expression.Literal} with the position of a select item starting
+ * with {@code 1}.
+ */
+public final class OrderItem {
+
+    private final Expression expression;
+    private final boolean descending;
+
+    public OrderItem(final Expression expression, final boolean descending) {
+        this.expression = Objects.requireNonNull(expression, "expression is null");
+        this.descending = descending;
+    }
+
+    public Expression getExpression() {
+        return this.expression;
+    }
+
+    public boolean isDescending() {
+        return this.descending;
+    }
+
+    @Override
+    public String toString() {
+        return this.expression + (this.descending ? " DESC" : " ASC");
+    }
+}
@@ -0,0 +1,334 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import de.speexx.csv.table.ColumnValues;
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.ResultColumn;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a {@linkplain ExpressionInterpreter#bind(Expression, Function) bound}
+ * condition once into a tree of lambdas over the typed accessors of the
+ * columns. Unlike the {@link ExpressionInterpreter} the compiled predicate
+ * doesn't inspect the expression or box values per row:
+ * <ul>
+ *   <li>integers, decimals and dates are compared as primitive {@code long}
+ *       or {@code double} values with one lambda per operator</li>
+ *   <li>datetimes are compared by the epoch day first</li>
+ *   <li>comparisons, <tt>LIKE</tt> and <tt>IN</tt> of string columns with a
+ *       dictionary are evaluated once per distinct value. A row is tested by
+ *       the code of its value</li>
+ * </ul>
+ * <p>Negations are pushed down to the comparisons before compiling. Thereby
+ * a condition which is <em>unknown</em> for a row is just {@code false} like
+ * in a where clause.</p>
+ */
+public final class PredicateCompiler {
+
+    private PredicateCompiler() {
+        throw new AssertionError("Forbidden to create instance from " + PredicateCompiler.class);
+    }
+
+    /**
+     * @param condition a bound condition
+     * @param columns the column for each name
+     * @return a predicate which is {@code true} for a row index if and only
+     *         if {@link ExpressionInterpreter#test(Expression, Function, int)}
+     *         is {@code true} for the row
+     * @throws UnsupportedQueryException if the condition is not a condition
+     */
+    public static IntPredicate compile(final Expression condition, final Function<String, ? extends ColumnValues> columns) {
+        Objects.requireNonNull(condition, "condition is null");
+        Objects.requireNonNull(columns, "columns is null");
+        return compileNormalized(normalize(condition, false), columns);
+    }
+
+    /**
+     * Transforms a condition into the negation normal form. The result
+     * contains no {@link Expression.Not}.
+     * @param negate {@code true} if the condition is negated
+     */
+    static Expression normalize(final Expression condition, final boolean negate) {
+        if (condition instanceof Expression.Not) {
+            return normalize(((Expression.Not) condition).getOperand(), !negate);
+        }
+        if (condition instanceof Expression.And || condition instanceof Expression.Or) {
+            final List<Expression> operands = new ArrayList<>();
+            for (final Expression operand : condition.getOperands()) {
+                operands.add(normalize(operand, negate));
+            }
+            return (condition instanceof Expression.And) != negate ? new Expression.And(operands) : new Expression.Or(operands);
+        }
+        if (!negate) {
+            return condition;
+        }
+        if (condition instanceof Expression.Comparison) {
+            final Expression.Comparison comparison = (Expression.Comparison) condition;
+            return new Expression.Comparison(comparison.getOperator().negate(), comparison.getLeft(), comparison.getRight());
+        }
+        if (condition instanceof Expression.IsNull) {
+            final Expression.IsNull isNull = (Expression.IsNull) condition;
+            return new Expression.IsNull(isNull.getOperand(), !isNull.isNegated());
+        }
+        if (condition instanceof Expression.Like) {
+            final Expression.Like like = (Expression.Like) condition;
+            return new Expression.Like(like.getOperand(), like.getPattern(), !like.isNegated());
+        }
+        if (condition instanceof Expression.In) {
+            final Expression.In in = (Expression.In) condition;
+            return new Expression.In(in.getOperand(), in.getValues(), !in.isNegated());
+        }
+        throw new UnsupportedQueryException("Not a condition: " + condition);
+    }
+
+    static IntPredicate compileNormalized(final Expression condition, final Function<String, ? extends ColumnValues> columns) {
+        if (condition instanceof Expression.And || condition instanceof Expression.Or) {
+            final List<Expression> operands = condition.getOperands();
+            final IntPredicate[] predicates = new IntPredicate[operands.size()];
+            for (int i = 0; i < predicates.length; i++) {
+                predicates[i] = compileNormalized(operands.get(i), columns);
+            }
+            return condition instanceof Expression.And ? all(predicates) : any(predicates);
+        }
+        if (condition instanceof Expression.IsNull) {
+            final Expression.IsNull isNull = (Expression.IsNull) condition;
+            final ColumnValues column = column(isNull.getOperand(), columns);
+            return isNull.isNegated() ? row -> !column.isNull(row) : column::isNull;
+        }
+        if (condition instanceof Expression.Like) {
+            final Expression.Like like = (Expression.Like) condition;
+            final Pattern regex = like.getRegex();
+            final boolean negated = like.isNegated();
+            return strings(column(like.getOperand(), columns), value -> regex.matcher(value).matches() != negated);
+        }
+        if (condition instanceof Expression.In) {
+            return in((Expression.In) condition, columns);
+        }
+        if (condition instanceof Expression.Comparison) {
+            return comparison((Expression.Comparison) condition, columns);
+        }
+        throw new UnsupportedQueryException("Not a condition: " + condition);
+    }
+
+    static IntPredicate all(final IntPredicate[] predicates) {
+        if (predicates.length == 1) {
+            return predicates[0];
+        }
+        if (predicates.length == 2) {
+            final IntPredicate first = predicates[0];
+            final IntPredicate second = predicates[1];
+            return row -> first.test(row) && second.test(row);
+        }
+        return row -> {
+            for (final IntPredicate predicate : predicates) {
+                if (!predicate.test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    static IntPredicate any(final IntPredicate[] predicates) {
+        if (predicates.length == 1) {
+            return predicates[0];
+        }
+        if (predicates.length == 2) {
+            final IntPredicate first = predicates[0];
+            final IntPredicate second = predicates[1];
+            return row -> first.test(row) || second.test(row);
+        }
+        return row -> {
+            for (final IntPredicate predicate : predicates) {
+                if (predicate.test(row)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    static IntPredicate comparison(final Expression.Comparison comparison, final Function<String, ? extends ColumnValues> columns) {
+        final Expression.ComparisonOperator operator = comparison.getOperator();
+        final Expression left = comparison.getLeft();
+        final Expression right = comparison.getRight();
+        if (left instanceof Expression.Literal && right instanceof Expression.Literal) {
+            final boolean result = operator.matches(Values.compare(((Expression.Literal) left).getValue(), ((Expression.Literal) right).getValue()));
+            return row -> result;
+        }
+        final ColumnValues column = column(left, columns);
+        if (right instanceof Expression.ColumnReference) {
+            return columnComparison(operator, column, column(right, columns));
+        }
+        final Object value = ((Expression.Literal) right).getValue();
+        switch (column.getType()) {
+            case INTEGER:
+                return value instanceof Long ? integerComparison(operator, column, (Long) value)
+                                             : decimalComparison(operator, column, ((Number) value).doubleValue());
+            case DECIMAL:
+                return decimalComparison(operator, column, ((Number) value).doubleValue());
+            case DATE:
+                return dateComparison(operator, column, ((LocalDate) value).toEpochDay());
+            case DATETIME: {
+                final LocalDateTime datetime = (LocalDateTime) value;
+                final long day = datetime.toLocalDate().toEpochDay();
+                final LocalTime time = datetime.toLocalTime();
+                return row -> !column.isNull(row) && operator.matches(compareDateTime(column, row, day, time));
+            }
+            case TIME: {
+                final LocalTime time = (LocalTime) value;
+                return row -> !column.isNull(row) && operator.matches(((LocalTime) column.getValue(row)).compareTo(time));
+            }
+            default: {
+                final String string = (String) value;
+                return strings(column, candidate -> operator.matches(candidate.compareTo(string)));
+            }
+        }
+    }
+
+    static IntPredicate integerComparison(final Expression.ComparisonOperator operator, final ColumnValues column, final long value) {
+        switch (operator) {
+            case EQUAL: return row -> !column.isNull(row) && column.getLong(row) == value;
+            case NOT_EQUAL: return row -> !column.isNull(row) && column.getLong(row) != value;
+            case LESS: return row -> !column.isNull(row) && column.getLong(row) < value;
+            case LESS_OR_EQUAL: return row -> !column.isNull(row) && column.getLong(row) <= value;
+            case GREATER: return row -> !column.isNull(row) && column.getLong(row) > value;
+            default: return row -> !column.isNull(row) && column.getLong(row) >= value;
+        }
+    }
+
+    static IntPredicate decimalComparison(final Expression.ComparisonOperator operator, final ColumnValues column, final double value) {
+        switch (operator) {
+            case EQUAL: return row -> !column.isNull(row) && column.getDouble(row) == value;
+            case NOT_EQUAL: return row -> !column.isNull(row) && column.getDouble(row) != value;
+            case LESS: return row -> !column.isNull(row) && column.getDouble(row) < value;
+            case LESS_OR_EQUAL: return row -> !column.isNull(row) && column.getDouble(row) <= value;
+            case GREATER: return row -> !column.isNull(row) && column.getDouble(row) > value;
+            default: return row -> !column.isNull(row) && column.getDouble(row) >= value;
+        }
+    }
+
+    static IntPredicate dateComparison(final Expression.ComparisonOperator operator, final ColumnValues column, final long epochDay) {
+        switch (operator) {
+            case EQUAL: return row -> !column.isNull(row) && column.getEpochDay(row) == epochDay;
+            case NOT_EQUAL: return row -> !column.isNull(row) && column.getEpochDay(row) != epochDay;
+            case LESS: return row -> !column.isNull(row) && column.getEpochDay(row) < epochDay;
+            case LESS_OR_EQUAL: return row -> !column.isNull(row) && column.getEpochDay(row) <= epochDay;
+            case GREATER: return row -> !column.isNull(row) && column.getEpochDay(row) > epochDay;
+            default: return row -> !column.isNull(row) && column.getEpochDay(row) >= epochDay;
+        }
+    }
+
+    static int compareDateTime(final ColumnValues column, final int row, final long epochDay, final LocalTime time) {
+        final int byDay = Long.compare(column.getEpochDay(row), epochDay);
+        return byDay != 0 ? byDay : ((LocalDateTime) column.getValue(row)).toLocalTime().compareTo(time);
+    }
+
+    static IntPredicate columnComparison(final Expression.ComparisonOperator operator, final ColumnValues left, final ColumnValues right) {
+        if (left.getType() == EntryDescriptor.Type.INTEGER && right.getType() == EntryDescriptor.Type.INTEGER) {
+            return row -> !left.isNull(row) && !right.isNull(row) && operator.matches(Long.compare(left.getLong(row), right.getLong(row)));
+        }
+        if (Values.isNumber(left.getType())) {
+            return row -> !left.isNull(row) && !right.isNull(row) && operator.matches(Values.compare(left.getDouble(row), right.getDouble(row)));
+        }
+        return row -> !left.isNull(row) && !right.isNull(row) && operator.matches(Values.compare(left.getValue(row), right.getValue(row)));
+    }
+
+    static IntPredicate in(final Expression.In in, final Function<String, ? extends ColumnValues> columns) {
+        final ColumnValues column = column(in.getOperand(), columns);
+        final boolean negated = in.isNegated();
+        final List<Expression.Literal> literals = in.getValues();
+        switch (column.getType()) {
+            case STRING: {
+                final Set<Object> values = new HashSet<>();
+                literals.forEach(literal -> values.add(literal.getValue()));
+                return strings(column, value -> values.contains(value) != negated);
+            }
+            case INTEGER:
+                if (literals.stream().allMatch(literal -> literal.getValue() instanceof Long)) {
+                    final long[] values = literals.stream().mapToLong(literal -> (Long) literal.getValue()).sorted().toArray();
+                    return row -> !column.isNull(row) && (Arrays.binarySearch(values, column.getLong(row)) >= 0) != negated;
+                }
+                return decimalIn(column, literals, negated);
+            case DECIMAL:
+                return decimalIn(column, literals, negated);
+            case DATE: {
+                final long[] values = literals.stream().mapToLong(literal -> ((LocalDate) literal.getValue()).toEpochDay()).sorted().toArray();
+                return row -> !column.isNull(row) && (Arrays.binarySearch(values, column.getEpochDay(row)) >= 0) != negated;
+            }
+            default: {
+                final Set<Object> values = new HashSet<>();
+                literals.forEach(literal -> values.add(literal.getValue()));
+                return row -> !column.isNull(row) && values.contains(column.getValue(row)) != negated;
+            }
+        }
+    }
+
+    static IntPredicate decimalIn(final ColumnValues column, final List<Expression.Literal> literals, final boolean negated) {
+        // Adding 0.0 turns -0.0 into 0.0, which are equal in SQL
+        final double[] values = literals.stream().mapToDouble(literal -> ((Number) literal.getValue()).doubleValue() + 0.0).sorted().toArray();
+        return row -> !column.isNull(row) && (Arrays.binarySearch(values, column.getDouble(row) + 0.0) >= 0) != negated;
+    }
+
+    /**
+     * Tests the non null values of a string column. Columns with a dictionary
+     * test each distinct value once.
+     */
+    static IntPredicate strings(final ColumnValues column, final Predicate<String> predicate) {
+        if (column instanceof ResultColumn) {
+            final ResultColumn dictionaryColumn = (ResultColumn) column;
+            final boolean[] matching = new boolean[dictionaryColumn.getDictionarySize()];
+            for (int code = 0; code < matching.length; code++) {
+                matching[code] = predicate.test(dictionaryColumn.getDictionaryValue(code));
+            }
+            return row -> {
+                final int code = dictionaryColumn.getCode(row);
+                return code >= 0 && matching[code];
+            };
+        }
+        return row -> {
+            final Object value = column.getValue(row);
+            return value != null && predicate.test((String) value);
+        };
+    }
+
+    static ColumnValues column(final Expression operand, final Function<String, ? extends ColumnValues> columns) {
+        if (!(operand instanceof Expression.ColumnReference)) {
+            throw new UnsupportedQueryException("Column expected: " + operand);
+        }
+        final String name = ((Expression.ColumnReference) operand).getName();
+        final ColumnValues column = columns.apply(name);
+        if (column == null) {
+            throw new UnsupportedQueryException("Unknown column: " + name);
+        }
+        return column;
+    }
+}
@@ -0,0 +1,531 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowReader;
+import de.speexx.csv.table.TransformationException;
+import de.speexx.csv.table.transformer.TypeTransformer;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Drops the rows of a source which can't match the where clause of a query
+ * before they are loaded into a table. The rows of a CSV source contain only
+ * strings. The prefilter compiles each comparison of a column with a literal
+ * once into a lambda which parses the value with the type of the literal
+ * and compares the primitive values:
+ * <ul>
+ *   <li>number literals compare the values as {@code long} or {@code double}</li>
+ *   <li>string literals with an ISO date or datetime compare the values as epoch days or datetimes</li>
+ *   <li>other string literals compare the strings like Derby, i.e. padded with blanks</li>
+ * </ul>
+ * <p>The prefilter is conservative. A row is only dropped if the query
+ * drops the row for sure. Values which can't be parsed, comparisons of two
+ * columns and <tt>IS NULL</tt> tests keep the row. Thereby the query still
+ * has to filter the loaded rows.</p>
+ * <p>The types of the columns are detected while loading. So the type of a
+ * column is assumed by the compared literal. The loaded table is only
+ * {@linkplain #isApplicableTo(List) applicable} if the detected column types
+ * match the assumed types.</p>
+ */
+public final class Prefilter {
+
+    /** Assumed type of all integer and decimal columns. */
+    static final String NUMBER = "NUMBER";
+
+    private static final TypeTransformer<String, java.sql.Date> TO_DATE = TypeTransformer.of(EntryDescriptor.Type.STRING, EntryDescriptor.Type.DATE);
+    private static final TypeTransformer<String, Timestamp> TO_DATETIME = TypeTransformer.of(EntryDescriptor.Type.STRING, EntryDescriptor.Type.DATETIME);
+
+    private final Expression condition;
+    private final Predicate<Row> predicate;
+    private final Map<String, String> assumedTypes;
+    private long droppedRows;
+
+    private Prefilter(final Expression condition, final Predicate<Row> predicate, final Map<String, String> assumedTypes) {
+        this.condition = condition;
+        this.predicate = predicate;
+        this.assumedTypes = Collections.unmodifiableMap(assumedTypes);
+    }
+
+    /**
+     * @param query the query to load a table for
+     * @param descriptors the columns of the source. All values are strings
+     * @param typesDetected {@code true} if the column types are detected
+     *        while loading. {@code false} if all columns stay string columns
+     * @return the prefilter or empty if the where clause can't drop any row
+     */
+    public static Optional<Prefilter> of(final Query query, final List<? extends EntryDescriptor> descriptors, final boolean typesDetected) {
+        Objects.requireNonNull(query, "query is null");
+        Objects.requireNonNull(descriptors, "descriptors is null");
+        if (!query.getWhere().isPresent()) {
+            return Optional.empty();
+        }
+        final Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < descriptors.size(); i++) {
+            indexes.put(descriptors.get(i).getName(), i);
+        }
+        final Compiler compiler = new Compiler(indexes, typesDetected);
+        final Expression normalized = PredicateCompiler.normalize(query.getWhere().get(), false);
+        return compiler.compile(normalized).map(predicate -> new Prefilter(normalized, predicate, compiler.assumedTypes));
+    }
+
+    /**
+     * @param source the rows to filter
+     * @return a reader delivering only the rows of the source which might match
+     */
+    public RowReader filter(final RowReader source) {
+        Objects.requireNonNull(source, "source is null");
+        return new FilteringRowReader(source);
+    }
+
+    /**
+     * @param row a row of the source
+     * @return {@code false} if the query can't match the row
+     */
+    public boolean test(final Row row) {
+        return this.predicate.test(row);
+    }
+
+    /**
+     * @param descriptors the detected columns of the loaded table
+     * @return {@code true} if the loaded table contains all rows matching the query
+     */
+    public boolean isApplicableTo(final List<? extends EntryDescriptor> descriptors) {
+        Objects.requireNonNull(descriptors, "descriptors is null");
+        for (final EntryDescriptor descriptor : descriptors) {
+            final String assumed = this.assumedTypes.get(descriptor.getName());
+            if (assumed != null && !assumed.equals(Values.isNumber(descriptor.getType()) ? NUMBER : descriptor.getType().name())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the assumed type of each compared column: {@value #NUMBER} or the name of an {@link EntryDescriptor.Type} */
+    public Map<String, String> getAssumedTypes() {
+        return this.assumedTypes;
+    }
+
+    /** @return the count of dropped rows so far */
+    public long getDroppedRows() {
+        return this.droppedRows;
+    }
+
+    @Override
+    public String toString() {
+        return "Prefilter{" + "condition=" + condition + ", assumedTypes=" + assumedTypes + '}';
+    }
+
+    final class FilteringRowReader implements RowReader {
+
+        private final RowReader source;
+
+        FilteringRowReader(final RowReader source) {
+            this.source = source;
+        }
+
+        @Override
+        public List<EntryDescriptor> getEntryDescriptors() {
+            return this.source.getEntryDescriptors();
+        }
+
+        @Override
+        public Iterator<Row> iterator() {
+            final Iterator<Row> rows = this.source.iterator();
+            return new Iterator<Row>() {
+                private Row next;
+
+                @Override
+                public boolean hasNext() {
+                    while (this.next == null && rows.hasNext()) {
+                        final Row row = rows.next();
+                        if (test(row)) {
+                            this.next = row;
+                        } else {
+                            droppedRows++;
+                        }
+                    }
+                    return this.next != null;
+                }
+
+                @Override
+                public Row next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final Row row = this.next;
+                    this.next = null;
+                    return row;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws Exception {
+            this.source.close();
+        }
+    }
+
+    /**
+     * Compiles a condition in negation normal form. An empty result keeps
+     * all rows.
+     */
+    static final class Compiler {
+
+        private final Map<String, Integer> indexes;
+        private final boolean typesDetected;
+        private final Map<String, String> assumedTypes = new HashMap<>();
+
+        Compiler(final Map<String, Integer> indexes, final boolean typesDetected) {
+            this.indexes = indexes;
+            this.typesDetected = typesDetected;
+        }
+
+        Optional<Predicate<Row>> compile(final Expression condition) {
+            if (condition instanceof Expression.And) {
+                final List<Predicate<Row>> predicates = new ArrayList<>();
+                for (final Expression operand : condition.getOperands()) {
+                    compile(operand).ifPresent(predicates::add);
+                }
+                return predicates.stream().reduce(Predicate::and);
+            }
+            if (condition instanceof Expression.Or) {
+                final List<Predicate<Row>> predicates = new ArrayList<>();
+                for (final Expression operand : condition.getOperands()) {
+                    final Optional<Predicate<Row>> predicate = compile(operand);
+                    if (!predicate.isPresent()) {
+                        return Optional.empty();
+                    }
+                    predicates.add(predicate.get());
+                }
+                return predicates.stream().reduce(Predicate::or);
+            }
+            if (condition instanceof Expression.Like) {
+                final Expression.Like like = (Expression.Like) condition;
+                final Pattern regex = like.getRegex();
+                final boolean negated = like.isNegated();
+                return strings(like.getOperand(), value -> regex.matcher(value).matches() != negated);
+            }
+            if (condition instanceof Expression.In) {
+                return in((Expression.In) condition);
+            }
+            if (condition instanceof Expression.Comparison) {
+                final Expression.Comparison comparison = (Expression.Comparison) condition;
+                if (comparison.getLeft() instanceof Expression.Literal && comparison.getRight() instanceof Expression.ColumnReference) {
+                    return comparison(comparison.getOperator().swap(), comparison.getRight(), (Expression.Literal) comparison.getLeft());
+                }
+                if (comparison.getRight() instanceof Expression.Literal) {
+                    return comparison(comparison.getOperator(), comparison.getLeft(), (Expression.Literal) comparison.getRight());
+                }
+            }
+            return Optional.empty();
+        }
+
+        Optional<Predicate<Row>> comparison(final Expression.ComparisonOperator operator, final Expression operand, final Expression.Literal literal) {
+            final Object value = literal.getValue();
+            final String type = assumedType(value);
+            switch (type) {
+                case NUMBER:
+                    return value instanceof Long ? integers(operand, operator, (Long) value)
+                                                 : decimals(operand, operator, toNumber(value).doubleValue());
+                case "DATE": {
+                    final long epochDay = LocalDate.parse(value.toString().trim()).toEpochDay();
+                    return values(operand, EntryDescriptor.Type.DATE, string -> {
+                        final long day = epochDay(string);
+                        return day == Long.MIN_VALUE || operator.matches(Long.compare(day, epochDay));
+                    });
+                }
+                case "DATETIME": {
+                    final LocalDateTime datetime = LocalDateTime.parse(value.toString().trim().replace(' ', 'T'));
+                    return values(operand, EntryDescriptor.Type.DATETIME, string -> {
+                        final LocalDateTime candidate = datetime(string);
+                        return candidate == null || operator.matches(candidate.compareTo(datetime));
+                    });
+                }
+                case "STRING": {
+                    final String string = (String) value;
+                    return strings(operand, candidate -> operator.matches(comparePadded(candidate, string)));
+                }
+                default:
+                    return Optional.empty();
+            }
+        }
+
+        Optional<Predicate<Row>> integers(final Expression operand, final Expression.ComparisonOperator operator, final long value) {
+            final Optional<Integer> index = index(operand, NUMBER);
+            if (!index.isPresent()) {
+                return Optional.empty();
+            }
+            final int i = index.get();
+            final Predicate<Row> predicate;
+            switch (operator) {
+                case EQUAL: predicate = row -> { final long v = parseLong(row, i); return v == NO_LONG ? keep(row, i, value, operator) : v == value; }; break;
+                case NOT_EQUAL: predicate = row -> { final long v = parseLong(row, i); return v == NO_LONG ? keep(row, i, value, operator) : v != value; }; break;
+                case LESS: predicate = row -> { final long v = parseLong(row, i); return v == NO_LONG ? keep(row, i, value, operator) : v < value; }; break;
+                case LESS_OR_EQUAL: predicate = row -> { final long v = parseLong(row, i); return v == NO_LONG ? keep(row, i, value, operator) : v <= value; }; break;
+                case GREATER: predicate = row -> { final long v = parseLong(row, i); return v == NO_LONG ? keep(row, i, value, operator) : v > value; }; break;
+                default: predicate = row -> { final long v = parseLong(row, i); return v == NO_LONG ? keep(row, i, value, operator) : v >= value; };
+            }
+            return Optional.of(predicate);
+        }
+
+        Optional<Predicate<Row>> decimals(final Expression operand, final Expression.ComparisonOperator operator, final double value) {
+            final Optional<Integer> index = index(operand, NUMBER);
+            if (!index.isPresent()) {
+                return Optional.empty();
+            }
+            final int i = index.get();
+            return Optional.of(row -> {
+                final double v = parseDouble(row.getValue(i));
+                return Double.isNaN(v) || operator.matches(Values.compare(v, value));
+            });
+        }
+
+        Optional<Predicate<Row>> in(final Expression.In in) {
+            final List<Expression.Literal> literals = in.getValues();
+            final String type = assumedType(literals.get(0).getValue());
+            if (literals.stream().anyMatch(literal -> !type.equals(assumedType(literal.getValue())))) {
+                return Optional.empty();
+            }
+            final boolean negated = in.isNegated();
+            switch (type) {
+                case NUMBER: {
+                    final double[] values = literals.stream().mapToDouble(literal -> toNumber(literal.getValue()).doubleValue()).toArray();
+                    final Optional<Integer> index = index(in.getOperand(), NUMBER);
+                    return index.map(i -> row -> {
+                        final double v = parseDouble(row.getValue(i));
+                        if (Double.isNaN(v)) {
+                            return true;
+                        }
+                        for (final double value : values) {
+                            if (v == value) {
+                                return !negated;
+                            }
+                        }
+                        return negated;
+                    });
+                }
+                case "STRING": {
+                    final List<String> values = new ArrayList<>();
+                    literals.forEach(literal -> values.add((String) literal.getValue()));
+                    return strings(in.getOperand(), candidate -> values.stream().anyMatch(value -> comparePadded(candidate, value) == 0) != negated);
+                }
+                default:
+                    return Optional.empty();
+            }
+        }
+
+        Optional<Predicate<Row>> strings(final Expression operand, final Predicate<String> predicate) {
+            return values(operand, EntryDescriptor.Type.STRING, predicate);
+        }
+
+        Optional<Predicate<Row>> values(final Expression operand, final EntryDescriptor.Type type, final Predicate<String> predicate) {
+            return index(operand, type.name()).map(i -> row -> {
+                final Object value = row.getValue(i);
+                return value == null || predicate.test(value.toString());
+            });
+        }
+
+        /**
+         * The literals of a number comparison are text for Derby if the types are not detected.
+         * Such a number might be written in another way in the query.
+         */
+        String assumedType(final Object literal) {
+            if (literal instanceof Number) {
+                return this.typesDetected ? NUMBER : "";
+            }
+            if (!this.typesDetected) {
+                return literal instanceof String ? EntryDescriptor.Type.STRING.name() : "";
+            }
+            final String text = literal.toString().trim();
+            try {
+                QueryParser.parseNumber(text, false);
+                return NUMBER;
+            } catch (final NumberFormatException | UnsupportedQueryException e) {
+                // not a number
+            }
+            try {
+                LocalDate.parse(text);
+                return EntryDescriptor.Type.DATE.name();
+            } catch (final DateTimeParseException e) {
+                // not a date
+            }
+            try {
+                LocalDateTime.parse(text.replace(' ', 'T'));
+                return EntryDescriptor.Type.DATETIME.name();
+            } catch (final DateTimeParseException e) {
+                // not a datetime
+            }
+            try {
+                LocalTime.parse(text);
+                return EntryDescriptor.Type.TIME.name();
+            } catch (final DateTimeParseException e) {
+                return EntryDescriptor.Type.STRING.name();
+            }
+        }
+
+        Optional<Integer> index(final Expression operand, final String assumedType) {
+            if (!(operand instanceof Expression.ColumnReference)) {
+                return Optional.empty();
+            }
+            final String name = ((Expression.ColumnReference) operand).getName();
+            final Integer index = this.indexes.get(name);
+            if (index == null) {
+                return Optional.empty();
+            }
+            this.assumedTypes.merge(name, assumedType, (first, second) -> first.equals(second) ? first : first + "," + second);
+            return Optional.of(index);
+        }
+    }
+
+    /** Marks a value which is not an integer. */
+    static final long NO_LONG = Long.MIN_VALUE;
+
+    static long parseLong(final Row row, final int index) {
+        final Object value = row.getValue(index);
+        return value == null ? NO_LONG : parseLong(value.toString());
+    }
+
+    /**
+     * Parses short integers without an exception for decimals.
+     * @return the value or {@link #NO_LONG} if the value is not an integer
+     */
+    static long parseLong(final String value) {
+        final int length = value.length();
+        if (length > 18) {
+            try {
+                return Long.parseLong(value);
+            } catch (final NumberFormatException e) {
+                return NO_LONG;
+            }
+        }
+        final boolean signed = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+');
+        if (length == (signed ? 1 : 0)) {
+            return NO_LONG;
+        }
+        long result = 0;
+        for (int i = signed ? 1 : 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_LONG;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return value.charAt(0) == '-' ? -result : result;
+    }
+
+    /** Compares a value which is not a parsable integer as decimal. */
+    static boolean keep(final Row row, final int index, final long value, final Expression.ComparisonOperator operator) {
+        final double v = parseDouble(row.getValue(index));
+        return Double.isNaN(v) || operator.matches(Values.compare(v, (double) value));
+    }
+
+    /** @return the value or {@code NaN} if the value is not a number */
+    static double parseDouble(final Object value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (final NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    static Number toNumber(final Object literal) {
+        return literal instanceof Number ? (Number) literal : (Number) QueryParser.parseNumber(literal.toString().trim(), false);
+    }
+
+    /** @return the epoch day of the value or {@link Long#MIN_VALUE} if the value is not a date */
+    static long epochDay(final String value) {
+        if (value.length() == 10 && value.charAt(4) == '-' && value.charAt(7) == '-') {
+            final int year = digits(value, 0, 4);
+            final int month = digits(value, 5, 7);
+            final int day = digits(value, 8, 10);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= LocalDate.of(year, month, 1).lengthOfMonth()) {
+                return LocalDate.of(year, month, day).toEpochDay();
+            }
+        }
+        try {
+            return TO_DATE.transform(value).map(date -> date.toLocalDate().toEpochDay()).orElse(Long.MIN_VALUE);
+        } catch (final TransformationException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    static int digits(final String value, final int from, final int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /** @return the datetime of the value or {@code null} if the value is not a datetime */
+    static LocalDateTime datetime(final String value) {
+        final int length = value.length();
+        if ((length == 16 || (length == 19 && value.charAt(16) == ':')) && (value.charAt(10) == ' ' || value.charAt(10) == 'T')
+                && value.charAt(13) == ':') {
+            final long epochDay = epochDay(value.substring(0, 10));
+            final int hour = digits(value, 11, 13);
+            final int minute = digits(value, 14, 16);
+            final int second = length == 19 ? digits(value, 17, 19) : 0;
+            if (epochDay != Long.MIN_VALUE && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                return LocalDateTime.of(LocalDate.ofEpochDay(epochDay), LocalTime.of(hour, minute, second));
+            }
+        }
+        try {
+            return TO_DATETIME.transform(value).map(Timestamp::toLocalDateTime).orElse(null);
+        } catch (final TransformationException e) {
+            return null;
+        }
+    }
+
+    /** Compares strings like Derby. The shorter string is padded with blanks. */
+    static int comparePadded(final String first, final String second) {
+        final int length = Math.max(first.length(), second.length());
+        for (int i = 0; i < length; i++) {
+            final char c1 = i < first.length() ? first.charAt(i) : ' ';
+            final char c2 = i < second.length() ? second.charAt(i) : ' ';
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return 0;
+    }
+}
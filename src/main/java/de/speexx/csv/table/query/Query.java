@@ -0,0 +1,135 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A select statement parsed by the {@link QueryParser}. The statement selects
+ * from one table and supports projection, filter, <tt>GROUP BY</tt> with
+ * aggregate functions, <tt>DISTINCT</tt>, <tt>ORDER BY</tt> and a row limit.
+ */
+public final class Query {
+
+    private final boolean distinct;
+    private final List<SelectItem> selectItems;
+    private final String from;
+    private final Expression where;
+    private final List<Expression> groupBy;
+    private final List<OrderItem> orderBy;
+    private final long offset;
+    private final long limit;
+
+    /**
+     * @param distinct {@code true} for <tt>SELECT DISTINCT</tt>
+     * @param selectItems the items of the select list. Empty for <tt>SELECT *</tt>
+     * @param from the name of the table
+     * @param where the filter. May be {@code null}
+     * @param groupBy the grouping columns
+     * @param orderBy the sort keys
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows. {@code -1} for all rows
+     */
+    public Query(final boolean distinct, final List<SelectItem> selectItems, final String from, final Expression where,
+                 final List<Expression> groupBy, final List<OrderItem> orderBy, final long offset, final long limit) {
+        this.distinct = distinct;
+        this.selectItems = Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(selectItems, "selectItems is null")));
+        this.from = Objects.requireNonNull(from, "from is null");
+        this.where = where;
+        this.groupBy = Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(groupBy, "groupBy is null")));
+        this.orderBy = Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(orderBy, "orderBy is null")));
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    public boolean isDistinct() {
+        return this.distinct;
+    }
+
+    /** @return {@code true} for <tt>SELECT *</tt> */
+    public boolean isSelectAll() {
+        return this.selectItems.isEmpty();
+    }
+
+    /** @return the items of the select list. Empty for <tt>SELECT *</tt> */
+    public List<SelectItem> getSelectItems() {
+        return this.selectItems;
+    }
+
+    public String getFrom() {
+        return this.from;
+    }
+
+    public Optional<Expression> getWhere() {
+        return Optional.ofNullable(this.where);
+    }
+
+    public List<Expression> getGroupBy() {
+        return this.groupBy;
+    }
+
+    /** @return {@code true} if the query has a <tt>GROUP BY</tt> clause or aggregates in the select list */
+    public boolean isAggregation() {
+        return !this.groupBy.isEmpty() || this.selectItems.stream().anyMatch(item -> item.getExpression().containsAggregate());
+    }
+
+    public List<OrderItem> getOrderBy() {
+        return this.orderBy;
+    }
+
+    /** @return the number of rows to skip */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /** @return the maximum number of rows. {@code -1} for all rows */
+    public long getLimit() {
+        return this.limit;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SELECT ");
+        if (this.distinct) {
+            sb.append("DISTINCT ");
+        }
+        sb.append(isSelectAll() ? "*" : this.selectItems.stream().map(Object::toString).collect(Collectors.joining(", ")));
+        sb.append(" FROM ").append(this.from);
+        if (this.where != null) {
+            sb.append(" WHERE ").append(this.where);
+        }
+        if (!this.groupBy.isEmpty()) {
+            sb.append(" GROUP BY ").append(this.groupBy.stream().map(Object::toString).collect(Collectors.joining(", ")));
+        }
+        if (!this.orderBy.isEmpty()) {
+            sb.append(" ORDER BY ").append(this.orderBy.stream().map(Object::toString).collect(Collectors.joining(", ")));
+        }
+        if (this.offset > 0) {
+            sb.append(" OFFSET ").append(this.offset).append(" ROWS");
+        }
+        if (this.limit >= 0) {
+            sb.append(" FETCH FIRST ").append(this.limit).append(" ROWS ONLY");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,594 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Parses the subset of SQL select statements supported by in-process engines:
+ * <pre>
+ * SELECT [DISTINCT] * | item [[AS] alias], ...
+ * FROM table
+ * [WHERE condition]
+ * [GROUP BY column, ...]
+ * [ORDER BY column | alias | position | aggregate [ASC | DESC], ...]
+ * [OFFSET n ROWS] [FETCH FIRST n ROWS ONLY | LIMIT n]
+ * </pre>
+ * <p>An item is a column or one of the aggregates <tt>COUNT(*)</tt>,
+ * <tt>COUNT</tt>, <tt>COUNT(DISTINCT ...)</tt>, <tt>SUM</tt>, <tt>AVG</tt>,
+ * <tt>MIN</tt> and <tt>MAX</tt> of a column. A condition combines comparisons of columns and literals, <tt>IS
+ * [NOT] NULL</tt>, <tt>[NOT] LIKE</tt>, <tt>[NOT] IN</tt> and <tt>[NOT]
+ * BETWEEN</tt> with <tt>AND</tt>, <tt>OR</tt> and <tt>NOT</tt>.</p>
+ * <p>Column names are taken as they are, like the table does. A column name
+ * may therefore contain characters like spaces without quotes.</p>
+ */
+public final class QueryParser {
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "select", "distinct", "all", "from", "where", "group", "by", "having", "order", "asc", "desc",
+            "limit", "offset", "fetch", "first", "next", "rows", "row", "only", "and", "or", "not", "is",
+            "null", "like", "in", "between", "as", "union", "intersect", "except", "join", "on", "case"));
+
+    private final String sql;
+    private final List<String> columnNames;
+    private final List<Token> tokens;
+    private int position;
+
+    QueryParser(final String sql, final Collection<String> columnNames) {
+        this.sql = Objects.requireNonNull(sql, "sql is null");
+        this.columnNames = new ArrayList<>(Objects.requireNonNull(columnNames, "columnNames is null"));
+        // Longest names first, so a name doesn't match the prefix of another name
+        this.columnNames.sort((first, second) -> second.length() - first.length());
+        this.tokens = tokenize();
+    }
+
+    /**
+     * @param sql the select statement
+     * @param columnNames the names of the columns of the table
+     * @return the parsed query. Never {@code null}
+     * @throws UnsupportedQueryException if the statement is not in the supported subset
+     * @throws NullPointerException if a parameter is {@code null}
+     */
+    public static Query parse(final String sql, final Collection<String> columnNames) {
+        return new QueryParser(sql, columnNames).parseQuery();
+    }
+
+    Query parseQuery() {
+        expectWord("select");
+        final boolean distinct = acceptWord("distinct");
+        if (!distinct) {
+            acceptWord("all");
+        }
+        final List<SelectItem> items = new ArrayList<>();
+        if (!acceptSymbol("*")) {
+            do {
+                items.add(parseSelectItem());
+            } while (acceptSymbol(","));
+        }
+        expectWord("from");
+        final String from = parseTableName();
+
+        final Expression where = acceptWord("where") ? parseExpression() : null;
+        if (where != null && where.containsAggregate()) {
+            throw unsupported("aggregate in where clause");
+        }
+        final List<Expression> groupBy = new ArrayList<>();
+        if (acceptWord("group")) {
+            expectWord("by");
+            do {
+                groupBy.add(expectColumn());
+            } while (acceptSymbol(","));
+        }
+        if (peekWord("having")) {
+            throw unsupported("having clause");
+        }
+        final List<OrderItem> orderBy = new ArrayList<>();
+        if (acceptWord("order")) {
+            expectWord("by");
+            do {
+                orderBy.add(parseOrderItem());
+            } while (acceptSymbol(","));
+        }
+        long offset = 0;
+        long limit = -1;
+        if (acceptWord("offset")) {
+            offset = expectCount();
+            if (!acceptWord("rows")) {
+                acceptWord("row");
+            }
+        }
+        if (acceptWord("limit")) {
+            limit = expectCount();
+        } else if (acceptWord("fetch")) {
+            if (!acceptWord("first")) {
+                expectWord("next");
+            }
+            limit = peek().kind == Kind.NUMBER ? expectCount() : 1;
+            if (!acceptWord("rows")) {
+                expectWord("row");
+            }
+            expectWord("only");
+        }
+        if (peek().kind != Kind.END) {
+            throw unsupported("unexpected '" + peek().text + "'");
+        }
+        return new Query(distinct, items, from, where, groupBy, orderBy, offset, limit);
+    }
+
+    SelectItem parseSelectItem() {
+        final Expression expression = parseExpression();
+        String alias = null;
+        if (acceptWord("as")) {
+            alias = expectAlias();
+        } else if ((peek().kind == Kind.WORD && !isKeyword(peek())) || peek().kind == Kind.QUOTED) {
+            alias = expectAlias();
+        }
+        return new SelectItem(expression, alias);
+    }
+
+    String expectAlias() {
+        final Token token = next();
+        switch (token.kind) {
+            case QUOTED:
+                return token.text;
+            case WORD:
+            case COLUMN:
+                if (isKeyword(token)) {
+                    throw unsupported("alias expected at '" + token.text + "'");
+                }
+                return token.text.toUpperCase(Locale.ENGLISH);
+            default:
+                throw unsupported("alias expected at '" + token.text + "'");
+        }
+    }
+
+    String parseTableName() {
+        final Token token = next();
+        if (token.kind != Kind.WORD && token.kind != Kind.QUOTED && token.kind != Kind.COLUMN) {
+            throw unsupported("table name expected at '" + token.text + "'");
+        }
+        if (peek().kind == Kind.SYMBOL && (".".equals(peek().text) || ",".equals(peek().text))) {
+            throw unsupported("more than one table or qualified table name");
+        }
+        if ((peek().kind == Kind.WORD && !isKeyword(peek())) || peekWord("as") || peekWord("join")) {
+            throw unsupported("table alias or join");
+        }
+        return token.text;
+    }
+
+    OrderItem parseOrderItem() {
+        final Expression expression;
+        final Token token = peek();
+        if (token.kind == Kind.NUMBER) {
+            final long ordinal = expectCount();
+            if (ordinal < 1) {
+                throw unsupported("position of select item " + ordinal);
+            }
+            expression = new Expression.Literal(ordinal);
+        } else if ((token.kind == Kind.WORD && !isKeyword(token) && !isFunctionCall()) || token.kind == Kind.QUOTED) {
+            next();
+            expression = new Expression.AliasReference(token.kind == Kind.QUOTED ? token.text : token.text.toUpperCase(Locale.ENGLISH));
+        } else {
+            expression = parseOperand();
+            if (!(expression instanceof Expression.ColumnReference) && !(expression instanceof Expression.Aggregate)) {
+                throw unsupported("sort key " + expression);
+            }
+        }
+        final boolean descending = acceptWord("desc");
+        if (!descending) {
+            acceptWord("asc");
+        }
+        if (peekWord("nulls")) {
+            throw unsupported("nulls ordering");
+        }
+        return new OrderItem(expression, descending);
+    }
+
+    Expression parseExpression() {
+        final List<Expression> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while (acceptWord("or")) {
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Expression.Or(operands);
+    }
+
+    Expression parseAnd() {
+        final List<Expression> operands = new ArrayList<>();
+        operands.add(parseNot());
+        while (acceptWord("and")) {
+            operands.add(parseNot());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Expression.And(operands);
+    }
+
+    Expression parseNot() {
+        if (acceptWord("not")) {
+            return new Expression.Not(parseNot());
+        }
+        return parsePredicate();
+    }
+
+    Expression parsePredicate() {
+        final Expression left = parseOperand();
+        final Token token = peek();
+        if (token.kind == Kind.SYMBOL) {
+            final Optional<Expression.ComparisonOperator> operator = Expression.ComparisonOperator.forSymbol(token.text);
+            if (operator.isPresent()) {
+                next();
+                return new Expression.Comparison(operator.get(), left, parseOperand());
+            }
+        }
+        if (acceptWord("is")) {
+            final boolean negated = acceptWord("not");
+            expectWord("null");
+            return new Expression.IsNull(left, negated);
+        }
+        final boolean negated = acceptWord("not");
+        if (acceptWord("like")) {
+            final Token pattern = next();
+            if (pattern.kind != Kind.STRING) {
+                throw unsupported("like pattern must be a string literal");
+            }
+            if (peekWord("escape")) {
+                throw unsupported("like escape");
+            }
+            return new Expression.Like(left, pattern.text, negated);
+        }
+        if (acceptWord("in")) {
+            expectSymbol("(");
+            if (peekWord("select")) {
+                throw unsupported("sub query");
+            }
+            final List<Expression.Literal> values = new ArrayList<>();
+            do {
+                final Expression value = parseOperand();
+                if (!(value instanceof Expression.Literal)) {
+                    throw unsupported("in list with " + value);
+                }
+                values.add((Expression.Literal) value);
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+            return new Expression.In(left, values, negated);
+        }
+        if (acceptWord("between")) {
+            final Expression low = parseOperand();
+            expectWord("and");
+            final Expression high = parseOperand();
+            final Expression between = new Expression.And(Arrays.asList(
+                    new Expression.Comparison(Expression.ComparisonOperator.GREATER_OR_EQUAL, left, low),
+                    new Expression.Comparison(Expression.ComparisonOperator.LESS_OR_EQUAL, left, high)));
+            return negated ? new Expression.Not(between) : between;
+        }
+        if (negated) {
+            throw unsupported("unexpected 'not'");
+        }
+        return left;
+    }
+
+    Expression parseOperand() {
+        final Token token = next();
+        switch (token.kind) {
+            case COLUMN:
+                return new Expression.ColumnReference(token.text);
+            case STRING:
+                return new Expression.Literal(token.text);
+            case NUMBER:
+                return new Expression.Literal(parseNumber(token.text, false));
+            case SYMBOL:
+                if ("-".equals(token.text) && peek().kind == Kind.NUMBER) {
+                    return new Expression.Literal(parseNumber(next().text, true));
+                }
+                if ("(".equals(token.text)) {
+                    if (peekWord("select")) {
+                        throw unsupported("sub query");
+                    }
+                    final Expression expression = parseExpression();
+                    expectSymbol(")");
+                    return expression;
+                }
+                break;
+            case WORD:
+                final String word = token.text.toLowerCase(Locale.ENGLISH);
+                if (peekSymbol("(")) {
+                    return parseAggregate(token);
+                }
+                if (peek().kind == Kind.STRING && ("date".equals(word) || "time".equals(word) || "timestamp".equals(word))) {
+                    return new Expression.Literal(parseTypedLiteral(word, next().text));
+                }
+                throw unsupported("unknown column or keyword '" + token.text + "'");
+            default:
+        }
+        throw unsupported("unexpected '" + token.text + "'");
+    }
+
+    Expression parseAggregate(final Token name) {
+        final Expression.AggregateFunction function;
+        try {
+            function = Expression.AggregateFunction.valueOf(name.text.toUpperCase(Locale.ENGLISH));
+        } catch (final IllegalArgumentException e) {
+            throw unsupported("function " + name.text);
+        }
+        expectSymbol("(");
+        if (acceptSymbol("*")) {
+            expectSymbol(")");
+            if (function != Expression.AggregateFunction.COUNT) {
+                throw unsupported(function + "(*)");
+            }
+            return new Expression.Aggregate(function, null);
+        }
+        final boolean distinct = acceptWord("distinct");
+        if (distinct && function != Expression.AggregateFunction.COUNT) {
+            throw unsupported(function + "(DISTINCT ...)");
+        }
+        final Expression.ColumnReference column = expectColumn();
+        expectSymbol(")");
+        return new Expression.Aggregate(function, column, distinct);
+    }
+
+    static Object parseNumber(final String text, final boolean negative) {
+        final String value = negative ? "-" + text : text;
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                return Long.parseLong(value);
+            } catch (final NumberFormatException e) {
+                // too big for long
+            }
+        }
+        return Double.parseDouble(value);
+    }
+
+    Object parseTypedLiteral(final String type, final String text) {
+        try {
+            switch (type) {
+                case "date": return LocalDate.parse(text);
+                case "time": return LocalTime.parse(text);
+                default: return LocalDateTime.parse(text.trim().replace(' ', 'T'));
+            }
+        } catch (final DateTimeParseException e) {
+            throw unsupported(type + " literal '" + text + "'");
+        }
+    }
+
+    Expression.ColumnReference expectColumn() {
+        final Token token = next();
+        if (token.kind != Kind.COLUMN) {
+            throw unsupported("column expected at '" + token.text + "'");
+        }
+        return new Expression.ColumnReference(token.text);
+    }
+
+    long expectCount() {
+        final Token token = next();
+        if (token.kind != Kind.NUMBER) {
+            throw unsupported("number expected at '" + token.text + "'");
+        }
+        try {
+            return Long.parseLong(token.text);
+        } catch (final NumberFormatException e) {
+            throw unsupported("number expected at '" + token.text + "'");
+        }
+    }
+
+    boolean isFunctionCall() {
+        final Token next = this.position + 1 < this.tokens.size() ? this.tokens.get(this.position + 1) : null;
+        return next != null && next.kind == Kind.SYMBOL && "(".equals(next.text);
+    }
+
+    static boolean isKeyword(final Token token) {
+        return KEYWORDS.contains(token.text.toLowerCase(Locale.ENGLISH));
+    }
+
+    Token peek() {
+        return this.tokens.get(this.position);
+    }
+
+    Token next() {
+        final Token token = this.tokens.get(this.position);
+        if (token.kind != Kind.END) {
+            this.position++;
+        }
+        return token;
+    }
+
+    boolean peekWord(final String word) {
+        final Token token = peek();
+        return token.kind == Kind.WORD && token.text.equalsIgnoreCase(word);
+    }
+
+    boolean acceptWord(final String word) {
+        if (peekWord(word)) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    void expectWord(final String word) {
+        if (!acceptWord(word)) {
+            throw unsupported("'" + word + "' expected at '" + peek().text + "'");
+        }
+    }
+
+    boolean peekSymbol(final String symbol) {
+        final Token token = peek();
+        return token.kind == Kind.SYMBOL && token.text.equals(symbol);
+    }
+
+    boolean acceptSymbol(final String symbol) {
+        if (peekSymbol(symbol)) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    void expectSymbol(final String symbol) {
+        if (!acceptSymbol(symbol)) {
+            throw unsupported("'" + symbol + "' expected at '" + peek().text + "'");
+        }
+    }
+
+    UnsupportedQueryException unsupported(final String reason) {
+        return new UnsupportedQueryException("Unsupported query (" + reason + "): " + this.sql);
+    }
+
+    List<Token> tokenize() {
+        final List<Token> result = new ArrayList<>();
+        final int length = this.sql.length();
+        int i = 0;
+        while (i < length) {
+            final char c = this.sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                final StringBuilder text = new StringBuilder();
+                int j = i + 1;
+                while (true) {
+                    if (j >= length) {
+                        throw unsupported("unterminated literal");
+                    }
+                    final char current = this.sql.charAt(j);
+                    if (current == c) {
+                        if (j + 1 < length && this.sql.charAt(j + 1) == c) {
+                            text.append(c);
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    text.append(current);
+                    j++;
+                }
+                result.add(new Token(c == '\'' ? Kind.STRING : Kind.QUOTED, text.toString()));
+                i = j + 1;
+            } else {
+                final Optional<String> column = matchColumn(i);
+                if (column.isPresent()) {
+                    result.add(new Token(Kind.COLUMN, column.get()));
+                    i += column.get().length();
+                } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(this.sql.charAt(i + 1)))) {
+                    int j = i;
+                    while (j < length && (Character.isDigit(this.sql.charAt(j)) || this.sql.charAt(j) == '.')) {
+                        j++;
+                    }
+                    if (j < length && (this.sql.charAt(j) == 'e' || this.sql.charAt(j) == 'E')) {
+                        j++;
+                        if (j < length && (this.sql.charAt(j) == '+' || this.sql.charAt(j) == '-')) {
+                            j++;
+                        }
+                        while (j < length && Character.isDigit(this.sql.charAt(j))) {
+                            j++;
+                        }
+                    }
+                    result.add(new Token(Kind.NUMBER, this.sql.substring(i, j)));
+                    i = j;
+                } else if (isIdentifierPart(c)) {
+                    int j = i;
+                    while (j < length && isIdentifierPart(this.sql.charAt(j))) {
+                        j++;
+                    }
+                    result.add(new Token(Kind.WORD, this.sql.substring(i, j)));
+                    i = j;
+                } else {
+                    final String twoChars = i + 1 < length ? this.sql.substring(i, i + 2) : "";
+                    if ("<>".equals(twoChars) || "!=".equals(twoChars) || "<=".equals(twoChars) || ">=".equals(twoChars)) {
+                        result.add(new Token(Kind.SYMBOL, twoChars));
+                        i += 2;
+                    } else if ("=<>(),*-+.".indexOf(c) >= 0) {
+                        result.add(new Token(Kind.SYMBOL, String.valueOf(c)));
+                        i++;
+                    } else {
+                        throw unsupported("unexpected character '" + c + "'");
+                    }
+                }
+            }
+        }
+        result.add(new Token(Kind.END, "end of query"));
+        return result;
+    }
+
+    /**
+     * A column name matches at a word boundary. An aggregate function name
+     * followed by a parenthesis is not taken as column name.
+     */
+    Optional<String> matchColumn(final int start) {
+        if (start > 0 && isIdentifierPart(this.sql.charAt(start - 1))) {
+            return Optional.empty();
+        }
+        for (final String name : this.columnNames) {
+            if (name.isEmpty() || !this.sql.startsWith(name, start)) {
+                continue;
+            }
+            final int end = start + name.length();
+            if (end < this.sql.length() && isIdentifierPart(this.sql.charAt(end)) && isIdentifierPart(name.charAt(name.length() - 1))) {
+                continue;
+            }
+            if (isAggregateName(name) && this.sql.substring(end).trim().startsWith("(")) {
+                continue;
+            }
+            return Optional.of(name);
+        }
+        return Optional.empty();
+    }
+
+    static boolean isAggregateName(final String name) {
+        for (final Expression.AggregateFunction function : Expression.AggregateFunction.values()) {
+            if (function.name().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isIdentifierPart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    enum Kind {
+        WORD, COLUMN, QUOTED, STRING, NUMBER, SYMBOL, END
+    }
+
+    static final class Token {
+
+        final Kind kind;
+        final String text;
+
+        Token(final Kind kind, final String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return kind + ":" + text;
+        }
+    }
+}
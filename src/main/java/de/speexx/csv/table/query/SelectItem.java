@@ -0,0 +1,55 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/** An expression of the select list of a {@link Query} with an optional alias. */
+public final class SelectItem {
+
+    private final Expression expression;
+    private final String alias;
+
+    /**
+     * @param expression the expression of the item
+     * @param alias the normalized alias. May be {@code null}
+     */
+    public SelectItem(final Expression expression, final String alias) {
+        this.expression = Objects.requireNonNull(expression, "expression is null");
+        this.alias = alias;
+    }
+
+    public Expression getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * The alias is normalized like SQL identifiers: an unquoted alias is in
+     * upper case, a quoted alias is unchanged.
+     * @return the alias of the item
+     */
+    public Optional<String> getAlias() {
+        return Optional.ofNullable(this.alias);
+    }
+
+    @Override
+    public String toString() {
+        return this.alias == null ? this.expression.toString() : this.expression + " AS " + this.alias;
+    }
+}
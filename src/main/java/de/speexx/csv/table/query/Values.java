@@ -0,0 +1,132 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import de.speexx.csv.table.EntryDescriptor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * Support for the typed values of queries. The values are the boxed values of
+ * {@link de.speexx.csv.table.ColumnValues#getValue(int)}: {@code Long},
+ * {@code Double}, {@code String}, {@code LocalDate}, {@code LocalTime} and
+ * {@code LocalDateTime}.
+ */
+public final class Values {
+
+    /**
+     * Converts a literal to a value comparable with the values of a column of
+     * the given type. Number literals compared with integer columns may stay
+     * decimals. Strings compared with date and time columns must have the
+     * ISO format.
+     * @param literal the value of a {@link Expression.Literal}
+     * @param type the type of the column
+     * @return the converted value
+     * @throws UnsupportedQueryException if the literal is not comparable with the column type
+     */
+    public static Object coerce(final Object literal, final EntryDescriptor.Type type) {
+        Objects.requireNonNull(literal, "literal is null");
+        Objects.requireNonNull(type, "type is null");
+        try {
+            switch (type) {
+                case INTEGER:
+                case DECIMAL:
+                    if (literal instanceof Number) {
+                        return type == EntryDescriptor.Type.DECIMAL ? (Object) ((Number) literal).doubleValue() : literal;
+                    }
+                    if (literal instanceof String) {
+                        final Object number = QueryParser.parseNumber(((String) literal).trim(), false);
+                        return type == EntryDescriptor.Type.DECIMAL ? (Object) ((Number) number).doubleValue() : number;
+                    }
+                    break;
+                case STRING:
+                    if (literal instanceof String) {
+                        return literal;
+                    }
+                    break;
+                case DATE:
+                    if (literal instanceof LocalDate) {
+                        return literal;
+                    }
+                    if (literal instanceof String) {
+                        return LocalDate.parse(((String) literal).trim());
+                    }
+                    break;
+                case TIME:
+                    if (literal instanceof LocalTime) {
+                        return literal;
+                    }
+                    if (literal instanceof String) {
+                        return LocalTime.parse(((String) literal).trim());
+                    }
+                    break;
+                case DATETIME:
+                    if (literal instanceof LocalDateTime) {
+                        return literal;
+                    }
+                    if (literal instanceof String) {
+                        return LocalDateTime.parse(((String) literal).trim().replace(' ', 'T'));
+                    }
+                    break;
+                default:
+            }
+        } catch (final NumberFormatException | DateTimeParseException e) {
+            throw new UnsupportedQueryException("Literal '" + literal + "' is not a value of type " + type);
+        }
+        throw new UnsupportedQueryException("Literal '" + literal + "' is not comparable with type " + type);
+    }
+
+    /**
+     * @return {@code true} if values of the types can be compared
+     */
+    public static boolean isComparable(final EntryDescriptor.Type first, final EntryDescriptor.Type second) {
+        return first == second || (isNumber(first) && isNumber(second));
+    }
+
+    public static boolean isNumber(final EntryDescriptor.Type type) {
+        return type == EntryDescriptor.Type.INTEGER || type == EntryDescriptor.Type.DECIMAL;
+    }
+
+    /**
+     * Compares two non null values of comparable types. Integers and decimals
+     * are compared by their numeric value.
+     * @throws ClassCastException if the values are not comparable
+     */
+    @SuppressWarnings("unchecked")
+    public static int compare(final Object first, final Object second) {
+        if (first instanceof Long && second instanceof Long) {
+            return Long.compare((Long) first, (Long) second);
+        }
+        if (first instanceof Number && second instanceof Number) {
+            return compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+        }
+        return ((Comparable<Object>) first).compareTo(second);
+    }
+
+    /** Compares like SQL. <tt>-0.0</tt> is equal to <tt>0.0</tt>. */
+    public static int compare(final double first, final double second) {
+        return first < second ? -1 : (first > second ? 1 : 0);
+    }
+
+    private Values() {
+        throw new AssertionError("Forbidden to create instance from " + Values.class);
+    }
+}
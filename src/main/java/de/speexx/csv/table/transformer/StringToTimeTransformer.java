@@ -25,6 +25,7 @@ import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.SignStyle;
 import static java.time.temporal.ChronoField.SECOND_OF_MINUTE;
 import static java.time.temporal.ChronoField.MINUTE_OF_HOUR;
+import static java.time.temporal.ChronoField.NANO_OF_SECOND;
 import static java.time.temporal.ChronoField.HOUR_OF_DAY;
 import java.util.Arrays;
 import java.util.Collection;
@@ -40,6 +41,8 @@ class StringToTimeTransformer implements TypeTransformer<String, Time> {
                 .optionalStart()
                 .appendLiteral(':')
                 .appendValue(SECOND_OF_MINUTE, 1, 2, SignStyle.NORMAL)
+                .optionalStart()
+                .appendFraction(NANO_OF_SECOND, 0, 9, true)
                 .toFormatter();
 
     static final DateTimeFormatter LAZY_DOT_LOCAL_TIME = new DateTimeFormatterBuilder()
@@ -27,6 +27,7 @@ final class TransformerHolder {
     
     public final static DecimalToStringTransformer DECIMAL_TO_STRING = new DecimalToStringTransformer();
     public final static IntegerToStringTransformer INTEGER_TO_STRING = new IntegerToStringTransformer();
+    public final static IntegerToDecimalTransformer INTEGER_TO_DECIMAL = new IntegerToDecimalTransformer();
     public final static DateToStringTransformer DATE_TO_STRING = new DateToStringTransformer();
     public final static TimestampToStringTransformer TIMESTAMP_TO_STRING = new TimestampToStringTransformer();
     public final static TimeToStringTransformer TIME_TO_STRING = new TimeToStringTransformer();
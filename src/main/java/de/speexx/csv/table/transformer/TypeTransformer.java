@@ -80,6 +80,7 @@ public interface TypeTransformer<S, T> {
             } case INTEGER: {
                 switch (targetType) {
                     case STRING: return TransformerHolder.INTEGER_TO_STRING;
+                    case DECIMAL: return TransformerHolder.INTEGER_TO_DECIMAL;
                 }
             } case DATE: {
                 switch (targetType) {
@@ -0,0 +1,51 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class BloomFilterTest {
+
+    @Test
+    public void addedKeysAreNeverAbsent() {
+        final BloomFilter filter = new BloomFilter(10_000);
+        for (long key = 0; key < 10_000; key++) {
+            filter.add(key * 31);
+        }
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(filter.mightContain(key * 31));
+        }
+    }
+
+    @Test
+    public void fewFalsePositives() {
+        final BloomFilter filter = new BloomFilter(10_000);
+        for (long key = 0; key < 10_000; key++) {
+            filter.add(key);
+        }
+        int falsePositives = 0;
+        for (long key = 10_000; key < 110_000; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 3_000, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,127 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.ColumnarTableTest.values;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public class ChannelReaderTest {
+
+    private static final String TEXT = "id,name\n1,Müller\n2,€ 5\n3,😀 smile\n";
+
+    @Test
+    public void decodeUtf8SplitSequences() throws Exception {
+        final byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        // Each read of the channel delivers one byte, so each sequence is split
+        assertEquals(TEXT, readAll(new ChannelReader(new ByteChannel(bytes, 1), StandardCharsets.UTF_8), 3));
+        assertEquals(TEXT, readAll(new ChannelReader(new ByteChannel(bytes, 1), StandardCharsets.UTF_8), 1));
+        assertEquals(TEXT, readAll(new ChannelReader(new ByteChannel(bytes, bytes.length), StandardCharsets.UTF_8), 8192));
+    }
+
+    @Test
+    public void replaceMalformedUtf8() throws Exception {
+        final byte[] bytes = {'a', (byte) 0xC0, (byte) 0xAF, 'b', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'c', (byte) 0xE2, (byte) 0x82};
+        final String decoded = readAll(new ChannelReader(new ByteChannel(bytes, 2), StandardCharsets.UTF_8), 16);
+        assertEquals(new String(bytes, StandardCharsets.UTF_8), decoded);
+        assertEquals('\uFFFD', decoded.charAt(1));
+    }
+
+    @Test
+    public void decodeOtherCharsets() throws Exception {
+        for (final Charset charset : Arrays.asList(StandardCharsets.ISO_8859_1, Charset.forName("windows-1252"), StandardCharsets.UTF_16LE)) {
+            final String text = "id,name\n1,Müller\n2,été\n";
+            final byte[] bytes = text.getBytes(charset);
+            assertEquals(text, readAll(new ChannelReader(new ByteChannel(bytes, 3), charset), 5), charset.name());
+        }
+        assertEquals("a�", readAll(new ChannelReader(new ByteChannel(new byte[] {'a', (byte) 0xFC}, 1), StandardCharsets.US_ASCII), 4));
+    }
+
+    @Test
+    public void readLimitedLength() throws Exception {
+        final byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        assertEquals("id,name\n", readAll(new ChannelReader(Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8, 8), 64));
+    }
+
+    @Test
+    public void csvReaderWithCharset() throws Exception {
+        final Path file = Files.createTempFile("latin1", ".csv");
+        file.toFile().deleteOnExit();
+        Files.write(file, "name,city\nMüller,Köln\n".getBytes(StandardCharsets.ISO_8859_1));
+        try (final CsvReader reader = new CsvReader(file, StandardCharsets.ISO_8859_1)) {
+            assertEquals(Arrays.asList(Arrays.asList("Müller", "Köln")), values(reader));
+        }
+    }
+
+    static String readAll(final Reader reader, final int size) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        final char[] chars = new char[size];
+        try (final Reader r = reader) {
+            int read;
+            while ((read = r.read(chars, 0, size)) >= 0) {
+                sb.append(chars, 0, read);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Delivers at most the given number of bytes per read like a pipe. */
+    static final class ByteChannel implements ReadableByteChannel {
+
+        private final ByteBuffer bytes;
+        private final int chunk;
+
+        ByteChannel(final byte[] bytes, final int chunk) {
+            this.bytes = ByteBuffer.wrap(bytes);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) {
+            if (!this.bytes.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(this.chunk, Math.min(dst.remaining(), this.bytes.remaining()));
+            for (int i = 0; i < count; i++) {
+                dst.put(this.bytes.get());
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
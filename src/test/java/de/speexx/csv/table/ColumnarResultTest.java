@@ -0,0 +1,128 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.EntryDescriptorBuilder.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ColumnarResultTest {
+
+    static final List<EntryDescriptor> DESCRIPTORS = Arrays.asList(
+            of().addName("n").addType(EntryDescriptor.Type.INTEGER).build(),
+            of().addName("d").addType(EntryDescriptor.Type.DECIMAL).build(),
+            of().addName("day").addType(EntryDescriptor.Type.DATE).build(),
+            of().addName("ts").addType(EntryDescriptor.Type.DATETIME).build(),
+            of().addName("s").addType(EntryDescriptor.Type.STRING).build());
+
+    @Test
+    public void appendOverChunks() {
+        final int rows = 2 * ResultColumn.CHUNK_SIZE + 3;
+        final ColumnarResult result = create(rows);
+
+        assertEquals(rows, result.size());
+        final Row row = result.getRow(ResultColumn.CHUNK_SIZE + 1);
+        assertEquals(ResultColumn.CHUNK_SIZE + 1L, row.getLong(0));
+        assertEquals((ResultColumn.CHUNK_SIZE + 1) / 2.0, row.getDouble(1));
+        assertEquals(LocalDate.of(2016, 8, 3).plusDays(ResultColumn.CHUNK_SIZE + 1), row.getValue(2));
+        assertEquals(LocalDateTime.of(2016, 8, 3, 12, 30, 15, 123_456_789), row.getValue(3));
+        assertEquals("v" + ((ResultColumn.CHUNK_SIZE + 1) % 3), row.getValue(4));
+        assertEquals(LocalDate.of(2016, 8, 3).toEpochDay(), result.getRow(0).getEpochDay(3));
+
+        assertTrue(result.getRow(rows - 1).isNull(1));
+        assertNull(result.getRow(rows - 1).getValue(4));
+        assertFalse(result.getRow(rows - 2).isNull(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> result.getRow(rows));
+    }
+
+    @Test
+    public void dictionaryEncodedStrings() {
+        final ColumnarResult result = create(1000);
+        result.trimToSize();
+        final ResultColumn strings = result.getColumn(4);
+
+        assertEquals(3, strings.getDictionarySize());
+        assertEquals(strings.getCode(1), strings.getCode(4));
+        assertEquals("v1", strings.getDictionaryValue(strings.getCode(1)));
+        assertEquals(-1, strings.getCode(999));
+        assertThrows(IncompatibleTypeException.class, () -> result.getColumn(0).getCode(0));
+
+        strings.appendString("v2");
+        strings.appendString("new");
+        assertEquals(4, strings.getDictionarySize());
+        assertEquals(strings.getCode(2), strings.getCode(1000));
+    }
+
+    @Test
+    public void batchesAndSpliteratorOverChunks() {
+        final int rows = ResultColumn.CHUNK_SIZE + 10;
+        final ColumnarResult result = create(rows);
+
+        final Iterator<RowBatch> batches = result.batches(ResultColumn.CHUNK_SIZE - 5);
+        batches.next();
+        final RowBatch second = batches.next();
+        assertEquals(15, second.size());
+        assertEquals(ResultColumn.CHUNK_SIZE - 5L, second.getColumn(0).getLongs()[0]);
+        assertEquals("v" + ((ResultColumn.CHUNK_SIZE - 5) % 3), second.getColumn(4).getObjects()[0]);
+        assertEquals(LocalDateTime.of(2016, 8, 3, 12, 30, 15, 123_456_789), second.getRow(1).getValue(3));
+        assertTrue(second.getColumn(1).isNull(14));
+        assertFalse(batches.hasNext());
+
+        assertEquals(rows, result.spliterator().getExactSizeIfKnown());
+        final long expected = (long) rows * (rows - 1) / 2;
+        assertEquals(expected, StreamSupport.stream(result.spliterator(), true).mapToLong(row -> row.getLong(0)).sum());
+    }
+
+    @Test
+    public void rejectWrongTypes() {
+        final ColumnarResult result = new ColumnarResult(DESCRIPTORS);
+        assertThrows(IncompatibleTypeException.class, () -> result.getColumn(1).appendLong(1));
+        assertThrows(IncompatibleTypeException.class, () -> result.getColumn(3).appendLong(1));
+        assertThrows(IncompatibleTypeException.class, () -> result.getColumn(0).appendString("1"));
+
+        final ColumnarResult single = new ColumnarResult(DESCRIPTORS.subList(0, 1));
+        single.getColumn(0).appendLong(1);
+        assertThrows(IllegalArgumentException.class, () -> result.add(single.getRow(0)));
+    }
+
+    /** The last row has {@code null} decimal and string values. */
+    static ColumnarResult create(final int rows) {
+        final ColumnarResult result = new ColumnarResult(DESCRIPTORS);
+        final LocalDate day = LocalDate.of(2016, 8, 3);
+        for (int i = 0; i < rows; i++) {
+            final boolean last = i == rows - 1;
+            result.getColumn(0).appendLong(i);
+            result.getColumn(1).appendValue(last ? null : i / 2.0);
+            result.getColumn(2).appendValue(day.plusDays(i));
+            result.getColumn(3).appendDateTime(LocalDateTime.of(2016, 8, 3, 12, 30, 15, 123_456_789));
+            result.getColumn(4).appendString(last ? null : "v" + (i % 3));
+        }
+        return result;
+    }
+}
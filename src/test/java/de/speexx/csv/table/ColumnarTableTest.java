@@ -0,0 +1,151 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.EntryDescriptorBuilder.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ColumnarTableTest {
+
+    private static final String CSV = "num,label,day,price\n"
+                                      + "3,b,2016-01-02,1.5\n"
+                                      + "1,a,2016-01-01,2.5\n"
+                                      + "2,b,2016-01-02,NaN\n"
+                                      + "5,c,2016-01-03,0.5\n"
+                                      + "4,a,2016-01-01,4.0\n"
+                                      + "-1,c,2016-01-05,3.0\n";
+
+    private static final EntryDescriptor[] TYPES = {
+        of().addName("num").addType(EntryDescriptor.Type.INTEGER).build(),
+        of().addName("day").addType(EntryDescriptor.Type.DATE).build(),
+        of().addName("price").addType(EntryDescriptor.Type.DECIMAL).build()
+    };
+
+    @Test
+    public void sameResultsAsDerby() throws Exception {
+        final List<String> queries = Arrays.asList(
+                "select num, label from test where num > 1 and label <> 'c'",
+                "select label, count(*), sum(num) as total, avg(num), min(day), max(price) from test group by label",
+                "select day, count(price) from test where price is not null group by day order by 2 desc, day",
+                "select num, price from test where label in ('a', 'c') or price between 1 and 2 order by price desc",
+                "select label as l, num from test where day >= '2016-01-02' order by l, num desc offset 1 rows fetch first 2 rows only",
+                "select count(*), sum(price), min(label) from test where num > 100",
+                "select distinct label from test order by label desc",
+                "select day, count(distinct label), count(distinct price) from test group by day",
+                "select num from test where not (label like 'a%' or num < 0) order by num",
+                "select * from test where num > 1 order by num",
+                "select distinct * from test where label = 'b' order by num");
+
+        final DbTable derby = new DbTable("derby");
+        final ColumnarTable columnar = new ColumnarTable("test");
+        try {
+            derby.init(new CsvReader(new StringReader(CSV)));
+            derby.changeColumnTypes(TYPES);
+            columnar.init(new CsvReader(new StringReader(CSV)));
+            columnar.changeColumnTypes(TYPES);
+
+            for (final String query : queries) {
+                columnar.setCollectQueryPlans(true);
+                final RowReader expected = derby.executeSql(query);
+                final RowReader actual = columnar.executeSql(query);
+                assertTrue(actual instanceof ColumnarResult, query);
+                assertTrue(columnar.getLastQueryPlan().get().startsWith("Columnar"), query);
+                assertEquals(describe(expected), describe(actual), query);
+                assertEquals(values(expected), values(actual), query);
+            }
+        } finally {
+            derby.close();
+            columnar.close();
+        }
+    }
+
+    @Test
+    public void executeUnsupportedQueryWithDerby() throws Exception {
+        final ColumnarTable table = new ColumnarTable("test");
+        try {
+            table.init(new CsvReader(new StringReader(CSV)));
+            table.changeColumnTypes(TYPES);
+            table.setCollectQueryPlans(true);
+
+            final RowReader result = table.executeSql("select num * 2 from test where label = 'a' order by 1");
+
+            assertEquals(Arrays.asList(Arrays.asList(2L), Arrays.asList(8L)), values(result));
+            assertTrue(table.getLastQueryPlan().get().startsWith("Derby fallback"));
+        } finally {
+            table.close();
+        }
+    }
+
+    @Test
+    public void changeColumnTypes() throws Exception {
+        final ColumnarTable table = new ColumnarTable("test");
+        try {
+            table.init(new CsvReader(new StringReader(CSV)));
+            table.changeColumnTypes(TYPES);
+
+            assertEquals(EntryDescriptor.Type.INTEGER, table.getEntryDescriptors().get(0).getType());
+            assertEquals(EntryDescriptor.Type.STRING, table.getEntryDescriptors().get(1).getType());
+            final List<List<Object>> rows = values(table.executeSql("select day, price from test where num = 2"));
+            assertEquals(LocalDate.of(2016, 1, 2), rows.get(0).get(0));
+            assertNull(rows.get(0).get(1));
+            assertFalse(rows.get(0).isEmpty());
+        } finally {
+            table.close();
+        }
+    }
+
+    @Test
+    public void labelDefaultsToName() throws Exception {
+        final ColumnarTable table = new ColumnarTable("t1234");
+        try {
+            assertEquals("t1234", table.getLabel());
+            table.setLabel("logs/*.csv");
+            assertEquals("logs/*.csv", table.getLabel());
+        } finally {
+            table.close();
+        }
+    }
+
+    static List<String> describe(final RowReader reader) {
+        final List<String> descriptors = new ArrayList<>();
+        reader.getEntryDescriptors().forEach(descriptor -> descriptors.add(descriptor.getName() + ":" + descriptor.getType()));
+        return descriptors;
+    }
+
+    static List<List<Object>> values(final RowReader reader) {
+        final List<List<Object>> rows = new ArrayList<>();
+        for (final Row row : reader) {
+            final List<Object> values = new ArrayList<>();
+            for (int i = 0; i < row.size(); i++) {
+                values.add(row.getValue(i));
+            }
+            rows.add(values);
+        }
+        return rows;
+    }
+}
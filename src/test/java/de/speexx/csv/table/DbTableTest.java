@@ -27,6 +27,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import java.util.concurrent.atomic.AtomicInteger;
 import static de.speexx.csv.table.EntryDescriptorBuilder.of;
 import java.util.Iterator;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 public class DbTableTest {
@@ -110,6 +114,110 @@ public class DbTableTest {
         }
     }
     
+    @Test
+    public void reuseStatementForSameQueryShape() throws Exception {
+        try (final InputStream in = DbTableTest.class.getClassLoader().getResourceAsStream("de/speexx/csv/table/typechange.csv");
+             final Reader reader = new InputStreamReader(in);
+             final CsvReader csvReader = new CsvReader(reader)) {
+
+            final DbTable table = new DbTable("test");
+            table.init(csvReader);
+            table.changeColumnTypes(of().addName("sint").addType(EntryDescriptor.Type.INTEGER).build(),
+                                    of().addName("sdate").addType(EntryDescriptor.Type.DATE).build());
+
+            assertEquals(1, count(table.executeSql("select sstring from test where sint = 123")));
+            assertEquals(0, count(table.executeSql("select sstring from test where sint = 124")));
+            assertEquals(1, count(table.executeSql("select sstring from test where sdate = '2016-07-18'")));
+            assertEquals(2, table.getStatementCacheSize());
+
+            // Not convertible to the parameter type, executed with the literal
+            assertEquals(0, count(table.executeSql("select sstring from test where sint = 123.5")));
+        }
+    }
+
+    @Test
+    public void collectQueryPlanWithOriginalNames() throws Exception {
+        try (final InputStream in = DbTableTest.class.getClassLoader().getResourceAsStream("de/speexx/csv/table/typechange.csv");
+             final Reader reader = new InputStreamReader(in);
+             final CsvReader csvReader = new CsvReader(reader)) {
+
+            final DbTable table = new DbTable("test");
+            table.init(csvReader);
+            count(table.executeSql("select sstring from test where sint = '123'"));
+            assertFalse(table.getLastQueryPlan().isPresent());
+
+            table.setCollectQueryPlans(true);
+            count(table.executeSql("select sstring from test where sint = '124'"));
+            count(table.executeSql("select sstring from test where sint = '123'"));
+            final String plan = table.getLastQueryPlan().get();
+            assertTrue(plan.contains("select sstring from test where sint = ?"), plan);
+            assertTrue(plan.contains("Table Scan ResultSet for test"), plan);
+            assertTrue(plan.contains("Rows seen = 1"), plan);
+            assertTrue(plan.contains("next time (milliseconds)"), plan);
+            assertFalse(plan.contains(table.getInternalTableName()), plan);
+
+            table.setCollectQueryPlans(false);
+            assertFalse(table.getLastQueryPlan().isPresent());
+        }
+    }
+
+    @Test
+    public void primitiveAccessOnResult() throws Exception {
+        try (final InputStream in = DbTableTest.class.getClassLoader().getResourceAsStream("de/speexx/csv/table/typechange.csv");
+             final Reader reader = new InputStreamReader(in);
+             final CsvReader csvReader = new CsvReader(reader)) {
+
+            final DbTable table = new DbTable("test");
+            table.init(csvReader);
+            table.changeColumnTypes(of().addName("sint").addType(EntryDescriptor.Type.INTEGER).build(),
+                                    of().addName("sdouble").addType(EntryDescriptor.Type.DECIMAL).build(),
+                                    of().addName("sdate").addType(EntryDescriptor.Type.DATE).build());
+
+            final RowReader rows = table.executeSql("select sint, sdouble, sdate, sstring from test");
+            final Row row = rows.iterator().next();
+            assertEquals(123L, row.getLong(0));
+            assertEquals(1.5, row.getDouble(1));
+            assertEquals(123.0, row.getDouble(0));
+            assertEquals(java.time.LocalDate.of(2016, 7, 18).toEpochDay(), row.getEpochDay(2));
+            assertEquals("abc", row.getValue(3));
+            assertEquals("abc", row.get(3).getValue());
+            assertFalse(row.isNull(0));
+            assertThrows(IncompatibleTypeException.class, () -> row.getLong(3));
+            assertThrows(IndexOutOfBoundsException.class, () -> row.getValue(4));
+
+            final Iterator<Entry> entries = row.iterator();
+            assertEquals(123L, entries.next().getValue());
+            assertEquals(1.5, entries.next().getValue());
+        }
+    }
+
+    @Test
+    public void keepNullValuesOfResult() throws Exception {
+        try (final InputStream in = DbTableTest.class.getClassLoader().getResourceAsStream("de/speexx/csv/table/typechange.csv");
+             final Reader reader = new InputStreamReader(in);
+             final CsvReader csvReader = new CsvReader(reader)) {
+
+            final DbTable table = new DbTable("test");
+            table.init(csvReader);
+            table.changeColumnTypes(of().addName("sint").addType(EntryDescriptor.Type.INTEGER).build(),
+                                    of().addName("sdate").addType(EntryDescriptor.Type.DATE).build());
+
+            final Row row = table.executeSql("select max(sint) as m, max(sdate) as d from test where sstring = 'x'").iterator().next();
+            assertTrue(row.isNull(0));
+            assertTrue(row.isNull(1));
+            assertEquals(0, row.getLong(0));
+            assertEquals(null, row.getValue(1));
+        }
+    }
+
+    static int count(final RowReader rows) {
+        int count = 0;
+        for (final Row row : rows) {
+            count++;
+        }
+        return count;
+    }
+
     @Test
     public void checkScqDbFunctionDayOfWeekAndWeekOfYearForDate() throws Exception {
 
@@ -213,4 +321,15 @@ public class DbTableTest {
             assertEquals(1L, e4.getValue());
         }
     }
+
+    @Test
+    public void rowNumberColumnWithoutKeyDuringLoad() throws Exception {
+        final DbTable table = new DbTable("test");
+        final List<EntryDescriptor> descriptors = Arrays.asList(of().addName("data1").build());
+        table.fillReplacementMap(descriptors);
+        final String createStatement = table.createTableCreateStatement(descriptors);
+
+        assertTrue(createStatement.contains(table.getRowNumberColumnName() + " BIGINT NOT NULL, "));
+        assertFalse(createStatement.contains("PRIMARY KEY"));
+    }
 }
@@ -0,0 +1,145 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.ColumnarTableTest.describe;
+import static de.speexx.csv.table.ColumnarTableTest.values;
+import static de.speexx.csv.table.EntryDescriptorBuilder.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ExternalSortTest {
+
+    private static final String CSV = "num,label,day,price\n"
+                                      + "3,b,2016-01-02,1.5\n"
+                                      + "1,a,2016-01-01,2.5\n"
+                                      + "2,b,2016-01-02,NaN\n"
+                                      + "5,c,2016-01-03,0.5\n"
+                                      + "4,a,2016-01-01,4.0\n"
+                                      + "-1,c,2016-01-05,3.0\n"
+                                      + "6,a,2016-01-03,-2.0\n";
+
+    private static final EntryDescriptor[] TYPES = {
+        of().addName("num").addType(EntryDescriptor.Type.INTEGER).build(),
+        of().addName("day").addType(EntryDescriptor.Type.DATE).build(),
+        of().addName("price").addType(EntryDescriptor.Type.DECIMAL).build()
+    };
+
+    private static final List<String> QUERIES = Arrays.asList(
+            "select num, label, price from test order by price, num",
+            "select num, label, day, price from test where label <> 'c' order by day desc, num",
+            "select label as l, num from test order by l, 2 desc offset 1 rows fetch next 3 rows only",
+            "select num, price from test order by price desc, num fetch first 4 rows only",
+            "select day from test where num > 100 order by day",
+            "select * from test where num > 1 order by label, num desc");
+
+    @Test
+    public void sameResultsAsDerby() throws Exception {
+        final DbTable derby = new DbTable("derby");
+        try {
+            derby.init(new CsvReader(new StringReader(CSV)));
+            derby.changeColumnTypes(TYPES);
+
+            for (final String query : QUERIES) {
+                final RowReader expected = derby.executeSql(query.replace("test", "derby"));
+                final ExternalSort sort = new ExternalSort(1);
+                sort.setCollectQueryPlans(true);
+                final RowReader actual = sort.execute(query, new CsvReader(new StringReader(CSV)), true).get();
+                assertTrue(sort.getLastQueryPlan().get().startsWith("External sort on test"), query);
+                assertEquals(describe(expected), describe(actual), query);
+                assertEquals(values(expected), values(actual), query);
+            }
+        } finally {
+            derby.close();
+        }
+    }
+
+    @Test
+    public void mergeRunsOverMemoryBudget() throws Exception {
+        final StringBuilder csv = new StringBuilder("id,label,amount\n");
+        for (int i = 0; i < 3 * ExternalSort.CHUNK_SIZE; i++) {
+            csv.append(i).append(",l").append(i % 7).append(',').append(i % 100 == 0 ? "" : String.valueOf((i * 31) % 1000 / 10.0)).append('\n');
+        }
+        final String query = "select id, label, amount from test order by amount desc, label, id";
+
+        final ExternalSort inMemory = new ExternalSort(Long.MAX_VALUE);
+        inMemory.setCollectQueryPlans(true);
+        final RowReader expected = inMemory.execute(query, new CsvReader(new StringReader(csv.toString())), true).get();
+        final ExternalSort spilling = new ExternalSort(64 * 1024);
+        spilling.setCollectQueryPlans(true);
+        final RowReader actual = spilling.execute(query, new CsvReader(new StringReader(csv.toString())), true).get();
+
+        assertTrue(inMemory.getLastQueryPlan().get().contains("External sort in 1 runs:"));
+        assertTrue(spilling.getLastQueryPlan().get().contains("rows spilled"));
+        assertEquals(values(expected), values(actual));
+    }
+
+    @Test
+    public void keepTopRowsOfLimitInHeap() throws Exception {
+        final StringBuilder csv = new StringBuilder("id,amount\n");
+        for (int i = 0; i < 2 * ExternalSort.CHUNK_SIZE; i++) {
+            csv.append(i).append(',').append(i % 10).append('\n');
+        }
+        final ExternalSort sort = new ExternalSort(1);
+        sort.setCollectQueryPlans(true);
+
+        final RowReader top = sort.execute("select id from test order by amount desc offset 2 rows fetch next 3 rows only",
+                                           new CsvReader(new StringReader(csv.toString())), true).get();
+
+        assertTrue(sort.getLastQueryPlan().get().contains("Top-N heap sort of 5 rows"));
+        assertEquals(Arrays.asList(Arrays.asList(29L), Arrays.asList(39L), Arrays.asList(49L)), values(top));
+    }
+
+    @Test
+    public void noResultForTypesDifferentFromFirstRows() throws Exception {
+        final StringBuilder csv = new StringBuilder("num,label\n");
+        for (int i = 0; i < ExternalSort.CHUNK_SIZE; i++) {
+            csv.append(i).append(",a\n");
+        }
+        csv.append("1.5,a\n");
+        final ExternalSort sort = new ExternalSort(Long.MAX_VALUE);
+
+        final Optional<RowReader> typed = sort.execute("select num from test order by num",
+                                                       new CsvReader(new StringReader(csv.toString())), true);
+        final Optional<RowReader> strings = sort.execute("select num from test order by num desc fetch first 1 rows only",
+                                                         new CsvReader(new StringReader(csv.toString())), false);
+
+        assertFalse(typed.isPresent());
+        assertEquals(Arrays.asList(Arrays.asList("999")), values(strings.get()));
+    }
+
+    @Test
+    public void rejectUnsupportedQueries() {
+        final ExternalSort sort = new ExternalSort(Long.MAX_VALUE);
+
+        assertThrows(UnsupportedQueryException.class, () -> sort.execute("select num from test", new CsvReader(new StringReader(CSV)), true));
+        assertThrows(UnsupportedQueryException.class, () -> sort.execute("select label, count(*) from test group by label order by label",
+                                                                         new CsvReader(new StringReader(CSV)), true));
+        assertThrows(UnsupportedQueryException.class, () -> sort.execute("select distinct label from test order by label",
+                                                                         new CsvReader(new StringReader(CSV)), true));
+    }
+}
@@ -0,0 +1,141 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.ColumnarTableTest.values;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public class GrowingCsvFileTest {
+
+    @Test
+    public void readOnlyCompleteLines() throws Exception {
+        final Path file = createFile("num,label\n1,a\n2,b\n3,");
+        final GrowingCsvFile csv = new GrowingCsvFile(file);
+
+        try (final RowReader rows = csv.read()) {
+            assertEquals(2, values(rows).size());
+        }
+        assertEquals(18, csv.getOffset());
+        assertFalse(csv.readAppended().isPresent());
+
+        append(file, "c\n4,d\n");
+        try (final RowReader rows = csv.readAppended().get()) {
+            assertEquals(Arrays.asList(Arrays.asList("3", "c"), Arrays.asList("4", "d")), values(rows));
+        }
+        csv.commitAppended();
+        assertFalse(csv.readAppended().isPresent());
+    }
+
+    @Test
+    public void readOnlyCompleteRecords() throws Exception {
+        final Path file = createFile("num,label\n1,\"a\nb\"\n2,\"c\n");
+        final GrowingCsvFile csv = new GrowingCsvFile(file);
+
+        try (final RowReader rows = csv.read()) {
+            assertEquals(Arrays.asList(Arrays.asList("1", "a\nb")), values(rows));
+        }
+        assertFalse(csv.readAppended().isPresent());
+
+        append(file, "d\"\"e\"\n");
+        try (final RowReader rows = csv.readAppended().get()) {
+            assertEquals(Arrays.asList(Arrays.asList("2", "c\nd\"e")), values(rows));
+        }
+    }
+
+    @Test
+    public void readAppendedRowsAgainWithoutCommit() throws Exception {
+        final Path file = createFile("num\n1\n");
+        final GrowingCsvFile csv = new GrowingCsvFile(file);
+        csv.read().close();
+
+        append(file, "2\n");
+        csv.readAppended().get().close();
+        final long offset = csv.getOffset();
+        try (final RowReader rows = csv.readAppended().get()) {
+            assertEquals(Arrays.asList(Arrays.asList("2")), values(rows));
+        }
+        csv.commitAppended();
+        assertEquals(offset + 2, csv.getOffset());
+        assertFalse(csv.readAppended().isPresent());
+    }
+
+    @Test
+    public void refreshWithWidenedColumns() throws Exception {
+        for (final TableBuilder.Engine engine : TableBuilder.Engine.values()) {
+            final Path file = createFile("num,price,day\n1,2,2016-01-01\n2,3,2016-01-02\n");
+            try (final Table table = TableBuilder.of().addName("test").addSource(new GrowingCsvFile(file)).addEngine(engine).build()) {
+                table.changeColumnTypes(descriptor("num", EntryDescriptor.Type.INTEGER), descriptor("price", EntryDescriptor.Type.INTEGER),
+                                        descriptor("day", EntryDescriptor.Type.DATE));
+                assertEquals(0, table.refresh());
+
+                append(file, "3,4.5,2016-01-03\n");
+                assertEquals(1, table.refresh());
+                assertEquals(EntryDescriptor.Type.DECIMAL, table.getEntryDescriptors().get(1).getType());
+                assertEquals(Arrays.asList(Arrays.asList(3L, 9.5)), values(table.executeSql("select count(*), sum(price) from test")), engine.name());
+
+                append(file, "4,1,yesterday\n");
+                assertEquals(1, table.refresh());
+                assertEquals(EntryDescriptor.Type.INTEGER, table.getEntryDescriptors().get(0).getType());
+                assertEquals(EntryDescriptor.Type.STRING, table.getEntryDescriptors().get(2).getType());
+                assertEquals(Arrays.asList(Arrays.asList(4L, "yesterday")), values(table.executeSql("select max(num), max(day) from test")), engine.name());
+            }
+        }
+    }
+
+    @Test
+    public void failOnTruncatedFile() throws Exception {
+        final Path file = createFile("num\n1\n2\n");
+        final GrowingCsvFile csv = new GrowingCsvFile(file);
+        csv.read().close();
+
+        Files.write(file, "num\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(TableException.class, csv::readAppended);
+    }
+
+    @Test
+    public void failOnOtherColumns() throws Exception {
+        try (final Table table = TableBuilder.of().addRowReader(new CsvReader(new StringReader("num\n1\n"))).build()) {
+            assertThrows(TableException.class, () -> table.appendRows(new CsvReader(new StringReader("other\n2\n"))));
+        }
+    }
+
+    static EntryDescriptor descriptor(final String name, final EntryDescriptor.Type type) {
+        return EntryDescriptorBuilder.of().addName(name).addType(type).build();
+    }
+
+    static Path createFile(final String content) throws Exception {
+        final Path file = Files.createTempFile("growing", ".csv");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    static void append(final Path file, final String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,150 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.ColumnarTableTest.describe;
+import static de.speexx.csv.table.ColumnarTableTest.values;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class HashJoinTest {
+
+    private static final String ORDERS = "id,customer,amount\n"
+                                         + "1,10,1.5\n"
+                                         + "2,20,2.5\n"
+                                         + "3,10.0,3.5\n"
+                                         + "4,30,4.5\n"
+                                         + "5,20.5,5.5\n";
+
+    private static final String CUSTOMERS = "id,name\n"
+                                            + "10,a\n"
+                                            + "20,b\n"
+                                            + "20,c\n"
+                                            + "40,d\n";
+
+    @Test
+    public void innerJoinOnTypedKey() throws Exception {
+        final List<String> expected = Arrays.asList("[1, 10, 1.5, 10, a]", "[2, 20, 2.5, 20, b]", "[2, 20, 2.5, 20, c]", "[3, 10.0, 3.5, 10, a]");
+
+        assertEquals(expected, join(false, false));
+        assertEquals(expected, sorted(join(false, true)));
+    }
+
+    @Test
+    public void leftJoinOnBothBuildSides() throws Exception {
+        final List<String> expected = Arrays.asList("[1, 10, 1.5, 10, a]", "[2, 20, 2.5, 20, b]", "[2, 20, 2.5, 20, c]",
+                                                    "[3, 10.0, 3.5, 10, a]", "[4, 30, 4.5, null, null]", "[5, 20.5, 5.5, null, null]");
+
+        assertEquals(expected, join(true, false));
+        assertEquals(expected, sorted(join(true, true)));
+    }
+
+    @Test
+    public void leftJoinOfBuildSourceAddsUnmatchedBuildRows() throws Exception {
+        final HashJoin join = new HashJoin(reader(CUSTOMERS), reader(ORDERS), "customer", "id", true, true, true);
+
+        final List<String> rows = values(join).stream().map(Object::toString).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("[10, a, 1, 10, 1.5]", "[10, a, 3, 10.0, 3.5]", "[20, b, 2, 20, 2.5]", "[20, c, 2, 20, 2.5]",
+                                   "[40, d, null, null, null]"), sorted(rows));
+    }
+
+    @Test
+    public void stringKeysWithoutTypeDetection() throws Exception {
+        final HashJoin join = new HashJoin(reader(ORDERS), reader(CUSTOMERS), "customer", "id", false, false, false);
+
+        assertEquals(Arrays.asList("[1, 10, 1.5, 10, a]", "[2, 20, 2.5, 20, b]", "[2, 20, 2.5, 20, c]"),
+                     values(join).stream().map(Object::toString).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void stringKeysOfBuildSourceWithStrings() throws Exception {
+        final HashJoin join = new HashJoin(reader(ORDERS), reader(CUSTOMERS + "x,e\n"), "customer", "id", false, false, true);
+
+        assertEquals(Arrays.asList("[1, 10, 1.5, 10, a]", "[2, 20, 2.5, 20, b]", "[2, 20, 2.5, 20, c]"),
+                     values(join).stream().map(Object::toString).collect(Collectors.toList()));
+        assertTrue(join.toString().contains("STRING key"));
+    }
+
+    @Test
+    public void rightColumnsWithNamesOfLeftColumnsGetSuffix() throws Exception {
+        final HashJoin join = new HashJoin(reader(ORDERS), reader(CUSTOMERS), "customer", "id", false, false, true);
+
+        assertEquals(Arrays.asList("id:STRING", "customer:STRING", "amount:STRING", "id_2:STRING", "name:STRING"), describe(join));
+    }
+
+    @Test
+    public void batchesContainAllJoinedRows() throws Exception {
+        final StringBuilder orders = new StringBuilder("id,customer\n");
+        for (int i = 0; i < 3 * HashJoin.BATCH_SIZE; i++) {
+            orders.append(i).append(',').append(i % 50).append('\n');
+        }
+        final HashJoin join = new HashJoin(reader(orders.toString()), reader(CUSTOMERS), "customer", "id", false, false, true);
+
+        long rows = 0;
+        for (final Iterator<RowBatch> batches = join.batches(1000); batches.hasNext();) {
+            rows += batches.next().size();
+        }
+
+        // 245 complete cycles of 50 customers with 4 joined rows and 38 customers with 3 joined rows
+        assertEquals(245 * 4 + 3, rows);
+        assertTrue(join.toString().contains("dropped by Bloom filter"));
+    }
+
+    @Test
+    public void buildSourceOfFilesReadInParallel() throws Exception {
+        final Path dir = Files.createTempDirectory("join");
+        final Path first = UnionCsvReaderTest.write(dir.resolve("customers-1.csv"), "id,name\n10,a\n20,b\n");
+        final Path second = UnionCsvReaderTest.write(dir.resolve("customers-2.csv"), "id,name\n20,c\n40,d\n");
+
+        try (final UnionCsvReader customers = new UnionCsvReader(Arrays.asList(first, second), false, 2)) {
+            final HashJoin join = new HashJoin(reader(ORDERS), customers, "customer", "id", false, false, true);
+
+            assertEquals(Arrays.asList("[1, 10, 1.5, 10, a]", "[2, 20, 2.5, 20, b]", "[2, 20, 2.5, 20, c]", "[3, 10.0, 3.5, 10, a]"),
+                         values(join).stream().map(Object::toString).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void rejectConditionWithoutColumnOfEachSource() throws Exception {
+        assertThrows(TableException.class, () -> new HashJoin(reader(ORDERS), reader(CUSTOMERS), "amount", "customer", false, false, true));
+    }
+
+    static List<String> join(final boolean leftJoin, final boolean buildLeft) throws Exception {
+        final HashJoin join = new HashJoin(reader(ORDERS), reader(CUSTOMERS), "customer", "id", leftJoin, buildLeft, true);
+        return values(join).stream().map(Object::toString).collect(Collectors.toList());
+    }
+
+    static List<String> sorted(final List<String> rows) {
+        return rows.stream().sorted().collect(Collectors.toList());
+    }
+
+    static RowReader reader(final String csv) throws Exception {
+        return new CsvReader(new StringReader(csv));
+    }
+}
@@ -0,0 +1,91 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class IndexAdvisorTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("status", "amount", "created", "customer");
+
+    @Test
+    public void detectUsages() {
+        final List<IndexAdvisor.Candidate> candidates = IndexAdvisor.candidates(
+                "select customer, count(*) from t where status = 'OK' and amount >= 100 group by customer order by created", COLUMNS);
+
+        assertEquals(4, candidates.size());
+        assertAll("usage",
+                () -> assertEquals("status", candidates.get(0).getColumn()),
+                () -> assertEquals(IndexAdvisor.Usage.EQUALITY, candidates.get(0).getUsage()),
+                () -> assertEquals("amount", candidates.get(1).getColumn()),
+                () -> assertEquals(IndexAdvisor.Usage.RANGE, candidates.get(1).getUsage()),
+                () -> assertEquals("customer", candidates.get(2).getColumn()),
+                () -> assertEquals(IndexAdvisor.Usage.SORT, candidates.get(2).getUsage()),
+                () -> assertEquals("created", candidates.get(3).getColumn()),
+                () -> assertEquals(IndexAdvisor.Usage.SORT, candidates.get(3).getUsage()));
+    }
+
+    @Test
+    public void columnNamesInLiteralsIgnored() {
+        final List<IndexAdvisor.Candidate> candidates = IndexAdvisor.candidates("select * from t where customer = 'status = 1'", COLUMNS);
+        assertEquals(1, candidates.size());
+        assertEquals("customer", candidates.get(0).getColumn());
+    }
+
+    @Test
+    public void predicateIndexNeedsRepeatedExecution() {
+        final IndexAdvisor.Candidate candidate = new IndexAdvisor.Candidate("status", IndexAdvisor.Usage.EQUALITY);
+        assertAll("worthwhile",
+                () -> assertFalse(IndexAdvisor.isWorthwhile(candidate, 100, 1000)),
+                () -> assertFalse(IndexAdvisor.isWorthwhile(candidate, 1_000_000, 1)),
+                () -> assertTrue(IndexAdvisor.isWorthwhile(candidate, 1_000_000, 100)));
+    }
+
+    @Test
+    public void sortIndexNeedsRepeatedExecution() {
+        final IndexAdvisor.Candidate candidate = new IndexAdvisor.Candidate("created", IndexAdvisor.Usage.SORT);
+        assertAll("worthwhile",
+                () -> assertFalse(IndexAdvisor.isWorthwhile(candidate, 1_000_000, 1)),
+                () -> assertTrue(IndexAdvisor.isWorthwhile(candidate, 1_000_000, 10)));
+    }
+
+    @Test
+    public void createIndexOnTable() throws Exception {
+        final StringBuilder csv = new StringBuilder("status,amount\n");
+        for (int i = 0; i < IndexAdvisor.MIN_ROWS; i++) {
+            csv.append(i % 2 == 0 ? "OK" : "ERR").append(',').append(i).append('\n');
+        }
+        try (final CsvReader reader = new CsvReader(new StringReader(csv.toString()))) {
+            final DbTable table = new DbTable("indexed");
+            table.init(reader);
+
+            assertEquals(Arrays.asList("status"), table.createIndexesFor("select amount from indexed where status = 'OK'", 100));
+            assertTrue(table.createIndexesFor("select amount from indexed where status = 'ERR'", 100).isEmpty());
+
+            final RowReader rows = table.executeSql("select count(*) from indexed where status = 'OK'");
+            assertEquals(500L, rows.iterator().next().iterator().next().getValue());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.ColumnarTableTest.describe;
+import static de.speexx.csv.table.ColumnarTableTest.values;
+import static de.speexx.csv.table.EntryDescriptorBuilder.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ParallelAggregationTest {
+
+    private static final String CSV = "num,label,day,price\n"
+                                      + "3,b,2016-01-02,1.5\n"
+                                      + "1,a,2016-01-01,2.5\n"
+                                      + "2,b,2016-01-02,NaN\n"
+                                      + "5,c,2016-01-03,0.5\n"
+                                      + "4,a,2016-01-01,4.0\n"
+                                      + "-1,c,2016-01-05,3.0\n"
+                                      + "2,a,2016-01-03,-0.0\n";
+
+    private static final EntryDescriptor[] TYPES = {
+        of().addName("num").addType(EntryDescriptor.Type.INTEGER).build(),
+        of().addName("day").addType(EntryDescriptor.Type.DATE).build(),
+        of().addName("price").addType(EntryDescriptor.Type.DECIMAL).build()
+    };
+
+    private static final List<String> QUERIES = Arrays.asList(
+            "select label, count(*), sum(num) as total, avg(num), min(day), max(price) from test group by label",
+            "select day, count(price), count(distinct label) from test where price is not null group by day order by 2 desc, day",
+            "select price, label, count(*) from test group by price, label order by price, label",
+            "select num, sum(price), max(label) from test where label <> 'c' group by num order by num desc fetch first 2 rows only",
+            "select count(*), sum(price), min(label), count(distinct day) from test where num > 100",
+            "select count(*), avg(price), max(day) from test",
+            "select distinct count(*) from test group by day order by 1");
+
+    @Test
+    public void sameResultsAsDerby() throws Exception {
+        final DbTable derby = new DbTable("derby");
+        try {
+            derby.init(new CsvReader(new StringReader(CSV)));
+            derby.changeColumnTypes(TYPES);
+
+            for (final String query : QUERIES) {
+                final RowReader expected = derby.executeSql(query.replace("test", "derby"));
+                final ParallelAggregation aggregation = new ParallelAggregation(3, 1024 * 1024);
+                aggregation.setCollectQueryPlans(true);
+                final RowReader actual = aggregation.execute(query, new CsvReader(new StringReader(CSV)), true).get();
+                assertTrue(aggregation.getLastQueryPlan().get().startsWith("Parallel aggregation on test"), query);
+                assertEquals(describe(expected), describe(actual), query);
+                assertEquals(values(expected), values(actual), query);
+            }
+        } finally {
+            derby.close();
+        }
+    }
+
+    @Test
+    public void spillGroupsOverMemoryBudget() throws Exception {
+        final StringBuilder csv = new StringBuilder("id,label,amount\n");
+        for (int i = 0; i < 3 * ParallelAggregation.CHUNK_SIZE; i++) {
+            csv.append(i % 5000).append(",l").append(i % 7).append(',').append(i % 100).append('\n');
+        }
+        final String query = "select id, label, count(*), sum(amount), count(distinct amount) from test group by id, label order by id, label";
+
+        final ParallelAggregation inMemory = new ParallelAggregation(2, Long.MAX_VALUE);
+        final RowReader expected = inMemory.execute(query, new CsvReader(new StringReader(csv.toString())), true).get();
+        final ParallelAggregation spilling = new ParallelAggregation(2, 1);
+        spilling.setCollectQueryPlans(true);
+        final RowReader actual = spilling.execute(query, new CsvReader(new StringReader(csv.toString())), true).get();
+
+        assertTrue(spilling.getLastQueryPlan().get().contains("groups spilled"));
+        assertFalse(inMemory.getLastQueryPlan().isPresent());
+        assertEquals(values(expected), values(actual));
+    }
+
+    @Test
+    public void noResultForTypesDifferentFromFirstRows() throws Exception {
+        final StringBuilder csv = new StringBuilder("num,label\n");
+        for (int i = 0; i < ParallelAggregation.CHUNK_SIZE; i++) {
+            csv.append(i).append(",a\n");
+        }
+        csv.append("1.5,a\n");
+        final ParallelAggregation aggregation = new ParallelAggregation(2, Long.MAX_VALUE);
+
+        final Optional<RowReader> typed = aggregation.execute("select label, sum(num) from test group by label",
+                                                              new CsvReader(new StringReader(csv.toString())), true);
+        final Optional<RowReader> strings = aggregation.execute("select label, max(num) from test group by label",
+                                                                new CsvReader(new StringReader(csv.toString())), false);
+
+        assertFalse(typed.isPresent());
+        assertEquals(Arrays.asList(Arrays.asList("a", "999")), values(strings.get()));
+    }
+
+    @Test
+    public void rejectUnsupportedQueries() {
+        final ParallelAggregation aggregation = new ParallelAggregation(1, Long.MAX_VALUE);
+
+        assertThrows(UnsupportedQueryException.class, () -> aggregation.execute("select num from test", new CsvReader(new StringReader(CSV)), true));
+        assertThrows(UnsupportedQueryException.class, () -> aggregation.execute("select sum(label) from test", new CsvReader(new StringReader(CSV)), true));
+    }
+}
@@ -0,0 +1,54 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+
+public class QueryShapeTest {
+
+    @Test
+    public void replaceComparedLiterals() {
+        final QueryShape shape = QueryShape.of("select name from t where id >= 10 and name like 'a%' and day = '2016-08-02'");
+        assertEquals("select name from t where id >= ? and name like ? and day = ?", shape.getShape());
+        assertEquals(Arrays.asList("10", "a%", "2016-08-02"), shape.getParameters());
+    }
+
+    @Test
+    public void sameShapeForDifferentLiterals() {
+        assertEquals(QueryShape.of("select * from t where id = 1").getShape(),
+                     QueryShape.of("select * from t where id = 2").getShape());
+    }
+
+    @Test
+    public void keepLiteralsOutsideOfComparisons() {
+        final QueryShape shape = QueryShape.of("select 'x = 1', substr(name, 1, 3) from t fetch first 10 rows only");
+        assertFalse(shape.hasParameters());
+        assertEquals("select 'x = 1', substr(name, 1, 3) from t fetch first 10 rows only", shape.getShape());
+    }
+
+    @Test
+    public void unescapeQuotes() {
+        final QueryShape shape = QueryShape.of("select * from t where name <> 'O''Neil'");
+        assertEquals("select * from t where name <> ?", shape.getShape());
+        assertEquals(Arrays.asList("O'Neil"), shape.getParameters());
+    }
+}
@@ -0,0 +1,137 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.EntryDescriptorBuilder.of;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class RowBatchTest {
+
+    @Test
+    public void csvBatches() throws Exception {
+        try (final CsvReader reader = new CsvReader(new StringReader("a,b\n1,x\n2,y\n3,z\n"))) {
+            final Iterator<RowBatch> batches = reader.batches(2);
+
+            final RowBatch first = batches.next();
+            assertEquals(2, first.size());
+            assertEquals(2, first.getColumnCount());
+            assertEquals("b", first.getColumn(1).getDescriptor().getName());
+            assertArrayEquals(new Object[] {"1", "2"}, Arrays.copyOf(first.getColumn(0).getObjects(), 2));
+            assertEquals("y", first.getRow(1).getValue(1));
+
+            final RowBatch second = batches.next();
+            assertSame(first, second);
+            assertEquals(1, second.size());
+            assertEquals("z", second.getColumn(1).getObjects()[0]);
+            assertFalse(batches.hasNext());
+        }
+    }
+
+    @Test
+    public void batchesOfRowIterator() throws Exception {
+        final List<EntryDescriptor> descriptors = Arrays.asList(
+                of().addName("n").addType(EntryDescriptor.Type.INTEGER).build(),
+                of().addName("d").addType(EntryDescriptor.Type.DATE).build());
+        final Row row = new Row() {
+            @Override public int size() {return 2;}
+            @Override public Iterator<Entry> iterator() {
+                return Arrays.<Entry>asList(VectorRow.toEntry(descriptors.get(0), 5L),
+                                            VectorRow.toEntry(descriptors.get(1), null)).iterator();
+            }
+        };
+        final RowReader reader = new RowReader() {
+            @Override public List<EntryDescriptor> getEntryDescriptors() {return descriptors;}
+            @Override public Iterator<Row> iterator() {return Arrays.asList(row, row, row).iterator();}
+            @Override public void close() {}
+        };
+
+        final RowBatch batch = reader.batches(10).next();
+        assertEquals(3, batch.size());
+        assertEquals(5L, batch.getColumn(0).getLongs()[2]);
+        assertEquals(5L, batch.getRow(2).getLong(0));
+        assertTrue(batch.getColumn(1).isNull(1));
+        assertEquals(0b111L, batch.getColumn(1).getNulls()[0]);
+    }
+
+    @Test
+    public void nullBitmapAndGrowth() {
+        final ColumnVector vector = new ColumnVector(of().addName("d").addType(EntryDescriptor.Type.DATE).build(), 2);
+        vector.ensureCapacity(100);
+        vector.setValue(70, LocalDate.of(2016, 8, 3));
+        vector.setNull(71);
+
+        assertTrue(vector.getCapacity() >= 100);
+        assertEquals(LocalDate.of(2016, 8, 3), vector.getValue(70));
+        assertEquals(LocalDate.of(2016, 8, 3).toEpochDay(), vector.getEpochDay(70));
+        assertTrue(vector.isNull(71));
+        assertFalse(vector.isNull(70));
+
+        vector.setLong(71, 1);
+        assertFalse(vector.isNull(71));
+    }
+
+    @Test
+    public void splitVectorRowsByIndexRange() {
+        final ColumnVector vector = new ColumnVector(of().addName("n").addType(EntryDescriptor.Type.INTEGER).build(), 10);
+        for (int i = 0; i < 10; i++) {
+            vector.setLong(i, i);
+        }
+        final Spliterator<Row> rows = new VectorRowSpliterator(new ColumnVector[] {vector}, 0, 10);
+        assertTrue(rows.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+
+        final Spliterator<Row> prefix = rows.trySplit();
+        assertEquals(5, prefix.estimateSize());
+        assertEquals(5, rows.estimateSize());
+        assertEquals(45L, StreamSupport.stream(new VectorRowSpliterator(new ColumnVector[] {vector}, 0, 10), true)
+                                       .mapToLong(row -> row.getLong(0)).sum());
+    }
+
+    @Test
+    public void parallelStreamOfCsvRows() throws Exception {
+        final int count = 3 * RowBatchSpliterator.SPLIT_SIZE + 7;
+        final StringBuilder csv = new StringBuilder("n,label\n");
+        for (int i = 0; i < count; i++) {
+            csv.append(i).append(",x").append(i).append('\n');
+        }
+        try (final CsvReader reader = new CsvReader(new StringReader(csv.toString()))) {
+            final Spliterator<Row> rows = reader.spliterator();
+            final Spliterator<Row> first = rows.trySplit();
+            assertEquals(RowBatchSpliterator.SPLIT_SIZE, first.getExactSizeIfKnown());
+            assertEquals("0", StreamSupport.stream(first, false).findFirst().get().getValue(0));
+
+            final List<Row> rest = StreamSupport.stream(rows, true).collect(Collectors.toList());
+            assertEquals(count - RowBatchSpliterator.SPLIT_SIZE, rest.size());
+            assertEquals(String.valueOf(RowBatchSpliterator.SPLIT_SIZE), rest.get(0).getValue(0));
+            assertEquals("x" + (count - 1), rest.get(rest.size() - 1).getValue(1));
+        }
+    }
+}
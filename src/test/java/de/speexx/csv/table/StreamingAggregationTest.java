@@ -0,0 +1,215 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import de.speexx.csv.table.query.UnsupportedQueryException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import static de.speexx.csv.table.ColumnarTableTest.values;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class StreamingAggregationTest {
+
+    private static final String CSV = "num,label,day,price\n"
+                                      + "3,b,2016-01-02,1.5\n"
+                                      + "1,a,2016-01-01,2.5\n"
+                                      + "2,b,2016-01-02,NaN\n"
+                                      + "5,c,2016-01-03,0.5\n"
+                                      + "4,a,2016-01-01,4.0\n"
+                                      + "-1,c,2016-01-05,3.0\n"
+                                      + "2,a,2016-01-03,-0.0\n";
+
+    private static final List<String> QUERIES = Arrays.asList(
+            "select label, count(*), sum(num) as total, avg(num), min(day), max(price) from test group by label",
+            "select num, sum(price), max(label) from test where label <> 'c' group by num order by num desc fetch first 2 rows only",
+            "select count(*), sum(price), min(label) from test where num > 100",
+            "select count(*), avg(price), max(day) from test");
+
+    @Test
+    public void sameResultsAsParallelAggregation() throws Exception {
+        for (final String query : QUERIES) {
+            final RowReader expected = new ParallelAggregation(2, Long.MAX_VALUE).execute(query, new CsvReader(new StringReader(CSV)), true).get();
+            final StreamingAggregation aggregation = new StreamingAggregation();
+            aggregation.setCollectQueryPlans(true);
+            final RowReader actual = aggregation.execute(query, new CsvReader(new StringReader(CSV)), true).get();
+            assertTrue(aggregation.getLastQueryPlan().get().startsWith("Streaming aggregation on test"), query);
+            assertEquals(values(expected), values(actual), query);
+        }
+    }
+
+    @Test
+    public void emitIntermediateResults() throws Exception {
+        final BlockingQueue<RowReader> emitted = new LinkedBlockingQueue<>();
+        final StreamingAggregation aggregation = new StreamingAggregation(10, emitted::add);
+        final PipedWriter writer = new PipedWriter();
+        final PipedReader reader = new PipedReader(writer);
+        writer.write("label,num\na,1\nb,2\na,3\n");
+        writer.flush();
+
+        final Thread producer = new Thread(() -> {
+            try {
+                final RowReader first = emitted.poll(10, TimeUnit.SECONDS);
+                assertEquals(Arrays.asList(Arrays.asList("a", 2L, 4L), Arrays.asList("b", 1L, 2L)), values(first));
+                writer.write("b,4\n");
+                writer.close();
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        producer.start();
+        final RowReader result = aggregation.execute("select label, count(*), sum(num) from test group by label order by label",
+                                                     new CsvReader(reader), true).get();
+        producer.join();
+
+        assertEquals(Arrays.asList(Arrays.asList("a", 2L, 4L), Arrays.asList("b", 2L, 6L)), values(result));
+    }
+
+    @Test
+    public void failOnTypesDifferentFromFirstRows() throws Exception {
+        final StringBuilder csv = new StringBuilder("num,label\n");
+        for (int i = 0; i < StreamingAggregation.CHUNK_SIZE; i++) {
+            csv.append(i).append(",a\n");
+        }
+        csv.append("1.5,a\n");
+
+        assertThrows(TableException.class, () -> new StreamingAggregation().execute("select label, sum(num) from test group by label",
+                                                                                     new CsvReader(new StringReader(csv.toString())), true));
+    }
+
+    @Test
+    public void rejectUnsupportedQueries() {
+        final StreamingAggregation aggregation = new StreamingAggregation();
+
+        assertThrows(UnsupportedQueryException.class, () -> aggregation.execute("select num from test", new CsvReader(new StringReader(CSV)), true));
+        assertThrows(UnsupportedQueryException.class, () -> aggregation.execute("select count(distinct label) from test", new CsvReader(new StringReader(CSV)), true));
+    }
+
+    @Test
+    public void tumblingWindows() throws Exception {
+        final List<RowReader> emitted = new ArrayList<>();
+        final StreamingAggregation aggregation = new StreamingAggregation(0, TimeWindow.tumbling("ts", Duration.ofMinutes(1)), emitted::add);
+        aggregation.setCollectQueryPlans(true);
+        final String csv = "ts,label,num\n"
+                           + "2020-01-01T10:00:10,a,1\n"
+                           + "2020-01-01T10:00:50,b,2\n"
+                           + "2020-01-01T10:02:30,a,3\n"
+                           // Behind the watermark 10:02:30 without lateness
+                           + "2020-01-01T10:00:40,a,4\n";
+
+        final RowReader result = aggregation.execute("select label, count(*), sum(num) from test group by label order by 3",
+                                                     new CsvReader(new StringReader(csv)), true).get();
+
+        assertEquals(2, emitted.size());
+        assertEquals(Arrays.asList(Arrays.asList(time(10, 0), time(10, 1), "a", 1L, 1L),
+                                   Arrays.asList(time(10, 0), time(10, 1), "b", 1L, 2L)), values(emitted.get(0)));
+        assertEquals(Arrays.asList(Arrays.asList(time(10, 2), time(10, 3), "a", 1L, 3L)), values(emitted.get(1)));
+        assertEquals(Arrays.asList("window_start", "window_end", "label"),
+                     result.getEntryDescriptors().stream().map(EntryDescriptor::getName).limit(3).collect(Collectors.toList()));
+        assertTrue(values(result).isEmpty());
+        assertTrue(aggregation.getLastQueryPlan().get().contains("1 late rows"));
+    }
+
+    @Test
+    public void acceptRowsWithinTheLateness() throws Exception {
+        final List<RowReader> emitted = new ArrayList<>();
+        final TimeWindow window = new TimeWindow("ts", Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(2));
+        final StreamingAggregation aggregation = new StreamingAggregation(0, window, emitted::add);
+        aggregation.setCollectQueryPlans(true);
+        final String csv = "ts,label,num\n"
+                           + "2020-01-01T10:00:10,a,1\n"
+                           + "2020-01-01T10:02:30,a,3\n"
+                           // The watermark is 10:00:30
+                           + "2020-01-01T10:00:40,a,4\n"
+                           + "2020-01-01T10:03:30,a,5\n"
+                           // The watermark 10:01:30 closed the first window
+                           + "2020-01-01T10:00:50,a,6\n";
+
+        aggregation.execute("select label, count(*), sum(num) from test group by label", new CsvReader(new StringReader(csv)), true);
+
+        assertEquals(Arrays.asList(Arrays.asList(time(10, 0), time(10, 1), "a", 2L, 5L)), values(emitted.get(0)));
+        assertTrue(aggregation.getLastQueryPlan().get().contains("1 late rows"));
+    }
+
+    @Test
+    public void slidingWindows() throws Exception {
+        final List<RowReader> emitted = new ArrayList<>();
+        final TimeWindow window = new TimeWindow("ts", Duration.ofMinutes(2), Duration.ofMinutes(1), Duration.ZERO);
+        final String csv = "ts\n2020-01-01T10:00:10\n2020-01-01T10:01:20\n2020-01-01T10:02:30\n2020-01-01T10:06:00\n";
+
+        new StreamingAggregation(0, window, emitted::add).execute("select count(*) from test", new CsvReader(new StringReader(csv)), true);
+
+        final List<List<Object>> rows = new ArrayList<>();
+        emitted.forEach(result -> rows.addAll(values(result)));
+        assertEquals(Arrays.asList(Arrays.asList(time(9, 59), time(10, 1), 1L),
+                                   Arrays.asList(time(10, 0), time(10, 2), 2L),
+                                   Arrays.asList(time(10, 1), time(10, 3), 2L),
+                                   Arrays.asList(time(10, 2), time(10, 4), 1L),
+                                   Arrays.asList(time(10, 5), time(10, 7), 1L),
+                                   Arrays.asList(time(10, 6), time(10, 8), 1L)), rows);
+    }
+
+    @Test
+    public void dropRowsLaterThanTheLateness() throws Exception {
+        final List<RowReader> emitted = new ArrayList<>();
+        final TimeWindow window = new TimeWindow("ts", Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(2));
+        final StreamingAggregation aggregation = new StreamingAggregation(0, window, emitted::add);
+        aggregation.setCollectQueryPlans(true);
+        final StringBuilder csv = new StringBuilder("ts\n");
+        for (int i = 0; i < StreamingAggregation.CHUNK_SIZE; i++) {
+            csv.append(i < StreamingAggregation.CHUNK_SIZE / 2 ? "2020-01-01T10:00:00\n" : "2020-01-01T10:05:00\n");
+        }
+        // Late for the first window, in time for the fourth window
+        csv.append("2020-01-01T10:00:30\n2020-01-01T10:03:30\n");
+
+        aggregation.execute("select count(*) from test", new CsvReader(new StringReader(csv.toString())), true);
+
+        final List<List<Object>> rows = new ArrayList<>();
+        emitted.forEach(result -> rows.addAll(values(result)));
+        final long half = StreamingAggregation.CHUNK_SIZE / 2;
+        assertEquals(Arrays.asList(Arrays.asList(time(10, 0), time(10, 1), half),
+                                   Arrays.asList(time(10, 3), time(10, 4), 1L),
+                                   Arrays.asList(time(10, 5), time(10, 6), half)), rows);
+        assertTrue(aggregation.getLastQueryPlan().get().contains("1 late rows"));
+    }
+
+    @Test
+    public void rejectWindowsOnOtherColumns() {
+        final StreamingAggregation aggregation = new StreamingAggregation(0, TimeWindow.tumbling("label", Duration.ofHours(1)), rows -> {});
+        assertThrows(TableException.class, () -> aggregation.execute("select count(*) from test", new CsvReader(new StringReader(CSV)), true));
+        final StreamingAggregation unknown = new StreamingAggregation(0, TimeWindow.tumbling("ts", Duration.ofHours(1)), rows -> {});
+        assertThrows(TableException.class, () -> unknown.execute("select count(*) from test", new CsvReader(new StringReader(CSV)), true));
+    }
+
+    static LocalDateTime time(final int hour, final int minute) {
+        return LocalDateTime.of(2020, 1, 1, hour, minute);
+    }
+}
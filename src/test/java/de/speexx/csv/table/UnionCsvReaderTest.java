@@ -0,0 +1,95 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Collectors;
+import static de.speexx.csv.table.util.IteratorSupport.asStream;
+import static de.speexx.csv.table.EntryDescriptorBuilder.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+public class UnionCsvReaderTest {
+
+    @Test
+    public void loadFilesWithFileColumns() throws Exception {
+        final Path dir = Files.createTempDirectory("union");
+        final Path day1 = write(dir.resolve("2016-08-01.csv"), "amount,label\n1,x\n2,y\n");
+        final Path day2 = write(dir.resolve("2016-08-02.csv"), "amount,label\n3,z\n");
+
+        try (final UnionCsvReader reader = new UnionCsvReader(Arrays.asList(day1, day2), true, 2)) {
+            assertEquals(4, reader.getEntryDescriptors().size());
+            assertEquals(UnionCsvReader.FILE_COLUMN_NAME, reader.getEntryDescriptors().get(2).getName());
+            assertEquals(UnionCsvReader.FILE_DATE_COLUMN_NAME, reader.getEntryDescriptors().get(3).getName());
+
+            final DbTable table = new DbTable("union");
+            table.init(reader);
+            table.changeColumnTypes(of().addName("amount").addType(EntryDescriptor.Type.INTEGER).build(),
+                                    of().addName(UnionCsvReader.FILE_DATE_COLUMN_NAME).addType(EntryDescriptor.Type.DATE).build());
+
+            final RowReader all = table.executeSql("select sum(amount) as total from union");
+            assertEquals(6L, all.iterator().next().iterator().next().getValue());
+
+            final RowReader late = table.executeSql("select amount, _file from union where _file_date >= '2016-08-02'");
+            final Iterator<Row> rows = late.iterator();
+            final Iterator<Entry> entries = rows.next().iterator();
+            assertEquals(3L, entries.next().getValue());
+            assertEquals(day2.toString(), entries.next().getValue());
+            assertEquals(false, rows.hasNext());
+        }
+    }
+
+    @Test
+    public void parallelStreamOverFiles() throws Exception {
+        final Path dir = Files.createTempDirectory("union");
+        final Path day1 = write(dir.resolve("2016-08-01.csv"), "amount,label\n1,x\n2,y\n");
+        final Path day2 = write(dir.resolve("2016-08-02.csv"), "amount,label\n3,z\n");
+        final Path day3 = write(dir.resolve("2016-08-03.csv"), "amount,label\n4,v\n5,w\n");
+
+        try (final UnionCsvReader reader = new UnionCsvReader(Arrays.asList(day1, day2, day3), true, 1)) {
+            final Map<Object, Long> amountByDate = asStream(reader, true).collect(
+                    Collectors.groupingBy(row -> row.getValue(3),
+                                          Collectors.summingLong(row -> Long.parseLong((String) row.getValue(0)))));
+            assertEquals(3, amountByDate.size());
+            assertEquals(3L, amountByDate.get("2016-08-01").longValue());
+            assertEquals(3L, amountByDate.get("2016-08-02").longValue());
+            assertEquals(9L, amountByDate.get("2016-08-03").longValue());
+        }
+    }
+
+    @Test
+    public void differentHeaders() throws Exception {
+        final Path dir = Files.createTempDirectory("union");
+        final Path first = write(dir.resolve("first.csv"), "a,b\n1,x\n");
+        final Path second = write(dir.resolve("second.csv"), "a,c\n1,x\n");
+
+        assertThrows(TableException.class, () -> new UnionCsvReader(Arrays.asList(first, second), false, 1));
+    }
+
+    static Path write(final Path file, final String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        file.toFile().deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,79 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import de.speexx.csv.table.TableException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.expectThrows;
+
+
+public class ApplicationTest {
+
+    @Test
+    public void prefilterNotAppliedToStandardInput() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Application application = applicationOf(out, "num,word\n1,a\n2,b\nfoo,c\n3,d\n");
+
+        application.run("--prefilter", "select", "num,", "word", "from", "-", "where", "num", ">", "1");
+
+        assertEquals("num,word\n2,b\nfoo,c\n3,d\n", normalized(out));
+    }
+
+    @Test
+    public void shellReadsInputOfApplication() throws Exception {
+        final Path csv = Files.createTempFile("shell", ".csv");
+        csv.toFile().deleteOnExit();
+        Files.write(csv, "label,amount\nx,1\ny,2\n".getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Application application = applicationOf(out, "select sum(amount) as total from " + csv + "\n\\q\n");
+
+        application.run("-i", csv.toString());
+
+        assertTrue(normalized(out).startsWith("TOTAL\n3\n"), normalized(out));
+    }
+
+    @Test
+    public void shellWithoutInput() throws Exception {
+        final Path csv = Files.createTempFile("shell", ".csv");
+        csv.toFile().deleteOnExit();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PrintStream print = new PrintStream(out, true);
+        final Application application = new Application(print, print, null, null, Paths.get(""));
+
+        final TableException e = expectThrows(TableException.class, () -> application.run("-i", csv.toString()));
+        assertEquals("No standard input available", e.getMessage());
+    }
+
+    static Application applicationOf(final ByteArrayOutputStream out, final String input) {
+        final PrintStream print = new PrintStream(out, true);
+        return new Application(print, print, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), null, Paths.get(""));
+    }
+
+    static String normalized(final ByteArrayOutputStream out) {
+        return out.toString().replace("\r\n", "\n");
+    }
+}
@@ -18,8 +18,13 @@
 package de.speexx.csv.table.app;
 
 import com.beust.jcommander.JCommander;
+import de.speexx.csv.table.TableException;
+import de.speexx.csv.table.TimeWindow;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
 public class ConfigurationTest {
@@ -32,4 +37,43 @@ public class ConfigurationTest {
         jc.parse("Select", "*", "from", "'dummy host'");
         assertEquals("Select * from 'dummy host'", conf.getQueryData().getQueryData().getOriginalQuery().getQuery());
     }
+
+    @Test
+    public void standardInputSource() {
+        final Configuration conf = new Configuration();
+        final JCommander jc = new JCommander(conf);
+
+        jc.parse(Configuration.withStandardInputAlias("--emit-interval", "5", "select", "count(*)", "from", "-"));
+        assertEquals("select count(*) from /dev/stdin", conf.getQueryData().getQueryData().getOriginalQuery().getQuery());
+        assertEquals(5000, conf.getEmitIntervalMillis());
+    }
+
+    @Test
+    public void timeWindow() {
+        final Configuration conf = new Configuration();
+        new JCommander(conf).parse("--window", "ts,10m,30", "--lateness", "500ms", "select", "count(*)", "from", "x");
+        final TimeWindow window = conf.getWindow().get();
+        assertEquals("ts", window.getColumn());
+        assertEquals(600_000, window.getSizeMillis());
+        assertEquals(30_000, window.getSlideMillis());
+        assertEquals(500, window.getLatenessMillis());
+
+        assertFalse(new Configuration().getWindow().isPresent());
+        final Configuration invalid = new Configuration();
+        new JCommander(invalid).parse("--window", "ts,10m,7m", "select", "count(*)", "from", "x");
+        assertThrows(TableException.class, invalid::getWindow);
+        assertThrows(TableException.class, () -> Configuration.durationOf("1w"));
+    }
+
+    @Test
+    public void charset() {
+        assertEquals(StandardCharsets.UTF_8, new Configuration().getCharset());
+        final Configuration conf = new Configuration();
+        new JCommander(conf).parse("--charset", "latin1", "select", "*", "from", "x");
+        assertEquals(StandardCharsets.ISO_8859_1, conf.getCharset());
+
+        final Configuration unknown = new Configuration();
+        new JCommander(unknown).parse("--charset", "no-such-charset", "select", "*", "from", "x");
+        assertThrows(TableException.class, unknown::getCharset);
+    }
 }
@@ -0,0 +1,102 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class PhaseStatisticsTest {
+
+    @Test
+    public void reportAllPhasesAsJson() throws Exception {
+        final Path csv = Files.createTempFile("stats", ".csv");
+        csv.toFile().deleteOnExit();
+        final byte[] content = "label,amount\nx,1\ny,2\ny,3\n".getBytes();
+        Files.write(csv, content);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final Application application = new Application(new PrintStream(out, true), new PrintStream(err, true), null, Paths.get(""));
+        application.run("--stats", "--stats-format", "json", "select", "label", "from", csv.toString(), "where", "amount", ">", "1");
+
+        assertEquals("label\r\ny\r\ny\r\n", out.toString());
+        final String json = err.toString();
+        for (final PhaseStatistics.Phase phase : PhaseStatistics.Phase.values()) {
+            assertTrue(json.contains("{\"phase\":\"" + phase.label() + "\""), json);
+        }
+        assertTrue(json.contains("{\"phase\":\"parse\",\"millis\":"), json);
+        assertTrue(json.contains("\"rows\":3,\"bytes\":" + content.length + ","), json);
+        assertTrue(json.contains("{\"phase\":\"export\",\"millis\":"), json);
+        assertTrue(json.contains("\"rows\":2,\"bytes\":" + out.size() + ","), json);
+    }
+
+    @Test
+    public void exportInCharsetOfOutput() throws Exception {
+        final Path csv = Files.createTempFile("stats", ".csv");
+        csv.toFile().deleteOnExit();
+        Files.write(csv, "label,amount\nx,1\ny\u00e4,2\n".getBytes(StandardCharsets.UTF_8));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final Application application = new Application(new PrintStream(out, true, StandardCharsets.UTF_16LE.name()), StandardCharsets.UTF_16LE,
+                                                        new PrintStream(err, true), null, null, Paths.get(""));
+        application.run("--stats", "--stats-format", "json", "select", "label", "from", csv.toString(), "where", "amount", ">", "1");
+
+        assertEquals("label\r\ny\u00e4\r\n", new String(out.toByteArray(), StandardCharsets.UTF_16LE));
+        assertTrue(err.toString().contains("\"rows\":1,\"bytes\":" + out.size() + ","), err.toString());
+    }
+
+    @Test
+    public void subtractParseTimeFromInsert() throws Exception {
+        final PhaseStatistics statistics = new PhaseStatistics();
+        final PhaseStatistics.Mark mark = statistics.mark();
+        final PhaseStatistics.Counter parse = statistics.counter(PhaseStatistics.Phase.PARSE);
+        statistics.detecting(row -> sleep()).collectRowData(null);
+        final PhaseStatistics.Counter insert = statistics.endLoad(mark);
+
+        assertTrue(statistics.counter(PhaseStatistics.Phase.DETECT).getMillis() >= 20);
+        assertEquals(1, statistics.counter(PhaseStatistics.Phase.DETECT).getRows());
+        assertTrue(insert.getMillis() < 20, "insert " + insert.getMillis());
+        assertEquals(0, parse.getRows());
+    }
+
+    @Test
+    public void reportAsTable() {
+        final String table = new PhaseStatistics().toTable();
+        final String[] lines = table.split("\\r?\\n");
+        assertEquals(PhaseStatistics.Phase.values().length + 1, lines.length);
+        assertTrue(lines[0].startsWith("phase"), lines[0]);
+        assertTrue(lines[7].startsWith("export"), lines[7]);
+    }
+
+    static void sleep() {
+        try {
+            Thread.sleep(25);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
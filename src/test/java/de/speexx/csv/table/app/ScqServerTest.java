@@ -0,0 +1,119 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ScqServerTest {
+
+    @Test
+    public void createOwnerOnlyToken() throws Exception {
+        final Path dir = Files.createTempDirectory("token");
+        final Path file = dir.resolve("sub").resolve("server.token");
+        final String token = ServerToken.create(file);
+        file.toFile().deleteOnExit();
+        file.getParent().toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+
+        assertEquals(64, token.length());
+        assertEquals(token, ServerToken.read(file));
+        assertFalse(token.equals(ServerToken.create(file)));
+        if (Files.getFileStore(file).supportsFileAttributeView("posix")) {
+            assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), Files.getPosixFilePermissions(file));
+        }
+        assertTrue(ServerToken.matches("abc", "abc"));
+        assertFalse(ServerToken.matches("abc", "abd"));
+        assertFalse(ServerToken.matches("abc", null));
+    }
+
+    @Test
+    public void executeRequestsWithTokenOnly() throws Exception {
+        final Path csv = Files.createTempFile("server", ".csv");
+        csv.toFile().deleteOnExit();
+        Files.write(csv, "label,amount\nx,1\ny,2\n".getBytes());
+        final ScqServer server = new ScqServer(0, 1024 * 1024, csv.resolveSibling("unused.token"));
+        server.setToken("secret");
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertEquals(1, request(server, "guess", out, err, "select", "*", "from", csv.toString()));
+            assertEquals("", out.toString());
+            assertTrue(err.toString().startsWith("Invalid server token"), err.toString());
+
+            assertEquals(0, request(server, "secret", out, err, "--no-header", "select", "sum(amount)", "from", csv.toString()));
+            assertEquals("3", out.toString().trim());
+        } finally {
+            server.getCache().clear();
+        }
+    }
+
+    @Test
+    public void dropSilentClientAndServeNext() throws Exception {
+        final Path csv = Files.createTempFile("server", ".csv");
+        csv.toFile().deleteOnExit();
+        Files.write(csv, "label,amount\nx,1\ny,2\n".getBytes());
+        final ScqServer server = new ScqServer(0, 1024 * 1024, csv.resolveSibling("unused.token"));
+        server.setToken("secret");
+        server.setReadTimeout(100);
+        try (final ServerSocket listener = new ServerSocket(0, 2, InetAddress.getLoopbackAddress());
+             final Socket silent = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+             final Socket client = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort())) {
+            final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+            ServerProtocol.writeRequest(request, "secret", System.getProperty("java.io.tmpdir"),
+                                        "--no-header", "select", "sum(amount)", "from", csv.toString());
+            server.accept(listener);
+            server.accept(listener);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(0, ServerProtocol.readResponse(new DataInputStream(new BufferedInputStream(client.getInputStream())),
+                                                        out, new ByteArrayOutputStream()));
+            assertEquals("3", out.toString().trim());
+            assertEquals(-1, silent.getInputStream().read());
+        } finally {
+            server.getCache().clear();
+        }
+    }
+
+    static int request(final ScqServer server, final String token, final ByteArrayOutputStream out, final ByteArrayOutputStream err,
+                       final String... args) throws Exception {
+        try (final ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             final Socket client = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+             final Socket accepted = listener.accept()) {
+            final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+            ServerProtocol.writeRequest(request, token, System.getProperty("java.io.tmpdir"), args);
+            server.handle(accepted);
+            return ServerProtocol.readResponse(new DataInputStream(new BufferedInputStream(client.getInputStream())), out, err);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import com.beust.jcommander.JCommander;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class ShellTest {
+
+    @Test
+    public void tokenizeWithLiterals() {
+        assertEquals(Arrays.asList("select", "*", "from", "x.csv", "where", "name", "=", "'a b'"),
+                     Shell.tokenize(" select * from x.csv  where name = 'a b'"));
+    }
+
+    @Test
+    public void removeInteractiveOption() {
+        assertEquals(Arrays.asList("-t", "-v"), Shell.withoutInteractiveOption("-t", "-i", "x.csv", "-v"));
+    }
+
+    @Test
+    public void executeQueriesAndCommands() throws Exception {
+        final Path dir = Files.createTempDirectory("shell");
+        final Path csv = dir.resolve("data.csv");
+        Files.write(csv, "label,amount\nx,1\ny,2\ny,3\n".getBytes());
+        csv.toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+
+        final String[] args = {"-i", csv.toString()};
+        final Configuration conf = new Configuration();
+        new JCommander(conf).parse(args);
+        final Shell shell = new Shell(conf, Shell.withoutInteractiveOption(args));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream info = new ByteArrayOutputStream();
+        final String input = "select sum(amount) as total from " + csv + " where label = 'y';\n"
+                           + "\\types\n"
+                           + "\\drop " + csv + "\n"
+                           + "\\q\n"
+                           + "select * from " + csv + "\n";
+        shell.run(new BufferedReader(new StringReader(input)), new PrintStream(out, true), new PrintStream(info, true));
+
+        final List<String> lines = Arrays.asList(out.toString().split("\\r?\\n"));
+        assertEquals(Arrays.asList("TOTAL", "5", "label STRING", "amount INTEGER"), lines);
+        final String messages = info.toString();
+        assertTrue(messages.contains("1 row(s) in "), messages);
+        assertTrue(messages.contains("Dropped " + csv), messages);
+    }
+}
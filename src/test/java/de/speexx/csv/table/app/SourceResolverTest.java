@@ -0,0 +1,48 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public class SourceResolverTest {
+
+    @Test
+    public void unquoted() {
+        assertEquals("logs/*.csv", SourceResolver.unquoted("'logs/*.csv'"));
+        assertEquals("logs/*.csv", SourceResolver.unquoted("\"logs/*.csv\""));
+        assertEquals("'logs/*.csv", SourceResolver.unquoted("'logs/*.csv"));
+        assertEquals("x.csv", SourceResolver.unquoted("x.csv"));
+    }
+
+    @Test
+    public void resolveQuotedGlob() throws Exception {
+        final Path dir = Files.createTempDirectory("glob");
+        final Path day1 = Files.write(dir.resolve("2016-08-01.csv"), "a\n1\n".getBytes());
+        final Path day2 = Files.write(dir.resolve("2016-08-02.csv"), "a\n2\n".getBytes());
+        Files.write(dir.resolve("2016-09-01.csv"), "a\n3\n".getBytes());
+        Files.list(dir).forEach(file -> file.toFile().deleteOnExit());
+        dir.toFile().deleteOnExit();
+
+        assertEquals(Arrays.asList(day1, day2), SourceResolver.resolve("'" + dir.resolve("2016-08-*.csv") + "'"));
+    }
+}
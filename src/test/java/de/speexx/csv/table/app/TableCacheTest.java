@@ -0,0 +1,164 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.RowReader;
+import de.speexx.csv.table.Table;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class TableCacheTest {
+
+    @Test
+    public void getUnchangedTable() throws Exception {
+        final Path file = createFile("a,b\n1,2\n");
+        final TableCache cache = new TableCache(1024 * 1024);
+        final SimpleTable table = new SimpleTable("t1");
+        cache.put("key", table, Collections.singletonList(file));
+
+        assertSame(table, cache.get("key").get());
+        assertFalse(table.closed);
+        assertFalse(cache.get("other").isPresent());
+    }
+
+    @Test
+    public void invalidateChangedTable() throws Exception {
+        final Path file = createFile("a,b\n1,2\n");
+        final TableCache cache = new TableCache(1024 * 1024);
+        final SimpleTable table = new SimpleTable("t1");
+        cache.put("key", table, Collections.singletonList(file));
+
+        Files.write(file, "a,b\n1,2\n3,4\n".getBytes());
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+
+        assertFalse(cache.get("key").isPresent());
+        assertTrue(table.closed);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedMemory());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedTable() throws Exception {
+        final Path file = createFile("0123456789");
+        final long memoryPerTable = 10 * TableCache.MEMORY_PER_SOURCE_BYTE;
+        final TableCache cache = new TableCache(2 * memoryPerTable);
+        final SimpleTable first = new SimpleTable("t1");
+        final SimpleTable second = new SimpleTable("t2");
+        final SimpleTable third = new SimpleTable("t3");
+
+        cache.put("first", first, Collections.singletonList(file));
+        cache.put("second", second, Collections.singletonList(file));
+        cache.get("first");
+        cache.put("third", third, Collections.singletonList(file));
+
+        assertEquals(2, cache.size());
+        assertTrue(second.closed);
+        assertFalse(first.closed);
+        assertFalse(third.closed);
+        assertEquals(2 * memoryPerTable, cache.getUsedMemory());
+    }
+
+    @Test
+    public void keepLastTableAboveBudget() throws Exception {
+        final Path file = createFile("0123456789");
+        final TableCache cache = new TableCache(1);
+        final SimpleTable table = new SimpleTable("t1");
+        cache.put("key", table, Collections.singletonList(file));
+
+        assertEquals(1, cache.size());
+        assertFalse(table.closed);
+
+        cache.clear();
+        assertTrue(table.closed);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void countExecutionsOverRequests() {
+        final TableCache cache = new TableCache(1);
+        assertEquals(1, cache.countExecution("select a from x"));
+        assertEquals(1, cache.countExecution("select b from x"));
+        assertEquals(2, cache.countExecution("select a from x"));
+    }
+
+    @Test
+    public void dropCountsOfLeastRecentlyExecutedQueries() {
+        final TableCache cache = new TableCache(1);
+        cache.countExecution("select a from x");
+        cache.countExecution("select b from x");
+        for (int i = 0; i < TableCache.EXECUTION_COUNT_SIZE - 1; i++) {
+            cache.countExecution("select a from x where n = " + i);
+            cache.countExecution("select b from x");
+        }
+
+        assertEquals(TableCache.EXECUTION_COUNT_SIZE + 1, cache.countExecution("select b from x"));
+        assertEquals(1, cache.countExecution("select a from x"));
+    }
+
+    static Path createFile(final String content) throws Exception {
+        final Path file = Files.createTempFile("cache", ".csv");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes());
+        return file;
+    }
+
+    static final class SimpleTable implements Table {
+
+        private final String name;
+        private boolean closed;
+
+        SimpleTable(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public List<? extends EntryDescriptor> getEntryDescriptors() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public RowReader executeSql(final String sql) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void changeColumnTypes(final EntryDescriptor... descriptors) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app;
+
+import com.beust.jcommander.JCommander;
+import de.speexx.csv.table.TableException;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class WatcherTest {
+
+    @Test
+    public void printChangedResults() throws Exception {
+        final Path csv = Files.createTempFile("watch", ".csv");
+        csv.toFile().deleteOnExit();
+        Files.write(csv, "label,amount\nx,1\ny,2\n".getBytes());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Watcher watcher = watcherOf(out, "select", "count(*),", "max(amount)", "from", csv.toString());
+        try {
+            assertTrue(watcher.update());
+            assertEquals("1,2\n2,2\n", normalized(out));
+
+            assertFalse(watcher.update());
+
+            Files.write(csv, "z,7\ny,".getBytes(), StandardOpenOption.APPEND);
+            assertTrue(watcher.update());
+            assertEquals("1,2\n2,2\n1,2\n3,7\n", normalized(out));
+
+            // The incomplete line is loaded after the line end is written
+            Files.write(csv, "3\n".getBytes(), StandardOpenOption.APPEND);
+            assertTrue(watcher.update());
+            assertEquals("1,2\n2,2\n1,2\n3,7\n1,2\n4,7\n", normalized(out));
+
+            Files.write(csv, "label,amount\nx,5\n".getBytes());
+            assertTrue(watcher.update());
+            assertEquals("1,2\n2,2\n1,2\n3,7\n1,2\n4,7\n1,2\n1,5\n", normalized(out));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void unchangedResultNotPrinted() throws Exception {
+        final Path csv = Files.createTempFile("watch", ".csv");
+        csv.toFile().deleteOnExit();
+        Files.write(csv, "label,amount\nx,5\n".getBytes());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Watcher watcher = watcherOf(out, "--no-header", "select", "max(amount)", "from", csv.toString());
+        try {
+            assertTrue(watcher.update());
+            Files.write(csv, "y,3\n".getBytes(), StandardOpenOption.APPEND);
+            assertFalse(watcher.update());
+            assertEquals("5\n", normalized(out));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void loadReappearingFile() throws Exception {
+        final Path csv = Files.createTempFile("watch", ".csv");
+        csv.toFile().deleteOnExit();
+        Files.write(csv, "label,amount\nx,5\n".getBytes());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Watcher watcher = watcherOf(out, "--no-header", "select", "max(amount)", "from", csv.toString());
+        try {
+            assertTrue(watcher.update());
+            Files.delete(csv);
+            assertFalse(watcher.updateAfterChange());
+
+            Files.write(csv, "label,amount\nx,8\n".getBytes());
+            assertTrue(watcher.updateAfterChange());
+            assertEquals("5\n8\n", normalized(out));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void standardInputNotWatchable() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(TableException.class, () -> watcherOf(out, "select", "*", "from", "-"));
+    }
+
+    static Watcher watcherOf(final ByteArrayOutputStream out, final String... args) {
+        final Configuration conf = new Configuration();
+        new JCommander(conf).parse(Configuration.withStandardInputAlias(args));
+        final PrintStream print = new PrintStream(out, true);
+        return new Watcher(conf, new Application(print, print, null, null, Paths.get("")), print);
+    }
+
+    static String normalized(final ByteArrayOutputStream out) {
+        return out.toString().replace("\r\n", "\n");
+    }
+}
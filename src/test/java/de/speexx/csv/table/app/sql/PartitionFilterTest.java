@@ -0,0 +1,75 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.app.sql;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Predicate;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class PartitionFilterTest {
+
+    private static final Path DAY_1 = Paths.get("logs/2016-08-01.csv");
+    private static final Path DAY_2 = Paths.get("logs/2016-08-02.csv");
+    private static final Path DAY_3 = Paths.get("logs/2016-08-03.csv");
+
+    @Test
+    public void fileEquals() {
+        final Predicate<Path> filter = PartitionFilter.of("select * from logs where _file = 'logs/2016-08-02.csv'");
+        assertAll("equals",
+                () -> assertFalse(filter.test(DAY_1)),
+                () -> assertTrue(filter.test(DAY_2)),
+                () -> assertFalse(filter.test(DAY_3)));
+    }
+
+    @Test
+    public void fileLike() {
+        final Predicate<Path> filter = PartitionFilter.of("select * from logs where a = 1 and _file like '%-03.csv' order by a");
+        assertAll("like",
+                () -> assertFalse(filter.test(DAY_1)),
+                () -> assertFalse(filter.test(DAY_2)),
+                () -> assertTrue(filter.test(DAY_3)));
+    }
+
+    @Test
+    public void fileDateBetween() {
+        final Predicate<Path> filter = PartitionFilter.of("select * from logs where _file_date between '2016-8-2' and '2016-08-03'");
+        assertAll("between",
+                () -> assertFalse(filter.test(DAY_1)),
+                () -> assertTrue(filter.test(DAY_2)),
+                () -> assertTrue(filter.test(DAY_3)));
+    }
+
+    @Test
+    public void orAcceptsAll() {
+        final Predicate<Path> filter = PartitionFilter.of("select * from logs where _file_date > '2016-08-02' or a = 1");
+        assertAll("or",
+                () -> assertTrue(filter.test(DAY_1)),
+                () -> assertTrue(filter.test(DAY_2)),
+                () -> assertTrue(filter.test(DAY_3)));
+    }
+
+    @Test
+    public void predicateInLiteralIgnored() {
+        final Predicate<Path> filter = PartitionFilter.of("select * from logs where a = ' _file = ''x'' '");
+        assertTrue(filter.test(DAY_1));
+    }
+}
@@ -19,6 +19,9 @@ package de.speexx.csv.table.app.sql;
 
 import java.util.ArrayList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
 
@@ -35,4 +38,42 @@ public class SqlHandlerTest {
 
         assertEquals("uber", new ArrayList<>(queryData.getFromInfo()).get(0).getOriginalFrom());
     }
+
+    @Test
+    public void joinFromSelectStatement() {
+        final SelectData sql = new SelectData();
+        sql.setQueryParts("SELECT", "name,", "count(*)", "FROM", "orders", "LEFT", "OUTER", "JOIN", "customers",
+                          "ON", "customer", "=", "id", "GROUP", "BY", "name");
+
+        final SelectQueryData queryData = sql.getQueryData();
+        final JoinInfo join = queryData.getJoinInfo().get();
+        final String adjustedFrom = new ArrayList<>(queryData.getFromInfo()).get(0).getAdjustedFrom();
+
+        assertEquals("orders", new ArrayList<>(queryData.getFromInfo()).get(0).getOriginalFrom());
+        assertEquals("customers", join.getOriginalFrom());
+        assertTrue(join.isLeftJoin());
+        assertEquals("customer", join.getFirstConditionColumn());
+        assertEquals("id", join.getSecondConditionColumn());
+        assertEquals("SELECT name, count(*) FROM " + adjustedFrom + " GROUP BY name", queryData.getAdjustedQuery().getQuery());
+    }
+
+    @Test
+    public void innerJoinFromSelectStatement() {
+        final SelectData sql = new SelectData();
+        sql.setQueryParts("select", "*", "from", "orders", "join", "customers", "on", "customer=id");
+
+        final JoinInfo join = sql.getQueryData().getJoinInfo().get();
+
+        assertFalse(join.isLeftJoin());
+        assertEquals("customer", join.getFirstConditionColumn());
+        assertEquals("id", join.getSecondConditionColumn());
+    }
+
+    @Test
+    public void nonEquiJoinNotSupported() {
+        final SelectData sql = new SelectData();
+        sql.setQueryParts("select", "*", "from", "orders", "join", "customers", "on", "customer", "<", "id");
+
+        assertThrows(SqlException.class, () -> sql.getQueryData());
+    }
 }
@@ -0,0 +1,74 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.event;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+
+public class PipelineEventsTest {
+
+    @Test
+    public void recordEvents() throws Exception {
+        if (!PipelineEvents.isRecordingSupported()) {
+            return;
+        }
+        final Path file = Files.createTempFile("events", ".jfr");
+        file.toFile().deleteOnExit();
+
+        try (final Closeable recording = PipelineEvents.startRecording(file)) {
+            try (final PipelineEvent event = PipelineEvents.begin(Stage.COLUMN_CONVERSION, "table", "column")) {
+                event.setRows(42);
+            }
+        }
+
+        // Read reflectively as jdk.jfr isn't part of the Java 8 API
+        final Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        final Method getEventType = recordedEvent.getMethod("getEventType");
+        final Method getName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+        final Method getString = recordedEvent.getMethod("getString", String.class);
+        final Method getLong = recordedEvent.getMethod("getLong", String.class);
+        final List<Object> events = new ArrayList<>();
+        for (final Object event : (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class).invoke(null, file)) {
+            if ("de.speexx.csv.ColumnConversion".equals(getName.invoke(getEventType.invoke(event)))) {
+                events.add(event);
+            }
+        }
+        assertEquals(1, events.size());
+        assertEquals("table", getString.invoke(events.get(0), "table"));
+        assertEquals("column", getString.invoke(events.get(0), "column"));
+        assertEquals(42L, getLong.invoke(events.get(0), "rows"));
+    }
+
+    @Test
+    public void noEventsWithoutFlightRecorder() throws Exception {
+        final PipelineEvent event = PipelineEvents.NO_EVENT_SUPPORT.begin(Stage.QUERY, "table", null);
+        assertNotNull(event);
+        event.setRows(1);
+        event.close();
+        assertFalse(PipelineEvents.NO_EVENT_SUPPORT.isRecordingSupported());
+    }
+}
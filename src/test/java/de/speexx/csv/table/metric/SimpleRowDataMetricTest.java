@@ -17,9 +17,11 @@
  */
 package de.speexx.csv.table.metric;
 
+import de.speexx.csv.table.CsvReader;
 import de.speexx.csv.table.Entry;
 import de.speexx.csv.table.EntryDescriptor;
 import de.speexx.csv.table.Row;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -334,4 +336,45 @@ public class SimpleRowDataMetricTest {
         assertNull(typeCount.get(EntryDescriptor.Type.TIME));
         assertNull(typeCount.get(EntryDescriptor.Type.DATETIME));
     }
+
+    @Test
+    public void batchDataLikeRowData() throws Exception {
+        final String csv = "n,d,s\n1,2016-08-03,a\n2.5,2016-08-04,b\n3,2016-08-05 10:11,c\n";
+        final SimpleRowDataMetric rowMetric = new SimpleRowDataMetric();
+        try (final CsvReader reader = new CsvReader(new StringReader(csv))) {
+            reader.forEach(rowMetric::collectRowData);
+        }
+        final SimpleRowDataMetric batchMetric = new SimpleRowDataMetric();
+        try (final CsvReader reader = new CsvReader(new StringReader(csv))) {
+            reader.batches(2).forEachRemaining(batchMetric::collectBatchData);
+        }
+
+        assertEquals(rowMetric.getTypeMetric().getNameTypeFrequence().toString(),
+                     batchMetric.getTypeMetric().getNameTypeFrequence().toString());
+        assertEquals(EntryDescriptor.Type.DECIMAL, batchMetric.getMostSignificantTypeForName("n").get());
+        assertEquals(EntryDescriptor.Type.STRING, batchMetric.getMostSignificantTypeForName("d").get());
+    }
+
+    @Test
+    public void typeOfSingleValues() {
+        final List<String> values = Arrays.asList("0", "-0", "+12", "007", "1.5", ".5", "-2.25", "5.", "1e5", "NaN", "-",
+                                                  "2016-01-02", "2016-13-40", "2016-1-2", "2.1.2016", "1/2/2016",
+                                                  "12:30", "2016-01-02T12:30:00", "", "x1", "1.2.3");
+        for (final String value : values) {
+            EntryDescriptor.Type expected = EntryDescriptor.Type.STRING;
+            for (final EntryDescriptor.Type type : Arrays.asList(EntryDescriptor.Type.DATETIME, EntryDescriptor.Type.DATE,
+                                                                 EntryDescriptor.Type.INTEGER, EntryDescriptor.Type.DECIMAL,
+                                                                 EntryDescriptor.Type.TIME)) {
+                if (type.isTypeMatch(value)) {
+                    expected = type;
+                    break;
+                }
+            }
+            assertEquals(expected, SimpleRowDataMetric.typeOf(value), value);
+        }
+        assertEquals(EntryDescriptor.Type.DECIMAL, SimpleRowDataMetric.mostSignificantType(
+                Arrays.asList(EntryDescriptor.Type.INTEGER, EntryDescriptor.Type.DECIMAL)));
+        assertEquals(EntryDescriptor.Type.STRING, SimpleRowDataMetric.mostSignificantType(
+                Arrays.asList(EntryDescriptor.Type.INTEGER, EntryDescriptor.Type.DATE)));
+    }
 }
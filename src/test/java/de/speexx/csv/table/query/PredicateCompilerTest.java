@@ -0,0 +1,95 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.ResultColumn;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public class PredicateCompilerTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("num", "price", "day", "time", "label");
+
+    @Test
+    public void sameResultsAsInterpreter() {
+        final Map<String, ResultColumn> columns = createColumns();
+        final List<String> conditions = Arrays.asList(
+                "num > 2", "num = 2.0", "num <> 3", "2 >= num", "num between 1 and 3",
+                "price < 0", "price = 0", "price >= 1.5", "num < price",
+                "day = '2016-01-02'", "day > date '2016-01-01'", "day in ('2016-01-01', '2016-01-03')",
+                "time <= '2016-01-02 12:00:00'", "time > '2016-01-02 12:00:00'",
+                "label = 'b'", "label > 'a'", "label like 'a%'", "label not like '_'", "label in ('a', 'c')",
+                "num in (1, 2, 5)", "num not in (1, 2.5)", "price in (0, 1.5)",
+                "num is null", "label is not null", "1 < 2",
+                "not (num > 2 or label = 'a')", "not (num > 2 and label = 'a')", "not not num <> 2",
+                "not num in (1, 2)", "not label like 'a%' or price is null", "not (price > 1 and (day < '2016-01-03' or not label = 'c'))");
+
+        for (final String text : conditions) {
+            final Expression where = QueryParser.parse("select * from t where " + text, COLUMNS).getWhere().get();
+            final Expression condition = ExpressionInterpreter.bind(where, name -> columns.get(name).getType());
+            final IntPredicate predicate = PredicateCompiler.compile(condition, columns::get);
+            for (int row = 0; row < columns.get("num").size(); row++) {
+                assertEquals(ExpressionInterpreter.test(condition, columns::get, row), predicate.test(row), text + " - row " + row);
+            }
+        }
+    }
+
+    @Test
+    public void normalize() {
+        final Expression where = QueryParser.parse("select * from t where not (num > 2 and not label like 'a%') or not num is null", COLUMNS).getWhere().get();
+
+        assertEquals("((num <= 2 OR label LIKE 'a%') OR num IS NOT NULL)", PredicateCompiler.normalize(where, false).toString());
+    }
+
+    static Map<String, ResultColumn> createColumns() {
+        final Object[][] rows = {
+            {1L, 1.5, LocalDate.of(2016, 1, 1), LocalDateTime.of(2016, 1, 2, 12, 0), "a"},
+            {2L, -0.0, LocalDate.of(2016, 1, 2), LocalDateTime.of(2016, 1, 2, 11, 59), "b"},
+            {null, 0.0, null, LocalDateTime.of(2016, 1, 1, 13, 0), "ab"},
+            {3L, null, LocalDate.of(2016, 1, 3), null, null},
+            {5L, 2.0, LocalDate.of(2016, 1, 2), LocalDateTime.of(2016, 1, 3, 0, 0), "c"},
+        };
+        final EntryDescriptor.Type[] types = {EntryDescriptor.Type.INTEGER, EntryDescriptor.Type.DECIMAL, EntryDescriptor.Type.DATE,
+                                              EntryDescriptor.Type.DATETIME, EntryDescriptor.Type.STRING};
+        final Map<String, ResultColumn> columns = new HashMap<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            final ResultColumn column = new ResultColumn(descriptor(COLUMNS.get(i), types[i]));
+            for (final Object[] row : rows) {
+                column.appendValue(row[i]);
+            }
+            columns.put(COLUMNS.get(i), column);
+        }
+        return columns;
+    }
+
+    static EntryDescriptor descriptor(final String name, final EntryDescriptor.Type type) {
+        return new EntryDescriptor() {
+            @Override public EntryDescriptor.Type getType() {return type;}
+            @Override public String getName() {return name;}
+        };
+    }
+}
@@ -0,0 +1,104 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import de.speexx.csv.table.CsvReader;
+import de.speexx.csv.table.EntryDescriptor;
+import de.speexx.csv.table.Row;
+import de.speexx.csv.table.RowReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class PrefilterTest {
+
+    private static final String CSV = "num,label,day\n"
+                                      + "3,b,2016-01-02\n"
+                                      + "1,a,2016-01-01\n"
+                                      + "x,a,2016-01-03\n"
+                                      + "12.5,c ,2016-01-09\n"
+                                      + "7,c,1/4/2016\n";
+
+    @Test
+    public void dropRowsNotMatching() throws Exception {
+        final Prefilter prefilter = prefilter("select * from t where num > 2 and label <> 'c' and day >= '2016-01-02'", true).get();
+
+        assertEquals(Arrays.asList("3", "x"), filter(prefilter, "num"));
+        assertEquals(3, prefilter.getDroppedRows());
+        assertEquals("NUMBER", prefilter.getAssumedTypes().get("num"));
+        assertEquals("STRING", prefilter.getAssumedTypes().get("label"));
+        assertEquals("DATE", prefilter.getAssumedTypes().get("day"));
+    }
+
+    @Test
+    public void keepRowsWithUnknownValues() throws Exception {
+        final Prefilter prefilter = prefilter("select * from t where not (num <= 2 or day < '2016-01-04') or label = 'x'", true).get();
+
+        assertEquals(Arrays.asList("12.5", "7"), filter(prefilter, "num"));
+    }
+
+    @Test
+    public void applicableToMatchingTypes() throws Exception {
+        final Prefilter prefilter = prefilter("select * from t where num in (1, 3) and label like 'a%'", true).get();
+
+        assertTrue(prefilter.isApplicableTo(Arrays.asList(descriptor("num", EntryDescriptor.Type.DECIMAL),
+                                                          descriptor("label", EntryDescriptor.Type.STRING))));
+        assertFalse(prefilter.isApplicableTo(Arrays.asList(descriptor("num", EntryDescriptor.Type.STRING))));
+    }
+
+    @Test
+    public void withoutPrefilter() throws Exception {
+        assertFalse(prefilter("select * from t", true).isPresent());
+        assertFalse(prefilter("select * from t where num is null or num > 2", true).isPresent());
+        assertFalse(prefilter("select * from t where num > 2", false).isPresent());
+        assertEquals(Arrays.asList("c ", "c"), filter(prefilter("select * from t where num > 2 and label = 'c'", false).get(), "label"));
+    }
+
+    static Optional<Prefilter> prefilter(final String sql, final boolean typesDetected) throws Exception {
+        try (final RowReader reader = new CsvReader(new StringReader(CSV))) {
+            final List<String> names = new ArrayList<>();
+            reader.getEntryDescriptors().forEach(descriptor -> names.add(descriptor.getName()));
+            return Prefilter.of(QueryParser.parse(sql, names), reader.getEntryDescriptors(), typesDetected);
+        }
+    }
+
+    static List<String> filter(final Prefilter prefilter, final String column) throws Exception {
+        final List<String> values = new ArrayList<>();
+        try (final RowReader reader = prefilter.filter(new CsvReader(new StringReader(CSV)))) {
+            final int index = Arrays.asList("num", "label", "day").indexOf(column);
+            for (final Row row : reader) {
+                values.add(row.getValue(index).toString());
+            }
+        }
+        return values;
+    }
+
+    static EntryDescriptor descriptor(final String name, final EntryDescriptor.Type type) {
+        return new EntryDescriptor() {
+            @Override public EntryDescriptor.Type getType() {return type;}
+            @Override public String getName() {return name;}
+        };
+    }
+}
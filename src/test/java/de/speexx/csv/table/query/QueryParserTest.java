@@ -0,0 +1,100 @@
+/* CSV query table to work with CSV files and SQL like statements.
+ *
+ * Copyright (C) 2016  Sascha Kohlmann
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.speexx.csv.table.query;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class QueryParserTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("num", "label", "day", "sale price", "count");
+
+    @Test
+    public void parseAggregation() {
+        final Query query = QueryParser.parse(
+                "select day, count(*), sum(num) as total from t where num > 10 and label like 'a%' group by day order by total desc limit 5",
+                COLUMNS);
+
+        assertTrue(query.isAggregation());
+        assertEquals("t", query.getFrom());
+        assertEquals(3, query.getSelectItems().size());
+        assertEquals("TOTAL", query.getSelectItems().get(2).getAlias().get());
+        assertEquals(Arrays.asList(new Expression.ColumnReference("day")), query.getGroupBy());
+        assertEquals(new Expression.AliasReference("TOTAL"), query.getOrderBy().get(0).getExpression());
+        assertTrue(query.getOrderBy().get(0).isDescending());
+        assertEquals(5, query.getLimit());
+        assertEquals("SELECT day, COUNT(*), SUM(num) AS TOTAL FROM t WHERE (num > 10 AND label LIKE 'a%') "
+                     + "GROUP BY day ORDER BY TOTAL DESC FETCH FIRST 5 ROWS ONLY", query.toString());
+    }
+
+    @Test
+    public void parseCountDistinct() {
+        final Query query = QueryParser.parse("select day, count(distinct label) from t group by day", COLUMNS);
+
+        final Expression.Aggregate aggregate = (Expression.Aggregate) query.getSelectItems().get(1).getExpression();
+        assertTrue(aggregate.isDistinct());
+        assertEquals(Expression.AggregateFunction.COUNT, aggregate.getFunction());
+        assertEquals("COUNT(DISTINCT label)", aggregate.toString());
+        assertFalse(aggregate.equals(new Expression.Aggregate(Expression.AggregateFunction.COUNT, new Expression.ColumnReference("label"))));
+    }
+
+    @Test
+    public void parseColumnNamesAsWritten() {
+        final Query query = QueryParser.parse("select sale price as \"Price\", count from t where sale price >= 1.5 and count <> 3", COLUMNS);
+
+        assertFalse(query.isAggregation());
+        assertEquals("Price", query.getSelectItems().get(0).getAlias().get());
+        assertEquals(new Expression.ColumnReference("count"), query.getSelectItems().get(1).getExpression());
+        assertEquals(Arrays.asList("sale price", "count"), query.getWhere().get().getColumnNames());
+    }
+
+    @Test
+    public void parseConditions() {
+        final Query query = QueryParser.parse(
+                "select * from t where day between date '2016-01-01' and '2016-12-31' or not label in ('a', 'b') or num is not null offset 2 rows fetch next 1 row only",
+                COLUMNS);
+
+        final Expression where = query.getWhere().get();
+        assertTrue(where instanceof Expression.Or);
+        final Expression between = where.getOperands().get(0);
+        assertEquals(new Expression.Literal(LocalDate.of(2016, 1, 1)), ((Expression.Comparison) between.getOperands().get(0)).getRight());
+        assertTrue(where.getOperands().get(1) instanceof Expression.Not);
+        assertTrue(((Expression.IsNull) where.getOperands().get(2)).isNegated());
+        assertTrue(query.isSelectAll());
+        assertEquals(2, query.getOffset());
+        assertEquals(1, query.getLimit());
+    }
+
+    @Test
+    public void rejectUnsupportedQueries() {
+        assertThrows(UnsupportedQueryException.class, () -> QueryParser.parse("select num * 2 from t", COLUMNS));
+        assertThrows(UnsupportedQueryException.class, () -> QueryParser.parse("select day, count(*) from t group by day having count(*) > 1", COLUMNS));
+        assertThrows(UnsupportedQueryException.class, () -> QueryParser.parse("select sum(distinct num) from t", COLUMNS));
+        assertThrows(UnsupportedQueryException.class, () -> QueryParser.parse("select upper(label) from t", COLUMNS));
+        assertThrows(UnsupportedQueryException.class, () -> QueryParser.parse("select num from t a, t b", COLUMNS));
+        assertThrows(UnsupportedQueryException.class, () -> QueryParser.parse("select unknown from t", COLUMNS));
+        assertThrows(UnsupportedQueryException.class, () -> QueryParser.parse("select num from t where num in (select num from t)", COLUMNS));
+    }
+}
@@ -37,6 +37,18 @@ public class StringToTimeTransformerTest {
                 () -> assertEquals(12, local.getSecond()));
     }
     
+    @Test
+    public void testIsoTimeWithFraction() {
+        final Time time = new StringToTimeTransformer().transform("10:11:12.345").get();
+        final LocalTime local = time.toLocalTime();
+
+        assertAll("iso time", 
+                () -> assertEquals(10, local.getHour()),
+                () -> assertEquals(11, local.getMinute()),
+                () -> assertEquals(12, local.getSecond())
+        );
+    }
+
     @Test
     public void testCorrectIsoTimeShort() {
         final Time time = new StringToTimeTransformer().transform("10:11").get();